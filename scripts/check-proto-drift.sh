@@ -0,0 +1,42 @@
+#!/usr/bin/env bash
+set -euo pipefail
+
+# The gRPC contracts are copied into every service that calls them. Fails when a copy differs
+# from the owning service's file, printing the diff. Fix the copy, or change the owner first and
+# copy it everywhere in the same commit.
+#
+# Usage: scripts/check-proto-drift.sh
+
+ROOT="$(cd "$(dirname "${BASH_SOURCE[0]}")/.." && pwd)"
+
+# proto file, owning service, services holding a copy
+CONTRACTS=(
+  "device_lookup.proto device-service usage-service"
+  "user_lookup.proto user-service usage-service"
+  "usage_lookup.proto usage-service insight-service"
+)
+
+status=0
+for contract in "${CONTRACTS[@]}"; do
+  read -r -a fields <<<"$contract"
+  file="${fields[0]}"
+  owner="$ROOT/services/${fields[1]}/src/main/proto/$file"
+  for copy_service in "${fields[@]:2}"; do
+    copy="$ROOT/services/$copy_service/src/main/proto/$file"
+    if ! diff -u "$owner" "$copy"; then
+      echo "!!! $file in $copy_service has drifted from ${fields[1]}" >&2
+      status=1
+    fi
+  done
+done
+
+# a proto that is copied but not listed above would go unchecked
+unlisted="$(find "$ROOT/services" -path '*/src/main/proto/*.proto' -exec basename {} \; \
+  | sort | uniq -d | grep -vxF -e device_lookup.proto -e user_lookup.proto -e usage_lookup.proto || true)"
+if [ -n "$unlisted" ]; then
+  echo "!!! shared protos missing from $0: $unlisted" >&2
+  status=1
+fi
+
+[ "$status" -eq 0 ] && echo "Shared protos match their owners."
+exit "$status"
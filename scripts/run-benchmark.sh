@@ -0,0 +1,21 @@
+#!/usr/bin/env bash
+set -euo pipefail
+
+# Runs a benchmark main from a service's test sources on its test classpath. The class is
+# relative to the service's base package; JAVA_OPTS go to the JVM, the rest to the benchmark.
+# Requires: Maven and a JDK 21 `java` on PATH.
+#
+# Usage: scripts/run-benchmark.sh <service> <class> [args...]
+#   e.g. JAVA_OPTS=-Xmx4g scripts/run-benchmark.sh usage-service billing.CostEngineBenchmark
+
+ROOT="$(cd "$(dirname "${BASH_SOURCE[0]}")/.." && pwd)"
+SERVICE="${1:?usage: $0 <service> <class> [args...]}"
+CLASS="${2:?usage: $0 <service> <class> [args...]}"
+shift 2
+
+cd "$ROOT/services/$SERVICE"
+mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/benchmark-classpath.txt
+
+# shellcheck disable=SC2086
+exec java ${JAVA_OPTS:-} -cp "target/classes:target/test-classes:$(cat target/benchmark-classpath.txt)" \
+  "com.chieaid24.${SERVICE//-/_}.$CLASS" "$@"
@@ -0,0 +1,69 @@
+#!/usr/bin/env bash
+set -euo pipefail
+
+# Startup time and time-to-first-request of one service: the plain fat jar against the
+# fast-startup profile (AOT-processed context + AppCDS archive). Builds the service with the
+# profile, then starts each variant RUNS times with the profile's training settings, i.e.
+# against the local compose infrastructure, and reports every run plus the mean.
+# Requires: the compose infrastructure up, curl, Maven and a JDK 21 `java` on PATH.
+# VIRTUAL_THREADS=true measures the virtual-thread variant; AOT fixes the threading mode at build
+# time, so it is passed to the build as well as to both runs.
+#
+# Usage: scripts/startup-benchmark.sh <service> [runs] [path]
+#   e.g. scripts/startup-benchmark.sh device-service 5 /api/v1/device/total
+
+ROOT="$(cd "$(dirname "${BASH_SOURCE[0]}")/.." && pwd)"
+SERVICE="${1:?usage: $0 <service> [runs] [path]}"
+RUNS="${2:-5}"
+PROBE_PATH="${3:-/actuator/health}"
+PORT="${PORT:-18080}"
+VIRTUAL_THREADS="${VIRTUAL_THREADS:-false}"
+PROFILES="fast-startup"
+if [ "$SERVICE" = "insight-service" ]; then
+  PROFILES="ollama,fast-startup"
+fi
+
+cd "$ROOT/services/$SERVICE"
+echo ">>> Building $SERVICE with -P$PROFILES..."
+mvn -q -DskipTests -P"$PROFILES" -Dfast-startup.skip-training=false \
+  -Dfast-startup.virtual-threads="$VIRTUAL_THREADS" package
+
+JAR="$(basename "$(ls target/"$SERVICE"-*.jar | grep -v '\.original$' | head -1)")"
+read -r -a SETTINGS <<<"$(sed -n 's:.*<fast-startup.training-args>\(.*\)</fast-startup.training-args>.*:\1:p' pom.xml)"
+SETTINGS+=("-Dserver.port=$PORT" "-Dspring.grpc.server.port=0"
+  "-Dspring.threads.virtual.enabled=$VIRTUAL_THREADS")
+
+# measure <label> <java args...>: prints "started in" and time to the first answered request
+measure() {
+  local label="$1"
+  shift
+  local total=0
+  for run in $(seq "$RUNS"); do
+    local log
+    log="$(mktemp)"
+    local begin
+    begin="$(date +%s%N)"
+    java "$@" >"$log" 2>&1 &
+    local pid=$!
+    until curl -sf "http://localhost:$PORT$PROBE_PATH" >/dev/null; do
+      if ! kill -0 "$pid" 2>/dev/null; then
+        echo "$label run $run exited before serving, see $log"
+        exit 1
+      fi
+      sleep 0.05
+    done
+    local ttfr=$((($(date +%s%N) - begin) / 1000000))
+    local started
+    started="$(grep -oE 'Started [A-Za-z]+ in [0-9.]+ seconds' "$log" | grep -oE '[0-9.]+ seconds' || true)"
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    rm -f "$log"
+    echo "  $label run $run: started in ${started:-?}, first request after ${ttfr} ms"
+    total=$((total + ttfr))
+  done
+  echo ">>> $label: mean time to first request $((total / RUNS)) ms"
+}
+
+measure "plain jar" "${SETTINGS[@]}" -jar "target/$JAR"
+measure "aot + cds" -XX:SharedArchiveFile=target/fast-startup/application.jsa \
+  -Dspring.aot.enabled=true "${SETTINGS[@]}" -jar "target/fast-startup/$JAR"
@@ -0,0 +1,41 @@
+#!/usr/bin/env bash
+set -euo pipefail
+
+# Compares platform-thread and virtual-thread mode under high concurrency.
+# For each mode the application services are recreated with VIRTUAL_THREADS=<mode>
+# (docker-compose.yml maps it to SPRING_THREADS_VIRTUAL_ENABLED), then ConcurrencyBenchmark
+# drives a device read and the ingestion endpoint and reports throughput, latency and the
+# service's peak heap and live threads.
+# Requires: the compose stack up with devices seeded, curl, Maven and a JDK 21+ `java` on PATH.
+#
+# Usage: scripts/virtual-thread-benchmark.sh [concurrency] [seconds]
+
+ROOT="$(cd "$(dirname "${BASH_SOURCE[0]}")/.." && pwd)"
+CONCURRENCY="${1:-2000}"
+DURATION="${2:-30}"
+MAX_DEVICE_ID="${MAX_DEVICE_ID:-1000}"
+BENCHMARK=("$ROOT/scripts/run-benchmark.sh" ingestion-service ConcurrencyBenchmark)
+SERVICES=(user-service device-service ingestion-service usage-service alert-service insight-service)
+
+wait_healthy() {
+  until curl -sf "$1/actuator/health" >/dev/null; do sleep 2; done
+}
+
+for mode in false true; do
+  echo ">>> VIRTUAL_THREADS=$mode: recreating ${SERVICES[*]}..."
+  VIRTUAL_THREADS=$mode docker compose -f "$ROOT/docker-compose.yml" \
+    up -d --force-recreate --no-deps "${SERVICES[@]}"
+  wait_healthy http://localhost:8081
+  wait_healthy http://localhost:8082
+  # let connection pools and JIT settle before measuring
+  sleep 20
+
+  echo ">>> [virtual=$mode] device-service GET /api/v1/device/{id}"
+  "${BENCHMARK[@]}" "http://localhost:8081/api/v1/device/{id}" \
+    "$CONCURRENCY" "$DURATION" "$MAX_DEVICE_ID"
+
+  echo ">>> [virtual=$mode] ingestion-service POST /api/v1/ingestion"
+  "${BENCHMARK[@]}" "http://localhost:8082/api/v1/ingestion" \
+    "$CONCURRENCY" "$DURATION" "$MAX_DEVICE_ID" \
+    '{"deviceId": {id}, "energyConsumed": 0.42, "timestamp": "2026-01-01T00:00:00Z"}'
+done
@@ -0,0 +1,103 @@
+package com.chieaid24.alert_service.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Pins a request's reads to the primary so it sees its own writes. A request is pinned when it
+ * sends the {@code X-Read-Primary} header, for the rest of the request once it has opened a
+ * read-write transaction, and while its {@code primary-until} cookie is live. That cookie is set on
+ * the response of a writing request and lasts {@code pin-after-write}, covering a session's next
+ * reads until the replicas have caught up.
+ */
+@Component
+public class ReadYourWrites extends OncePerRequestFilter {
+
+  static final String HEADER = "X-Read-Primary";
+  static final String COOKIE = "primary-until";
+
+  private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+  private final Duration pinAfterWrite;
+
+  public ReadYourWrites(
+      @Value("${datasource.routing.pin-after-write:PT5S}") Duration pinAfterWrite) {
+    this.pinAfterWrite = pinAfterWrite;
+  }
+
+  static boolean isPinned() {
+    Scope scope = SCOPE.get();
+    return scope != null && scope.pinned;
+  }
+
+  static void onWrite() {
+    Scope scope = SCOPE.get();
+    if (scope == null) {
+      return;
+    }
+    scope.pinned = true;
+    if (!scope.cookieSet && !scope.response.isCommitted()) {
+      Cookie cookie =
+          new Cookie(
+              COOKIE, String.valueOf(System.currentTimeMillis() + scope.pinAfterWrite.toMillis()));
+      cookie.setMaxAge((int) Math.max(1, scope.pinAfterWrite.toSeconds()));
+      cookie.setPath("/");
+      cookie.setHttpOnly(true);
+      scope.response.addCookie(cookie);
+      scope.cookieSet = true;
+    }
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    SCOPE.set(new Scope(response, pinAfterWrite, pinnedBy(request)));
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      SCOPE.remove();
+    }
+  }
+
+  private static boolean pinnedBy(HttpServletRequest request) {
+    if (request.getHeader(HEADER) != null) {
+      return true;
+    }
+    Cookie[] cookies = request.getCookies();
+    if (cookies == null) {
+      return false;
+    }
+    for (Cookie cookie : cookies) {
+      if (COOKIE.equals(cookie.getName())) {
+        try {
+          return Long.parseLong(cookie.getValue()) > System.currentTimeMillis();
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static final class Scope {
+    private final HttpServletResponse response;
+    private final Duration pinAfterWrite;
+    private boolean pinned;
+    private boolean cookieSet;
+
+    private Scope(HttpServletResponse response, Duration pinAfterWrite, boolean pinned) {
+      this.response = response;
+      this.pinAfterWrite = pinAfterWrite;
+      this.pinned = pinned;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package com.chieaid24.alert_service.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The read replicas behind {@link RoutingDataSource}, one pool each. A background probe reads
+ * {@code Seconds_Behind_Source} from every replica each {@code probe-interval}. A replica that lags
+ * by more than {@code max-lag}, has stopped replicating or cannot be reached is taken out of
+ * rotation until a later probe finds it caught up. A server that reports no replication at all is
+ * treated the same way, unless {@code allow-standalone} says the replicas are plain servers on
+ * purpose, as in local setups. Until the first probe, reads go to the primary.
+ */
+@Slf4j
+public class ReplicaSet implements AutoCloseable {
+
+  private static final int PROBE_TIMEOUT_SECONDS = 2;
+
+  private final Map<String, HikariDataSource> pools;
+  private final long maxLagSeconds;
+  private final boolean allowStandalone;
+  private final Map<String, Double> lagSeconds = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService prober;
+  private volatile String[] healthy = new String[0];
+
+  ReplicaSet(
+      Map<String, HikariDataSource> pools,
+      Duration maxLag,
+      Duration probeInterval,
+      boolean allowStandalone,
+      MeterRegistry meterRegistry) {
+    this(pools, maxLag, allowStandalone, meterRegistry);
+    if (!pools.isEmpty()) {
+      prober.scheduleWithFixedDelay(
+          this::probe, 0, probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** A set whose probes are left to the caller. */
+  ReplicaSet(
+      Map<String, HikariDataSource> pools,
+      Duration maxLag,
+      boolean allowStandalone,
+      MeterRegistry meterRegistry) {
+    this.pools = pools;
+    this.maxLagSeconds = maxLag.toSeconds();
+    this.allowStandalone = allowStandalone;
+    for (String key : pools.keySet()) {
+      lagSeconds.put(key, Double.NaN);
+      Gauge.builder("datasource.replica.lag", lagSeconds, lag -> lag.get(key))
+          .tag("target", key)
+          .baseUnit("seconds")
+          .register(meterRegistry);
+    }
+    meterRegistry.gauge("datasource.replica.healthy", this, set -> set.healthy.length);
+    this.prober =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "replica-lag-probe");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  Map<String, HikariDataSource> pools() {
+    return pools;
+  }
+
+  /** Keys of the replicas currently in rotation. */
+  String[] healthy() {
+    return healthy;
+  }
+
+  void probe() {
+    Set<String> previous = Set.of(healthy);
+    List<String> inRotation = new ArrayList<>();
+    for (Map.Entry<String, HikariDataSource> replica : pools.entrySet()) {
+      String key = replica.getKey();
+      double lag = secondsBehind(replica.getValue());
+      lagSeconds.put(key, lag);
+      // NaN (unreachable, not replicating or not a replica) never compares as caught up
+      boolean caughtUp = lag <= maxLagSeconds;
+      if (caughtUp) {
+        inRotation.add(key);
+      }
+      if (caughtUp && !previous.contains(key)) {
+        log.info("Replica {} in rotation (lag {}s)", key, lag);
+      } else if (!caughtUp && previous.contains(key)) {
+        log.warn("Replica {} ejected (lag {}s, max {}s)", key, lag, maxLagSeconds);
+      }
+    }
+    healthy = inRotation.toArray(String[]::new);
+  }
+
+  double secondsBehind(HikariDataSource replica) {
+    try (Connection connection = replica.getConnection();
+        Statement statement = connection.createStatement()) {
+      statement.setQueryTimeout(PROBE_TIMEOUT_SECONDS);
+      try (ResultSet status = statement.executeQuery("SHOW REPLICA STATUS")) {
+        if (!status.next()) {
+          // not replicating at all, which is only fine for a server configured as standalone
+          return allowStandalone ? 0 : Double.NaN;
+        }
+        long seconds = status.getLong("Seconds_Behind_Source");
+        // NULL while the replication threads are stopped
+        return status.wasNull() ? Double.NaN : seconds;
+      }
+    } catch (SQLException | RuntimeException e) {
+      log.debug("Lag probe of {} failed", replica.getPoolName(), e);
+      return Double.NaN;
+    }
+  }
+
+  @Override
+  public void close() {
+    prober.shutdownNow();
+    pools.values().forEach(HikariDataSource::close);
+  }
+}
@@ -1,5 +1,6 @@
 package com.chieaid24.alert_service.service;
 
+import com.chieaid24.kafka.event.AlertType;
 import com.chieaid24.kafka.event.AlertingEvent;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -21,7 +22,10 @@ public class AlertService {
   public void energyUsageAlertEvent(AlertingEvent alertingEvent) {
     log.info("Received alerting event: {}", alertingEvent);
 
-    final String subject = "Energy Usage Alert for " + alertingEvent.getName();
+    final String subject =
+        alertingEvent.getType() == AlertType.PROJECTED_OVERRUN
+            ? "Projected Energy Usage Alert for " + alertingEvent.getName()
+            : "Energy Usage Alert for " + alertingEvent.getName();
     final String htmlBody =
         ecoEmailBuilder.buildHtmlEmail(
             alertingEvent.getMessage(),
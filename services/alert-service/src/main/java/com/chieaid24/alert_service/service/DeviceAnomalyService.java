@@ -0,0 +1,31 @@
+package com.chieaid24.alert_service.service;
+
+import com.chieaid24.kafka.event.DeviceAnomalyEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+public class DeviceAnomalyService {
+
+  private final Counter anomalyCounter;
+
+  public DeviceAnomalyService(MeterRegistry meterRegistry) {
+    this.anomalyCounter = meterRegistry.counter("alert.device.anomalies");
+  }
+
+  @KafkaListener(topics = "device-anomalies", groupId = "alert-service")
+  public void deviceAnomalyEvent(DeviceAnomalyEvent deviceAnomalyEvent) {
+    anomalyCounter.increment();
+    log.info(
+        "Device {} of user {} reported {} Wh against an expected {} Wh (z={})",
+        deviceAnomalyEvent.getDeviceId(),
+        deviceAnomalyEvent.getUserId(),
+        deviceAnomalyEvent.getEnergyConsumed(),
+        deviceAnomalyEvent.getExpectedEnergy(),
+        deviceAnomalyEvent.getZScore());
+  }
+}
@@ -0,0 +1,10 @@
+package com.chieaid24.kafka.event;
+
+public enum AlertType {
+  /** The user's last-hour usage is above their alerting threshold. */
+  THRESHOLD_EXCEEDED,
+  /** One of the user's alert rules is breached. */
+  RULE_BREACHED,
+  /** The last-hour usage is projected to cross the threshold before the hour ends. */
+  PROJECTED_OVERRUN
+}
@@ -16,4 +16,5 @@ public class AlertingEvent {
   private double threshold;
   private double energyConsumed;
   private String email;
+  private AlertType type;
 }
@@ -0,0 +1,26 @@
+package com.chieaid24.kafka.event;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DeviceAnomalyEvent {
+  private Long deviceId;
+  private Long userId;
+  private double energyConsumed;
+  private double expectedEnergy;
+
+  @JsonProperty("zScore")
+  private double zScore;
+
+  @JsonFormat(shape = JsonFormat.Shape.STRING)
+  private Instant timestamp;
+}
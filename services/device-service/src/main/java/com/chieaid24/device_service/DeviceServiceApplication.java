@@ -2,9 +2,11 @@ package com.chieaid24.device_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // Device Service
 @SpringBootApplication
+@EnableScheduling
 public class DeviceServiceApplication {
 
   public static void main(String[] args) {
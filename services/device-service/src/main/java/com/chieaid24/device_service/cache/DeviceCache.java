@@ -0,0 +1,246 @@
+package com.chieaid24.device_service.cache;
+
+import com.chieaid24.device_service.dto.DeviceDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Two-tier read-through cache for devices by id and device lists by owner. The local tier is a
+ * bounded Caffeine cache, which also makes concurrent misses on one key wait for a single load. The
+ * shared tier is Redis, so a device read by one replica is a Redis hit for the others. Loaders only
+ * fill Redis with SET NX, while change events overwrite it, so a load from a lagging replica never
+ * replaces a newer value. Device lists have nothing to overwrite with, so their Redis keys carry a
+ * per-user version that every change bumps: a list loaded before the change can only land under the
+ * old version, which nobody reads any more. Redis errors fall through to the database.
+ */
+@Slf4j
+@Component
+public class DeviceCache {
+
+  private static final String DEVICE_KEY = "device:";
+  private static final String USER_DEVICES_KEY = "device:user:";
+  private static final String USER_VERSION_KEY = "device:user-version:";
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final JsonMapper jsonMapper;
+  private final Duration deviceTtl;
+  private final Duration userDevicesTtl;
+  private final Cache<Long, DeviceDto> devices;
+  private final Cache<Long, List<DeviceDto>> userDevices;
+  private final Counter redisHits;
+  private final Counter redisMisses;
+  private final Timer deviceLoads;
+  private final Timer userDevicesLoads;
+
+  public DeviceCache(
+      StringRedisTemplate stringRedisTemplate,
+      JsonMapper jsonMapper,
+      MeterRegistry meterRegistry,
+      @Value("${device.cache.local-size:100000}") long localSize,
+      @Value("${device.cache.local-user-size:20000}") long localUserSize,
+      @Value("${device.cache.local-ttl:PT10M}") Duration localTtl,
+      @Value("${device.cache.redis-ttl:PT30M}") Duration deviceTtl,
+      @Value("${device.cache.redis-user-ttl:PT5M}") Duration userDevicesTtl) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.jsonMapper = jsonMapper;
+    this.deviceTtl = deviceTtl;
+    this.userDevicesTtl = userDevicesTtl;
+    this.devices =
+        Caffeine.newBuilder()
+            .maximumSize(localSize)
+            .expireAfterWrite(localTtl)
+            .recordStats()
+            .build();
+    this.userDevices =
+        Caffeine.newBuilder()
+            .maximumSize(localUserSize)
+            .expireAfterWrite(localTtl)
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, devices, "devices");
+    CaffeineCacheMetrics.monitor(meterRegistry, userDevices, "userDevices");
+    this.redisHits = meterRegistry.counter("device.cache.redis", "result", "hit");
+    this.redisMisses = meterRegistry.counter("device.cache.redis", "result", "miss");
+    this.deviceLoads =
+        Timer.builder("device.cache.load")
+            .tag("cache", "devices")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    this.userDevicesLoads =
+        Timer.builder("device.cache.load")
+            .tag("cache", "userDevices")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+  }
+
+  /** The device, or null when {@code loader} finds none. Absent devices are not cached. */
+  public DeviceDto getDevice(Long id, Function<Long, DeviceDto> loader) {
+    return devices.get(
+        id,
+        key ->
+            readThrough(
+                DEVICE_KEY + key,
+                deviceTtl,
+                DeviceDto.class,
+                deviceLoads,
+                () -> loader.apply(key)));
+  }
+
+  /**
+   * The user's devices. {@code loader} must read from the primary: the list version is read before
+   * it runs, so a load that started before a change is stored under the version that change
+   * retired, but a lagging read that started after it would not be.
+   */
+  public List<DeviceDto> getUserDevices(Long userId, Function<Long, List<DeviceDto>> loader) {
+    return userDevices.get(
+        userId,
+        key -> {
+          final String version = userDevicesVersion(key);
+          if (version == null) {
+            return List.copyOf(userDevicesLoads.record(() -> loader.apply(key)));
+          }
+          final DeviceDto[] loaded =
+              readThrough(
+                  USER_DEVICES_KEY + key + ":" + version,
+                  userDevicesTtl,
+                  DeviceDto[].class,
+                  userDevicesLoads,
+                  () -> loader.apply(key).toArray(DeviceDto[]::new));
+          return List.of(loaded);
+        });
+  }
+
+  /**
+   * Applies a change from {@code device-changes}: the new state replaces the cached device in both
+   * tiers, a null {@code device} removes it, and the lists of the previous and current owner are
+   * dropped. Every replica applies every change, and all of it is idempotent.
+   */
+  public void apply(Long deviceId, DeviceDto device, Long previousUserId) {
+    if (device == null) {
+      devices.invalidate(deviceId);
+      redisDelete(List.of(DEVICE_KEY + deviceId));
+    } else {
+      devices.put(deviceId, device);
+      redisSet(DEVICE_KEY + deviceId, device, deviceTtl);
+    }
+    evictUsers(previousUserId, device == null ? null : device.getUserId());
+  }
+
+  /**
+   * Drops a device and its owners' lists once the current transaction commits, so the writing
+   * replica reads its own change before the change event comes back around.
+   */
+  public void evictAfterCommit(Long deviceId, Long... userIds) {
+    final Runnable evict =
+        () -> {
+          devices.invalidate(deviceId);
+          redisDelete(List.of(DEVICE_KEY + deviceId));
+          evictUsers(userIds);
+        };
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      evict.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            evict.run();
+          }
+        });
+  }
+
+  private void evictUsers(Long... userIds) {
+    Arrays.stream(userIds)
+        .filter(Objects::nonNull)
+        .distinct()
+        .forEach(
+            userId -> {
+              userDevices.invalidate(userId);
+              bumpUserDevicesVersion(userId);
+            });
+  }
+
+  // null when Redis cannot be read, so the list is loaded without touching Redis
+  private String userDevicesVersion(Long userId) {
+    try {
+      final String version = stringRedisTemplate.opsForValue().get(USER_VERSION_KEY + userId);
+      return version != null ? version : "0";
+    } catch (Exception e) {
+      log.warn("Error reading the device list version of user {} from Redis", userId, e);
+      return null;
+    }
+  }
+
+  // the version outlives every list stored under an earlier one, so it can never come round again
+  private void bumpUserDevicesVersion(Long userId) {
+    final String key = USER_VERSION_KEY + userId;
+    try {
+      stringRedisTemplate.opsForValue().increment(key);
+      stringRedisTemplate.expire(key, userDevicesTtl.multipliedBy(2));
+    } catch (Exception e) {
+      log.warn("Error bumping {} in Redis", key, e);
+    }
+  }
+
+  private <T> T readThrough(
+      String key, Duration ttl, Class<T> type, Timer loadTimer, Supplier<T> loader) {
+    try {
+      final String cached = stringRedisTemplate.opsForValue().get(key);
+      if (cached != null) {
+        redisHits.increment();
+        return jsonMapper.readValue(cached, type);
+      }
+    } catch (Exception e) {
+      log.warn("Error reading {} from Redis, loading from the database", key, e);
+    }
+    redisMisses.increment();
+    final T loaded = loadTimer.record(loader);
+    if (loaded != null) {
+      try {
+        stringRedisTemplate
+            .opsForValue()
+            .setIfAbsent(key, jsonMapper.writeValueAsString(loaded), ttl);
+      } catch (Exception e) {
+        log.warn("Error caching {} in Redis", key, e);
+      }
+    }
+    return loaded;
+  }
+
+  private void redisSet(String key, Object value, Duration ttl) {
+    try {
+      stringRedisTemplate.opsForValue().set(key, jsonMapper.writeValueAsString(value), ttl);
+    } catch (Exception e) {
+      log.warn("Error caching {} in Redis", key, e);
+    }
+  }
+
+  private void redisDelete(List<String> keys) {
+    if (keys.isEmpty()) {
+      return;
+    }
+    try {
+      stringRedisTemplate.delete(keys);
+    } catch (Exception e) {
+      log.warn("Error evicting {} from Redis", keys, e);
+    }
+  }
+}
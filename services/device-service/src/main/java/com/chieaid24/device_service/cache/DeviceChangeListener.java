@@ -0,0 +1,40 @@
+package com.chieaid24.device_service.cache;
+
+import com.chieaid24.device_service.dto.DeviceDto;
+import com.chieaid24.device_service.service.DeviceChangeRelay;
+import java.nio.charset.StandardCharsets;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+/** Keeps every replica's {@link DeviceCache} current from the {@code device-changes} topic. */
+@Component
+public class DeviceChangeListener {
+
+  private final DeviceCache deviceCache;
+  private final JsonMapper jsonMapper;
+
+  public DeviceChangeListener(DeviceCache deviceCache, JsonMapper jsonMapper) {
+    this.deviceCache = deviceCache;
+    this.jsonMapper = jsonMapper;
+  }
+
+  @KafkaListener(
+      topicPartitions =
+          @TopicPartition(
+              topic = DeviceChangeRelay.DEVICE_CHANGES_TOPIC,
+              partitions = "#{@kafkaConsumerConfig.deviceChangesPartitions()}"),
+      containerFactory = "deviceChangesListenerFactory")
+  public void onDeviceChange(ConsumerRecord<String, String> record) {
+    final Header previousUser = record.headers().lastHeader(DeviceChangeRelay.PREVIOUS_USER_HEADER);
+    deviceCache.apply(
+        Long.valueOf(record.key()),
+        record.value() == null ? null : jsonMapper.readValue(record.value(), DeviceDto.class),
+        previousUser == null
+            ? null
+            : Long.valueOf(new String(previousUser.value(), StandardCharsets.UTF_8)));
+  }
+}
@@ -3,32 +3,32 @@ package com.chieaid24.device_service.client;
 import java.util.Arrays;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 @Component
 public class UserClient {
-  private final RestTemplate restTemplate;
+  private final DownstreamClient downstream;
   private final String baseUrl;
 
-  public UserClient(@Value("${user.service.url}") String baseUrl) {
-    this.restTemplate = new RestTemplate();
+  public UserClient(
+      @Value("${user.service.url}") String baseUrl, DownstreamClients downstreamClients) {
+    this.downstream = downstreamClients.create("user-service");
     this.baseUrl = baseUrl;
   }
 
   public Integer getUserCount() {
     String url = UriComponentsBuilder.fromUriString(baseUrl).path("/total").toUriString();
 
-    ResponseEntity<Integer> response = restTemplate.getForEntity(url, Integer.class);
-    return response.getBody();
+    return downstream.call(
+        "/total", () -> downstream.restTemplate().getForObject(url, Integer.class));
   }
 
   public List<Long> getUserIds() {
     String url = UriComponentsBuilder.fromUriString(baseUrl).path("/ids").toUriString();
 
-    ResponseEntity<Long[]> response = restTemplate.getForEntity(url, Long[].class);
-    return Arrays.asList(response.getBody());
+    Long[] ids =
+        downstream.call("/ids", () -> downstream.restTemplate().getForObject(url, Long[].class));
+    return Arrays.asList(ids);
   }
 }
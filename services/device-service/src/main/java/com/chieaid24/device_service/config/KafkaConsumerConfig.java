@@ -0,0 +1,81 @@
+package com.chieaid24.device_service.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.kafka.autoconfigure.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ContainerProperties;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+  @Value("${spring.threads.virtual.enabled:false}")
+  private boolean virtualThreads;
+
+  private final KafkaAdmin kafkaAdmin;
+  private final NewTopic deviceChangesTopic;
+
+  public KafkaConsumerConfig(KafkaAdmin kafkaAdmin, NewTopic deviceChangesTopic) {
+    this.kafkaAdmin = kafkaAdmin;
+    this.deviceChangesTopic = deviceChangesTopic;
+  }
+
+  /**
+   * Cache invalidation reads {@code device-changes} from the latest offset. Consumers have no
+   * group: the listener assigns itself every partition and never commits, so every replica sees
+   * every change and a restart leaves nothing behind on the broker.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, String> deviceChangesListenerFactory(
+      KafkaProperties kafkaProperties) {
+    final Map<String, Object> props = new HashMap<>(kafkaProperties.buildConsumerProperties());
+    props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+    props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+    props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    final ConcurrentKafkaListenerContainerFactory<String, String> factory = newFactory();
+    factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+    return factory;
+  }
+
+  /**
+   * Partition numbers of {@code device-changes}. Listener partitions are resolved before the admin
+   * creates declared topics, so the first replica to start creates the topic here.
+   */
+  public String[] deviceChangesPartitions() {
+    kafkaAdmin.createOrModifyTopics(deviceChangesTopic);
+    return kafkaAdmin
+        .describeTopics(deviceChangesTopic.name())
+        .get(deviceChangesTopic.name())
+        .partitions()
+        .stream()
+        .map(partition -> String.valueOf(partition.partition()))
+        .toArray(String[]::new);
+  }
+
+  /**
+   * Container factory whose consumers run on virtual threads in virtual-thread mode, as Boot's own
+   * factory does.
+   */
+  private <K, V> ConcurrentKafkaListenerContainerFactory<K, V> newFactory() {
+    final ConcurrentKafkaListenerContainerFactory<K, V> factory =
+        new ConcurrentKafkaListenerContainerFactory<>();
+    if (virtualThreads) {
+      factory
+          .getContainerProperties()
+          .setListenerTaskExecutor(new VirtualThreadTaskExecutor("kafka-"));
+    }
+    return factory;
+  }
+}
@@ -0,0 +1,20 @@
+package com.chieaid24.device_service.config;
+
+import com.chieaid24.device_service.service.DeviceChangeRelay;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.config.TopicConfig;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+@Configuration
+public class KafkaTopicConfig {
+
+  // compacted so the topic always holds the latest state of every device and nothing else
+  @Bean
+  public NewTopic deviceChangesTopic() {
+    return TopicBuilder.name(DeviceChangeRelay.DEVICE_CHANGES_TOPIC)
+        .config(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT)
+        .build();
+  }
+}
@@ -1,9 +1,16 @@
 package com.chieaid24.device_service.controller;
 
 import com.chieaid24.device_service.dto.DeviceDto;
+import com.chieaid24.device_service.dto.DeviceImportResult;
+import com.chieaid24.device_service.dto.DevicePage;
+import com.chieaid24.device_service.model.DeviceType;
+import com.chieaid24.device_service.service.DeviceImportService;
 import com.chieaid24.device_service.service.DeviceService;
+import java.io.InputStream;
 import java.util.List;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,21 +18,36 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-/*
-    TODO: Add getAllDevices endpoint with pagination and filtering by userId and deviceType
-*/
-
 @RestController
 @RequestMapping("api/v1/device")
 public class DeviceController {
+  private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
   private DeviceService deviceService;
+  private DeviceImportService deviceImportService;
 
-  public DeviceController(DeviceService deviceService) {
+  public DeviceController(DeviceService deviceService, DeviceImportService deviceImportService) {
     this.deviceService = deviceService;
+    this.deviceImportService = deviceImportService;
+  }
+
+  // ex) GET /api/v1/device?userId=7&type=LIGHT&size=100, then &cursor=<nextCursor> for more
+  @GetMapping
+  public ResponseEntity<DevicePage> getDevices(
+      @RequestParam(required = false) Long userId,
+      @RequestParam(required = false) DeviceType type,
+      @RequestParam(defaultValue = "100") int size,
+      @RequestParam(required = false) String cursor) {
+    try {
+      return ResponseEntity.ok(deviceService.getDevices(userId, type, size, cursor));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
   }
 
   @GetMapping("/{id}")
@@ -57,6 +79,22 @@ public class DeviceController {
     return ResponseEntity.status(HttpStatus.CREATED).body(devices);
   }
 
+  // ex) POST /api/v1/device/import with a text/csv body (header name,type,location,userId)
+  // or an application/x-ndjson body of devices
+  @PostMapping(
+      value = "/import",
+      consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+  public ResponseEntity<DeviceImportResult> importDevices(
+      @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType, InputStream body) {
+    DeviceImportResult result =
+        deviceImportService.importStream(
+            body,
+            TEXT_CSV.isCompatibleWith(contentType)
+                ? DeviceImportService.Format.CSV
+                : DeviceImportService.Format.NDJSON);
+    return ResponseEntity.status(HttpStatus.CREATED).body(result);
+  }
+
   @PutMapping("/{id}")
   public ResponseEntity<DeviceDto> updateDevice(
       @PathVariable Long id, @RequestBody DeviceDto deviceDto) {
@@ -81,4 +119,11 @@ public class DeviceController {
     List<DeviceDto> devices = deviceService.getAllDevicesByUserId(userId);
     return ResponseEntity.ok(devices);
   }
+
+  // ex) POST /api/v1/device/users with body [1, 2, 3]
+  @PostMapping("/users")
+  public ResponseEntity<List<DeviceDto>> getAllDevicesByUserIds(@RequestBody List<Long> userIds) {
+    List<DeviceDto> devices = deviceService.getAllDevicesByUserIds(userIds);
+    return ResponseEntity.ok(devices);
+  }
 }
@@ -0,0 +1,16 @@
+package com.chieaid24.device_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class DeviceImportResult {
+  private long imported;
+  private int chunks;
+  private long elapsedMs;
+}
@@ -0,0 +1,17 @@
+package com.chieaid24.device_service.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class DevicePage {
+  private List<DeviceDto> devices;
+  // pass back as ?cursor= for the next page, null on the last page
+  private String nextCursor;
+}
@@ -0,0 +1,37 @@
+package com.chieaid24.device_service.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** A device change waiting to be relayed to {@code device-changes}. */
+@Entity
+@Table(name = "device_outbox")
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class DeviceOutbox {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  private Long deviceId;
+
+  // device as JSON, null when the device was deleted
+  @Column(columnDefinition = "TEXT")
+  private String payload;
+
+  // owner before the change, null for a new device
+  private Long previousUserId;
+
+  private Instant createdAt;
+}
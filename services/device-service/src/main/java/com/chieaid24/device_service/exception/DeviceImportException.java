@@ -0,0 +1,7 @@
+package com.chieaid24.device_service.exception;
+
+public class DeviceImportException extends RuntimeException {
+  public DeviceImportException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
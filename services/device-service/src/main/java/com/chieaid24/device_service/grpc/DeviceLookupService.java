@@ -0,0 +1,69 @@
+package com.chieaid24.device_service.grpc;
+
+import com.chieaid24.device_service.dto.DeviceDto;
+import com.chieaid24.device_service.exception.DeviceNotFoundException;
+import com.chieaid24.device_service.service.DeviceService;
+import com.chieaid24.grpc.device.Device;
+import com.chieaid24.grpc.device.DeviceIdRequest;
+import com.chieaid24.grpc.device.DeviceIdsRequest;
+import com.chieaid24.grpc.device.DeviceLookupGrpc;
+import com.chieaid24.grpc.device.UserIdsRequest;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.util.List;
+import java.util.Objects;
+import org.springframework.stereotype.Service;
+
+/**
+ * gRPC twin of the device lookups in {@code DeviceController}, for other services. Single lookups
+ * go through the same cache as REST.
+ */
+@Service
+public class DeviceLookupService extends DeviceLookupGrpc.DeviceLookupImplBase {
+
+  private final DeviceService deviceService;
+
+  public DeviceLookupService(DeviceService deviceService) {
+    this.deviceService = deviceService;
+  }
+
+  @Override
+  public void getDevice(DeviceIdRequest request, StreamObserver<Device> responseObserver) {
+    final DeviceDto device;
+    try {
+      device = deviceService.getDeviceById(request.getId());
+    } catch (DeviceNotFoundException e) {
+      responseObserver.onError(Status.NOT_FOUND.withDescription(e.getMessage()).asException());
+      return;
+    }
+    responseObserver.onNext(toMessage(device));
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void getDevices(DeviceIdsRequest request, StreamObserver<Device> responseObserver) {
+    stream(deviceService.getDevicesByIds(request.getIdsList()), responseObserver);
+  }
+
+  @Override
+  public void getUserDevices(UserIdsRequest request, StreamObserver<Device> responseObserver) {
+    stream(deviceService.getAllDevicesByUserIds(request.getUserIdsList()), responseObserver);
+  }
+
+  private static void stream(List<DeviceDto> devices, StreamObserver<Device> responseObserver) {
+    for (DeviceDto device : devices) {
+      responseObserver.onNext(toMessage(device));
+    }
+    responseObserver.onCompleted();
+  }
+
+  private static Device toMessage(DeviceDto device) {
+    return Device.newBuilder()
+        .setId(device.getId())
+        .setName(Objects.requireNonNullElse(device.getName(), ""))
+        .setType(device.getType() == null ? "" : device.getType().name())
+        .setLocation(Objects.requireNonNullElse(device.getLocation(), ""))
+        .setUserId(device.getUserId() == null ? 0L : device.getUserId())
+        .build();
+  }
+}
@@ -0,0 +1,34 @@
+package com.chieaid24.device_service.repository;
+
+import com.chieaid24.device_service.entity.DeviceOutbox;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface DeviceOutboxRepository extends JpaRepository<DeviceOutbox, Long> {
+
+  @Query(value = "SELECT * FROM device_outbox ORDER BY id LIMIT :limit", nativeQuery = true)
+  List<DeviceOutbox> findOldest(@Param("limit") int limit);
+
+  // a tombstone per device, built in the database rather than row by row through JPA
+  @Modifying
+  @Transactional
+  @Query(
+      value =
+          "INSERT INTO device_outbox (device_id, payload, previous_user_id, created_at)"
+              + " SELECT id, NULL, user_id, NOW(6) FROM device",
+      nativeQuery = true)
+  int recordAllDeletions();
+
+  // named locks belong to the connection, so both calls must run in the same transaction
+  @Query(value = "SELECT GET_LOCK('device_outbox_relay', 0)", nativeQuery = true)
+  Integer tryRelayLock();
+
+  @Query(value = "SELECT RELEASE_LOCK('device_outbox_relay')", nativeQuery = true)
+  Integer releaseRelayLock();
+}
@@ -1,7 +1,10 @@
 package com.chieaid24.device_service.repository;
 
 import com.chieaid24.device_service.entity.Device;
+import com.chieaid24.device_service.model.DeviceType;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,6 +16,18 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
 
   List<Device> findAllByUserId(Long userId);
 
+  List<Device> findAllByUserIdIn(Collection<Long> userIds);
+
+  // keyset pages: each seeks straight to the last id seen on its (filter, id) index
+  List<Device> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+  List<Device> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long afterId, Limit limit);
+
+  List<Device> findByTypeAndIdGreaterThanOrderByIdAsc(DeviceType type, Long afterId, Limit limit);
+
+  List<Device> findByUserIdAndTypeAndIdGreaterThanOrderByIdAsc(
+      Long userId, DeviceType type, Long afterId, Limit limit);
+
   @Modifying
   @Transactional
   @Query(value = "TRUNCATE TABLE device", nativeQuery = true)
@@ -0,0 +1,89 @@
+package com.chieaid24.device_service.service;
+
+import com.chieaid24.device_service.dto.DeviceDto;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Inserts devices with plain JDBC batches. Hibernate cannot batch inserts into an IDENTITY table,
+ * but Connector/J rewrites a batch into multi-row INSERTs (the primary pool sets {@code
+ * rewriteBatchedStatements}) and still hands back the generated ids, which the outbox rows need.
+ */
+@Component
+public class DeviceBulkWriter {
+
+  private static final String INSERT_DEVICE =
+      "INSERT INTO device (name, type, location, user_id) VALUES (?, ?, ?, ?)";
+  private static final String INSERT_OUTBOX =
+      "INSERT INTO device_outbox (device_id, payload, created_at) VALUES (?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final JsonMapper jsonMapper;
+
+  public DeviceBulkWriter(JdbcTemplate jdbcTemplate, JsonMapper jsonMapper) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.jsonMapper = jsonMapper;
+  }
+
+  /**
+   * Writes {@code devices} and their outbox rows, filling in each id. Must run inside the caller's
+   * transaction so a chunk is either fully imported and relayed or not at all.
+   */
+  public void write(List<DeviceDto> devices) {
+    jdbcTemplate.execute(
+        (ConnectionCallback<Void>)
+            connection -> {
+              insertDevices(connection, devices);
+              insertOutbox(connection, devices);
+              return null;
+            });
+  }
+
+  private static void insertDevices(Connection connection, List<DeviceDto> devices)
+      throws SQLException {
+    try (PreparedStatement ps =
+        connection.prepareStatement(INSERT_DEVICE, Statement.RETURN_GENERATED_KEYS)) {
+      for (DeviceDto device : devices) {
+        ps.setString(1, device.getName());
+        ps.setString(2, device.getType() == null ? null : device.getType().name());
+        ps.setString(3, device.getLocation());
+        ps.setObject(4, device.getUserId());
+        ps.addBatch();
+      }
+      ps.executeBatch();
+      try (ResultSet keys = ps.getGeneratedKeys()) {
+        int i = 0;
+        while (keys.next()) {
+          devices.get(i++).setId(keys.getLong(1));
+        }
+        if (i != devices.size()) {
+          throw new IllegalStateException(
+              "Expected " + devices.size() + " generated ids but got " + i);
+        }
+      }
+    }
+  }
+
+  private void insertOutbox(Connection connection, List<DeviceDto> devices) throws SQLException {
+    final Timestamp now = Timestamp.from(Instant.now());
+    try (PreparedStatement ps = connection.prepareStatement(INSERT_OUTBOX)) {
+      for (DeviceDto device : devices) {
+        ps.setLong(1, device.getId());
+        ps.setString(2, jsonMapper.writeValueAsString(device));
+        ps.setTimestamp(3, now);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+  }
+}
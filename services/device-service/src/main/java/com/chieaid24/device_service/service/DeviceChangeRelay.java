@@ -0,0 +1,105 @@
+package com.chieaid24.device_service.service;
+
+import com.chieaid24.device_service.entity.DeviceOutbox;
+import com.chieaid24.device_service.repository.DeviceOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.kafka.autoconfigure.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Publishes the device outbox to the compacted {@code device-changes} topic, keyed by device id.
+ * Values are the device as JSON, and a deleted device is a tombstone. The owner before the change,
+ * if any, travels in the {@code previous-user-id} header. Rows are removed only after the broker
+ * has acknowledged them, so every committed change is delivered at least once and in order per
+ * device. One replica relays at a time, holding a MySQL named lock.
+ */
+@Slf4j
+@Component
+public class DeviceChangeRelay {
+
+  public static final String DEVICE_CHANGES_TOPIC = "device-changes";
+  public static final String PREVIOUS_USER_HEADER = "previous-user-id";
+
+  private final DeviceOutboxRepository deviceOutboxRepository;
+  private final DefaultKafkaProducerFactory<String, String> producerFactory;
+  private final KafkaTemplate<String, String> changeTemplate;
+  private final int batchSize;
+  private final long sendTimeoutMs;
+
+  public DeviceChangeRelay(
+      DeviceOutboxRepository deviceOutboxRepository,
+      KafkaProperties kafkaProperties,
+      @Value("${device.outbox.batch-size:500}") int batchSize,
+      @Value("${device.outbox.send-timeout-ms:10000}") long sendTimeoutMs) {
+    this.deviceOutboxRepository = deviceOutboxRepository;
+    final Map<String, Object> producerProps =
+        new HashMap<>(kafkaProperties.buildProducerProperties());
+    producerProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    this.producerFactory = new DefaultKafkaProducerFactory<>(producerProps);
+    this.changeTemplate = new KafkaTemplate<>(producerFactory);
+    this.batchSize = batchSize;
+    this.sendTimeoutMs = sendTimeoutMs;
+  }
+
+  @PreDestroy
+  public void close() {
+    producerFactory.destroy();
+  }
+
+  @Scheduled(fixedDelayString = "${device.outbox.poll-interval-ms:200}")
+  @Transactional
+  public void relay() {
+    if (!Integer.valueOf(1).equals(deviceOutboxRepository.tryRelayLock())) {
+      return;
+    }
+    try {
+      final List<DeviceOutbox> batch = deviceOutboxRepository.findOldest(batchSize);
+      if (batch.isEmpty()) {
+        return;
+      }
+      final CompletableFuture<?>[] sends = new CompletableFuture<?>[batch.size()];
+      for (int i = 0; i < sends.length; i++) {
+        final DeviceOutbox change = batch.get(i);
+        final ProducerRecord<String, String> record =
+            new ProducerRecord<>(
+                DEVICE_CHANGES_TOPIC, String.valueOf(change.getDeviceId()), change.getPayload());
+        if (change.getPreviousUserId() != null) {
+          record
+              .headers()
+              .add(
+                  PREVIOUS_USER_HEADER,
+                  String.valueOf(change.getPreviousUserId()).getBytes(StandardCharsets.UTF_8));
+        }
+        sends[i] = changeTemplate.send(record);
+      }
+      CompletableFuture.allOf(sends).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+      deviceOutboxRepository.deleteAllByIdInBatch(batch.stream().map(DeviceOutbox::getId).toList());
+      log.debug("Relayed {} device changes", batch.size());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      // the batch stays in the outbox and is sent again, in order, on the next run
+      log.error("Error relaying device changes", e);
+    } finally {
+      deviceOutboxRepository.releaseRelayLock();
+    }
+  }
+}
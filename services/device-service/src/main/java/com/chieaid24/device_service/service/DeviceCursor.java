@@ -0,0 +1,41 @@
+package com.chieaid24.device_service.service;
+
+import com.chieaid24.device_service.model.DeviceType;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * The opaque cursor of the device listing: base64url of the last id returned and the filters the
+ * page was issued for, so a cursor only continues the listing it came from.
+ */
+final class DeviceCursor {
+
+  private DeviceCursor() {}
+
+  static String encode(long lastId, Long userId, DeviceType type) {
+    String raw = lastId + ":" + (userId == null ? "" : userId) + ":" + (type == null ? "" : type);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** The last id in {@code cursor}, which must have been issued for the same filters. */
+  static long decode(String cursor, Long userId, DeviceType type) {
+    String[] parts;
+    long lastId;
+    try {
+      parts =
+          new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", -1);
+      lastId = Long.parseLong(parts[0]);
+    } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Invalid cursor");
+    }
+    if (parts.length != 3
+        || !parts[1].equals(userId == null ? "" : String.valueOf(userId))
+        || !Objects.equals(parts[2], type == null ? "" : type.name())) {
+      throw new IllegalArgumentException("Cursor was issued for different filters");
+    }
+    return lastId;
+  }
+}
@@ -0,0 +1,261 @@
+package com.chieaid24.device_service.service;
+
+import com.chieaid24.device_service.dto.DeviceDto;
+import com.chieaid24.device_service.dto.DeviceImportResult;
+import com.chieaid24.device_service.exception.DeviceImportException;
+import com.chieaid24.device_service.model.DeviceType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Streams devices from CSV or NDJSON into the database in chunks of {@code chunk-size}, each chunk
+ * in its own transaction through the {@link DeviceBulkWriter}. A bad row stops the import. Chunks
+ * committed before it stay imported, and the error says how many that was.
+ */
+@Slf4j
+@Service
+public class DeviceImportService {
+
+  public enum Format {
+    CSV,
+    NDJSON
+  }
+
+  private final DeviceBulkWriter deviceBulkWriter;
+  private final TransactionTemplate transactionTemplate;
+  private final JsonMapper jsonMapper;
+  private final Counter importedRows;
+  private final int chunkSize;
+  private final long logEvery;
+
+  public DeviceImportService(
+      DeviceBulkWriter deviceBulkWriter,
+      PlatformTransactionManager transactionManager,
+      JsonMapper jsonMapper,
+      MeterRegistry meterRegistry,
+      @Value("${device.import.chunk-size:5000}") int chunkSize,
+      @Value("${device.import.log-every:100000}") long logEvery) {
+    this.deviceBulkWriter = deviceBulkWriter;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.jsonMapper = jsonMapper;
+    this.importedRows = meterRegistry.counter("device.import.rows");
+    this.chunkSize = chunkSize;
+    this.logEvery = logEvery;
+  }
+
+  public DeviceImportResult importStream(InputStream in, Format format) {
+    final BufferedReader reader =
+        new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+    final Iterator<DeviceDto> rows;
+    try {
+      rows = format == Format.CSV ? new CsvRows(reader) : new NdjsonRows(reader);
+    } catch (RuntimeException e) {
+      throw new DeviceImportException("Import stopped after 0 devices: " + e.getMessage(), e);
+    }
+    return importDevices(rows);
+  }
+
+  public DeviceImportResult importDevices(Iterator<DeviceDto> rows) {
+    final long start = System.nanoTime();
+    long imported = 0;
+    int chunks = 0;
+    List<DeviceDto> chunk = new ArrayList<>(chunkSize);
+    try {
+      while (rows.hasNext()) {
+        chunk.add(rows.next());
+        if (chunk.size() == chunkSize || !rows.hasNext()) {
+          final List<DeviceDto> toWrite = chunk;
+          transactionTemplate.executeWithoutResult(status -> deviceBulkWriter.write(toWrite));
+          importedRows.increment(toWrite.size());
+          final long before = imported;
+          imported += toWrite.size();
+          chunks++;
+          if (imported / logEvery != before / logEvery) {
+            log.info("Imported {} devices ({} rows/s)", imported, rate(imported, start));
+          }
+          chunk = new ArrayList<>(chunkSize);
+        }
+      }
+    } catch (RuntimeException e) {
+      throw new DeviceImportException(
+          "Import stopped after " + imported + " devices: " + e.getMessage(), e);
+    }
+    final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+    log.info(
+        "Imported {} devices in {} chunks in {} ms ({} rows/s)",
+        imported,
+        chunks,
+        elapsedMs,
+        rate(imported, start));
+    return DeviceImportResult.builder()
+        .imported(imported)
+        .chunks(chunks)
+        .elapsedMs(elapsedMs)
+        .build();
+  }
+
+  private static long rate(long rows, long start) {
+    return rows * 1_000_000_000L / Math.max(1, System.nanoTime() - start);
+  }
+
+  /** Reads one row per non-blank line, reporting parse errors with their line number. */
+  private abstract static class LineRows implements Iterator<DeviceDto> {
+    private final BufferedReader reader;
+    private long lineNumber;
+    private DeviceDto next;
+
+    LineRows(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    abstract DeviceDto parse(String line);
+
+    String readLine() {
+      try {
+        String line;
+        do {
+          line = reader.readLine();
+          lineNumber++;
+        } while (line != null && line.isBlank());
+        return line;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        final String line = readLine();
+        if (line == null) {
+          return false;
+        }
+        try {
+          next = parse(line);
+        } catch (RuntimeException e) {
+          throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public DeviceDto next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final DeviceDto device = next;
+      next = null;
+      return device;
+    }
+  }
+
+  private final class NdjsonRows extends LineRows {
+    NdjsonRows(BufferedReader reader) {
+      super(reader);
+    }
+
+    @Override
+    DeviceDto parse(String line) {
+      final DeviceDto device = jsonMapper.readValue(line, DeviceDto.class);
+      device.setId(null);
+      return device;
+    }
+  }
+
+  /** CSV with a header naming the {@code name}, {@code type}, {@code location} and user columns. */
+  private static final class CsvRows extends LineRows {
+    private int name = -1;
+    private int type = -1;
+    private int location = -1;
+    private int userId = -1;
+
+    CsvRows(BufferedReader reader) {
+      super(reader);
+      final String header = readLine();
+      if (header == null) {
+        return;
+      }
+      final List<String> columns = split(header);
+      for (int i = 0; i < columns.size(); i++) {
+        switch (columns.get(i).trim().toLowerCase(Locale.ROOT)) {
+          case "name" -> name = i;
+          case "type" -> type = i;
+          case "location" -> location = i;
+          case "userid", "user_id" -> userId = i;
+          default -> {}
+        }
+      }
+      if (type < 0 || userId < 0) {
+        throw new IllegalArgumentException("CSV header must name the type and userId columns");
+      }
+    }
+
+    @Override
+    DeviceDto parse(String line) {
+      final List<String> fields = split(line);
+      return DeviceDto.builder()
+          .name(field(fields, name))
+          .type(DeviceType.valueOf(field(fields, type).trim().toUpperCase(Locale.ROOT)))
+          .location(field(fields, location))
+          .userId(Long.valueOf(field(fields, userId).trim()))
+          .build();
+    }
+
+    private static String field(List<String> fields, int index) {
+      if (index < 0) {
+        return null;
+      }
+      if (index >= fields.size()) {
+        throw new IllegalArgumentException("expected at least " + (index + 1) + " fields");
+      }
+      return fields.get(index);
+    }
+
+    // RFC 4180 quoting, without fields that span lines
+    private static List<String> split(String line) {
+      final List<String> fields = new ArrayList<>();
+      final StringBuilder field = new StringBuilder();
+      boolean quoted = false;
+      for (int i = 0; i < line.length(); i++) {
+        final char c = line.charAt(i);
+        if (quoted) {
+          if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+            field.append('"');
+            i++;
+          } else if (c == '"') {
+            quoted = false;
+          } else {
+            field.append(c);
+          }
+        } else if (c == '"') {
+          quoted = true;
+        } else if (c == ',') {
+          fields.add(field.toString());
+          field.setLength(0);
+        } else {
+          field.append(c);
+        }
+      }
+      fields.add(field.toString());
+      return fields;
+    }
+  }
+}
@@ -1,36 +1,68 @@
 package com.chieaid24.device_service.service;
 
+import com.chieaid24.device_service.cache.DeviceCache;
 import com.chieaid24.device_service.client.UserClient;
+import com.chieaid24.device_service.config.ReadYourWrites;
 import com.chieaid24.device_service.dto.DeviceDto;
+import com.chieaid24.device_service.dto.DeviceImportResult;
+import com.chieaid24.device_service.dto.DevicePage;
 import com.chieaid24.device_service.entity.Device;
+import com.chieaid24.device_service.entity.DeviceOutbox;
 import com.chieaid24.device_service.exception.DeviceNotFoundException;
 import com.chieaid24.device_service.exception.UserNotFoundException;
 import com.chieaid24.device_service.model.DeviceType;
+import com.chieaid24.device_service.repository.DeviceOutboxRepository;
 import com.chieaid24.device_service.repository.DeviceRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
 
 @Service
 public class DeviceService {
+  private static final int USER_ID_CHUNK = 1000;
+  private static final int MAX_PAGE_SIZE = 1000;
+
   private DeviceRepository deviceRepository;
+  private DeviceOutboxRepository deviceOutboxRepository;
+  private DeviceImportService deviceImportService;
+  private DeviceCache deviceCache;
   private UserClient userClient;
-
-  public DeviceService(DeviceRepository deviceRepository, UserClient userClient) {
+  private JsonMapper jsonMapper;
+
+  public DeviceService(
+      DeviceRepository deviceRepository,
+      DeviceOutboxRepository deviceOutboxRepository,
+      DeviceImportService deviceImportService,
+      DeviceCache deviceCache,
+      UserClient userClient,
+      JsonMapper jsonMapper) {
     this.deviceRepository = deviceRepository;
+    this.deviceOutboxRepository = deviceOutboxRepository;
+    this.deviceImportService = deviceImportService;
+    this.deviceCache = deviceCache;
     this.userClient = userClient;
+    this.jsonMapper = jsonMapper;
   }
 
-  @Transactional(readOnly = true)
+  // cached reads: the repository calls run in their own read-only transaction on a miss
   public DeviceDto getDeviceById(Long id) {
-    Device device =
-        deviceRepository
-            .findById(id)
-            .orElseThrow(() -> new DeviceNotFoundException("Device not found with id: " + id));
-
-    return mapToDto(device);
+    DeviceDto device =
+        deviceCache.getDevice(
+            id, key -> deviceRepository.findById(key).map(this::mapToDto).orElse(null));
+    if (device == null) {
+      throw new DeviceNotFoundException("Device not found with id: " + id);
+    }
+    return device;
   }
 
+  @Transactional
   public DeviceDto createDevice(DeviceDto input) {
     Device createdDevice =
         Device.builder()
@@ -40,58 +72,145 @@ public class DeviceService {
             .userId(input.getUserId())
             .build();
     Device saved = deviceRepository.save(createdDevice);
-    return mapToDto(saved);
+    DeviceDto dto = mapToDto(saved);
+    recordChange(saved.getId(), dto, null);
+    return dto;
   }
 
+  @Transactional
   public DeviceDto updateDevice(Long id, DeviceDto input) {
     Device existingDevice =
         deviceRepository
             .findById(id)
             .orElseThrow(() -> new DeviceNotFoundException("Device not found with id: " + id));
 
+    Long previousUserId = existingDevice.getUserId();
     existingDevice.setName(input.getName());
     existingDevice.setType(input.getType());
     existingDevice.setLocation(input.getLocation());
     existingDevice.setUserId(input.getUserId());
 
     Device updated = deviceRepository.save(existingDevice);
-    return mapToDto(updated);
+    DeviceDto dto = mapToDto(updated);
+    recordChange(id, dto, previousUserId);
+    return dto;
   }
 
+  @Transactional
   public void deleteDevice(Long id) {
-    if (!deviceRepository.existsById(id)) {
-      throw new DeviceNotFoundException("Device not found with id: " + id);
-    }
-    deviceRepository.deleteById(id);
+    Device device =
+        deviceRepository
+            .findById(id)
+            .orElseThrow(() -> new DeviceNotFoundException("Device not found with id: " + id));
+    deviceRepository.delete(device);
+    recordChange(id, null, device.getUserId());
   }
 
+  // TRUNCATE commits implicitly and leaves nothing to select from, so the tombstones are copied
+  // from the table in one statement just before it
   public void deleteAllDevices() {
+    deviceOutboxRepository.recordAllDeletions();
     deviceRepository.truncate();
   }
 
-  @Transactional(readOnly = true)
+  // lists are loaded from the primary, see DeviceCache#getUserDevices
   public List<DeviceDto> getAllDevicesByUserId(Long userId) {
-    List<Device> devices = deviceRepository.findAllByUserId(userId);
-    return devices.stream().map(this::mapToDto).toList();
+    return deviceCache.getUserDevices(
+        userId,
+        key ->
+            ReadYourWrites.onPrimary(
+                () -> deviceRepository.findAllByUserId(key).stream().map(this::mapToDto).toList()));
   }
 
-  public void createDummyDevices(int devices) {
+  /**
+   * One page of devices in id order, optionally filtered by owner and type. The cursor carries the
+   * last id returned and the filters it was issued for, so any page costs one index seek.
+   */
+  @Transactional(readOnly = true)
+  public DevicePage getDevices(Long userId, DeviceType type, int size, String cursor) {
+    if (size < 1 || size > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException("size must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    long afterId = cursor == null ? 0L : DeviceCursor.decode(cursor, userId, type);
+    Limit limit = Limit.of(size + 1);
+    List<Device> devices;
+    if (userId != null && type != null) {
+      devices =
+          deviceRepository.findByUserIdAndTypeAndIdGreaterThanOrderByIdAsc(
+              userId, type, afterId, limit);
+    } else if (userId != null) {
+      devices = deviceRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, afterId, limit);
+    } else if (type != null) {
+      devices = deviceRepository.findByTypeAndIdGreaterThanOrderByIdAsc(type, afterId, limit);
+    } else {
+      devices = deviceRepository.findByIdGreaterThanOrderByIdAsc(afterId, limit);
+    }
+
+    boolean more = devices.size() > size;
+    List<Device> page = more ? devices.subList(0, size) : devices;
+    return DevicePage.builder()
+        .devices(page.stream().map(this::mapToDto).toList())
+        .nextCursor(more ? DeviceCursor.encode(page.get(size - 1).getId(), userId, type) : null)
+        .build();
+  }
+
+  @Transactional(readOnly = true)
+  public List<DeviceDto> getDevicesByIds(Collection<Long> ids) {
+    List<Long> distinct = ids.stream().distinct().toList();
+    List<DeviceDto> devices = new ArrayList<>();
+    for (int from = 0; from < distinct.size(); from += USER_ID_CHUNK) {
+      List<Long> chunk = distinct.subList(from, Math.min(distinct.size(), from + USER_ID_CHUNK));
+      deviceRepository.findAllById(chunk).forEach(d -> devices.add(mapToDto(d)));
+    }
+    return devices;
+  }
+
+  // IN lists are split so one request for many users stays a handful of index lookups
+  @Transactional(readOnly = true)
+  public List<DeviceDto> getAllDevicesByUserIds(Collection<Long> userIds) {
+    List<Long> ids = userIds.stream().distinct().toList();
+    List<DeviceDto> devices = new ArrayList<>();
+    for (int from = 0; from < ids.size(); from += USER_ID_CHUNK) {
+      List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + USER_ID_CHUNK));
+      deviceRepository.findAllByUserIdIn(chunk).forEach(d -> devices.add(mapToDto(d)));
+    }
+    return devices;
+  }
+
+  public DeviceImportResult createDummyDevices(int devices) {
     List<Long> userIds = userClient.getUserIds();
 
     if (userIds.isEmpty()) {
       throw new UserNotFoundException("No users exist to assign dummy devices");
     }
 
-    for (int i = 1; i <= devices; i++) {
-      Device dummyDevice =
-          Device.builder()
-              .name("Dummy Device " + i)
-              .type(DeviceType.values()[(i % DeviceType.values().length)])
-              .location("Location " + ((i % 5) + 1))
-              .userId(userIds.get((i - 1) % userIds.size()))
-              .build();
-      deviceRepository.save(dummyDevice);
-    }
+    // generated lazily so a large seed never sits in memory
+    Iterator<DeviceDto> dummies =
+        new Iterator<>() {
+          private int i = 1;
+
+          @Override
+          public boolean hasNext() {
+            return i <= devices;
+          }
+
+          @Override
+          public DeviceDto next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            DeviceDto dummyDevice =
+                DeviceDto.builder()
+                    .name("Dummy Device " + i)
+                    .type(DeviceType.values()[(i % DeviceType.values().length)])
+                    .location("Location " + ((i % 5) + 1))
+                    .userId(userIds.get((i - 1) % userIds.size()))
+                    .build();
+            i++;
+            return dummyDevice;
+          }
+        };
+    return deviceImportService.importDevices(dummies);
   }
 
   @Transactional(readOnly = true)
@@ -99,6 +218,19 @@ public class DeviceService {
     return deviceRepository.count();
   }
 
+  // written in the caller's transaction, so a change is relayed if and only if it commits
+  private void recordChange(Long deviceId, DeviceDto device, Long previousUserId) {
+    deviceOutboxRepository.save(
+        DeviceOutbox.builder()
+            .deviceId(deviceId)
+            .payload(device == null ? null : jsonMapper.writeValueAsString(device))
+            .previousUserId(previousUserId)
+            .createdAt(Instant.now())
+            .build());
+    deviceCache.evictAfterCommit(
+        deviceId, previousUserId, device == null ? null : device.getUserId());
+  }
+
   private DeviceDto mapToDto(Device device) {
     return DeviceDto.builder()
         .id(device.getId())
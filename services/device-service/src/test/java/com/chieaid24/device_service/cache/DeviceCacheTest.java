@@ -0,0 +1,173 @@
+package com.chieaid24.device_service.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chieaid24.device_service.dto.DeviceDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.json.JsonMapper;
+
+class DeviceCacheTest {
+
+  private final FakeRedis redis = new FakeRedis();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @AfterEach
+  void clearSynchronization() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  @Test
+  void changeEventReplacesTheDeviceAndDropsBothOwnersLists() {
+    final DeviceCache cache = cache();
+    cache.getDevice(1L, id -> device(id, 7L, "old"));
+    cache.getUserDevices(7L, userId -> List.of(device(1L, 7L, "old")));
+    cache.getUserDevices(8L, userId -> List.of());
+
+    cache.apply(1L, device(1L, 8L, "new"), 7L);
+
+    assertThat(cache.getDevice(1L, id -> device(id, 8L, "loaded")).getName()).isEqualTo("new");
+    assertThat(cache.getUserDevices(7L, this::countedLoad)).isEmpty();
+    assertThat(cache.getUserDevices(8L, this::countedLoad)).isEmpty();
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void tombstoneRemovesTheDeviceFromBothTiers() {
+    final DeviceCache cache = cache();
+    cache.getDevice(1L, id -> device(id, 7L, "old"));
+
+    cache.apply(1L, null, 7L);
+
+    assertThat(redis.values).doesNotContainKey("device:1");
+    assertThat(cache.getDevice(1L, id -> null)).isNull();
+  }
+
+  @Test
+  void listLoadedBeforeAChangeIsNeverServedAfterIt() {
+    final DeviceCache replicaA = cache();
+    final DeviceCache replicaB = cache();
+
+    // replica A reads the old list, the change commits and is applied, then A stores what it read
+    replicaA.getUserDevices(
+        7L,
+        userId -> {
+          final List<DeviceDto> stale = List.of(device(1L, 7L, "old"));
+          replicaB.apply(1L, null, 7L);
+          return stale;
+        });
+
+    assertThat(replicaB.getUserDevices(7L, this::countedLoad)).isEmpty();
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  void writerEvictsOnlyOnceItsTransactionCommits() {
+    final DeviceCache cache = cache();
+    cache.getDevice(1L, id -> device(id, 7L, "old"));
+    TransactionSynchronizationManager.initSynchronization();
+
+    cache.evictAfterCommit(1L, 7L, null);
+    assertThat(cache.getDevice(1L, id -> device(id, 7L, "new")).getName()).isEqualTo("old");
+
+    final List<TransactionSynchronization> synchronizations =
+        TransactionSynchronizationManager.getSynchronizations();
+    TransactionSynchronizationManager.clearSynchronization();
+    synchronizations.forEach(TransactionSynchronization::afterCommit);
+    assertThat(cache.getDevice(1L, id -> device(id, 7L, "new")).getName()).isEqualTo("new");
+  }
+
+  @Test
+  void redisOutageFallsThroughToTheLoader() {
+    redis.down = true;
+    final DeviceCache cache = cache();
+
+    assertThat(cache.getUserDevices(7L, this::countedLoad)).isEmpty();
+    cache.apply(1L, null, 7L);
+    assertThat(cache.getUserDevices(7L, this::countedLoad)).isEmpty();
+    assertThat(loads).hasValue(2);
+  }
+
+  private List<DeviceDto> countedLoad(Long userId) {
+    loads.incrementAndGet();
+    return List.of();
+  }
+
+  private DeviceCache cache() {
+    return new DeviceCache(
+        redis,
+        JsonMapper.builder().build(),
+        new SimpleMeterRegistry(),
+        100,
+        100,
+        Duration.ofMinutes(10),
+        Duration.ofMinutes(30),
+        Duration.ofMinutes(5));
+  }
+
+  private static DeviceDto device(Long id, Long userId, String name) {
+    return DeviceDto.builder().id(id).userId(userId).name(name).build();
+  }
+
+  /** The handful of Redis commands the cache uses, over a map shared by every replica. */
+  private static final class FakeRedis extends StringRedisTemplate {
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private volatile boolean down;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ValueOperations<String, String> opsForValue() {
+      return (ValueOperations<String, String>)
+          Proxy.newProxyInstance(
+              ValueOperations.class.getClassLoader(),
+              new Class<?>[] {ValueOperations.class},
+              (proxy, method, args) -> {
+                checkUp();
+                final String key = (String) args[0];
+                return switch (method.getName()) {
+                  case "get" -> values.get(key);
+                  case "set" -> {
+                    values.put(key, (String) args[1]);
+                    yield null;
+                  }
+                  case "setIfAbsent" -> values.putIfAbsent(key, (String) args[1]) == null;
+                  case "increment" -> Long.valueOf(
+                      values.merge(key, "1", (a, b) -> String.valueOf(Long.parseLong(a) + 1)));
+                  default -> throw new UnsupportedOperationException(method.getName());
+                };
+              });
+    }
+
+    @Override
+    public Long delete(Collection<String> keys) {
+      checkUp();
+      return keys.stream().filter(key -> values.remove(key) != null).count();
+    }
+
+    @Override
+    public Boolean expire(String key, Duration timeout) {
+      checkUp();
+      return values.containsKey(key);
+    }
+
+    private void checkUp() {
+      if (down) {
+        throw new IllegalStateException("Redis is down");
+      }
+    }
+  }
+}
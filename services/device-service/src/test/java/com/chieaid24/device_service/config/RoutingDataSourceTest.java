@@ -0,0 +1,135 @@
+package com.chieaid24.device_service.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+class RoutingDataSourceTest {
+
+  private static final String REPLICA_0 = RoutingDataSource.replicaKey(0);
+  private static final String REPLICA_1 = RoutingDataSource.replicaKey(1);
+
+  // lag each replica reports to the next probe, by pool name; a missing entry is unreachable
+  private final Map<String, Double> lags = new ConcurrentHashMap<>();
+  private final ReplicaSet replicaSet = replicaSet(lags);
+  private final RoutingDataSource routing =
+      new RoutingDataSource(replicaSet, new SimpleMeterRegistry());
+
+  @AfterEach
+  void clearTransaction() {
+    TransactionSynchronizationManager.setActualTransactionActive(false);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    replicaSet.close();
+  }
+
+  @Test
+  void readsStayOnThePrimaryUntilAProbeFindsAReplicaCaughtUp() {
+    assertThat(route(true)).isEqualTo(RoutingDataSource.PRIMARY);
+
+    lags.put(REPLICA_0, 0.0);
+    lags.put(REPLICA_1, 1.0);
+    replicaSet.probe();
+
+    assertThat(List.of(route(true), route(true))).containsExactlyInAnyOrder(REPLICA_0, REPLICA_1);
+    assertThat(route(false)).isEqualTo(RoutingDataSource.PRIMARY);
+  }
+
+  @Test
+  void laggingOrStoppedReplicaIsEjectedAndReadmittedOnceCaughtUp() {
+    lags.put(REPLICA_0, 0.0);
+    lags.put(REPLICA_1, 30.0);
+    replicaSet.probe();
+    assertThat(replicaSet.healthy()).containsExactly(REPLICA_0);
+
+    lags.remove(REPLICA_0);
+    replicaSet.probe();
+    assertThat(replicaSet.healthy()).isEmpty();
+    assertThat(route(true)).isEqualTo(RoutingDataSource.PRIMARY);
+
+    lags.put(REPLICA_0, 2.0);
+    lags.put(REPLICA_1, 5.0);
+    replicaSet.probe();
+    assertThat(replicaSet.healthy()).containsExactly(REPLICA_0, REPLICA_1);
+  }
+
+  @Test
+  void requestReadsItsOwnWriteFromThePrimaryAndSetsTheCookie() throws Exception {
+    lags.put(REPLICA_0, 0.0);
+    replicaSet.probe();
+    final ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofSeconds(5));
+    final MockHttpServletResponse response = new MockHttpServletResponse();
+    final List<String> routed = new ArrayList<>();
+
+    readYourWrites.doFilter(
+        new MockHttpServletRequest(),
+        response,
+        (request, res) -> {
+          routed.add(route(true));
+          routed.add(route(false));
+          routed.add(route(true));
+        });
+
+    assertThat(routed)
+        .containsExactly(REPLICA_0, RoutingDataSource.PRIMARY, RoutingDataSource.PRIMARY);
+    final Cookie cookie = response.getCookie(ReadYourWrites.COOKIE);
+    assertThat(cookie).isNotNull();
+
+    final MockHttpServletRequest next = new MockHttpServletRequest();
+    next.setCookies(cookie);
+    readYourWrites.doFilter(
+        next, new MockHttpServletResponse(), (request, res) -> routed.add(route(true)));
+    assertThat(routed).last().isEqualTo(RoutingDataSource.PRIMARY);
+  }
+
+  @Test
+  void workOutsideATransactionUsesThePrimaryWithoutPinning() throws Exception {
+    lags.put(REPLICA_0, 0.0);
+    replicaSet.probe();
+    final List<Object> routed = new ArrayList<>();
+
+    new ReadYourWrites(Duration.ofSeconds(5))
+        .doFilter(
+            new MockHttpServletRequest(),
+            new MockHttpServletResponse(),
+            (request, res) -> {
+              routed.add(routing.determineCurrentLookupKey());
+              routed.add(route(true));
+            });
+
+    assertThat(routed).containsExactly(RoutingDataSource.PRIMARY, REPLICA_0);
+  }
+
+  private String route(boolean readOnly) {
+    TransactionSynchronizationManager.setActualTransactionActive(true);
+    TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    return (String) routing.determineCurrentLookupKey();
+  }
+
+  private static ReplicaSet replicaSet(Map<String, Double> lags) {
+    final Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+    for (String key : List.of(REPLICA_0, REPLICA_1)) {
+      final HikariDataSource pool = new HikariDataSource();
+      pool.setPoolName(key);
+      pools.put(key, pool);
+    }
+    return new ReplicaSet(pools, Duration.ofSeconds(5), false, new SimpleMeterRegistry()) {
+      @Override
+      double secondsBehind(HikariDataSource replica) {
+        return lags.getOrDefault(replica.getPoolName(), Double.NaN);
+      }
+    };
+  }
+}
@@ -0,0 +1,49 @@
+package com.chieaid24.device_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.chieaid24.device_service.model.DeviceType;
+import org.junit.jupiter.api.Test;
+
+class DeviceCursorTest {
+
+  @Test
+  void roundTripsUnderTheSameFilters() {
+    assertThat(DeviceCursor.decode(DeviceCursor.encode(42, null, null), null, null)).isEqualTo(42);
+    assertThat(DeviceCursor.decode(DeviceCursor.encode(7, 3L, null), 3L, null)).isEqualTo(7);
+    assertThat(
+            DeviceCursor.decode(
+                DeviceCursor.encode(Long.MAX_VALUE, 3L, DeviceType.HEATER), 3L, DeviceType.HEATER))
+        .isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  void isUrlSafe() {
+    assertThat(DeviceCursor.encode(123_456_789L, 987_654_321L, DeviceType.AIR_CONDITIONER))
+        .matches("[A-Za-z0-9_-]+");
+  }
+
+  @Test
+  void rejectsACursorReplayedUnderOtherFilters() {
+    final String cursor = DeviceCursor.encode(42, 3L, DeviceType.LIGHT);
+
+    assertThatThrownBy(() -> DeviceCursor.decode(cursor, 4L, DeviceType.LIGHT))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("different filters");
+    assertThatThrownBy(() -> DeviceCursor.decode(cursor, 3L, DeviceType.LOCK))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> DeviceCursor.decode(cursor, null, null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void rejectsGarbage() {
+    assertThatThrownBy(() -> DeviceCursor.decode("not a cursor!", null, null))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid cursor");
+    assertThatThrownBy(() -> DeviceCursor.decode("YWJj", null, null))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Invalid cursor");
+  }
+}
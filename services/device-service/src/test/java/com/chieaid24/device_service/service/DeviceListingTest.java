@@ -0,0 +1,91 @@
+package com.chieaid24.device_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.chieaid24.device_service.dto.DeviceDto;
+import com.chieaid24.device_service.dto.DevicePage;
+import com.chieaid24.device_service.entity.Device;
+import com.chieaid24.device_service.model.DeviceType;
+import com.chieaid24.device_service.repository.DeviceRepository;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+
+/** Checks which keyset query each filter combination binds to, against a recording repository. */
+class DeviceListingTest {
+
+  private final List<String> calls = new ArrayList<>();
+
+  @Test
+  void eachFilterCombinationSeeksItsOwnIndex() {
+    final DeviceService service = service(0);
+
+    service.getDevices(null, null, 10, null);
+    service.getDevices(3L, null, 10, null);
+    service.getDevices(null, DeviceType.TV, 10, null);
+    service.getDevices(3L, DeviceType.TV, 10, null);
+
+    assertThat(calls)
+        .containsExactly(
+            "findByIdGreaterThanOrderByIdAsc[0, Limit 11]",
+            "findByUserIdAndIdGreaterThanOrderByIdAsc[3, 0, Limit 11]",
+            "findByTypeAndIdGreaterThanOrderByIdAsc[TV, 0, Limit 11]",
+            "findByUserIdAndTypeAndIdGreaterThanOrderByIdAsc[3, TV, 0, Limit 11]");
+  }
+
+  @Test
+  void nextCursorContinuesAfterTheLastDeviceOfThePage() {
+    final DeviceService service = service(25);
+
+    final DevicePage first = service.getDevices(3L, DeviceType.TV, 10, null);
+    final DevicePage second = service.getDevices(3L, DeviceType.TV, 10, first.getNextCursor());
+
+    assertThat(first.getDevices()).extracting(DeviceDto::getId).startsWith(1L).endsWith(10L);
+    assertThat(calls.get(1)).contains("[3, TV, 10, Limit 11]");
+    assertThat(second.getDevices()).extracting(DeviceDto::getId).startsWith(11L).endsWith(20L);
+  }
+
+  @Test
+  void lastPageHasNoCursor() {
+    final DevicePage page = service(5).getDevices(null, null, 10, null);
+
+    assertThat(page.getDevices()).hasSize(5);
+    assertThat(page.getNextCursor()).isNull();
+  }
+
+  @Test
+  void cursorCannotBeReusedUnderOtherFilters() {
+    final DeviceService service = service(25);
+    final String cursor = service.getDevices(3L, null, 10, null).getNextCursor();
+
+    assertThatThrownBy(() -> service.getDevices(4L, null, 10, cursor))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThat(calls).hasSize(1);
+  }
+
+  // devices 1..total; every keyset query returns the ids after afterId up to the limit
+  private DeviceService service(int total) {
+    final DeviceRepository repository =
+        (DeviceRepository)
+            Proxy.newProxyInstance(
+                DeviceRepository.class.getClassLoader(),
+                new Class<?>[] {DeviceRepository.class},
+                (proxy, method, args) -> {
+                  final long afterId = (Long) args[args.length - 2];
+                  final int limit = ((Limit) args[args.length - 1]).max();
+                  final Object[] recorded = args.clone();
+                  recorded[args.length - 1] = "Limit " + limit;
+                  calls.add(method.getName() + Arrays.toString(recorded));
+                  return LongStream.rangeClosed(afterId + 1, total)
+                      .limit(limit)
+                      .mapToObj(id -> Device.builder().id(id).type(DeviceType.TV).build())
+                      .toList();
+                });
+    return new DeviceService(repository, null, null, null, null, null);
+  }
+}
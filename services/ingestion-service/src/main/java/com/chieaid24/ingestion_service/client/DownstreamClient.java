@@ -0,0 +1,85 @@
+package com.chieaid24.ingestion_service.client;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.retry.Retry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.net.SocketTimeoutException;
+import java.util.function.Supplier;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * One downstream service as seen from here: a {@link RestTemplate} on a pooled keep-alive
+ * connection manager, and the bulkhead, circuit breaker and retry that every call to it goes
+ * through. Built by {@link DownstreamClients}.
+ *
+ * <p>Calls are assumed to be reads, so connection failures and 5xx responses are retried with
+ * jittered backoff. Read timeouts are not retried, so a slow service is not asked again.
+ */
+public class DownstreamClient {
+
+  private final String name;
+  private final RestTemplate restTemplate;
+  private final Bulkhead bulkhead;
+  private final CircuitBreaker circuitBreaker;
+  private final Retry retry;
+  private final MeterRegistry meterRegistry;
+
+  DownstreamClient(
+      String name,
+      RestTemplate restTemplate,
+      Bulkhead bulkhead,
+      CircuitBreaker circuitBreaker,
+      Retry retry,
+      MeterRegistry meterRegistry) {
+    this.name = name;
+    this.restTemplate = restTemplate;
+    this.bulkhead = bulkhead;
+    this.circuitBreaker = circuitBreaker;
+    this.retry = retry;
+    this.meterRegistry = meterRegistry;
+  }
+
+  public RestTemplate restTemplate() {
+    return restTemplate;
+  }
+
+  /**
+   * Runs one logical request, timed into {@code downstream.client.requests} under {@code endpoint}.
+   * Each attempt holds a bulkhead permit and is counted by the circuit breaker.
+   */
+  public <T> T call(String endpoint, Supplier<T> request) {
+    final Timer.Sample sample = Timer.start(meterRegistry);
+    String outcome = "success";
+    try {
+      return Retry.decorateSupplier(
+              retry,
+              CircuitBreaker.decorateSupplier(
+                  circuitBreaker, Bulkhead.decorateSupplier(bulkhead, request)))
+          .get();
+    } catch (RuntimeException e) {
+      outcome = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      sample.stop(
+          Timer.builder("downstream.client.requests")
+              .tag("downstream", name)
+              .tag("endpoint", endpoint)
+              .tag("outcome", outcome)
+              .publishPercentileHistogram()
+              .register(meterRegistry));
+    }
+  }
+
+  /** Failures that say something about the downstream's health, as opposed to a bad request. */
+  static boolean isFailure(Throwable e) {
+    return e instanceof ResourceAccessException || e instanceof HttpServerErrorException;
+  }
+
+  static boolean isRetryable(Throwable e) {
+    return isFailure(e) && !(e.getCause() instanceof SocketTimeoutException);
+  }
+}
@@ -3,6 +3,8 @@ package com.chieaid24.ingestion_service.service;
 import com.chieaid24.ingestion_service.dto.EnergyUsageDto;
 import com.chieaid24.ingestion_service.dto.ShellyStatusDto;
 import com.chieaid24.kafka.event.EnergyUsageEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Instant;
 import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
@@ -14,9 +16,12 @@ import org.springframework.stereotype.Service;
 public class IngestionService {
   private final KafkaTemplate<String, EnergyUsageEvent> kafkaTemplate;
   private final ConcurrentHashMap<Long, Double> lastEnergyTotalByDevice = new ConcurrentHashMap<>();
+  private final Counter shellyCounterResets;
 
-  public IngestionService(KafkaTemplate<String, EnergyUsageEvent> kafkaTemplate) {
+  public IngestionService(
+      KafkaTemplate<String, EnergyUsageEvent> kafkaTemplate, MeterRegistry meterRegistry) {
     this.kafkaTemplate = kafkaTemplate;
+    this.shellyCounterResets = meterRegistry.counter("ingestion.shelly.counter.resets");
   }
 
   public void ingestEnergyUsage(EnergyUsageDto input) {
@@ -27,7 +32,8 @@ public class IngestionService {
             .timestamp(input.timestamp())
             .build();
 
-    kafkaTemplate.send("energy-usage", event);
+    // keyed by device so all readings of a device land on one partition, in order
+    kafkaTemplate.send("energy-usage", String.valueOf(event.deviceId()), event);
     // log.info("Ingested energy usage event: {}", event);
   }
 
@@ -50,6 +56,7 @@ public class IngestionService {
 
     double energyDelta = currentTotal - previousTotal;
     if (energyDelta < 0) {
+      shellyCounterResets.increment();
       log.warn(
           "aenergy.total decreased for deviceId={} ({}→{}), device may have reset. Re-baselining.",
           deviceId,
@@ -70,7 +77,7 @@ public class IngestionService {
             .build();
 
     kafkaTemplate
-        .send("energy-usage", event)
+        .send("energy-usage", String.valueOf(deviceId), event)
         .whenComplete(
             (result, ex) -> {
               if (ex != null) {
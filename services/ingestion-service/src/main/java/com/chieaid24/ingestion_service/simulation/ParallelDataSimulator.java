@@ -5,13 +5,14 @@ import com.chieaid24.ingestion_service.dto.EnergyUsageDto;
 import jakarta.annotation.PreDestroy;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
@@ -21,12 +22,16 @@ import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * Posts synthetic readings to this service's own ingestion endpoint. With {@code
+ * spring.threads.virtual.enabled} each sender is a virtual thread; the schedule state is guarded by
+ * a {@link ReentrantLock} rather than {@code synchronized} so it never pins a carrier thread.
+ */
 @Slf4j
 @Component
 public class ParallelDataSimulator implements CommandLineRunner {
 
   private final RestTemplate restTemplate = new RestTemplate();
-  private final Random random = new Random();
   private DeviceClient deviceClient;
 
   @Value("${simulation.parallel-threads}")
@@ -43,19 +48,30 @@ public class ParallelDataSimulator implements CommandLineRunner {
 
   private final ExecutorService executorService;
   private final ScheduledExecutorService scheduler;
-  private final Object scheduleLock = new Object();
+  private final ReentrantLock scheduleLock = new ReentrantLock();
   private ScheduledFuture<?> scheduledTask;
 
-  public ParallelDataSimulator(DeviceClient deviceClient) {
+  public ParallelDataSimulator(
+      DeviceClient deviceClient,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
     this.deviceClient = deviceClient;
-    this.executorService = Executors.newCachedThreadPool();
-    this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    if (virtualThreads) {
+      this.executorService = Executors.newVirtualThreadPerTaskExecutor();
+      this.scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              Thread.ofVirtual().name("simulator-scheduler").factory());
+    } else {
+      this.executorService = Executors.newCachedThreadPool();
+      this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
   }
 
   @Override
   public void run(String... args) throws Exception {
     log.info("Initializing simulator...");
-    ((ThreadPoolExecutor) executorService).setCorePoolSize(parallelThreads);
+    if (executorService instanceof ThreadPoolExecutor pool) {
+      pool.setCorePoolSize(parallelThreads);
+    }
   }
 
   public void sendMockData() {
@@ -66,6 +82,7 @@ public class ParallelDataSimulator implements CommandLineRunner {
       int requestsForThread = batchSize + (i < remainder ? 1 : 0);
       executorService.submit(
           () -> {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
             for (int j = 0; j < requestsForThread; j++) {
               EnergyUsageDto dto =
                   EnergyUsageDto.builder()
@@ -95,7 +112,8 @@ public class ParallelDataSimulator implements CommandLineRunner {
 
   public boolean start() {
     log.info("Attempting to START the Parallel Data Simulator...");
-    synchronized (scheduleLock) {
+    scheduleLock.lock();
+    try {
       if (scheduledTask != null && !scheduledTask.isCancelled() && !scheduledTask.isDone()) {
         log.info("Parallel Data Simulator is already running.");
         return false;
@@ -104,12 +122,15 @@ public class ParallelDataSimulator implements CommandLineRunner {
           scheduler.scheduleAtFixedRate(this::sendMockData, 0, intervalMs, TimeUnit.MILLISECONDS);
       log.info("Started Parallel Data Simulator!");
       return true;
+    } finally {
+      scheduleLock.unlock();
     }
   }
 
   public boolean stop() {
     log.info("Attempting to stop Parallel Data Simulator...");
-    synchronized (scheduleLock) {
+    scheduleLock.lock();
+    try {
       if (scheduledTask == null) {
         log.info("Parallel Data Simulator is already stopped.");
         return false;
@@ -118,13 +139,18 @@ public class ParallelDataSimulator implements CommandLineRunner {
       scheduledTask = null;
       log.info("Stopped Parallel Data Simulator!");
       return true;
+    } finally {
+      scheduleLock.unlock();
     }
   }
 
   public boolean isRunning() {
     log.info("Checking the status of Parallel Data Simulator...");
-    synchronized (scheduleLock) {
+    scheduleLock.lock();
+    try {
       return scheduledTask != null && !scheduledTask.isCancelled() && !scheduledTask.isDone();
+    } finally {
+      scheduleLock.unlock();
     }
   }
 
@@ -0,0 +1,171 @@
+package com.chieaid24.ingestion_service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives one endpoint of a running service with many concurrent clients and reports throughput,
+ * latency, and the service's own heap and live threads from its actuator. Run it once per threading
+ * mode ({@code SPRING_THREADS_VIRTUAL_ENABLED=false|true}) to compare them;
+ * scripts/virtual-thread-benchmark.sh does both against docker compose. Run it alone with {@code
+ * scripts/run-benchmark.sh ingestion-service ConcurrencyBenchmark URL [concurrency] [seconds]
+ * [maxId] [body] [actuatorUrl]}. {@code {id}} in the URL or body is replaced by a random id in
+ * 1..maxId on each request. A body switches the request to a JSON POST.
+ */
+public class ConcurrencyBenchmark {
+
+  private static final Pattern VALUE =
+      Pattern.compile("\"statistic\":\"VALUE\",\"value\":([^}]+)}");
+
+  public static void main(String[] args) throws Exception {
+    final String url = args[0];
+    final int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+    final Duration duration = Duration.ofSeconds(args.length > 2 ? Long.parseLong(args[2]) : 30);
+    final long maxId = args.length > 3 ? Long.parseLong(args[3]) : 1_000;
+    final String body = args.length > 4 && !args[4].isEmpty() ? args[4] : null;
+    final String actuator =
+        args.length > 5 ? args[5] : URI.create(url).resolve("/actuator").toString();
+
+    final HttpClient client =
+        HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    final Metrics metrics = new Metrics(client, actuator);
+    final Metrics.Sample before = metrics.sample();
+    System.out.printf(
+        "%s with %,d clients for %ds (service before: heap %.0f MB, %,.0f threads)%n",
+        url, concurrency, duration.toSeconds(), before.heapMb(), before.threads());
+
+    final AtomicLong errors = new AtomicLong();
+    final long[][] latencies = new long[concurrency][];
+    final int[] counts = new int[concurrency];
+    final long deadline = System.nanoTime() + duration.toNanos();
+    final List<Thread> workers = new ArrayList<>(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      final int worker = i;
+      workers.add(
+          Thread.ofVirtual()
+              .start(
+                  () -> {
+                    long[] samples = new long[256];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                      final long start = System.nanoTime();
+                      try {
+                        final int status =
+                            client
+                                .send(
+                                    request(url, body, maxId),
+                                    HttpResponse.BodyHandlers.discarding())
+                                .statusCode();
+                        if (status >= 400) {
+                          errors.incrementAndGet();
+                          continue;
+                        }
+                      } catch (Exception e) {
+                        errors.incrementAndGet();
+                        continue;
+                      }
+                      if (count == samples.length) {
+                        samples = Arrays.copyOf(samples, count * 2);
+                      }
+                      samples[count++] = System.nanoTime() - start;
+                    }
+                    latencies[worker] = samples;
+                    counts[worker] = count;
+                  }));
+    }
+
+    double peakHeap = before.heapMb();
+    double peakThreads = before.threads();
+    while (System.nanoTime() < deadline) {
+      Thread.sleep(1_000);
+      final Metrics.Sample during = metrics.sample();
+      peakHeap = Math.max(peakHeap, during.heapMb());
+      peakThreads = Math.max(peakThreads, during.threads());
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    int total = 0;
+    for (int count : counts) {
+      total += count;
+    }
+    final long[] all = new long[total];
+    int offset = 0;
+    for (int i = 0; i < concurrency; i++) {
+      System.arraycopy(latencies[i], 0, all, offset, counts[i]);
+      offset += counts[i];
+    }
+    Arrays.sort(all);
+    System.out.printf(
+        "%,.0f req/s, %,d errors, p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+        total / (double) duration.toSeconds(),
+        errors.get(),
+        percentile(all, 0.50) / 1e6,
+        percentile(all, 0.99) / 1e6,
+        total == 0 ? 0 : all[total - 1] / 1e6);
+    System.out.printf("service peak: heap %.0f MB, %,.0f live threads%n", peakHeap, peakThreads);
+  }
+
+  private static HttpRequest request(String url, String body, long maxId) {
+    final String id = Long.toString(ThreadLocalRandom.current().nextLong(1, maxId + 1));
+    final HttpRequest.Builder request =
+        HttpRequest.newBuilder(URI.create(url.replace("{id}", id))).timeout(Duration.ofSeconds(30));
+    if (body == null) {
+      return request.GET().build();
+    }
+    return request
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body.replace("{id}", id)))
+        .build();
+  }
+
+  private static long percentile(long[] sorted, double quantile) {
+    return sorted.length == 0
+        ? 0
+        : sorted[(int) Math.min(sorted.length - 1, sorted.length * quantile)];
+  }
+
+  /** Heap and thread gauges read from the service's actuator metrics endpoint. */
+  private record Metrics(HttpClient client, String actuator) {
+
+    record Sample(double heapMb, double threads) {}
+
+    Sample sample() {
+      return new Sample(
+          read("/metrics/jvm.memory.used?tag=area:heap") / (1024 * 1024),
+          read("/metrics/jvm.threads.live"));
+    }
+
+    private double read(String path) {
+      try {
+        final String json =
+            client
+                .send(
+                    HttpRequest.newBuilder(URI.create(actuator + path))
+                        .timeout(Duration.ofSeconds(5))
+                        .build(),
+                    HttpResponse.BodyHandlers.ofString())
+                .body();
+        final Matcher matcher = VALUE.matcher(json);
+        return matcher.find() ? Double.parseDouble(matcher.group(1)) : Double.NaN;
+      } catch (Exception e) {
+        return Double.NaN;
+      }
+    }
+  }
+}
@@ -1,31 +1,96 @@
 package com.chieaid24.insight_service.client;
 
+import com.chieaid24.grpc.usage.UsageLookupGrpc;
+import com.chieaid24.grpc.usage.UserUsage;
+import com.chieaid24.grpc.usage.UserUsageRequest;
+import com.chieaid24.insight_service.dto.DeviceDto;
+import com.chieaid24.insight_service.dto.HouseholdComparisonDto;
 import com.chieaid24.insight_service.dto.UsageDto;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
+import org.springframework.grpc.client.GrpcChannelFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+/**
+ * Usage lookups over REST, or over the usage-service gRPC API when {@code
+ * insight.lookup.transport=grpc}. The gRPC channel is {@code spring.grpc.client.channels.usage}.
+ * Household comparisons always come over REST. Everything goes through the {@code usage-service}
+ * {@link DownstreamClient}.
+ */
 @Component
 public class UsageClient {
-  private final RestTemplate restTemplate;
+  private final DownstreamClient downstream;
 
   private final String baseUrl;
 
-  public UsageClient(@Value("${usage.service.url}") String baseUrl) {
+  // null when lookups go over REST
+  private final UsageLookupGrpc.UsageLookupBlockingStub usageLookup;
+
+  public UsageClient(
+      @Value("${usage.service.url}") String baseUrl,
+      @Value("${insight.lookup.transport:rest}") String transport,
+      DownstreamClients downstreamClients,
+      ObjectProvider<GrpcChannelFactory> channels) {
     this.baseUrl = baseUrl;
-    this.restTemplate = new RestTemplate();
+    this.downstream = downstreamClients.create("usage-service");
+    this.usageLookup =
+        "grpc".equalsIgnoreCase(transport)
+            ? UsageLookupGrpc.newBlockingStub(channels.getObject().createChannel("usage"))
+            : null;
   }
 
   public UsageDto getXDaysUsageForUser(Long userId, int days) {
+    if (usageLookup != null) {
+      final UserUsageRequest request =
+          UserUsageRequest.newBuilder().setUserId(userId).setDays(days).build();
+      return downstream.call(
+          "GetUserUsage",
+          () ->
+              toDto(
+                  usageLookup
+                      .withDeadlineAfter(downstream.readTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                      .getUserUsage(request)));
+    }
+
     String url =
         UriComponentsBuilder.fromUriString(baseUrl)
             .path("/{userId}")
             .queryParam("days", days)
             .buildAndExpand(userId)
             .toUriString();
-    ResponseEntity<UsageDto> response = restTemplate.getForEntity(url, UsageDto.class);
-    return response.getBody();
+    return downstream.call(
+        "/{userId}", () -> downstream.restTemplate().getForObject(url, UsageDto.class));
+  }
+
+  public HouseholdComparisonDto getHouseholdComparison(Long userId, String period) {
+    String url =
+        UriComponentsBuilder.fromUriString(baseUrl)
+            .path("/{userId}/comparison")
+            .queryParam("period", period)
+            .buildAndExpand(userId)
+            .toUriString();
+    return downstream.call(
+        "/{userId}/comparison",
+        () -> downstream.restTemplate().getForObject(url, HouseholdComparisonDto.class));
+  }
+
+  private static UsageDto toDto(UserUsage usage) {
+    return UsageDto.builder()
+        .userId(usage.getUserId())
+        .devices(
+            usage.getDevicesList().stream()
+                .map(
+                    d ->
+                        DeviceDto.builder()
+                            .id(d.getId())
+                            .name(d.getName())
+                            .type(d.getType())
+                            .location(d.getLocation())
+                            .energyConsumed(d.getEnergyConsumed())
+                            .build())
+                .toList())
+        .build();
   }
 }
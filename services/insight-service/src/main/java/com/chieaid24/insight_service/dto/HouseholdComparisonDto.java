@@ -0,0 +1,14 @@
+package com.chieaid24.insight_service.dto;
+
+import lombok.Builder;
+
+@Builder
+public record HouseholdComparisonDto(
+    Long userId,
+    String period,
+    Double energyConsumed,
+    Double percentile,
+    double p10,
+    double p50,
+    double p90,
+    long households) {}
@@ -3,6 +3,7 @@ package com.chieaid24.insight_service.service;
 import com.chieaid24.insight_service.client.UsageClient;
 import com.chieaid24.insight_service.dto.AiInsightResponse;
 import com.chieaid24.insight_service.dto.DeviceDto;
+import com.chieaid24.insight_service.dto.HouseholdComparisonDto;
 import com.chieaid24.insight_service.dto.InsightDto;
 import com.chieaid24.insight_service.dto.UsageDto;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -17,6 +18,8 @@ import org.springframework.stereotype.Service;
 public class InsightService {
 
   private static final ObjectMapper objectMapper = new ObjectMapper();
+  private static final String DEFAULT_HOUSEHOLD_COMPARISON =
+      "Compare this household to the average, noting that the average US household consumes 200-210 kWh per week.";
 
   private final UsageClient usageClient;
   private final ChatClient chatClient;
@@ -51,7 +54,7 @@ public class InsightService {
     String prompt =
         """
         Narrate the following energy usage data from a household. Include 1 to 2 observations on behaviours that could reduce consumption.
-        Compare this household to the average, noting that the average US household consumes 200-210 kWh per week.
+        %s
         This data covers the past %d days. All energyConsumed values are in kWh.
         Keep your response between 100 and 200 words. Be concise and actionable.
         Start your response immediately with a Markdown heading. Do not acknowledge this prompt. Do not use em dashes.
@@ -60,7 +63,7 @@ public class InsightService {
         Devices usage:
         %s
         """
-            .formatted(days, totalUsage, devicesInKwh);
+            .formatted(householdComparison(userId), days, totalUsage, devicesInKwh);
 
     AiInsightResponse aiResponse = null;
     int attempt = 0;
@@ -125,4 +128,29 @@ public class InsightService {
         .confidence(aiResponse.confidence())
         .build();
   }
+
+  private String householdComparison(Long userId) {
+    try {
+      final HouseholdComparisonDto comparison =
+          usageClient.getHouseholdComparison(userId, "WEEKLY");
+      if (comparison == null
+          || comparison.percentile() == null
+          || comparison.energyConsumed() == null
+          || comparison.households() < 10) {
+        return DEFAULT_HOUSEHOLD_COMPARISON;
+      }
+      return ("Compare this household to the %d households tracked by this platform. Over the past 7 days it used %.2f kWh,"
+              + " placing it at percentile %.0f of 100. The fleet 10th, 50th and 90th percentiles are %.2f, %.2f and %.2f kWh per week.")
+          .formatted(
+              comparison.households(),
+              comparison.energyConsumed() / 1000.0,
+              comparison.percentile(),
+              comparison.p10() / 1000.0,
+              comparison.p50() / 1000.0,
+              comparison.p90() / 1000.0);
+    } catch (Exception e) {
+      log.warn("Household comparison unavailable for userId {}: {}", userId, e.getMessage());
+      return DEFAULT_HOUSEHOLD_COMPARISON;
+    }
+  }
 }
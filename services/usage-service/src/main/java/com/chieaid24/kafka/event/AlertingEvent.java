@@ -9,4 +9,5 @@ public record AlertingEvent(
     String message,
     double threshold,
     double energyConsumed,
-    String email) {}
+    String email,
+    AlertType type) {}
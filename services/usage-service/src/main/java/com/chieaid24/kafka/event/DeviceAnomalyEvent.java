@@ -0,0 +1,14 @@
+package com.chieaid24.kafka.event;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.time.Instant;
+import lombok.Builder;
+
+@Builder
+public record DeviceAnomalyEvent(
+    Long deviceId,
+    Long userId,
+    double energyConsumed,
+    double expectedEnergy,
+    double zScore,
+    @JsonFormat(shape = JsonFormat.Shape.STRING) Instant timestamp) {}
@@ -0,0 +1,11 @@
+package com.chieaid24.kafka.event;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import java.time.Instant;
+import lombok.Builder;
+
+@Builder
+public record DeviceOfflineEvent(
+    Long deviceId,
+    @JsonFormat(shape = JsonFormat.Shape.STRING) Instant lastSeen,
+    @JsonFormat(shape = JsonFormat.Shape.STRING) Instant detectedAt) {}
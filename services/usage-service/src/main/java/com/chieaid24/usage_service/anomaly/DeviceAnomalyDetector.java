@@ -0,0 +1,180 @@
+package com.chieaid24.usage_service.anomaly;
+
+import com.chieaid24.kafka.event.DeviceAnomalyEvent;
+import com.chieaid24.kafka.event.EnergyUsageEvent;
+import com.chieaid24.usage_service.dto.DeviceDto;
+import com.chieaid24.usage_service.service.DeviceDirectory;
+import com.chieaid24.usage_service.util.LongIndexMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-device spike detection on the raw reading stream. Each device keeps an exponentially weighted
+ * mean and variance of its readings; a reading whose z-score against that baseline exceeds {@code
+ * z-threshold} is published to {@code device-anomalies}.
+ *
+ * <p>The owner on the event comes from the local {@link DeviceDirectory}. Devices it does not know
+ * yet are looked up on a single background thread, so the consumer never waits on device-service.
+ *
+ * <p>The state is three 8-byte values per device in a single direct buffer, so millions of devices
+ * cost no heap objects and each reading is a handful of arithmetic operations.
+ */
+@Slf4j
+@Component
+public class DeviceAnomalyDetector {
+
+  public static final String DEVICE_ANOMALIES_TOPIC = "device-anomalies";
+
+  private static final int MEAN = 0;
+  private static final int VARIANCE = 8;
+  private static final int SAMPLES = 16;
+  private static final int STRIDE = 24;
+
+  private final KafkaTemplate<String, DeviceAnomalyEvent> kafkaTemplate;
+  private final DeviceDirectory deviceDirectory;
+  private final LongIndexMap index;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Counter anomalyCounter;
+  private final Counter unresolvedCounter;
+  private final ExecutorService ownerLookups =
+      new ThreadPoolExecutor(
+          1,
+          1,
+          0,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(1000),
+          Thread.ofPlatform().name("anomaly-owner-lookup").daemon().factory());
+  private final double alpha;
+  private final double zThreshold;
+  private final long warmupSamples;
+  private final double minStdDev;
+
+  private ByteBuffer state =
+      ByteBuffer.allocateDirect(1024 * STRIDE).order(ByteOrder.nativeOrder());
+
+  public DeviceAnomalyDetector(
+      KafkaTemplate<String, DeviceAnomalyEvent> kafkaTemplate,
+      DeviceDirectory deviceDirectory,
+      MeterRegistry meterRegistry,
+      @Value("${usage.anomaly.alpha:0.05}") double alpha,
+      @Value("${usage.anomaly.z-threshold:4.0}") double zThreshold,
+      @Value("${usage.anomaly.warmup-samples:30}") long warmupSamples,
+      @Value("${usage.anomaly.min-std-dev:1.0}") double minStdDev,
+      @Value("${usage.anomaly.max-devices:2000000}") int maxDevices) {
+    this.kafkaTemplate = kafkaTemplate;
+    this.deviceDirectory = deviceDirectory;
+    this.alpha = alpha;
+    this.zThreshold = zThreshold;
+    this.warmupSamples = warmupSamples;
+    this.minStdDev = minStdDev;
+    this.index = new LongIndexMap(1024, maxDevices);
+    this.anomalyCounter = meterRegistry.counter("usage.devices.anomalies");
+    this.unresolvedCounter = meterRegistry.counter("usage.devices.anomalies.unresolved");
+  }
+
+  public void observe(EnergyUsageEvent event) {
+    final double value = event.energyConsumed();
+    final double mean;
+    final double zScore;
+    lock.lock();
+    try {
+      final int slot = index.getOrAdd(event.deviceId());
+      if (slot < 0) {
+        return;
+      }
+      ensureCapacity(slot + 1);
+      final int base = slot * STRIDE;
+      mean = state.getDouble(base + MEAN);
+      final double variance = state.getDouble(base + VARIANCE);
+      final long samples = state.getLong(base + SAMPLES);
+
+      if (samples == 0) {
+        state.putDouble(base + MEAN, value);
+        state.putLong(base + SAMPLES, 1);
+        return;
+      }
+      final double diff = value - mean;
+      zScore = diff / Math.max(Math.sqrt(variance), minStdDev);
+
+      final double increment = alpha * diff;
+      state.putDouble(base + MEAN, mean + increment);
+      state.putDouble(base + VARIANCE, (1 - alpha) * (variance + diff * increment));
+      state.putLong(base + SAMPLES, samples + 1);
+
+      if (samples < warmupSamples || zScore < zThreshold) {
+        return;
+      }
+    } finally {
+      lock.unlock();
+    }
+    publish(event, mean, zScore);
+  }
+
+  private void publish(EnergyUsageEvent event, double expected, double zScore) {
+    anomalyCounter.increment();
+    final DeviceDto device = deviceDirectory.peekDevice(event.deviceId());
+    if (device == null) {
+      // unknown here yet: look the owner up off the consumer thread
+      try {
+        ownerLookups.execute(
+            () -> send(event, expected, zScore, deviceDirectory.getDevice(event.deviceId())));
+      } catch (RejectedExecutionException e) {
+        unresolvedCounter.increment();
+        send(event, expected, zScore, null);
+      }
+      return;
+    }
+    send(event, expected, zScore, device);
+  }
+
+  private void send(EnergyUsageEvent event, double expected, double zScore, DeviceDto device) {
+    log.warn(
+        "Anomalous reading for device {}: {} Wh against an expected {} Wh (z={})",
+        event.deviceId(),
+        event.energyConsumed(),
+        expected,
+        zScore);
+    kafkaTemplate.send(
+        DEVICE_ANOMALIES_TOPIC,
+        String.valueOf(event.deviceId()),
+        DeviceAnomalyEvent.builder()
+            .deviceId(event.deviceId())
+            .userId(device != null ? device.userId() : null)
+            .energyConsumed(event.energyConsumed())
+            .expectedEnergy(expected)
+            .zScore(zScore)
+            .timestamp(event.timestamp())
+            .build());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    ownerLookups.shutdownNow();
+  }
+
+  private void ensureCapacity(int devices) {
+    if (devices * STRIDE <= state.capacity()) {
+      return;
+    }
+    final int newDevices = Math.max(devices, state.capacity() / STRIDE * 2);
+    final ByteBuffer grown =
+        ByteBuffer.allocateDirect(newDevices * STRIDE).order(ByteOrder.nativeOrder());
+    state.clear();
+    grown.put(state);
+    grown.clear();
+    state = grown;
+  }
+}
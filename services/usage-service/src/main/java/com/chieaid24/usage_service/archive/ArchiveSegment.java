@@ -0,0 +1,198 @@
+package com.chieaid24.usage_service.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * One day of hourly usage for one device range, stored column by column:
+ *
+ * <pre>
+ * header  magic, version, rows, hours                         (4 x int)
+ * columns deviceId[rows] userId[rows] dayTotal[rows]          (long, long, double)
+ *         hour0[rows] ... hour23[rows]                        (double)
+ * footer  minDeviceId, maxDeviceId, minDayTotal, maxDayTotal,
+ *         sumDayTotal, rows, magic                            (2 x long, 3 x double, 2 x int)
+ * </pre>
+ *
+ * Rows are sorted by device id, so a lookup is a binary search over the first column, and the
+ * footer lets a reader skip a segment without touching its columns. Segments are read through a
+ * read-only memory mapping and never change once written.
+ */
+final class ArchiveSegment {
+
+  static final int MAGIC = 0x55415243; // "UARC"
+  static final int VERSION = 1;
+  static final int HOURS = 24;
+
+  private static final int HEADER_BYTES = 4 * Integer.BYTES;
+  private static final int FOOTER_BYTES = 2 * Long.BYTES + 3 * Double.BYTES + 2 * Integer.BYTES;
+  private static final int COLUMNS = 3 + HOURS;
+
+  private final MappedByteBuffer buffer;
+  private final int rows;
+  private final long minDeviceId;
+  private final long maxDeviceId;
+  private final double sumDayTotal;
+
+  private ArchiveSegment(MappedByteBuffer buffer) {
+    this.buffer = buffer;
+    final int footer = buffer.capacity() - FOOTER_BYTES;
+    if (buffer.getInt(0) != MAGIC
+        || buffer.getInt(footer + FOOTER_BYTES - Integer.BYTES) != MAGIC) {
+      throw new IllegalStateException("Not an archive segment");
+    }
+    if (buffer.getInt(Integer.BYTES) != VERSION || buffer.getInt(3 * Integer.BYTES) != HOURS) {
+      throw new IllegalStateException("Unsupported archive segment version");
+    }
+    this.rows = buffer.getInt(2 * Integer.BYTES);
+    this.minDeviceId = buffer.getLong(footer);
+    this.maxDeviceId = buffer.getLong(footer + Long.BYTES);
+    this.sumDayTotal = buffer.getDouble(footer + 2 * Long.BYTES + 2 * Double.BYTES);
+  }
+
+  static ArchiveSegment open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      mapped.order(ByteOrder.LITTLE_ENDIAN);
+      return new ArchiveSegment(mapped);
+    }
+  }
+
+  /**
+   * Writes a segment through a temporary file and an atomic rename, so readers only ever see
+   * complete segments. {@code hourly[row]} holds the 24 hourly sums of {@code deviceIds[row]}.
+   */
+  static void write(Path path, long[] deviceIds, long[] userIds, double[][] hourly)
+      throws IOException {
+    final int rows = deviceIds.length;
+    final int[] order =
+        IntStream.range(0, rows)
+            .boxed()
+            .sorted(Comparator.comparingLong(i -> deviceIds[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+    final ByteBuffer out =
+        ByteBuffer.allocate(HEADER_BYTES + rows * COLUMNS * Long.BYTES + FOOTER_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    out.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(HOURS);
+
+    final double[] dayTotals = new double[rows];
+    for (int i = 0; i < rows; i++) {
+      dayTotals[i] = Arrays.stream(hourly[order[i]]).sum();
+    }
+    for (int i = 0; i < rows; i++) {
+      out.putLong(deviceIds[order[i]]);
+    }
+    for (int i = 0; i < rows; i++) {
+      out.putLong(userIds[order[i]]);
+    }
+    for (int i = 0; i < rows; i++) {
+      out.putDouble(dayTotals[i]);
+    }
+    for (int hour = 0; hour < HOURS; hour++) {
+      for (int i = 0; i < rows; i++) {
+        out.putDouble(hourly[order[i]][hour]);
+      }
+    }
+
+    out.putLong(rows == 0 ? 0 : deviceIds[order[0]]);
+    out.putLong(rows == 0 ? 0 : deviceIds[order[rows - 1]]);
+    out.putDouble(rows == 0 ? 0 : Arrays.stream(dayTotals).min().getAsDouble());
+    out.putDouble(rows == 0 ? 0 : Arrays.stream(dayTotals).max().getAsDouble());
+    out.putDouble(Arrays.stream(dayTotals).sum());
+    out.putInt(rows);
+    out.putInt(MAGIC);
+    out.flip();
+
+    Files.createDirectories(path.getParent());
+    final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel =
+        FileChannel.open(
+            tmp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+      channel.force(true);
+    }
+    Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  int rows() {
+    return rows;
+  }
+
+  double sumDayTotal() {
+    return sumDayTotal;
+  }
+
+  boolean mayContain(long deviceId) {
+    return rows > 0 && deviceId >= minDeviceId && deviceId <= maxDeviceId;
+  }
+
+  /** Row of {@code deviceId}, or -1 if the device had no usage that day. */
+  int indexOf(long deviceId) {
+    if (!mayContain(deviceId)) {
+      return -1;
+    }
+    int low = 0;
+    int high = rows - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final long value = buffer.getLong(column(0) + mid * Long.BYTES);
+      if (value < deviceId) {
+        low = mid + 1;
+      } else if (value > deviceId) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  long deviceId(int row) {
+    return buffer.getLong(column(0) + row * Long.BYTES);
+  }
+
+  long userId(int row) {
+    return buffer.getLong(column(1) + row * Long.BYTES);
+  }
+
+  double hour(int row, int hour) {
+    return buffer.getDouble(column(3 + hour) + row * Double.BYTES);
+  }
+
+  double dayTotal(int row) {
+    return buffer.getDouble(column(2) + row * Double.BYTES);
+  }
+
+  /** Sum of the hours {@code [fromHour, toHour)} of {@code row}. */
+  double hours(int row, int fromHour, int toHour) {
+    if (fromHour <= 0 && toHour >= HOURS) {
+      return dayTotal(row);
+    }
+    double sum = 0.0;
+    for (int hour = Math.max(0, fromHour); hour < Math.min(HOURS, toHour); hour++) {
+      sum += buffer.getDouble(column(3 + hour) + row * Double.BYTES);
+    }
+    return sum;
+  }
+
+  private int column(int index) {
+    return HEADER_BYTES + index * rows * Long.BYTES;
+  }
+}
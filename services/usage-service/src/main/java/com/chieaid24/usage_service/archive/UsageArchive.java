@@ -0,0 +1,235 @@
+package com.chieaid24.usage_service.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Columnar store for usage older than the Influx retention. Files are laid out as {@code
+ * {dir}/{yyyy-MM-dd}/devices-{first}-{last}.uarc}, one {@link ArchiveSegment} per UTC day and
+ * device id range, so a lookup only maps the segments covering the requested devices and days. A
+ * day is complete once its {@code _SUCCESS} marker exists, and days without one are never read.
+ *
+ * <p>The directory is shared by every replica (a ReadWriteMany volume in Kubernetes), so all of
+ * them answer from the same files. Queries read Influx for everything still inside {@code
+ * retention-days} and come here only for older days.
+ */
+@Slf4j
+@Component
+public class UsageArchive {
+
+  /** Owner recorded for devices whose owner could not be resolved when the day was archived. */
+  public static final long UNKNOWN_OWNER = 0L;
+
+  private static final String SUCCESS_MARKER = "_SUCCESS";
+  private static final int MAX_OPEN_SEGMENTS = 4096;
+
+  private final Path root;
+  private final long deviceRange;
+  private final int retentionDays;
+  private final Map<Path, ArchiveSegment> segments = new ConcurrentHashMap<>();
+
+  public UsageArchive(
+      @Value("${usage.archive.dir:/var/lib/usage-archive}") Path root,
+      @Value("${usage.archive.device-range:10000}") long deviceRange,
+      @Value("${usage.archive.retention-days:7}") int retentionDays) {
+    this.root = root;
+    this.deviceRange = deviceRange;
+    this.retentionDays = retentionDays;
+  }
+
+  public int retentionDays() {
+    return retentionDays;
+  }
+
+  /**
+   * Start of the first day Influx still fully holds, given its retention of {@code retention-days}.
+   * Anything before it is read from here.
+   */
+  public Instant influxCutover() {
+    return LocalDate.now(ZoneOffset.UTC)
+        .minusDays(retentionDays - 1)
+        .atStartOfDay(ZoneOffset.UTC)
+        .toInstant();
+  }
+
+  public boolean isArchived(LocalDate day) {
+    return Files.exists(dayDir(day).resolve(SUCCESS_MARKER));
+  }
+
+  /**
+   * Writes one day of hourly usage, one segment per device range, then marks the day complete.
+   * Rewriting a day replaces its segments, and segments of ranges the new rows no longer cover,
+   * such as those left by an earlier partial run, are deleted.
+   */
+  public void writeDay(LocalDate day, Collection<ArchiveRow> rows) {
+    final Map<Long, List<ArchiveRow>> byRange = new TreeMap<>();
+    for (ArchiveRow row : rows) {
+      byRange.computeIfAbsent(rangeStart(row.deviceId()), start -> new ArrayList<>()).add(row);
+    }
+    final Set<Path> written = new HashSet<>();
+    try {
+      Files.createDirectories(dayDir(day));
+      Files.deleteIfExists(dayDir(day).resolve(SUCCESS_MARKER));
+      for (Map.Entry<Long, List<ArchiveRow>> range : byRange.entrySet()) {
+        final List<ArchiveRow> rangeRows = range.getValue();
+        final long[] deviceIds = new long[rangeRows.size()];
+        final long[] userIds = new long[rangeRows.size()];
+        final double[][] hourly = new double[rangeRows.size()][];
+        for (int i = 0; i < rangeRows.size(); i++) {
+          deviceIds[i] = rangeRows.get(i).deviceId();
+          userIds[i] = rangeRows.get(i).userId();
+          hourly[i] = rangeRows.get(i).hourly();
+        }
+        final Path path = segmentPath(day, range.getKey());
+        ArchiveSegment.write(path, deviceIds, userIds, hourly);
+        segments.remove(path);
+        written.add(path);
+      }
+      for (Path stale : segmentPaths(day)) {
+        if (!written.contains(stale)) {
+          Files.deleteIfExists(stale);
+          segments.remove(stale);
+        }
+      }
+      Files.createFile(dayDir(day).resolve(SUCCESS_MARKER));
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error archiving usage for " + day, e);
+    }
+    log.info("Archived {} devices in {} segments for {}", rows.size(), byRange.size(), day);
+  }
+
+  /**
+   * Energy per device in {@code [start, stop)}, both truncated to the hour. Devices without
+   * archived usage in the range are left out.
+   */
+  public Map<Long, Double> sumByDevice(Collection<Long> deviceIds, Instant start, Instant stop) {
+    final Map<Long, Double> totals = new HashMap<>();
+    final Instant from = start.truncatedTo(ChronoUnit.HOURS);
+    final Instant to = stop.truncatedTo(ChronoUnit.HOURS);
+    for (LocalDate day = LocalDate.ofInstant(from, ZoneOffset.UTC);
+        day.atStartOfDay(ZoneOffset.UTC).toInstant().isBefore(to);
+        day = day.plusDays(1)) {
+      final Instant dayStart = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+      final int fromHour = (int) Math.max(0, ChronoUnit.HOURS.between(dayStart, from));
+      final int toHour =
+          (int) Math.min(ArchiveSegment.HOURS, ChronoUnit.HOURS.between(dayStart, to));
+      for (Long deviceId : deviceIds) {
+        final ArchiveSegment segment = segment(day, rangeStart(deviceId));
+        if (segment == null) {
+          continue;
+        }
+        final int row = segment.indexOf(deviceId);
+        if (row >= 0) {
+          totals.merge(deviceId, segment.hours(row, fromHour, toHour), Double::sum);
+        }
+      }
+    }
+    return totals;
+  }
+
+  /**
+   * Visits every non-zero device hour archived for {@code day} of the devices whose recorded owner
+   * {@code owners} accepts. Owners are checked on the user id column, so the hours of other devices
+   * are never read.
+   */
+  public void forEachHour(LocalDate day, LongPredicate owners, HourVisitor visitor) {
+    if (!isArchived(day)) {
+      return;
+    }
+    final Instant dayStart = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    for (Path path : segmentPaths(day)) {
+      final ArchiveSegment segment = segment(path);
+      if (segment == null) {
+        continue;
+      }
+      for (int row = 0; row < segment.rows(); row++) {
+        final long deviceId = segment.deviceId(row);
+        final long userId = segment.userId(row);
+        if (!owners.test(userId)) {
+          continue;
+        }
+        for (int hour = 0; hour < ArchiveSegment.HOURS; hour++) {
+          final double energy = segment.hour(row, hour);
+          if (energy != 0.0) {
+            visitor.accept(deviceId, userId, dayStart.plus(hour, ChronoUnit.HOURS), energy);
+          }
+        }
+      }
+    }
+  }
+
+  private List<Path> segmentPaths(LocalDate day) {
+    try (Stream<Path> files = Files.list(dayDir(day))) {
+      return files.filter(path -> path.getFileName().toString().endsWith(".uarc")).toList();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Error listing archive segments for " + day, e);
+    }
+  }
+
+  private ArchiveSegment segment(LocalDate day, long rangeStart) {
+    final Path path = segmentPath(day, rangeStart);
+    if (!segments.containsKey(path) && (!isArchived(day) || !Files.exists(path))) {
+      return null;
+    }
+    return segment(path);
+  }
+
+  private ArchiveSegment segment(Path path) {
+    final ArchiveSegment cached = segments.get(path);
+    if (cached != null) {
+      return cached;
+    }
+    try {
+      final ArchiveSegment segment = ArchiveSegment.open(path);
+      if (segments.size() >= MAX_OPEN_SEGMENTS) {
+        segments.clear();
+      }
+      segments.put(path, segment);
+      return segment;
+    } catch (IOException | IllegalStateException e) {
+      log.error("Error opening archive segment {}", path, e);
+      return null;
+    }
+  }
+
+  private long rangeStart(long deviceId) {
+    return Math.floorDiv(deviceId, deviceRange) * deviceRange;
+  }
+
+  private Path dayDir(LocalDate day) {
+    return root.resolve(day.toString());
+  }
+
+  private Path segmentPath(LocalDate day, long rangeStart) {
+    return dayDir(day)
+        .resolve("devices-" + rangeStart + "-" + (rangeStart + deviceRange - 1) + ".uarc");
+  }
+
+  @FunctionalInterface
+  public interface HourVisitor {
+    void accept(long deviceId, long userId, Instant hour, double energyConsumed);
+  }
+
+  /** One device's usage for one day, as 24 hourly sums. */
+  public record ArchiveRow(long deviceId, long userId, double[] hourly) {}
+}
@@ -0,0 +1,139 @@
+package com.chieaid24.usage_service.archive;
+
+import com.chieaid24.usage_service.dto.DeviceDto;
+import com.chieaid24.usage_service.scheduling.RedisLease;
+import com.chieaid24.usage_service.service.DeviceDirectory;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compacts finished days of raw usage into the {@link UsageArchive} before Influx expires them.
+ * Every run archives each finished day still inside the Influx retention that has no archive yet,
+ * so a missed run is caught up by the next one. The archive is shared, so one replica at a time
+ * runs the job under a lease.
+ *
+ * <p>Days are read from {@code energy_usage} rather than the hourly rollup, so a device the rollup
+ * skipped because its lookup failed is still archived. Owners come from the {@link
+ * DeviceDirectory}; a device without one is stored under {@link UsageArchive#UNKNOWN_OWNER}.
+ */
+@Slf4j
+@Component
+public class UsageArchiveJob {
+
+  private final InfluxDBClient influxDBClient;
+  private final UsageArchive usageArchive;
+  private final DeviceDirectory deviceDirectory;
+  private final RedisLease archiveLock;
+  private final Duration archiveLockTtl;
+
+  @Value("${influx.bucket}")
+  private String bucket;
+
+  @Value("${influx.org}")
+  private String influxOrg;
+
+  public UsageArchiveJob(
+      InfluxDBClient influxDBClient,
+      UsageArchive usageArchive,
+      DeviceDirectory deviceDirectory,
+      StringRedisTemplate stringRedisTemplate,
+      @Value("${usage.archive.lock-ttl:PT2H}") Duration archiveLockTtl) {
+    this.influxDBClient = influxDBClient;
+    this.usageArchive = usageArchive;
+    this.deviceDirectory = deviceDirectory;
+    this.archiveLock = new RedisLease(stringRedisTemplate, "archive-lock");
+    this.archiveLockTtl = archiveLockTtl;
+  }
+
+  @Scheduled(cron = "${usage.archive.cron:0 15 0 * * *}", zone = "UTC")
+  public void archiveFinishedDays() {
+    if (!archiveLock.acquire(archiveLockTtl)) return;
+
+    try {
+      final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+      // yesterday is left for the next run so late readings can still arrive
+      for (LocalDate day = today.minusDays(usageArchive.retentionDays() - 1);
+          day.isBefore(today.minusDays(1));
+          day = day.plusDays(1)) {
+        if (usageArchive.isArchived(day)) {
+          continue;
+        }
+        try {
+          archiveDay(day);
+        } catch (Exception e) {
+          log.error("Error archiving usage for {}", day, e);
+        }
+      }
+    } finally {
+      archiveLock.release();
+    }
+  }
+
+  /** Reads one UTC day of raw usage as hourly sums per device and writes it to the archive. */
+  public void archiveDay(LocalDate day) {
+    final Instant start = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    final String fluxQuery =
+        String.format(
+            """
+            from(bucket: "%s")
+                |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                |> group(columns: ["deviceId"])
+                |> aggregateWindow(every: 1h, fn: sum, createEmpty: false, timeSrc: "_start")
+            """,
+            bucket, start, start.plus(1, ChronoUnit.DAYS));
+
+    final Map<Long, UsageArchive.ArchiveRow> rows = new HashMap<>();
+    int unknownOwners = 0;
+    for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, influxOrg)) {
+      for (FluxRecord record : table.getRecords()) {
+        final Object deviceIdObj = record.getValueByKey("deviceId");
+        if (deviceIdObj == null || record.getTime() == null) {
+          continue;
+        }
+        try {
+          final long deviceId = Long.parseLong(deviceIdObj.toString());
+          final int hour = (int) ChronoUnit.HOURS.between(start, record.getTime());
+          if (hour < 0 || hour >= ArchiveSegment.HOURS) {
+            continue;
+          }
+          UsageArchive.ArchiveRow row = rows.get(deviceId);
+          if (row == null) {
+            final DeviceDto device = deviceDirectory.getDevice(deviceId);
+            final long userId =
+                device != null && device.userId() != null
+                    ? device.userId()
+                    : UsageArchive.UNKNOWN_OWNER;
+            if (userId == UsageArchive.UNKNOWN_OWNER) {
+              unknownOwners++;
+            }
+            row = new UsageArchive.ArchiveRow(deviceId, userId, new double[ArchiveSegment.HOURS]);
+            rows.put(deviceId, row);
+          }
+          row.hourly()[hour] +=
+              record.getValue() instanceof Number ? ((Number) record.getValue()).doubleValue() : 0;
+        } catch (NumberFormatException nfe) {
+          log.error("Invalid device id in usage record: {}", record, nfe);
+        }
+      }
+    }
+    if (unknownOwners > 0) {
+      log.warn("Archived {} devices without a known owner for {}", unknownOwners, day);
+    }
+    usageArchive.writeDay(day, rows.values());
+  }
+}
@@ -0,0 +1,157 @@
+package com.chieaid24.usage_service.backtest;
+
+import com.chieaid24.usage_service.billing.UsageMatrix;
+import com.chieaid24.usage_service.billing.UsageMatrixLoader;
+import com.chieaid24.usage_service.dto.AlertRuleDto;
+import com.chieaid24.usage_service.dto.BacktestRequest;
+import com.chieaid24.usage_service.dto.BacktestResultDto;
+import com.chieaid24.usage_service.dto.FleetBacktestDto;
+import com.chieaid24.usage_service.dto.FleetBacktestRequest;
+import com.chieaid24.usage_service.model.FleetPage;
+import com.chieaid24.usage_service.rules.RuleBacktester;
+import com.chieaid24.usage_service.rules.RuleType;
+import com.chieaid24.usage_service.service.DeviceDirectory;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * What-if runs of alert thresholds and rules over stored hourly usage: one user against one
+ * candidate, or the whole fleet against many candidate thresholds to pick a default. Fleet runs
+ * sweep one {@link UsageMatrixLoader} page at a time and add up the counts.
+ */
+@Slf4j
+@Service
+public class BacktestService {
+
+  private static final Duration DEFAULT_RANGE = Duration.ofDays(30);
+  private static final int MAX_CANDIDATES = 1000;
+
+  private final UsageMatrixLoader usageMatrixLoader;
+  private final DeviceDirectory deviceDirectory;
+  private final ForkJoinPool pool;
+  private final int maxDays;
+
+  public BacktestService(
+      UsageMatrixLoader usageMatrixLoader,
+      DeviceDirectory deviceDirectory,
+      @Value("${usage.backtest.parallelism:0}") int parallelism,
+      @Value("${usage.backtest.max-days:62}") int maxDays) {
+    this.usageMatrixLoader = usageMatrixLoader;
+    this.deviceDirectory = deviceDirectory;
+    this.maxDays = maxDays;
+    this.pool =
+        new ForkJoinPool(
+            parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  public BacktestResultDto backtestUser(Long userId, BacktestRequest request) {
+    final AlertRuleDto rule;
+    if (request.rule() != null) {
+      final AlertRuleDto candidate = request.rule();
+      rule =
+          new AlertRuleDto(
+              candidate.id(),
+              userId,
+              candidate.type(),
+              candidate.deviceId(),
+              candidate.threshold(),
+              candidate.startHour(),
+              candidate.endHour(),
+              true);
+    } else if (request.threshold() != null) {
+      rule =
+          new AlertRuleDto(
+              null, userId, RuleType.HOURLY_LIMIT, null, request.threshold(), 0, 0, true);
+    } else {
+      throw new IllegalArgumentException("Either threshold or rule is required");
+    }
+    final Instant[] range = range(request.from(), request.to());
+    final int warmUpHours = RuleBacktester.warmUpHours(rule.type());
+    final UsageMatrix usage =
+        usageMatrixLoader.load(userId, range[0].minus(Duration.ofHours(warmUpHours)), range[1]);
+    return RuleBacktester.backtest(
+        rule, usage, warmUpHours, request.maxTimeline() != null ? request.maxTimeline() : 500);
+  }
+
+  public FleetBacktestDto backtestFleet(FleetBacktestRequest request) {
+    if (request.candidates() == null
+        || request.candidates().isEmpty()
+        || request.candidates().size() > MAX_CANDIDATES) {
+      throw new IllegalArgumentException("Between 1 and " + MAX_CANDIDATES + " candidates");
+    }
+    final double[] candidates =
+        request.candidates().stream()
+            .filter(Objects::nonNull)
+            .mapToDouble(Double::doubleValue)
+            .sorted()
+            .distinct()
+            .toArray();
+    final double targetShare = request.targetUserShare() != null ? request.targetUserShare() : 0.05;
+    final Instant[] range = range(request.from(), request.to());
+
+    final long sweepStart = System.nanoTime();
+    final ThresholdSweep.Counts counts =
+        new ThresholdSweep.Counts(new long[candidates.length], new long[candidates.length]);
+    long usersWithUsage = 0;
+    for (FleetPage page : usageMatrixLoader.fleetPages()) {
+      final UsageMatrix usage = usageMatrixLoader.loadPage(page, range[0], range[1]);
+      counts.add(pool.invoke(new ThresholdSweep(usage, candidates, 0, usage.users())));
+      usersWithUsage += usage.users();
+    }
+    // users who used nothing in the range raised nothing, but still count towards the share
+    final long users = Math.max(usersWithUsage, deviceDirectory.ownerCount());
+    log.info(
+        "Swept {} thresholds over {} users ({} with usage) in {} ms",
+        candidates.length,
+        users,
+        usersWithUsage,
+        (System.nanoTime() - sweepStart) / 1_000_000);
+
+    final List<FleetBacktestDto.CandidateResult> results = new ArrayList<>();
+    Double recommended = null;
+    for (int c = 0; c < candidates.length; c++) {
+      final double share = users == 0 ? 0.0 : (double) counts.usersAlerted()[c] / users;
+      results.add(
+          new FleetBacktestDto.CandidateResult(
+              candidates[c], counts.alerts()[c], counts.usersAlerted()[c], share));
+      if (recommended == null && share <= targetShare) {
+        recommended = candidates[c];
+      }
+    }
+    return FleetBacktestDto.builder()
+        .from(range[0])
+        .to(range[1])
+        .users(users)
+        .hours((int) Duration.between(range[0], range[1]).toHours())
+        .candidates(results)
+        .recommendedThreshold(recommended)
+        .build();
+  }
+
+  private Instant[] range(Instant from, Instant to) {
+    final Instant stop = (to != null ? to : Instant.now()).truncatedTo(ChronoUnit.HOURS);
+    final Instant start =
+        (from != null ? from : stop.minus(DEFAULT_RANGE)).truncatedTo(ChronoUnit.HOURS);
+    if (!start.isBefore(stop)) {
+      throw new IllegalArgumentException("from must be at least an hour before to");
+    }
+    if (Duration.between(start, stop).toDays() > maxDays) {
+      throw new IllegalArgumentException("Backtests are limited to " + maxDays + " days");
+    }
+    return new Instant[] {start, stop};
+  }
+}
@@ -0,0 +1,88 @@
+package com.chieaid24.usage_service.backtest;
+
+import com.chieaid24.usage_service.billing.UsageMatrix;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Counts, for every candidate threshold at once, how many user-hours exceed it and how many users
+ * exceed it at least once. Each user's hourly totals are summed into a scratch array and sorted, so
+ * every candidate is one binary search instead of a pass over the hours. Users are split across
+ * fork/join tasks that each keep their own counters and add them up on join.
+ */
+final class ThresholdSweep extends RecursiveTask<ThresholdSweep.Counts> {
+
+  private static final int USERS_PER_TASK = 512;
+
+  private final UsageMatrix usage;
+  private final double[] candidates;
+  private final int from;
+  private final int to;
+
+  ThresholdSweep(UsageMatrix usage, double[] candidates, int from, int to) {
+    this.usage = usage;
+    this.candidates = candidates;
+    this.from = from;
+    this.to = to;
+  }
+
+  record Counts(long[] alerts, long[] usersAlerted) {
+    Counts add(Counts other) {
+      for (int i = 0; i < alerts.length; i++) {
+        alerts[i] += other.alerts[i];
+        usersAlerted[i] += other.usersAlerted[i];
+      }
+      return this;
+    }
+  }
+
+  @Override
+  protected Counts compute() {
+    if (to - from > USERS_PER_TASK) {
+      final int mid = (from + to) >>> 1;
+      final ThresholdSweep left = new ThresholdSweep(usage, candidates, from, mid);
+      left.fork();
+      final Counts right = new ThresholdSweep(usage, candidates, mid, to).compute();
+      return left.join().add(right);
+    }
+
+    final Counts counts = new Counts(new long[candidates.length], new long[candidates.length]);
+    final int hours = usage.buckets();
+    final double[] totals = new double[hours];
+    final int[] rowStart = usage.userRowStart();
+    final float[][] rows = usage.rows();
+    for (int user = from; user < to; user++) {
+      Arrays.fill(totals, 0.0);
+      for (int row = rowStart[user]; row < rowStart[user + 1]; row++) {
+        final float[] values = rows[row];
+        for (int h = 0; h < hours; h++) {
+          totals[h] += values[h];
+        }
+      }
+      Arrays.sort(totals);
+      for (int c = 0; c < candidates.length; c++) {
+        final int over = hours - upperBound(totals, candidates[c]);
+        counts.alerts[c] += over;
+        if (over > 0) {
+          counts.usersAlerted[c]++;
+        }
+      }
+    }
+    return counts;
+  }
+
+  /** Index of the first value strictly greater than {@code key}. */
+  private static int upperBound(double[] sorted, double key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sorted[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
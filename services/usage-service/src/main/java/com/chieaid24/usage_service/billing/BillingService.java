@@ -0,0 +1,127 @@
+package com.chieaid24.usage_service.billing;
+
+import com.chieaid24.usage_service.dto.BillDto;
+import com.chieaid24.usage_service.model.FleetPage;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Bills users for a period under a tariff. Hourly device usage is loaded into a {@link UsageMatrix}
+ * by the {@link UsageMatrixLoader}, then priced in one pass by the {@link CostEngine}.
+ */
+@Slf4j
+@Service
+public class BillingService {
+
+  private final UsageMatrixLoader usageMatrixLoader;
+  private final TariffRegistry tariffRegistry;
+  private final CostEngine costEngine;
+  private final int maxDays;
+
+  public BillingService(
+      UsageMatrixLoader usageMatrixLoader,
+      TariffRegistry tariffRegistry,
+      CostEngine costEngine,
+      @Value("${usage.billing.max-days:62}") int maxDays) {
+    this.usageMatrixLoader = usageMatrixLoader;
+    this.tariffRegistry = tariffRegistry;
+    this.costEngine = costEngine;
+    this.maxDays = maxDays;
+  }
+
+  public BillDto getBill(Long userId, Instant from, Instant to, String tariffName) {
+    final Period period = period(from, to, tariffName);
+    final UsageMatrix usage = usageMatrixLoader.load(userId, period.start(), period.stop());
+    final CostEngine.Bills bills = price(period, usage);
+    if (usage.users() == 0) {
+      return BillDto.builder()
+          .userId(userId)
+          .tariff(period.tariff().name())
+          .from(period.start())
+          .to(period.stop())
+          .build();
+    }
+    return period.bill(usage, bills, 0);
+  }
+
+  /**
+   * Bills every user with usage in the period. The period is checked here; the bills themselves are
+   * produced a fleet page at a time as the run is consumed, so only one page of usage is held at
+   * once.
+   */
+  public BillingRun runAll(Instant from, Instant to, String tariffName) {
+    final Period period = period(from, to, tariffName);
+    return sink -> {
+      final long runStart = System.nanoTime();
+      long users = 0;
+      final List<FleetPage> pages = usageMatrixLoader.fleetPages();
+      for (FleetPage page : pages) {
+        final UsageMatrix usage = usageMatrixLoader.loadPage(page, period.start(), period.stop());
+        final CostEngine.Bills bills = price(period, usage);
+        for (int i = 0; i < usage.users(); i++) {
+          sink.accept(period.bill(usage, bills, i));
+        }
+        users += usage.users();
+      }
+      log.info(
+          "Billed {} users under {} in {} pages in {} ms",
+          users,
+          period.tariff().name(),
+          pages.size(),
+          (System.nanoTime() - runStart) / 1_000_000);
+    };
+  }
+
+  private Period period(Instant from, Instant to, String tariffName) {
+    final Tariff tariff = tariffRegistry.get(tariffName);
+    final Instant start = from.truncatedTo(ChronoUnit.HOURS);
+    final Instant stop = to.truncatedTo(ChronoUnit.HOURS);
+    if (!start.isBefore(stop)) {
+      throw new IllegalArgumentException("from must be at least an hour before to");
+    }
+    if (Duration.between(start, stop).toDays() > maxDays) {
+      throw new IllegalArgumentException("Billing periods are limited to " + maxDays + " days");
+    }
+    return new Period(tariff, start, stop);
+  }
+
+  private CostEngine.Bills price(Period period, UsageMatrix usage) {
+    final long priceStart = System.nanoTime();
+    final CostEngine.Bills bills =
+        costEngine.bill(
+            usage,
+            period.tariff().prices(period.start(), usage.buckets(), UsageMatrixLoader.BUCKET));
+    log.debug(
+        "Priced {} users / {} devices in {} ms",
+        usage.users(),
+        usage.deviceIds().length,
+        (System.nanoTime() - priceStart) / 1_000_000);
+    return bills;
+  }
+
+  /** The bills of a fleet run, produced as they are consumed. */
+  @FunctionalInterface
+  public interface BillingRun {
+    void forEach(Consumer<BillDto> sink);
+  }
+
+  private record Period(Tariff tariff, Instant start, Instant stop) {
+
+    BillDto bill(UsageMatrix usage, CostEngine.Bills bills, int index) {
+      return BillDto.builder()
+          .userId(usage.userIds()[index])
+          .tariff(tariff.name())
+          .from(start)
+          .to(stop)
+          .energyConsumed(bills.energy()[index])
+          .cost(bills.cost()[index])
+          .build();
+    }
+  }
+}
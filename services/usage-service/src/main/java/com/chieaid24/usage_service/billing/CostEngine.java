@@ -0,0 +1,116 @@
+package com.chieaid24.usage_service.billing;
+
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prices a {@link UsageMatrix} against per-bucket prices. Each device row is one dot product over
+ * primitive arrays, unrolled into independent accumulators so the JIT can keep several multiplies
+ * in flight, and users are split across a fork/join pool in ranges small enough to balance but
+ * large enough to amortise the task overhead.
+ */
+@Component
+public class CostEngine {
+
+  private static final int USERS_PER_TASK = 1024;
+
+  private final ForkJoinPool pool;
+
+  public CostEngine(@Value("${usage.billing.parallelism:0}") int parallelism) {
+    this.pool =
+        new ForkJoinPool(
+            parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  /** Cost and energy of every user in {@code usage}, indexed like {@link UsageMatrix#userIds()}. */
+  public Bills bill(UsageMatrix usage, double[] prices) {
+    if (prices.length != usage.buckets()) {
+      throw new IllegalArgumentException(
+          "Expected " + usage.buckets() + " prices, got " + prices.length);
+    }
+    final Bills bills = new Bills(new double[usage.users()], new double[usage.users()]);
+    pool.invoke(new BillTask(usage, prices, bills, 0, usage.users()));
+    return bills;
+  }
+
+  public record Bills(double[] cost, double[] energy) {}
+
+  static double cost(float[] usage, double[] prices) {
+    double a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+    int i = 0;
+    final int bound = usage.length & ~3;
+    for (; i < bound; i += 4) {
+      a0 += usage[i] * prices[i];
+      a1 += usage[i + 1] * prices[i + 1];
+      a2 += usage[i + 2] * prices[i + 2];
+      a3 += usage[i + 3] * prices[i + 3];
+    }
+    for (; i < usage.length; i++) {
+      a0 += usage[i] * prices[i];
+    }
+    return (a0 + a1) + (a2 + a3);
+  }
+
+  static double energy(float[] usage) {
+    double a0 = 0, a1 = 0, a2 = 0, a3 = 0;
+    int i = 0;
+    final int bound = usage.length & ~3;
+    for (; i < bound; i += 4) {
+      a0 += usage[i];
+      a1 += usage[i + 1];
+      a2 += usage[i + 2];
+      a3 += usage[i + 3];
+    }
+    for (; i < usage.length; i++) {
+      a0 += usage[i];
+    }
+    return (a0 + a1) + (a2 + a3);
+  }
+
+  private static final class BillTask extends RecursiveAction {
+    private final UsageMatrix usage;
+    private final double[] prices;
+    private final Bills bills;
+    private final int from;
+    private final int to;
+
+    BillTask(UsageMatrix usage, double[] prices, Bills bills, int from, int to) {
+      this.usage = usage;
+      this.prices = prices;
+      this.bills = bills;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= USERS_PER_TASK) {
+        final int[] rowStart = usage.userRowStart();
+        final float[][] rows = usage.rows();
+        for (int user = from; user < to; user++) {
+          double cost = 0;
+          double energy = 0;
+          for (int row = rowStart[user]; row < rowStart[user + 1]; row++) {
+            cost += cost(rows[row], prices);
+            energy += energy(rows[row]);
+          }
+          bills.cost()[user] = cost;
+          bills.energy()[user] = energy;
+        }
+        return;
+      }
+      final int mid = (from + to) >>> 1;
+      invokeAll(
+          new BillTask(usage, prices, bills, from, mid),
+          new BillTask(usage, prices, bills, mid, to));
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.chieaid24.usage_service.billing;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Time-of-use tariff: each season covers a set of months and prices every hour of every weekday
+ * ({@code prices[dayOfWeek - 1][hour]}, Monday first, per kWh). Hours are read in the tariff's own
+ * zone, so a peak at 17:00 follows local time across DST changes.
+ */
+public record Tariff(String name, ZoneId zone, List<Season> seasons) {
+
+  public record Season(String name, List<Integer> months, double[][] prices) {
+    public Season {
+      if (months == null || months.isEmpty()) {
+        throw new IllegalArgumentException("Season " + name + " has no months");
+      }
+      if (prices == null || prices.length != 7) {
+        throw new IllegalArgumentException("Season " + name + " needs 7 weekday price rows");
+      }
+      for (double[] day : prices) {
+        if (day == null || day.length != 24) {
+          throw new IllegalArgumentException("Season " + name + " needs 24 hourly prices a day");
+        }
+      }
+    }
+  }
+
+  public Tariff {
+    if (name == null || name.isBlank()) {
+      throw new IllegalArgumentException("Tariff name is required");
+    }
+    zone = zone != null ? zone : ZoneId.of("UTC");
+    seasons = List.copyOf(seasons);
+    final boolean[] covered = new boolean[13];
+    for (Season season : seasons) {
+      for (int month : season.months()) {
+        if (month < 1 || month > 12 || covered[month]) {
+          throw new IllegalArgumentException(
+              "Tariff " + name + " covers month " + month + " twice");
+        }
+        covered[month] = true;
+      }
+    }
+    for (int month = 1; month <= 12; month++) {
+      if (!covered[month]) {
+        throw new IllegalArgumentException("Tariff " + name + " has no season for month " + month);
+      }
+    }
+  }
+
+  /** One price for every hour of the week, all year. */
+  public static Tariff flat(String name, double price) {
+    final double[][] prices = new double[7][24];
+    for (double[] day : prices) {
+      Arrays.fill(day, price);
+    }
+    return new Tariff(
+        name,
+        ZoneId.of("UTC"),
+        List.of(new Season("all-year", List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12), prices)));
+  }
+
+  /**
+   * Expands the tariff into one price per bucket starting at {@code start}, so billing is a plain
+   * dot product of usage and prices. A bucket is priced by the hour it starts in.
+   */
+  public double[] prices(Instant start, int buckets, Duration bucket) {
+    final Season[] seasonByMonth = new Season[13];
+    for (Season season : seasons) {
+      season.months().forEach(month -> seasonByMonth[month] = season);
+    }
+    final double[] out = new double[buckets];
+    final long bucketMs = bucket.toMillis();
+    for (int i = 0; i < buckets; i++) {
+      final ZonedDateTime time =
+          Instant.ofEpochMilli(start.toEpochMilli() + i * bucketMs).atZone(zone);
+      out[i] =
+          seasonByMonth[time.getMonthValue()]
+              .prices()[time.getDayOfWeek().getValue() - 1][time.getHour()];
+    }
+    return out;
+  }
+}
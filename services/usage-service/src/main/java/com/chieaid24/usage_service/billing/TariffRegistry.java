@@ -0,0 +1,54 @@
+package com.chieaid24.usage_service.billing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Tariffs known to the billing engine: a flat default tariff, plus any tariffs listed as a JSON
+ * array in {@code usage.billing.tariffs-file}.
+ */
+@Slf4j
+@Component
+public class TariffRegistry {
+
+  private final Map<String, Tariff> tariffs = new LinkedHashMap<>();
+  private final String defaultTariff;
+
+  public TariffRegistry(
+      JsonMapper jsonMapper,
+      @Value("${usage.billing.default-tariff:standard}") String defaultTariff,
+      @Value("${usage.billing.default-price:0.30}") double defaultPrice,
+      @Value("${usage.billing.tariffs-file:}") String tariffsFile) {
+    this.defaultTariff = defaultTariff;
+    tariffs.put(defaultTariff, Tariff.flat(defaultTariff, defaultPrice));
+    if (!tariffsFile.isBlank()) {
+      try {
+        final Tariff[] loaded =
+            jsonMapper.readValue(Files.readAllBytes(Path.of(tariffsFile)), Tariff[].class);
+        for (Tariff tariff : loaded) {
+          tariffs.put(tariff.name(), tariff);
+        }
+        log.info("Loaded {} tariffs from {}", loaded.length, tariffsFile);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Error reading tariffs from " + tariffsFile, e);
+      }
+    }
+  }
+
+  /** The named tariff, or the default one when {@code name} is null. */
+  public Tariff get(String name) {
+    final Tariff tariff = tariffs.get(name != null ? name : defaultTariff);
+    if (tariff == null) {
+      throw new IllegalArgumentException("Unknown tariff: " + name);
+    }
+    return tariff;
+  }
+}
@@ -0,0 +1,93 @@
+package com.chieaid24.usage_service.billing;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Usage of many devices over one period in fixed-width buckets, one {@code float[]} row per device
+ * and owner. Rows are grouped by user: the devices of user {@code u} are rows {@code
+ * userRowStart[u]} up to {@code userRowStart[u + 1]}, so a bill is a run over adjacent rows with no
+ * lookups. A device that changed owner during the period has a row for each owner, holding only the
+ * hours that owner had it.
+ */
+public record UsageMatrix(
+    Instant start,
+    Duration bucket,
+    int buckets,
+    long[] userIds,
+    int[] userRowStart,
+    long[] deviceIds,
+    float[][] rows) {
+
+  public int users() {
+    return userIds.length;
+  }
+
+  public static Builder builder(Instant start, Duration bucket, int buckets) {
+    return new Builder(start, bucket, buckets);
+  }
+
+  public static final class Builder {
+    private final Instant start;
+    private final Duration bucket;
+    private final int buckets;
+    private final long startMs;
+    private final long bucketMs;
+    private final Map<Row, float[]> rows = new HashMap<>();
+
+    private Builder(Instant start, Duration bucket, int buckets) {
+      this.start = start;
+      this.bucket = bucket;
+      this.buckets = buckets;
+      this.startMs = start.toEpochMilli();
+      this.bucketMs = bucket.toMillis();
+    }
+
+    /** Adds usage at {@code time}; anything outside the period is ignored. */
+    public void add(long deviceId, long userId, Instant time, double energyConsumed) {
+      final long offset = time.toEpochMilli() - startMs;
+      if (offset < 0 || offset / bucketMs >= buckets) {
+        return;
+      }
+      final float[] row =
+          rows.computeIfAbsent(new Row(deviceId, userId), key -> new float[buckets]);
+      row[(int) (offset / bucketMs)] += (float) energyConsumed;
+    }
+
+    public UsageMatrix build() {
+      final Row[] keys = rows.keySet().toArray(Row[]::new);
+      Arrays.sort(keys, Comparator.comparingLong(Row::userId).thenComparingLong(Row::deviceId));
+
+      final long[] deviceIds = new long[keys.length];
+      final float[][] packed = new float[keys.length][];
+      final long[] userIds = new long[keys.length];
+      final int[] userRowStart = new int[keys.length + 1];
+      int users = 0;
+      for (int row = 0; row < keys.length; row++) {
+        final long userId = keys[row].userId();
+        if (users == 0 || userIds[users - 1] != userId) {
+          userIds[users] = userId;
+          userRowStart[users] = row;
+          users++;
+        }
+        deviceIds[row] = keys[row].deviceId();
+        packed[row] = rows.get(keys[row]);
+      }
+      userRowStart[users] = keys.length;
+      return new UsageMatrix(
+          start,
+          bucket,
+          buckets,
+          Arrays.copyOf(userIds, users),
+          Arrays.copyOf(userRowStart, users + 1),
+          deviceIds,
+          packed);
+    }
+
+    private record Row(long deviceId, long userId) {}
+  }
+}
@@ -0,0 +1,73 @@
+package com.chieaid24.usage_service.billing;
+
+import com.chieaid24.usage_service.archive.UsageArchive;
+import com.chieaid24.usage_service.model.FleetPage;
+import com.chieaid24.usage_service.service.UsageRollupService;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads hourly device usage into a {@link UsageMatrix}: from the archive for days Influx no longer
+ * holds and from the hourly rollup for the rest. Fleet-wide work is done one {@link FleetPage} of
+ * {@code fleet-pages} at a time, so only one page of device rows is in memory at once. Both sources
+ * select the page before reading usage, so the pages together cost about one pass over the period.
+ */
+@Component
+public class UsageMatrixLoader {
+
+  public static final Duration BUCKET = Duration.ofHours(1);
+
+  private final UsageRollupService usageRollupService;
+  private final UsageArchive usageArchive;
+  private final int fleetPages;
+
+  public UsageMatrixLoader(
+      UsageRollupService usageRollupService,
+      UsageArchive usageArchive,
+      @Value("${usage.fleet.pages:64}") int fleetPages) {
+    this.usageRollupService = usageRollupService;
+    this.usageArchive = usageArchive;
+    this.fleetPages = Math.max(1, fleetPages);
+  }
+
+  public List<FleetPage> fleetPages() {
+    return FleetPage.of(fleetPages);
+  }
+
+  /** Usage of one user in {@code [start, stop)}, both hour aligned. */
+  public UsageMatrix load(long userId, Instant start, Instant stop) {
+    return load(userId, new FleetPage(0, 1), start, stop);
+  }
+
+  /** Usage in {@code [start, stop)} of the users on {@code page}. */
+  public UsageMatrix loadPage(FleetPage page, Instant start, Instant stop) {
+    return load(null, page, start, stop);
+  }
+
+  private UsageMatrix load(Long userId, FleetPage page, Instant start, Instant stop) {
+    final int buckets = (int) Duration.between(start, stop).dividedBy(BUCKET);
+    final UsageMatrix.Builder builder = UsageMatrix.builder(start, BUCKET, buckets);
+    final Instant cutover = usageArchive.influxCutover();
+    final Instant archiveStop = stop.isBefore(cutover) ? stop : cutover;
+    for (LocalDate day = LocalDate.ofInstant(start, ZoneOffset.UTC);
+        day.atStartOfDay(ZoneOffset.UTC).toInstant().isBefore(archiveStop);
+        day = day.plusDays(1)) {
+      usageArchive.forEachHour(
+          day,
+          owner ->
+              owner != UsageArchive.UNKNOWN_OWNER
+                  && (userId != null ? userId == owner : page.contains(owner)),
+          builder::add);
+    }
+    if (stop.isAfter(cutover)) {
+      usageRollupService.forEachDeviceHour(
+          start.isBefore(cutover) ? cutover : start, stop, userId, page, builder::add);
+    }
+    return builder.build();
+  }
+}
@@ -1,45 +1,193 @@
 package com.chieaid24.usage_service.client;
 
+import com.chieaid24.grpc.device.Device;
+import com.chieaid24.grpc.device.DeviceIdRequest;
+import com.chieaid24.grpc.device.DeviceIdsRequest;
+import com.chieaid24.grpc.device.DeviceLookupGrpc;
+import com.chieaid24.grpc.device.UserIdsRequest;
 import com.chieaid24.usage_service.dto.DeviceDto;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
+import org.springframework.grpc.client.GrpcChannelFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+/**
+ * Device lookups over REST, or over the device-service gRPC API when {@code
+ * usage.lookup.transport=grpc}. The gRPC channel is {@code spring.grpc.client.channels.device}.
+ * Both go through the {@code device-service} {@link DownstreamClient}.
+ */
+@Slf4j
 @Component
 public class DeviceClient {
-  private final RestTemplate restTemplate;
+  private static final int USER_ID_CHUNK = 5000;
+
+  private final DownstreamClient downstream;
 
   private final String baseUrl;
 
-  public DeviceClient(@Value("${device.service.url}") String baseUrl) {
-    this.restTemplate = new RestTemplate();
+  // null when lookups go over REST
+  private final DeviceLookupGrpc.DeviceLookupBlockingStub deviceLookup;
+
+  public DeviceClient(
+      @Value("${device.service.url}") String baseUrl,
+      @Value("${usage.lookup.transport:rest}") String transport,
+      DownstreamClients downstreamClients,
+      ObjectProvider<GrpcChannelFactory> channels) {
+    this.downstream = downstreamClients.create("device-service");
     this.baseUrl = baseUrl;
+    this.deviceLookup =
+        "grpc".equalsIgnoreCase(transport)
+            ? DeviceLookupGrpc.newBlockingStub(channels.getObject().createChannel("device"))
+            : null;
   }
 
   public DeviceDto getDeviceById(Long deviceId) {
+    if (deviceLookup != null) {
+      return downstream.call(
+          "GetDevice",
+          () -> {
+            try {
+              return toDto(
+                  lookup().getDevice(DeviceIdRequest.newBuilder().setId(deviceId).build()));
+            } catch (StatusRuntimeException e) {
+              if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                return null;
+              }
+              throw e;
+            }
+          });
+    }
+
     String url =
         UriComponentsBuilder.fromUriString(baseUrl)
             .path("/{deviceId}")
             .buildAndExpand(deviceId)
             .toUriString();
 
-    ResponseEntity<DeviceDto> response = restTemplate.getForEntity(url, DeviceDto.class);
-    return response.getBody();
+    return downstream.call(
+        "/{deviceId}", () -> downstream.restTemplate().getForObject(url, DeviceDto.class));
+  }
+
+  /**
+   * Streams the devices that exist among the ids. Over gRPC a chunk that still fails after the
+   * downstream retries is logged and skipped, so it costs only its own ids. The REST API has no
+   * bulk lookup, so without gRPC this falls back to one request per id and skips the ones that
+   * fail, whatever the reason, and stops once the circuit breaker opens.
+   */
+  public List<DeviceDto> getDevicesByIds(Collection<Long> deviceIds) {
+    final List<Long> ids = List.copyOf(deviceIds);
+    final List<DeviceDto> devices = new ArrayList<>(ids.size());
+    if (deviceLookup != null) {
+      for (int from = 0; from < ids.size(); from += USER_ID_CHUNK) {
+        final DeviceIdsRequest request =
+            DeviceIdsRequest.newBuilder()
+                .addAllIds(ids.subList(from, Math.min(ids.size(), from + USER_ID_CHUNK)))
+                .build();
+        try {
+          devices.addAll(
+              downstream.call("GetDevices", () -> collect(lookup().getDevices(request))));
+        } catch (RuntimeException e) {
+          log.error("Error fetching device data for {} devices", request.getIdsCount(), e);
+        }
+      }
+      return devices;
+    }
+
+    for (int i = 0; i < ids.size(); i++) {
+      final Long id = ids.get(i);
+      try {
+        final DeviceDto device = getDeviceById(id);
+        if (device != null && device.id() != null) {
+          devices.add(device);
+        }
+      } catch (CallNotPermittedException e) {
+        // the breaker is open, so every remaining id would fail the same way
+        log.error("device-service circuit is open, skipping the last {} devices", ids.size() - i);
+        break;
+      } catch (RuntimeException e) {
+        log.error("Error fetching device data for ID: {}", id, e);
+      }
+    }
+    return devices;
   }
 
   public List<DeviceDto> getAllDevicesForUser(Long userId) {
+    if (deviceLookup != null) {
+      return getAllDevicesForUsers(List.of(userId));
+    }
+
     String url =
         UriComponentsBuilder.fromUriString(baseUrl)
             .path("/user/{userId}")
             .buildAndExpand(userId)
             .toUriString();
 
-    ResponseEntity<DeviceDto[]> response = restTemplate.getForEntity(url, DeviceDto[].class);
-    DeviceDto[] devices = response.getBody();
+    DeviceDto[] devices =
+        downstream.call(
+            "/user/{userId}", () -> downstream.restTemplate().getForObject(url, DeviceDto[].class));
 
     return devices == null ? List.of() : List.of(devices);
   }
+
+  public List<DeviceDto> getAllDevicesForUsers(Collection<Long> userIds) {
+    String url = UriComponentsBuilder.fromUriString(baseUrl).path("/users").toUriString();
+
+    final List<Long> ids = List.copyOf(userIds);
+    final List<DeviceDto> devices = new ArrayList<>();
+    for (int from = 0; from < ids.size(); from += USER_ID_CHUNK) {
+      final List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + USER_ID_CHUNK));
+      if (deviceLookup != null) {
+        final UserIdsRequest request = UserIdsRequest.newBuilder().addAllUserIds(chunk).build();
+        devices.addAll(
+            downstream.call("GetUserDevices", () -> collect(lookup().getUserDevices(request))));
+        continue;
+      }
+      final DeviceDto[] response =
+          downstream.call(
+              "/users",
+              () -> downstream.restTemplate().postForObject(url, chunk, DeviceDto[].class));
+      if (response != null) {
+        devices.addAll(List.of(response));
+      }
+    }
+    return devices;
+  }
+
+  private DeviceLookupGrpc.DeviceLookupBlockingStub lookup() {
+    return deviceLookup.withDeadlineAfter(
+        downstream.readTimeout().toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  // drains the stream inside the call, so a broken stream fails (and retries) the whole chunk
+  private static List<DeviceDto> collect(Iterator<Device> stream) {
+    final List<DeviceDto> devices = new ArrayList<>();
+    while (stream.hasNext()) {
+      devices.add(toDto(stream.next()));
+    }
+    return devices;
+  }
+
+  private static DeviceDto toDto(Device device) {
+    return DeviceDto.builder()
+        .id(device.getId())
+        .name(emptyToNull(device.getName()))
+        .type(emptyToNull(device.getType()))
+        .location(emptyToNull(device.getLocation()))
+        .userId(device.getUserId() == 0L ? null : device.getUserId())
+        .build();
+  }
+
+  private static String emptyToNull(String value) {
+    return value.isEmpty() ? null : value;
+  }
 }
@@ -0,0 +1,144 @@
+package com.chieaid24.usage_service.client;
+
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Builds a {@link DownstreamClient} per downstream service. Settings are read from {@code
+ * downstream.<name>.*}, e.g. {@code downstream.user-service.read-timeout=PT2S}. Pool, bulkhead,
+ * circuit breaker and retry metrics are tagged with the downstream name.
+ */
+@Component
+public class DownstreamClients implements DisposableBean {
+
+  private final Environment environment;
+  private final MeterRegistry meterRegistry;
+  private final BulkheadRegistry bulkheads = BulkheadRegistry.ofDefaults();
+  private final CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+  private final RetryRegistry retries = RetryRegistry.ofDefaults();
+  private final List<CloseableHttpClient> httpClients = new CopyOnWriteArrayList<>();
+
+  public DownstreamClients(Environment environment, MeterRegistry meterRegistry) {
+    this.environment = environment;
+    this.meterRegistry = meterRegistry;
+    TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(meterRegistry);
+    TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+    TaggedRetryMetrics.ofRetryRegistry(retries).bindTo(meterRegistry);
+  }
+
+  public DownstreamClient create(String name) {
+    final Duration connectTimeout =
+        setting(name, "connect-timeout", Duration.class, Duration.ofSeconds(1));
+    final Duration readTimeout =
+        setting(name, "read-timeout", Duration.class, Duration.ofSeconds(5));
+    final int maxConnections = setting(name, "max-connections", Integer.class, 50);
+
+    final PoolingHttpClientConnectionManager connections =
+        PoolingHttpClientConnectionManagerBuilder.create()
+            .setMaxConnTotal(maxConnections)
+            .setMaxConnPerRoute(maxConnections)
+            .setDefaultConnectionConfig(
+                ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.of(connectTimeout))
+                    .setSocketTimeout(Timeout.of(readTimeout))
+                    .setTimeToLive(TimeValue.ofMinutes(5))
+                    .build())
+            .build();
+    final CloseableHttpClient httpClient =
+        HttpClients.custom()
+            .setConnectionManager(connections)
+            .setDefaultRequestConfig(
+                RequestConfig.custom()
+                    .setConnectionRequestTimeout(Timeout.of(connectTimeout))
+                    .setResponseTimeout(Timeout.of(readTimeout))
+                    .build())
+            .evictIdleConnections(TimeValue.ofSeconds(30))
+            .disableAutomaticRetries()
+            .build();
+    httpClients.add(httpClient);
+    Gauge.builder("downstream.client.connections", connections, c -> c.getTotalStats().getLeased())
+        .tag("downstream", name)
+        .tag("state", "leased")
+        .register(meterRegistry);
+    Gauge.builder(
+            "downstream.client.connections", connections, c -> c.getTotalStats().getAvailable())
+        .tag("downstream", name)
+        .tag("state", "idle")
+        .register(meterRegistry);
+    Gauge.builder("downstream.client.connections", connections, c -> c.getTotalStats().getPending())
+        .tag("downstream", name)
+        .tag("state", "pending")
+        .register(meterRegistry);
+
+    return new DownstreamClient(
+        name,
+        new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient)),
+        readTimeout,
+        bulkheads.bulkhead(
+            name,
+            BulkheadConfig.custom()
+                .maxConcurrentCalls(setting(name, "max-concurrent-calls", Integer.class, 20))
+                .maxWaitDuration(setting(name, "max-wait", Duration.class, Duration.ofMillis(100)))
+                .build()),
+        circuitBreakers.circuitBreaker(
+            name,
+            CircuitBreakerConfig.custom()
+                .slidingWindowSize(50)
+                .minimumNumberOfCalls(20)
+                .failureRateThreshold(setting(name, "failure-rate-threshold", Float.class, 50f))
+                .slowCallDurationThreshold(readTimeout.dividedBy(2))
+                .slowCallRateThreshold(80)
+                .waitDurationInOpenState(
+                    setting(name, "open-duration", Duration.class, Duration.ofSeconds(10)))
+                .permittedNumberOfCallsInHalfOpenState(5)
+                .recordException(DownstreamClient::isFailure)
+                .build()),
+        retries.retry(
+            name,
+            RetryConfig.custom()
+                .maxAttempts(setting(name, "max-attempts", Integer.class, 3))
+                .intervalFunction(
+                    IntervalFunction.ofExponentialRandomBackoff(
+                        setting(name, "backoff", Duration.class, Duration.ofMillis(100)), 2.0, 0.5))
+                .retryOnException(DownstreamClient::isRetryable)
+                .build()),
+        meterRegistry);
+  }
+
+  private <T> T setting(String name, String key, Class<T> type, T defaultValue) {
+    return environment.getProperty("downstream." + name + "." + key, type, defaultValue);
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    for (CloseableHttpClient httpClient : httpClients) {
+      httpClient.close();
+    }
+  }
+}
@@ -1,30 +1,160 @@
 package com.chieaid24.usage_service.client;
 
+import com.chieaid24.grpc.user.User;
+import com.chieaid24.grpc.user.UserIdRequest;
+import com.chieaid24.grpc.user.UserIdsRequest;
+import com.chieaid24.grpc.user.UserLookupGrpc;
+import com.chieaid24.usage_service.dto.AlertRuleDto;
 import com.chieaid24.usage_service.dto.UserDto;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
+import org.springframework.grpc.client.GrpcChannelFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+/**
+ * User lookups over REST, or over the user-service gRPC API when {@code
+ * usage.lookup.transport=grpc}. The gRPC channel is {@code spring.grpc.client.channels.user}. Alert
+ * rules always come over REST. Everything goes through the {@code user-service} {@link
+ * DownstreamClient}.
+ */
+@Slf4j
 @Component
 public class UserClient {
-  private final RestTemplate restTemplate;
+  private static final int USER_ID_CHUNK = 5000;
+
+  private final DownstreamClient downstream;
   private final String baseUrl;
 
-  public UserClient(@Value("${user.service.url}") String baseUrl) {
-    this.restTemplate = new RestTemplate();
+  // null when lookups go over REST
+  private final UserLookupGrpc.UserLookupBlockingStub userLookup;
+
+  public UserClient(
+      @Value("${user.service.url}") String baseUrl,
+      @Value("${usage.lookup.transport:rest}") String transport,
+      DownstreamClients downstreamClients,
+      ObjectProvider<GrpcChannelFactory> channels) {
+    this.downstream = downstreamClients.create("user-service");
     this.baseUrl = baseUrl;
+    this.userLookup =
+        "grpc".equalsIgnoreCase(transport)
+            ? UserLookupGrpc.newBlockingStub(channels.getObject().createChannel("user"))
+            : null;
   }
 
   public UserDto getUserById(Long userId) {
+    if (userLookup != null) {
+      return downstream.call(
+          "GetUser",
+          () -> {
+            try {
+              return toDto(lookup().getUser(UserIdRequest.newBuilder().setId(userId).build()));
+            } catch (StatusRuntimeException e) {
+              if (e.getStatus().getCode() == Status.Code.NOT_FOUND) {
+                return null;
+              }
+              throw e;
+            }
+          });
+    }
+
     String url =
         UriComponentsBuilder.fromUriString(baseUrl)
             .path("/{userId}")
             .buildAndExpand(userId)
             .toUriString();
 
-    ResponseEntity<UserDto> response = restTemplate.getForEntity(url, UserDto.class);
-    return response.getBody();
+    return downstream.call(
+        "/{userId}", () -> downstream.restTemplate().getForObject(url, UserDto.class));
+  }
+
+  /**
+   * Streams the users that exist among the ids. Over gRPC a chunk that still fails after the
+   * downstream retries is logged and skipped, so it costs only its own ids. The REST API has no
+   * bulk lookup, so without gRPC this falls back to one request per id and skips the ones that
+   * fail, whatever the reason, and stops once the circuit breaker opens.
+   */
+  public List<UserDto> getUsersByIds(Collection<Long> userIds) {
+    final List<Long> ids = List.copyOf(userIds);
+    final List<UserDto> users = new ArrayList<>(ids.size());
+    if (userLookup != null) {
+      for (int from = 0; from < ids.size(); from += USER_ID_CHUNK) {
+        final UserIdsRequest request =
+            UserIdsRequest.newBuilder()
+                .addAllIds(ids.subList(from, Math.min(ids.size(), from + USER_ID_CHUNK)))
+                .build();
+        try {
+          users.addAll(downstream.call("GetUsers", () -> collect(lookup().getUsers(request))));
+        } catch (RuntimeException e) {
+          log.error("Error fetching user data for {} users", request.getIdsCount(), e);
+        }
+      }
+      return users;
+    }
+
+    for (int i = 0; i < ids.size(); i++) {
+      final Long id = ids.get(i);
+      try {
+        final UserDto user = getUserById(id);
+        if (user != null && user.id() != null) {
+          users.add(user);
+        }
+      } catch (CallNotPermittedException e) {
+        // the breaker is open, so every remaining id would fail the same way
+        log.error("user-service circuit is open, skipping the last {} users", ids.size() - i);
+        break;
+      } catch (RuntimeException e) {
+        log.error("Error fetching user data for ID: {}", id, e);
+      }
+    }
+    return users;
+  }
+
+  public List<AlertRuleDto> getEnabledRules() {
+    String url = UriComponentsBuilder.fromUriString(baseUrl).path("/rules/enabled").toUriString();
+
+    final AlertRuleDto[] rules =
+        downstream.call(
+            "/rules/enabled",
+            () -> downstream.restTemplate().getForObject(url, AlertRuleDto[].class));
+    return rules != null ? Arrays.asList(rules) : List.of();
+  }
+
+  private UserLookupGrpc.UserLookupBlockingStub lookup() {
+    return userLookup.withDeadlineAfter(downstream.readTimeout().toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  // drains the stream inside the call, so a broken stream fails (and retries) the whole chunk
+  private static List<UserDto> collect(Iterator<User> stream) {
+    final List<UserDto> users = new ArrayList<>();
+    while (stream.hasNext()) {
+      users.add(toDto(stream.next()));
+    }
+    return users;
+  }
+
+  private static UserDto toDto(User user) {
+    return new UserDto(
+        user.getId(),
+        emptyToNull(user.getName()),
+        emptyToNull(user.getSurname()),
+        emptyToNull(user.getEmail()),
+        emptyToNull(user.getAddress()),
+        user.getAlerting(),
+        user.getEnergyAlertingThreshold());
+  }
+
+  private static String emptyToNull(String value) {
+    return value.isEmpty() ? null : value;
   }
 }
@@ -0,0 +1,71 @@
+package com.chieaid24.usage_service.config;
+
+import com.chieaid24.usage_service.ingest.InfluxWritePipeline;
+import com.influxdb.client.InfluxDBClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * Separate Influx write pipelines for live ingest and for replay. The flow controller watches only
+ * the live one, so a replay filling its own queue never pauses live consumption.
+ */
+@Configuration
+public class IngestPipelineConfig {
+
+  @Value("${influx.bucket}")
+  private String bucket;
+
+  @Value("${influx.org}")
+  private String influxOrg;
+
+  @Value("${usage.ingest.max-points-per-write:5000}")
+  private int maxPointsPerWrite;
+
+  @Value("${usage.ingest.write-attempts:3}")
+  private int writeAttempts;
+
+  @Bean
+  @Primary
+  public InfluxWritePipeline influxWritePipeline(
+      InfluxDBClient influxDBClient,
+      KafkaTemplate<String, Object> kafkaTemplate,
+      MeterRegistry meterRegistry,
+      @Value("${usage.ingest.max-queued-points:200000}") int maxQueuedPoints,
+      @Value("${usage.ingest.writer-threads:2}") int writerThreads) {
+    return new InfluxWritePipeline(
+        "influx",
+        influxDBClient,
+        kafkaTemplate,
+        meterRegistry,
+        bucket,
+        influxOrg,
+        maxQueuedPoints,
+        maxPointsPerWrite,
+        writeAttempts,
+        writerThreads);
+  }
+
+  @Bean
+  public InfluxWritePipeline replayWritePipeline(
+      InfluxDBClient influxDBClient,
+      KafkaTemplate<String, Object> kafkaTemplate,
+      MeterRegistry meterRegistry,
+      @Value("${usage.replay.max-queued-points:200000}") int maxQueuedPoints,
+      @Value("${usage.replay.writer-threads:2}") int writerThreads) {
+    return new InfluxWritePipeline(
+        "replay",
+        influxDBClient,
+        kafkaTemplate,
+        meterRegistry,
+        bucket,
+        influxOrg,
+        maxQueuedPoints,
+        maxPointsPerWrite,
+        writeAttempts,
+        writerThreads);
+  }
+}
@@ -0,0 +1,261 @@
+package com.chieaid24.usage_service.config;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.kafka.autoconfigure.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * Listener containers for the {@code energy-usage} ingest path. The main container takes batches
+ * and commits offsets only when the listener acknowledges them after the Influx write. A batch that
+ * keeps failing is moved to {@code energy-usage-retry}, which is consumed one record at a time with
+ * exponential backoff, and from there to {@code energy-usage-dlt}. Records that cannot be
+ * deserialized go straight to the dead-letter topic.
+ */
+@Slf4j
+@Configuration
+public class KafkaConsumerConfig implements DisposableBean {
+
+  public static final String ENERGY_USAGE_TOPIC = "energy-usage";
+  public static final String RETRY_TOPIC = "energy-usage-retry";
+  public static final String DEAD_LETTER_TOPIC = "energy-usage-dlt";
+  public static final String DEVICE_CHANGES_TOPIC = "device-changes";
+
+  private static final long TOPIC_POLL_MS = 2000;
+
+  private final KafkaProperties kafkaProperties;
+  private final KafkaAdmin kafkaAdmin;
+
+  @Value("${spring.threads.virtual.enabled:false}")
+  private boolean virtualThreads;
+
+  @Value("${usage.ingest.max-poll-records:1000}")
+  private int maxPollRecords;
+
+  @Value("${usage.ingest.batch-attempts:3}")
+  private long batchAttempts;
+
+  @Value("${usage.ingest.retry-max-elapsed-ms:300000}")
+  private long retryMaxElapsedMs;
+
+  @Value("${usage.device-directory.topic-wait:PT2M}")
+  private Duration topicWait;
+
+  // records that failed to deserialize only have their raw bytes left to forward
+  private final DefaultKafkaProducerFactory<String, byte[]> bytesProducerFactory;
+  private final KafkaTemplate<String, byte[]> bytesTemplate;
+
+  public KafkaConsumerConfig(KafkaProperties kafkaProperties, KafkaAdmin kafkaAdmin) {
+    this.kafkaProperties = kafkaProperties;
+    this.kafkaAdmin = kafkaAdmin;
+    final Map<String, Object> producerProps =
+        new HashMap<>(kafkaProperties.buildProducerProperties());
+    producerProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+    this.bytesProducerFactory = new DefaultKafkaProducerFactory<>(producerProps);
+    this.bytesTemplate = new KafkaTemplate<>(bytesProducerFactory);
+  }
+
+  @Bean
+  public NewTopic energyUsageRetryTopic() {
+    return TopicBuilder.name(RETRY_TOPIC).build();
+  }
+
+  @Bean
+  public NewTopic energyUsageDeadLetterTopic() {
+    return TopicBuilder.name(DEAD_LETTER_TOPIC).build();
+  }
+
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, Object> energyUsageListenerFactory(
+      KafkaTemplate<String, Object> kafkaTemplate) {
+    final ConcurrentKafkaListenerContainerFactory<String, Object> factory = newFactory();
+    factory.setConsumerFactory(consumerFactory(maxPollRecords));
+    factory.setBatchListener(true);
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+    // batches are acknowledged by the Influx writer threads, possibly out of order
+    factory.getContainerProperties().setAsyncAcks(true);
+
+    // a few quick in-place attempts, then the batch moves aside so the partition keeps flowing
+    final DefaultErrorHandler errorHandler =
+        new DefaultErrorHandler(
+            recoverer(
+                kafkaTemplate,
+                (record, exception) ->
+                    new TopicPartition(
+                        isDeserializationFailure(record, exception)
+                            ? DEAD_LETTER_TOPIC
+                            : RETRY_TOPIC,
+                        -1)),
+            new FixedBackOff(500L, Math.max(0, batchAttempts - 1)));
+    factory.setCommonErrorHandler(errorHandler);
+    return factory;
+  }
+
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, Object> energyUsageRetryListenerFactory(
+      KafkaTemplate<String, Object> kafkaTemplate) {
+    final ConcurrentKafkaListenerContainerFactory<String, Object> factory = newFactory();
+    factory.setConsumerFactory(consumerFactory(1));
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.RECORD);
+
+    final ExponentialBackOff backOff = new ExponentialBackOff(1000L, 2.0);
+    backOff.setMaxInterval(30_000L);
+    backOff.setMaxElapsedTime(retryMaxElapsedMs);
+    factory.setCommonErrorHandler(
+        new DefaultErrorHandler(
+            recoverer(
+                kafkaTemplate, (record, exception) -> new TopicPartition(DEAD_LETTER_TOPIC, -1)),
+            backOff));
+    return factory;
+  }
+
+  /**
+   * Reads the compacted {@code device-changes} topic from the start on every boot. Consumers have
+   * no group: listeners assign themselves every partition and never commit, so each replica builds
+   * its own full copy of the device table and a restart leaves nothing behind on the broker.
+   */
+  @Bean
+  public ConcurrentKafkaListenerContainerFactory<String, String> deviceChangesListenerFactory() {
+    final Map<String, Object> props = new HashMap<>(kafkaProperties.buildConsumerProperties());
+    props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+    props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    final ConcurrentKafkaListenerContainerFactory<String, String> factory = newFactory();
+    factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+    factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+    return factory;
+  }
+
+  /**
+   * Partition numbers of {@code topic}, for listeners that assign themselves a whole topic. Waits
+   * up to {@code topic-wait} for the service that owns the topic to create it.
+   */
+  public String[] partitions(String topic) {
+    final long deadline = System.nanoTime() + topicWait.toNanos();
+    while (true) {
+      try {
+        return kafkaAdmin.describeTopics(topic).get(topic).partitions().stream()
+            .map(partition -> String.valueOf(partition.partition()))
+            .toArray(String[]::new);
+      } catch (KafkaException e) {
+        if (System.nanoTime() > deadline) {
+          throw new IllegalStateException("Topic " + topic + " was not created in time", e);
+        }
+        log.info("Waiting for topic {} to be created", topic);
+      }
+      try {
+        Thread.sleep(TOPIC_POLL_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for topic " + topic, e);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    bytesProducerFactory.destroy();
+  }
+
+  private ConsumerFactory<String, Object> consumerFactory(int maxPollRecords) {
+    return new DefaultKafkaConsumerFactory<>(consumerProperties(maxPollRecords));
+  }
+
+  /** Consumer settings shared by every reader of {@code energy-usage}, replay included. */
+  public Map<String, Object> consumerProperties(int maxPollRecords) {
+    final Map<String, Object> props = new HashMap<>(kafkaProperties.buildConsumerProperties());
+    // wrap whatever value deserializer is configured so a poison record surfaces as an error
+    // instead of failing the poll
+    final Object valueDeserializer = props.get(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG);
+    if (valueDeserializer != null) {
+      props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, valueDeserializer);
+    }
+    props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+    props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+    props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+    props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+    return props;
+  }
+
+  private DeadLetterPublishingRecoverer recoverer(
+      KafkaTemplate<String, Object> kafkaTemplate,
+      BiFunction<ConsumerRecord<?, ?>, Exception, TopicPartition> destination) {
+    final Map<Class<?>, KafkaOperations<?, ?>> templates = new LinkedHashMap<>();
+    templates.put(byte[].class, bytesTemplate);
+    templates.put(Object.class, kafkaTemplate);
+    final DeadLetterPublishingRecoverer recoverer =
+        new DeadLetterPublishingRecoverer(templates, destination);
+    recoverer.setFailIfSendResultIsError(true);
+    return recoverer;
+  }
+
+  /**
+   * A record the deserializer rejected, recognised by its exception header or by a {@link
+   * DeserializationException} anywhere in the cause chain (the batch listener wraps it in a {@code
+   * BatchListenerFailedException}). Retrying such a record can never help.
+   */
+  private static boolean isDeserializationFailure(
+      ConsumerRecord<?, ?> record, Exception exception) {
+    if (record.headers().lastHeader(SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER)
+        != null) {
+      return true;
+    }
+    Throwable cause = exception;
+    while (cause != null) {
+      if (cause instanceof DeserializationException) {
+        return true;
+      }
+      cause = cause.getCause();
+    }
+    return false;
+  }
+
+  /**
+   * Container factory whose consumers run on virtual threads in virtual-thread mode, as Boot's own
+   * factory does.
+   */
+  private <K, V> ConcurrentKafkaListenerContainerFactory<K, V> newFactory() {
+    final ConcurrentKafkaListenerContainerFactory<K, V> factory =
+        new ConcurrentKafkaListenerContainerFactory<>();
+    if (virtualThreads) {
+      factory
+          .getContainerProperties()
+          .setListenerTaskExecutor(new VirtualThreadTaskExecutor("kafka-"));
+    }
+    return factory;
+  }
+}
@@ -0,0 +1,46 @@
+package com.chieaid24.usage_service.controller;
+
+import com.chieaid24.usage_service.backtest.BacktestService;
+import com.chieaid24.usage_service.dto.BacktestRequest;
+import com.chieaid24.usage_service.dto.BacktestResultDto;
+import com.chieaid24.usage_service.dto.FleetBacktestDto;
+import com.chieaid24.usage_service.dto.FleetBacktestRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/usage")
+public class BacktestController {
+
+  private final BacktestService backtestService;
+
+  public BacktestController(BacktestService backtestService) {
+    this.backtestService = backtestService;
+  }
+
+  // ex) POST /api/v1/usage/1/backtest {"threshold": 1500}
+  // or  POST /api/v1/usage/1/backtest {"rule": {"type": "DAILY_BUDGET", "threshold": 12000}}
+  @PostMapping("/{userId}/backtest")
+  public ResponseEntity<BacktestResultDto> backtestUser(
+      @PathVariable Long userId, @RequestBody BacktestRequest request) {
+    try {
+      return ResponseEntity.ok(backtestService.backtestUser(userId, request));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
+  // ex) POST /api/v1/usage/backtest/fleet {"candidates": [500, 1000, 1500, 2000]}
+  @PostMapping("/backtest/fleet")
+  public ResponseEntity<FleetBacktestDto> backtestFleet(@RequestBody FleetBacktestRequest request) {
+    try {
+      return ResponseEntity.ok(backtestService.backtestFleet(request));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.chieaid24.usage_service.controller;
+
+import com.chieaid24.usage_service.billing.BillingService;
+import com.chieaid24.usage_service.dto.BillDto;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
+
+@RestController
+@RequestMapping("/api/v1/usage")
+public class BillingController {
+
+  private final BillingService billingService;
+  private final JsonMapper jsonMapper;
+
+  public BillingController(BillingService billingService, JsonMapper jsonMapper) {
+    this.billingService = billingService;
+    this.jsonMapper = jsonMapper;
+  }
+
+  // ex) GET /api/v1/usage/1/bill?from=2026-01-01T00:00:00Z&to=2026-02-01T00:00:00Z&tariff=tou
+  // defaults to the current calendar month (UTC) up to now, under the default tariff
+  @GetMapping("/{userId}/bill")
+  public ResponseEntity<BillDto> getBill(
+      @PathVariable Long userId,
+      @RequestParam(required = false) Instant from,
+      @RequestParam(required = false) Instant to,
+      @RequestParam(required = false) String tariff) {
+    try {
+      return ResponseEntity.ok(
+          billingService.getBill(userId, fromOrMonthStart(from), toOrNow(to), tariff));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
+  // ex) POST /api/v1/usage/billing?from=2026-01-01T00:00:00Z&to=2026-02-01T00:00:00Z
+  // one JSON BillDto per line for every user with usage in the period
+  @PostMapping("/billing")
+  public ResponseEntity<StreamingResponseBody> runBilling(
+      @RequestParam(required = false) Instant from,
+      @RequestParam(required = false) Instant to,
+      @RequestParam(required = false) String tariff) {
+    final BillingService.BillingRun run;
+    try {
+      run = billingService.runAll(fromOrMonthStart(from), toOrNow(to), tariff);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+    final StreamingResponseBody body =
+        outputStream -> {
+          final OutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+          run.forEach(bill -> writeLine(out, bill));
+          out.flush();
+        };
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+        .body(body);
+  }
+
+  private static Instant fromOrMonthStart(Instant from) {
+    return from != null
+        ? from
+        : LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+  }
+
+  private static Instant toOrNow(Instant to) {
+    return to != null ? to : Instant.now();
+  }
+
+  private void writeLine(OutputStream out, BillDto bill) {
+    try {
+      out.write(jsonMapper.writeValueAsBytes(bill));
+      out.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
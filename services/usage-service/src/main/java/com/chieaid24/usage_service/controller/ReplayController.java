@@ -0,0 +1,44 @@
+package com.chieaid24.usage_service.controller;
+
+import com.chieaid24.usage_service.dto.ReplayRequest;
+import com.chieaid24.usage_service.dto.ReplayStatusDto;
+import com.chieaid24.usage_service.replay.ReplayService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/usage/replay")
+public class ReplayController {
+
+  private final ReplayService replayService;
+
+  public ReplayController(ReplayService replayService) {
+    this.replayService = replayService;
+  }
+
+  // ex) POST /api/v1/usage/replay {"fromTimestamp": "2026-01-01T00:00:00Z", "readers": 8}
+  @PostMapping
+  public ResponseEntity<ReplayStatusDto> startReplay(@RequestBody ReplayRequest request) {
+    try {
+      return ResponseEntity.status(HttpStatus.ACCEPTED).body(replayService.start(request));
+    } catch (IllegalStateException e) {
+      return ResponseEntity.status(HttpStatus.CONFLICT).body(replayService.status());
+    }
+  }
+
+  @GetMapping
+  public ResponseEntity<ReplayStatusDto> getReplayStatus() {
+    return ResponseEntity.ok(replayService.status());
+  }
+
+  @DeleteMapping
+  public ResponseEntity<ReplayStatusDto> cancelReplay() {
+    return ResponseEntity.ok(replayService.cancel());
+  }
+}
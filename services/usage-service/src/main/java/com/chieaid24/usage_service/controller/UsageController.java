@@ -1,13 +1,31 @@
 package com.chieaid24.usage_service.controller;
 
+import com.chieaid24.usage_service.dto.BatchUsageRequest;
+import com.chieaid24.usage_service.dto.DimensionUsageDto;
+import com.chieaid24.usage_service.dto.HouseholdComparisonDto;
 import com.chieaid24.usage_service.dto.UsageDto;
+import com.chieaid24.usage_service.model.UsageDimension;
+import com.chieaid24.usage_service.model.UsagePeriod;
+import com.chieaid24.usage_service.service.BatchUsageService;
+import com.chieaid24.usage_service.service.DimensionUsageService;
+import com.chieaid24.usage_service.service.HouseholdComparisonService;
 import com.chieaid24.usage_service.service.UsageService;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
 
 @RestController
 @RequestMapping("/api/v1/usage")
@@ -15,9 +33,22 @@ public class UsageController {
   // init vars and such
 
   private final UsageService usageService;
+  private final HouseholdComparisonService householdComparisonService;
+  private final BatchUsageService batchUsageService;
+  private final DimensionUsageService dimensionUsageService;
+  private final JsonMapper jsonMapper;
 
-  public UsageController(UsageService usageService) {
+  public UsageController(
+      UsageService usageService,
+      HouseholdComparisonService householdComparisonService,
+      BatchUsageService batchUsageService,
+      DimensionUsageService dimensionUsageService,
+      JsonMapper jsonMapper) {
     this.usageService = usageService;
+    this.householdComparisonService = householdComparisonService;
+    this.batchUsageService = batchUsageService;
+    this.dimensionUsageService = dimensionUsageService;
+    this.jsonMapper = jsonMapper;
   }
 
   @GetMapping("/{userId}")
@@ -26,4 +57,74 @@ public class UsageController {
     final UsageDto usage = usageService.getXDaysUsageForUser(userId, days);
     return ResponseEntity.ok(usage);
   }
+
+  // ex) GET /api/v1/usage/1/comparison?period=DAILY
+  @GetMapping("/{userId}/comparison")
+  public ResponseEntity<HouseholdComparisonDto> getHouseholdComparison(
+      @PathVariable Long userId, @RequestParam(defaultValue = "WEEKLY") UsagePeriod period) {
+    return ResponseEntity.ok(householdComparisonService.compare(userId, period));
+  }
+
+  // ex) GET /api/v1/usage/1/locations?days=7
+  @GetMapping("/{userId}/locations")
+  public ResponseEntity<DimensionUsageDto> getUsageByLocation(
+      @PathVariable Long userId, @RequestParam(defaultValue = "3") int days) {
+    return dimensionUsage(
+        () -> dimensionUsageService.getUserUsage(userId, UsageDimension.LOCATION, days));
+  }
+
+  // ex) GET /api/v1/usage/1/types?days=7
+  @GetMapping("/{userId}/types")
+  public ResponseEntity<DimensionUsageDto> getUsageByType(
+      @PathVariable Long userId, @RequestParam(defaultValue = "3") int days) {
+    return dimensionUsage(
+        () -> dimensionUsageService.getUserUsage(userId, UsageDimension.TYPE, days));
+  }
+
+  // ex) GET /api/v1/usage/fleet/types?days=1
+  @GetMapping("/fleet/types")
+  public ResponseEntity<DimensionUsageDto> getFleetUsageByType(
+      @RequestParam(defaultValue = "3") int days) {
+    return dimensionUsage(() -> dimensionUsageService.getFleetUsageByType(days));
+  }
+
+  private static ResponseEntity<DimensionUsageDto> dimensionUsage(
+      Supplier<DimensionUsageDto> query) {
+    try {
+      return ResponseEntity.ok(query.get());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
+  // ex) POST /api/v1/usage/batch {"userIds": [1, 2, 3], "from": "2026-01-01T00:00:00Z"}
+  // one JSON UsageDto per line, in the order of userIds
+  @PostMapping("/batch")
+  public ResponseEntity<StreamingResponseBody> getBatchUsage(
+      @RequestBody BatchUsageRequest request) {
+    final BatchUsageService.BatchUsage usage;
+    try {
+      usage = batchUsageService.load(request);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+    final StreamingResponseBody body =
+        outputStream -> {
+          final OutputStream out = new BufferedOutputStream(outputStream, 64 * 1024);
+          usage.forEach(dto -> writeLine(out, dto));
+          out.flush();
+        };
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+        .body(body);
+  }
+
+  private void writeLine(OutputStream out, UsageDto dto) {
+    try {
+      out.write(jsonMapper.writeValueAsBytes(dto));
+      out.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
 }
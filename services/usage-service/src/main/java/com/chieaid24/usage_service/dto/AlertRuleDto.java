@@ -0,0 +1,13 @@
+package com.chieaid24.usage_service.dto;
+
+import com.chieaid24.usage_service.rules.RuleType;
+
+public record AlertRuleDto(
+    Long id,
+    Long userId,
+    RuleType type,
+    Long deviceId,
+    double threshold,
+    Integer startHour,
+    Integer endHour,
+    boolean enabled) {}
@@ -0,0 +1,11 @@
+package com.chieaid24.usage_service.dto;
+
+import java.time.Instant;
+
+/**
+ * A candidate to replay against a user's history: either a plain {@code threshold}, checked like
+ * {@code energyAlertingThreshold} against every hour, or a full {@code rule}. The range defaults to
+ * the last 30 days.
+ */
+public record BacktestRequest(
+    Double threshold, AlertRuleDto rule, Instant from, Instant to, Integer maxTimeline) {}
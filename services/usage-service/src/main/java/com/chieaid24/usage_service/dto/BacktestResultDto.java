@@ -0,0 +1,21 @@
+package com.chieaid24.usage_service.dto;
+
+import com.chieaid24.usage_service.rules.RuleType;
+import java.time.Instant;
+import java.util.List;
+import lombok.Builder;
+
+/** Alerts a candidate would have raised; {@code timeline} is capped, {@code alerts} is not. */
+@Builder
+public record BacktestResultDto(
+    Long userId,
+    RuleType type,
+    double threshold,
+    Instant from,
+    Instant to,
+    int hoursEvaluated,
+    int alerts,
+    List<BacktestAlert> timeline) {
+
+  public record BacktestAlert(Instant hour, double observed, double limit) {}
+}
@@ -0,0 +1,10 @@
+package com.chieaid24.usage_service.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Users and range of a batch usage report. {@code to} defaults to now and {@code from} to three
+ * days before {@code to}, matching the single-user endpoint.
+ */
+public record BatchUsageRequest(List<Long> userIds, Instant from, Instant to) {}
@@ -0,0 +1,8 @@
+package com.chieaid24.usage_service.dto;
+
+import java.time.Instant;
+import lombok.Builder;
+
+@Builder
+public record BillDto(
+    Long userId, String tariff, Instant from, Instant to, double energyConsumed, double cost) {}
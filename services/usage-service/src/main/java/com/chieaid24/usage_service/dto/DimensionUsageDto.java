@@ -0,0 +1,15 @@
+package com.chieaid24.usage_service.dto;
+
+import com.chieaid24.usage_service.model.UsageDimension;
+import java.time.Instant;
+import java.util.Map;
+import lombok.Builder;
+
+/** Usage summed per location or type; {@code userId} is null for fleet-wide totals. */
+@Builder
+public record DimensionUsageDto(
+    Long userId,
+    UsageDimension dimension,
+    Instant from,
+    Instant to,
+    Map<String, Double> energyConsumed) {}
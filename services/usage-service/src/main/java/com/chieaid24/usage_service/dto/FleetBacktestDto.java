@@ -0,0 +1,18 @@
+package com.chieaid24.usage_service.dto;
+
+import java.time.Instant;
+import java.util.List;
+import lombok.Builder;
+
+@Builder
+public record FleetBacktestDto(
+    Instant from,
+    Instant to,
+    long users,
+    int hours,
+    List<CandidateResult> candidates,
+    Double recommendedThreshold) {
+
+  public record CandidateResult(
+      double threshold, long alerts, long usersAlerted, double userShare) {}
+}
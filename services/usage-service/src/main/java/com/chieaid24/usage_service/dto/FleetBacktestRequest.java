@@ -0,0 +1,11 @@
+package com.chieaid24.usage_service.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Thresholds to sweep across every user. The recommendation is the lowest candidate that alerts at
+ * most {@code targetUserShare} of users (default 5%) over the range, which defaults to 30 days.
+ */
+public record FleetBacktestRequest(
+    List<Double> candidates, Instant from, Instant to, Double targetUserShare) {}
@@ -0,0 +1,15 @@
+package com.chieaid24.usage_service.dto;
+
+import com.chieaid24.usage_service.model.UsagePeriod;
+import lombok.Builder;
+
+@Builder
+public record HouseholdComparisonDto(
+    Long userId,
+    UsagePeriod period,
+    Double energyConsumed,
+    Double percentile,
+    double p10,
+    double p50,
+    double p90,
+    long households) {}
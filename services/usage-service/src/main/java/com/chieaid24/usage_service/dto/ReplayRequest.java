@@ -0,0 +1,10 @@
+package com.chieaid24.usage_service.dto;
+
+import java.time.Instant;
+
+/**
+ * Where a replay starts: {@code fromTimestamp} is resolved per partition to the first offset at or
+ * after it, {@code fromOffset} applies to every partition, and with neither the replay starts at
+ * the beginning of the retained log.
+ */
+public record ReplayRequest(Instant fromTimestamp, Long fromOffset, Integer readers) {}
@@ -0,0 +1,20 @@
+package com.chieaid24.usage_service.dto;
+
+import java.time.Instant;
+import lombok.Builder;
+
+@Builder
+public record ReplayStatusDto(
+    String state,
+    Instant startedAt,
+    Instant finishedAt,
+    int partitions,
+    int readers,
+    long recordsTotal,
+    long recordsRead,
+    long recordsWritten,
+    long recordsSkipped,
+    double recordsPerSecond,
+    double percentComplete,
+    int rollupHours,
+    String error) {}
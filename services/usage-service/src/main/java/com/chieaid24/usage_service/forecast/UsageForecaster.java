@@ -0,0 +1,202 @@
+package com.chieaid24.usage_service.forecast;
+
+import com.chieaid24.usage_service.util.LongIndexMap;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holt (double exponential) smoothing of each user's rolling last-hour total, fed once per
+ * aggregation tick. The smoothed level and trend give the value that same rolling total is heading
+ * for {@code horizon} from now, which is what the threshold check will see then. State is a level,
+ * a trend per second, the time of the last observation and a sample count per user, kept in
+ * primitive arrays.
+ *
+ * <p>The state is checkpointed to Redis every {@code checkpoint-interval}. A replica that takes the
+ * aggregation over from another picks the checkpoint up on its first run, so forecasts survive the
+ * job moving between pods.
+ *
+ * <p>Only the aggregation tick calls into this class, so it is not synchronized.
+ */
+@Slf4j
+@Component
+public class UsageForecaster {
+
+  private static final String STATE_KEY = "usage:forecast:state";
+  private static final String CHECKPOINTED_RUN_KEY = "usage:forecast:checkpointed-run";
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final LongIndexMap index;
+  private final double alpha;
+  private final double beta;
+  private final int warmupSamples;
+  private final long staleAfterMs;
+  private final long horizonMs;
+  private final long checkpointIntervalMs;
+
+  private long lastRunMs = Long.MIN_VALUE;
+  private long lastCheckpointMs = Long.MIN_VALUE;
+  private long[] userIds = new long[1024];
+  private double[] level = new double[1024];
+  private double[] trend = new double[1024];
+  private long[] lastObserved = new long[1024];
+  private int[] samples = new int[1024];
+
+  public UsageForecaster(
+      StringRedisTemplate stringRedisTemplate,
+      @Value("${usage.forecast.alpha:0.5}") double alpha,
+      @Value("${usage.forecast.beta:0.2}") double beta,
+      @Value("${usage.forecast.warmup-samples:6}") int warmupSamples,
+      @Value("${usage.forecast.stale-after-ms:300000}") long staleAfterMs,
+      @Value("${usage.forecast.max-users:1000000}") int maxUsers,
+      @Value("${usage.forecast.horizon:PT15M}") Duration horizon,
+      @Value("${usage.forecast.checkpoint-interval:PT1M}") Duration checkpointInterval) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.alpha = alpha;
+    this.beta = beta;
+    this.warmupSamples = warmupSamples;
+    this.staleAfterMs = staleAfterMs;
+    this.index = new LongIndexMap(1024, maxUsers);
+    this.horizonMs = horizon.toMillis();
+    this.checkpointIntervalMs = checkpointInterval.toMillis();
+  }
+
+  public Duration horizon() {
+    return Duration.ofMillis(horizonMs);
+  }
+
+  /**
+   * Starts a run at {@code runMs}. When another replica checkpointed a run newer than this
+   * replica's last one, the aggregation moved here in between and the checkpoint replaces the local
+   * state.
+   */
+  public void beginRun(long runMs) {
+    try {
+      final String checkpointed = stringRedisTemplate.opsForValue().get(CHECKPOINTED_RUN_KEY);
+      if (checkpointed != null && Long.parseLong(checkpointed) > lastRunMs) {
+        restore(runMs);
+      }
+    } catch (Exception e) {
+      log.warn("Could not restore forecast state, continuing with the local state", e);
+    }
+    lastRunMs = runMs;
+  }
+
+  /** Checkpoints the state if {@code checkpoint-interval} has passed since the last checkpoint. */
+  public void endRun(long runMs) {
+    if (runMs - lastCheckpointMs < checkpointIntervalMs) {
+      return;
+    }
+    try {
+      checkpoint(runMs);
+      lastCheckpointMs = runMs;
+    } catch (Exception e) {
+      log.warn("Could not checkpoint forecast state", e);
+    }
+  }
+
+  /**
+   * Folds in the user's current rolling last-hour total and returns that total projected {@code
+   * horizon} ahead, or NaN while the user is still warming up.
+   */
+  public double observe(long userId, double lastHourTotal, long nowMs) {
+    final int slot = index.getOrAdd(userId);
+    if (slot < 0) {
+      return Double.NaN;
+    }
+    ensureCapacity(slot + 1);
+    userIds[slot] = userId;
+
+    final long elapsedMs = nowMs - lastObserved[slot];
+    if (samples[slot] == 0 || elapsedMs > staleAfterMs) {
+      level[slot] = lastHourTotal;
+      trend[slot] = 0.0;
+      lastObserved[slot] = nowMs;
+      samples[slot] = 1;
+      return Double.NaN;
+    }
+    if (elapsedMs <= 0) {
+      return samples[slot] < warmupSamples ? Double.NaN : project(slot);
+    }
+
+    final double elapsedSeconds = elapsedMs / 1000.0;
+    final double previousLevel = level[slot];
+    final double newLevel =
+        alpha * lastHourTotal + (1 - alpha) * (previousLevel + trend[slot] * elapsedSeconds);
+    trend[slot] = beta * (newLevel - previousLevel) / elapsedSeconds + (1 - beta) * trend[slot];
+    level[slot] = newLevel;
+    lastObserved[slot] = nowMs;
+    if (samples[slot] < warmupSamples) {
+      samples[slot]++;
+      return Double.NaN;
+    }
+    return project(slot);
+  }
+
+  private double project(int slot) {
+    return Math.max(0.0, level[slot] + trend[slot] * (horizonMs / 1000.0));
+  }
+
+  private void checkpoint(long runMs) {
+    final Map<String, String> values = new HashMap<>();
+    for (int slot = 0; slot < index.size(); slot++) {
+      if (samples[slot] > 0 && runMs - lastObserved[slot] <= staleAfterMs) {
+        values.put(
+            String.valueOf(userIds[slot]),
+            level[slot] + ":" + trend[slot] + ":" + lastObserved[slot] + ":" + samples[slot]);
+      }
+    }
+    // written aside and renamed so a replica taking over never reads a half-written state
+    final String stagingKey = STATE_KEY + ":staging";
+    stringRedisTemplate.delete(stagingKey);
+    if (values.isEmpty()) {
+      stringRedisTemplate.delete(STATE_KEY);
+    } else {
+      stringRedisTemplate.<String, String>opsForHash().putAll(stagingKey, values);
+      stringRedisTemplate.rename(stagingKey, STATE_KEY);
+    }
+    stringRedisTemplate.opsForValue().set(CHECKPOINTED_RUN_KEY, String.valueOf(runMs));
+  }
+
+  private void restore(long runMs) {
+    int restored = 0;
+    for (Map.Entry<String, String> entry :
+        stringRedisTemplate.<String, String>opsForHash().entries(STATE_KEY).entrySet()) {
+      final String[] parts = entry.getValue().split(":");
+      final long observedAt = Long.parseLong(parts[2]);
+      if (runMs - observedAt > staleAfterMs) {
+        continue;
+      }
+      final long userId = Long.parseLong(entry.getKey());
+      final int slot = index.getOrAdd(userId);
+      if (slot < 0) {
+        continue;
+      }
+      ensureCapacity(slot + 1);
+      userIds[slot] = userId;
+      level[slot] = Double.parseDouble(parts[0]);
+      trend[slot] = Double.parseDouble(parts[1]);
+      lastObserved[slot] = observedAt;
+      samples[slot] = Integer.parseInt(parts[3]);
+      restored++;
+    }
+    log.info("Restored forecast state for {} users from the last checkpoint", restored);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= level.length) {
+      return;
+    }
+    final int newLength = Math.max(capacity, level.length * 2);
+    userIds = Arrays.copyOf(userIds, newLength);
+    level = Arrays.copyOf(level, newLength);
+    trend = Arrays.copyOf(trend, newLength);
+    lastObserved = Arrays.copyOf(lastObserved, newLength);
+    samples = Arrays.copyOf(samples, newLength);
+  }
+}
@@ -0,0 +1,79 @@
+package com.chieaid24.usage_service.grpc;
+
+import com.chieaid24.grpc.usage.DeviceUsage;
+import com.chieaid24.grpc.usage.UsageLookupGrpc;
+import com.chieaid24.grpc.usage.UserUsage;
+import com.chieaid24.grpc.usage.UserUsageRequest;
+import com.chieaid24.grpc.usage.UsersUsageRequest;
+import com.chieaid24.usage_service.dto.BatchUsageRequest;
+import com.chieaid24.usage_service.dto.DeviceDto;
+import com.chieaid24.usage_service.dto.UsageDto;
+import com.chieaid24.usage_service.service.BatchUsageService;
+import com.chieaid24.usage_service.service.UsageService;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.time.Instant;
+import java.util.Objects;
+import org.springframework.stereotype.Service;
+
+/** gRPC twin of the per-user and batch usage endpoints in {@code UsageController}. */
+@Service
+public class UsageLookupService extends UsageLookupGrpc.UsageLookupImplBase {
+
+  private static final int DEFAULT_DAYS = 3;
+
+  private final UsageService usageService;
+  private final BatchUsageService batchUsageService;
+
+  public UsageLookupService(UsageService usageService, BatchUsageService batchUsageService) {
+    this.usageService = usageService;
+    this.batchUsageService = batchUsageService;
+  }
+
+  @Override
+  public void getUserUsage(UserUsageRequest request, StreamObserver<UserUsage> responseObserver) {
+    final int days = request.getDays() > 0 ? request.getDays() : DEFAULT_DAYS;
+    responseObserver.onNext(
+        toMessage(usageService.getXDaysUsageForUser(request.getUserId(), days)));
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void getUsersUsage(UsersUsageRequest request, StreamObserver<UserUsage> responseObserver) {
+    final BatchUsageService.BatchUsage usage;
+    try {
+      usage =
+          batchUsageService.load(
+              new BatchUsageRequest(
+                  request.getUserIdsList(), instant(request.getFrom()), instant(request.getTo())));
+    } catch (IllegalArgumentException e) {
+      responseObserver.onError(
+          Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asException());
+      return;
+    }
+    usage.forEach(user -> responseObserver.onNext(toMessage(user)));
+    responseObserver.onCompleted();
+  }
+
+  private static Instant instant(long epochMillis) {
+    return epochMillis > 0 ? Instant.ofEpochMilli(epochMillis) : null;
+  }
+
+  private static UserUsage toMessage(UsageDto usage) {
+    final UserUsage.Builder message = UserUsage.newBuilder().setUserId(usage.userId());
+    if (usage.devices() != null) {
+      for (DeviceDto device : usage.devices()) {
+        message.addDevices(
+            DeviceUsage.newBuilder()
+                .setId(device.id())
+                .setName(Objects.requireNonNullElse(device.name(), ""))
+                .setType(Objects.requireNonNullElse(device.type(), ""))
+                .setLocation(Objects.requireNonNullElse(device.location(), ""))
+                .setUserId(device.userId() == null ? 0L : device.userId())
+                .setEnergyConsumed(
+                    device.energyConsumed() == null ? 0.0 : device.energyConsumed()));
+      }
+    }
+    return message.build();
+  }
+}
@@ -0,0 +1,283 @@
+package com.chieaid24.usage_service.ingest;
+
+import com.chieaid24.kafka.event.EnergyUsageEvent;
+import com.chieaid24.usage_service.config.KafkaConsumerConfig;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.write.Point;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+
+/**
+ * Decouples the {@code energy-usage} listener from Influx. The listener hands over each polled
+ * batch and returns; writer threads merge queued batches into larger writes and acknowledge every
+ * batch once its points are stored. Acks can complete out of order, which the container's async
+ * acks turn into in-order commits.
+ *
+ * <p>The number of queued points is capped by a semaphore, so the heap stays bounded even if flow
+ * control reacts late; the listener then blocks in {@link #submit} until writers catch up. A batch
+ * Influx keeps rejecting is forwarded to the retry topic and acknowledged, so it never holds back
+ * the partition. Either way the batch's callback runs before the ack, so consumers of the readings
+ * see them once whether or not Influx was up. Every batch ends up acknowledged: a failing callback
+ * is only logged, and a batch that cannot be forwarded is retried until it is.
+ *
+ * <p>Live ingest and replay each get their own pipeline (see {@link
+ * com.chieaid24.usage_service.config.IngestPipelineConfig}), so a replay never fills the queue the
+ * flow controller watches. Meters carry the pipeline's name as a tag.
+ */
+@Slf4j
+public class InfluxWritePipeline {
+
+  private final InfluxDBClient influxDBClient;
+  private final KafkaTemplate<String, Object> kafkaTemplate;
+  private final String bucket;
+  private final String influxOrg;
+  private final BlockingQueue<PendingBatch> queue = new LinkedBlockingQueue<>();
+  private final Semaphore capacity;
+  private final int maxQueuedPoints;
+  private final int maxPointsPerWrite;
+  private final int writeAttempts;
+  private final ExecutorService writers;
+  private final Timer flushTimer;
+  private final Counter divertedCounter;
+
+  private volatile boolean running = true;
+  // smoothed flush latency in milliseconds, read by the flow controller
+  private volatile double flushLatencyMs;
+
+  public InfluxWritePipeline(
+      String name,
+      InfluxDBClient influxDBClient,
+      KafkaTemplate<String, Object> kafkaTemplate,
+      MeterRegistry meterRegistry,
+      String bucket,
+      String influxOrg,
+      int maxQueuedPoints,
+      int maxPointsPerWrite,
+      int writeAttempts,
+      int writerThreads) {
+    this.influxDBClient = influxDBClient;
+    this.kafkaTemplate = kafkaTemplate;
+    this.bucket = bucket;
+    this.influxOrg = influxOrg;
+    this.maxQueuedPoints = maxQueuedPoints;
+    this.capacity = new Semaphore(maxQueuedPoints);
+    this.maxPointsPerWrite = maxPointsPerWrite;
+    this.writeAttempts = Math.max(1, writeAttempts);
+    this.flushTimer =
+        Timer.builder("usage.ingest.flush")
+            .tag("pipeline", name)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    this.divertedCounter = meterRegistry.counter("usage.ingest.batches.diverted", "pipeline", name);
+    Gauge.builder("usage.ingest.queued.points", this, InfluxWritePipeline::queuedPoints)
+        .tag("pipeline", name)
+        .register(meterRegistry);
+    Gauge.builder("usage.ingest.queue.capacity", this, p -> p.maxQueuedPoints)
+        .tag("pipeline", name)
+        .register(meterRegistry);
+
+    this.writers =
+        Executors.newFixedThreadPool(
+            writerThreads, Thread.ofPlatform().name(name + "-writer-", 0).factory());
+    for (int i = 0; i < writerThreads; i++) {
+      writers.execute(this::drain);
+    }
+  }
+
+  /**
+   * Queues a polled batch. {@code onHandled} runs on a writer thread once the batch is stored or
+   * moved to the retry topic, right before it is acknowledged.
+   */
+  public void submit(
+      List<Point> points,
+      List<ConsumerRecord<String, EnergyUsageEvent>> records,
+      Acknowledgment acknowledgment,
+      BatchCallback onHandled)
+      throws InterruptedException {
+    final int permits = Math.min(points.size(), maxQueuedPoints);
+    capacity.acquire(permits);
+    queue.add(new PendingBatch(points, records, acknowledgment, onHandled, permits));
+  }
+
+  public int queuedPoints() {
+    return maxQueuedPoints - capacity.availablePermits();
+  }
+
+  public int maxQueuedPoints() {
+    return maxQueuedPoints;
+  }
+
+  public double flushLatencyMs() {
+    return flushLatencyMs;
+  }
+
+  private void drain() {
+    final List<PendingBatch> batches = new ArrayList<>();
+    final List<Point> points = new ArrayList<>();
+    while (running || !queue.isEmpty()) {
+      try {
+        final PendingBatch first = queue.poll(500, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batches.add(first);
+        points.addAll(first.points());
+        PendingBatch next;
+        while (points.size() < maxPointsPerWrite && (next = queue.poll()) != null) {
+          batches.add(next);
+          points.addAll(next.points());
+        }
+        flush(batches, points);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e) {
+        log.error("Unexpected error in Influx writer", e);
+      } finally {
+        batches.clear();
+        points.clear();
+      }
+    }
+  }
+
+  private void flush(List<PendingBatch> batches, List<Point> points) throws InterruptedException {
+    final boolean written = writeWithRetries(points);
+    for (PendingBatch batch : batches) {
+      try {
+        if (!written && !divertUntilSent(batch)) {
+          // shutting down: the container stops too, so the batch is redelivered on restart
+          continue;
+        }
+        handled(batch, written);
+        batch.acknowledgment().acknowledge();
+      } finally {
+        capacity.release(batch.permits());
+      }
+    }
+  }
+
+  // the readings are stored or forwarded at this point, so a failing callback must not hold back
+  // the ack
+  private void handled(PendingBatch batch, boolean written) {
+    try {
+      batch.onHandled().handled(batch.records(), written);
+    } catch (Exception e) {
+      log.error("Post-write handling failed for {} readings", batch.records().size(), e);
+    }
+  }
+
+  /**
+   * Keeps trying to move a batch to the retry topic. An unacknowledged batch would stop every later
+   * offset on its partition from being committed, so it is never given up on while running.
+   */
+  private boolean divertUntilSent(PendingBatch batch) throws InterruptedException {
+    long backoffMs = 500L;
+    while (true) {
+      try {
+        divert(batch);
+        return true;
+      } catch (Exception e) {
+        log.error(
+            "Could not move {} readings to {}, retrying in {} ms",
+            batch.records().size(),
+            KafkaConsumerConfig.RETRY_TOPIC,
+            backoffMs,
+            e);
+      }
+      if (!running) {
+        return false;
+      }
+      Thread.sleep(backoffMs);
+      backoffMs = Math.min(backoffMs * 2, 30_000L);
+    }
+  }
+
+  private boolean writeWithRetries(List<Point> points) throws InterruptedException {
+    for (int attempt = 1; attempt <= writeAttempts; attempt++) {
+      final long start = System.nanoTime();
+      try {
+        influxDBClient.getWriteApiBlocking().writePoints(bucket, influxOrg, points);
+        recordLatency(System.nanoTime() - start);
+        return true;
+      } catch (Exception e) {
+        recordLatency(System.nanoTime() - start);
+        log.warn("Influx write of {} points failed (attempt {})", points.size(), attempt, e);
+        if (attempt < writeAttempts) {
+          Thread.sleep(500L << (attempt - 1));
+        }
+      }
+    }
+    return false;
+  }
+
+  private void recordLatency(long nanos) {
+    flushTimer.record(nanos, TimeUnit.NANOSECONDS);
+    final double millis = nanos / 1_000_000.0;
+    final double previous = flushLatencyMs;
+    flushLatencyMs = previous == 0 ? millis : previous * 0.8 + millis * 0.2;
+  }
+
+  /** Moves a batch to the retry topic, keeping the offsets its point timestamps depend on. */
+  private void divert(PendingBatch batch) {
+    divertedCounter.increment();
+    final List<CompletableFuture<?>> sends = new ArrayList<>(batch.records().size());
+    for (ConsumerRecord<String, EnergyUsageEvent> record : batch.records()) {
+      final ProducerRecord<String, Object> retry =
+          new ProducerRecord<>(KafkaConsumerConfig.RETRY_TOPIC, record.key(), record.value());
+      retry
+          .headers()
+          .add(KafkaHeaders.DLT_ORIGINAL_TOPIC, record.topic().getBytes())
+          .add(
+              KafkaHeaders.DLT_ORIGINAL_PARTITION,
+              ByteBuffer.allocate(Integer.BYTES).putInt(record.partition()).array())
+          .add(
+              KafkaHeaders.DLT_ORIGINAL_OFFSET,
+              ByteBuffer.allocate(Long.BYTES).putLong(record.offset()).array());
+      sends.add(kafkaTemplate.send(retry));
+    }
+    CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+    log.warn("Moved {} readings to {}", batch.records().size(), KafkaConsumerConfig.RETRY_TOPIC);
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    running = false;
+    writers.shutdown();
+    if (!writers.awaitTermination(30, TimeUnit.SECONDS)) {
+      log.warn("{} readings were still queued for Influx at shutdown", queuedPoints());
+      writers.shutdownNow();
+    }
+  }
+
+  private record PendingBatch(
+      List<Point> points,
+      List<ConsumerRecord<String, EnergyUsageEvent>> records,
+      Acknowledgment acknowledgment,
+      BatchCallback onHandled,
+      int permits) {}
+
+  /** Told about each batch once it is settled; {@code written} is false if it was diverted. */
+  @FunctionalInterface
+  public interface BatchCallback {
+    void handled(List<ConsumerRecord<String, EnergyUsageEvent>> records, boolean written);
+  }
+}
@@ -0,0 +1,99 @@
+package com.chieaid24.usage_service.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Collection;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pauses the {@code energy-usage} partitions while the {@link InfluxWritePipeline} is backed up, so
+ * a slow Influx shows up as consumer lag instead of heap. Consumption pauses once the queue passes
+ * {@code pause-ratio} of its capacity or the smoothed flush latency passes {@code
+ * max-flush-latency-ms}, and resumes once the queue is back under {@code resume-ratio} and the
+ * latency under half the limit. Latency is only measured on writes, so a fully drained queue
+ * resumes regardless and lets fresh writes measure it again.
+ */
+@Slf4j
+@Component
+public class IngestFlowController {
+
+  public static final String LISTENER_ID = "energy-usage-listener";
+
+  private final KafkaListenerEndpointRegistry registry;
+  private final InfluxWritePipeline pipeline;
+  private final double pauseRatio;
+  private final double resumeRatio;
+  private final double maxFlushLatencyMs;
+  private final Counter pauseCounter;
+
+  private volatile boolean paused;
+
+  public IngestFlowController(
+      KafkaListenerEndpointRegistry registry,
+      InfluxWritePipeline pipeline,
+      MeterRegistry meterRegistry,
+      @Value("${usage.ingest.pause-ratio:0.8}") double pauseRatio,
+      @Value("${usage.ingest.resume-ratio:0.3}") double resumeRatio,
+      @Value("${usage.ingest.max-flush-latency-ms:2000}") double maxFlushLatencyMs) {
+    this.registry = registry;
+    this.pipeline = pipeline;
+    this.pauseRatio = pauseRatio;
+    this.resumeRatio = resumeRatio;
+    this.maxFlushLatencyMs = maxFlushLatencyMs;
+    this.pauseCounter = meterRegistry.counter("usage.ingest.pauses");
+    meterRegistry.gauge("usage.ingest.paused", this, c -> c.paused ? 1 : 0);
+    meterRegistry.gauge("usage.ingest.flush.latency.smoothed", pipeline, p -> p.flushLatencyMs());
+  }
+
+  @Scheduled(fixedDelayString = "${usage.ingest.flow-check-ms:250}")
+  public void adjust() {
+    final MessageListenerContainer container = registry.getListenerContainer(LISTENER_ID);
+    if (container == null || !container.isRunning()) {
+      return;
+    }
+    final double fill = (double) pipeline.queuedPoints() / pipeline.maxQueuedPoints();
+    final double latency = pipeline.flushLatencyMs();
+
+    if (!paused && (fill >= pauseRatio || latency >= maxFlushLatencyMs)) {
+      paused = true;
+      pauseCounter.increment();
+      log.warn(
+          "Pausing energy-usage consumption: queue {}% full, flush latency {} ms",
+          Math.round(fill * 100), Math.round(latency));
+    } else if (paused
+        && fill <= resumeRatio
+        && (latency < maxFlushLatencyMs / 2 || pipeline.queuedPoints() == 0)) {
+      paused = false;
+      log.info(
+          "Resuming energy-usage consumption: queue {}% full, flush latency {} ms",
+          Math.round(fill * 100), Math.round(latency));
+    }
+    apply(container);
+  }
+
+  /** Re-applied on every check, so partitions assigned while paused are paused as well. */
+  private void apply(MessageListenerContainer container) {
+    final Collection<TopicPartition> partitions = container.getAssignedPartitions();
+    if (partitions == null) {
+      return;
+    }
+    for (TopicPartition partition : partitions) {
+      final boolean partitionPaused = container.isPartitionPauseRequested(partition);
+      if (paused && !partitionPaused) {
+        container.pausePartition(partition);
+      } else if (!paused && partitionPaused) {
+        container.resumePartition(partition);
+      }
+    }
+  }
+
+  public boolean isPaused() {
+    return paused;
+  }
+}
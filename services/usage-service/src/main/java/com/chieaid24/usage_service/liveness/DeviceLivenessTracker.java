@@ -0,0 +1,177 @@
+package com.chieaid24.usage_service.liveness;
+
+import com.chieaid24.kafka.event.DeviceOfflineEvent;
+import com.chieaid24.usage_service.util.LongIndexMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tracks when each device was last seen on {@code energy-usage} and publishes a {@link
+ * DeviceOfflineEvent} once a device has been silent for {@code offline-after}.
+ *
+ * <p>A reading only stores the arrival time; the timer is not moved. When the timer fires and the
+ * device was seen since, it is re-armed from the last-seen time instead, so each reading costs O(1)
+ * and each device holds at most one timer. State is kept in primitive arrays capped at {@code
+ * max-devices}; deleted devices are removed through {@link #removeDevice} and free their slot.
+ */
+@Slf4j
+@Component
+public class DeviceLivenessTracker {
+
+  public static final String DEVICE_OFFLINE_TOPIC = "device-offline";
+
+  private final KafkaTemplate<String, DeviceOfflineEvent> kafkaTemplate;
+  private final long offlineAfterMs;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final LongIndexMap index;
+  private final HierarchicalTimingWheel wheel;
+  private final BitSet ownedPartitions = new BitSet();
+  private final Counter offlineCounter;
+  private final Counter recoveredCounter;
+  private final Counter droppedCounter;
+
+  private long[] deviceIds = new long[0];
+  private long[] lastSeen = new long[0];
+  private int[] partitions = new int[0];
+  private final BitSet offline = new BitSet();
+
+  public DeviceLivenessTracker(
+      KafkaTemplate<String, DeviceOfflineEvent> kafkaTemplate,
+      MeterRegistry meterRegistry,
+      @Value("${usage.liveness.offline-after:PT15M}") Duration offlineAfter,
+      @Value("${usage.liveness.max-devices:2000000}") int maxDevices) {
+    this.kafkaTemplate = kafkaTemplate;
+    this.offlineAfterMs = offlineAfter.toMillis();
+    this.index = new LongIndexMap(1024, maxDevices);
+    this.wheel = new HierarchicalTimingWheel(1000, 4, 1024, System.currentTimeMillis());
+    this.offlineCounter = meterRegistry.counter("usage.devices.offline.events");
+    this.recoveredCounter = meterRegistry.counter("usage.devices.recovered");
+    this.droppedCounter = meterRegistry.counter("usage.devices.untracked");
+    Gauge.builder("usage.devices.tracked", index, LongIndexMap::size).register(meterRegistry);
+    Gauge.builder("usage.devices.offline", offline, BitSet::cardinality).register(meterRegistry);
+  }
+
+  public void recordReading(long deviceId, int partition) {
+    final long now = System.currentTimeMillis();
+    lock.lock();
+    try {
+      int slot = index.getOrAdd(deviceId);
+      if (slot < 0) {
+        droppedCounter.increment();
+        return;
+      }
+      ensureCapacity(slot + 1);
+      deviceIds[slot] = deviceId;
+      lastSeen[slot] = now;
+      partitions[slot] = partition;
+      if (offline.get(slot)) {
+        offline.clear(slot);
+        recoveredCounter.increment();
+        log.info("Device {} is reporting again", deviceId);
+      }
+      if (!wheel.isScheduled(slot)) {
+        wheel.schedule(slot, now + offlineAfterMs);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops tracking a deleted device: its timer is cancelled, so it never goes offline, and its slot
+   * is freed for another device.
+   */
+  public void removeDevice(long deviceId) {
+    lock.lock();
+    try {
+      final int slot = index.remove(deviceId);
+      if (slot >= 0) {
+        wheel.cancel(slot);
+        offline.clear(slot);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Scheduled(fixedDelay = 1000)
+  public void expireSilentDevices() {
+    final long now = System.currentTimeMillis();
+    final List<DeviceOfflineEvent> events = new ArrayList<>();
+    lock.lock();
+    try {
+      wheel.advance(now, slot -> onTimer(slot, now, events));
+    } finally {
+      lock.unlock();
+    }
+    // sent outside the lock so a slow or blocked producer never holds up the consumer thread
+    for (DeviceOfflineEvent event : events) {
+      kafkaTemplate.send(DEVICE_OFFLINE_TOPIC, String.valueOf(event.deviceId()), event);
+    }
+  }
+
+  public void onPartitionsAssigned(Collection<Integer> assigned) {
+    lock.lock();
+    try {
+      assigned.forEach(ownedPartitions::set);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Devices on revoked partitions now report to another replica, so they must not expire here. */
+  public void onPartitionsRevoked(Collection<Integer> revoked) {
+    lock.lock();
+    try {
+      revoked.forEach(ownedPartitions::clear);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void onTimer(int slot, long now, List<DeviceOfflineEvent> events) {
+    if (!ownedPartitions.get(partitions[slot])) {
+      return;
+    }
+    long deadline = lastSeen[slot] + offlineAfterMs;
+    if (deadline > now) {
+      wheel.schedule(slot, deadline);
+      return;
+    }
+    offline.set(slot);
+    offlineCounter.increment();
+    final long deviceId = deviceIds[slot];
+    log.warn("Device {} has not reported since {}", deviceId, Instant.ofEpochMilli(lastSeen[slot]));
+    events.add(
+        DeviceOfflineEvent.builder()
+            .deviceId(deviceId)
+            .lastSeen(Instant.ofEpochMilli(lastSeen[slot]))
+            .detectedAt(Instant.ofEpochMilli(now))
+            .build());
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= deviceIds.length) {
+      return;
+    }
+    int newLength = Math.max(capacity, deviceIds.length * 2);
+    deviceIds = Arrays.copyOf(deviceIds, newLength);
+    lastSeen = Arrays.copyOf(lastSeen, newLength);
+    partitions = Arrays.copyOf(partitions, newLength);
+    wheel.ensureCapacity(newLength);
+  }
+}
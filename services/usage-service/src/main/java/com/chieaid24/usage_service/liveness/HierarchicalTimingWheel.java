@@ -0,0 +1,154 @@
+package com.chieaid24.usage_service.liveness;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hierarchical timing wheel over dense int entry ids. Each level has 64 slots and every level up
+ * covers 64 times the span of the one below; timers far in the future sit in a coarse slot and
+ * cascade down as time approaches. Slot lists are intrusive (next/prev arrays), so scheduling,
+ * cancelling and firing are O(1) and never allocate.
+ */
+public class HierarchicalTimingWheel {
+
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS - 1;
+  private static final int UNSCHEDULED = -1;
+
+  private final long tickMs;
+  private final int levels;
+  private final int[] heads;
+  private int[] next;
+  private int[] prev;
+  private int[] slotOf;
+  private long[] deadlineTick;
+  private long currentTick;
+  private int scheduled;
+
+  public HierarchicalTimingWheel(long tickMs, int levels, int initialCapacity, long nowMs) {
+    this.tickMs = tickMs;
+    this.levels = levels;
+    this.heads = new int[levels * SLOTS];
+    Arrays.fill(heads, UNSCHEDULED);
+    this.next = new int[0];
+    this.prev = new int[0];
+    this.slotOf = new int[0];
+    this.deadlineTick = new long[0];
+    this.currentTick = nowMs / tickMs;
+    ensureCapacity(initialCapacity);
+  }
+
+  public void ensureCapacity(int capacity) {
+    if (capacity <= slotOf.length) {
+      return;
+    }
+    int oldLength = slotOf.length;
+    int newLength = Math.max(capacity, oldLength * 2);
+    next = Arrays.copyOf(next, newLength);
+    prev = Arrays.copyOf(prev, newLength);
+    deadlineTick = Arrays.copyOf(deadlineTick, newLength);
+    slotOf = Arrays.copyOf(slotOf, newLength);
+    Arrays.fill(slotOf, oldLength, newLength, UNSCHEDULED);
+  }
+
+  public boolean isScheduled(int entry) {
+    return slotOf[entry] != UNSCHEDULED;
+  }
+
+  public int scheduledCount() {
+    return scheduled;
+  }
+
+  /** Longest delay the wheel can hold; later deadlines are clamped into the top level. */
+  public long maxDelayMs() {
+    return tickMs * (1L << (SLOT_BITS * levels));
+  }
+
+  public void schedule(int entry, long deadlineMs) {
+    cancel(entry);
+    deadlineTick[entry] = Math.max(currentTick + 1, deadlineMs / tickMs);
+    link(entry);
+    scheduled++;
+  }
+
+  public void cancel(int entry) {
+    if (slotOf[entry] == UNSCHEDULED) {
+      return;
+    }
+    unlink(entry);
+    scheduled--;
+  }
+
+  /** Moves the wheel up to {@code nowMs}, handing every expired entry to {@code onExpired}. */
+  public void advance(long nowMs, IntConsumer onExpired) {
+    final long targetTick = nowMs / tickMs;
+    while (currentTick < targetTick) {
+      currentTick++;
+      cascade(1);
+      int slot = (int) (currentTick & SLOT_MASK);
+      int entry = heads[slot];
+      heads[slot] = UNSCHEDULED;
+      while (entry != UNSCHEDULED) {
+        int following = next[entry];
+        slotOf[entry] = UNSCHEDULED;
+        scheduled--;
+        onExpired.accept(entry);
+        entry = following;
+      }
+    }
+  }
+
+  private void cascade(int level) {
+    if (level >= levels) {
+      return;
+    }
+    long shifted = currentTick >>> (SLOT_BITS * level);
+    if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+      return;
+    }
+    cascade(level + 1);
+    int slot = level * SLOTS + (int) (shifted & SLOT_MASK);
+    int entry = heads[slot];
+    heads[slot] = UNSCHEDULED;
+    while (entry != UNSCHEDULED) {
+      int following = next[entry];
+      slotOf[entry] = UNSCHEDULED;
+      link(entry);
+      entry = following;
+    }
+  }
+
+  private void link(int entry) {
+    long delta = deadlineTick[entry] - currentTick;
+    int level = 0;
+    while (level < levels - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+      level++;
+    }
+    long tick = Math.min(deadlineTick[entry], currentTick + (1L << (SLOT_BITS * levels)) - 1);
+    int slot = level * SLOTS + (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    int head = heads[slot];
+    next[entry] = head;
+    prev[entry] = UNSCHEDULED;
+    if (head != UNSCHEDULED) {
+      prev[head] = entry;
+    }
+    heads[slot] = entry;
+    slotOf[entry] = slot;
+  }
+
+  private void unlink(int entry) {
+    int slot = slotOf[entry];
+    int before = prev[entry];
+    int after = next[entry];
+    if (before == UNSCHEDULED) {
+      heads[slot] = after;
+    } else {
+      next[before] = after;
+    }
+    if (after != UNSCHEDULED) {
+      prev[after] = before;
+    }
+    slotOf[entry] = UNSCHEDULED;
+  }
+}
@@ -0,0 +1,62 @@
+package com.chieaid24.usage_service.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One of {@code pages} slices of the fleet's users. A user's page follows from the last decimal
+ * digits of its id, so Influx can pick a page out of the {@code userId} tag with a suffix regex
+ * before it reads any points, and a fleet-wide pass reads each row once instead of once per page.
+ * Enough digits are used that pages differ in size by at most about a tenth.
+ */
+public record FleetPage(int page, int pages) {
+
+  public FleetPage {
+    if (pages < 1 || page < 0 || page >= pages) {
+      throw new IllegalArgumentException("page " + page + " of " + pages);
+    }
+  }
+
+  /** Every page of a fleet split {@code pages} ways. */
+  public static List<FleetPage> of(int pages) {
+    final List<FleetPage> all = new ArrayList<>(pages);
+    for (int page = 0; page < pages; page++) {
+      all.add(new FleetPage(page, pages));
+    }
+    return all;
+  }
+
+  public boolean contains(long userId) {
+    return pages == 1 || Math.floorMod(userId, modulus()) % pages == page;
+  }
+
+  /**
+   * Regex for the {@code userId} tag values on this page, or null when it holds every user. Ids
+   * shorter than the suffix are matched whole.
+   */
+  public String userIdRegex() {
+    if (pages == 1) {
+      return null;
+    }
+    final long modulus = modulus();
+    final int digits = Long.toString(modulus).length() - 1;
+    final Set<String> suffixes = new LinkedHashSet<>();
+    final Set<String> whole = new LinkedHashSet<>();
+    for (long residue = page; residue < modulus; residue += pages) {
+      suffixes.add(String.format("%0" + digits + "d", residue));
+      whole.add(Long.toString(residue));
+    }
+    return "^([0-9]*(" + String.join("|", suffixes) + ")|" + String.join("|", whole) + ")$";
+  }
+
+  // smallest power of ten with at least ten residues per page
+  private long modulus() {
+    long modulus = 10;
+    while (modulus < 10L * pages) {
+      modulus *= 10;
+    }
+    return modulus;
+  }
+}
@@ -0,0 +1,20 @@
+package com.chieaid24.usage_service.model;
+
+import com.chieaid24.kafka.event.AlertingEvent;
+import java.time.Duration;
+
+/**
+ * An alert found by an aggregation run, not yet published. Alerts that must go out at most once per
+ * period carry the Redis key that claims the period and how long the claim lasts; the key is only
+ * set in the publish phase, once the run knows it still holds the lease.
+ */
+public record PendingAlert(AlertingEvent event, String dedupeKey, Duration cooldown) {
+
+  public static PendingAlert always(AlertingEvent event) {
+    return new PendingAlert(event, null, null);
+  }
+
+  public static PendingAlert oncePer(String dedupeKey, Duration cooldown, AlertingEvent event) {
+    return new PendingAlert(event, dedupeKey, cooldown);
+  }
+}
@@ -0,0 +1,26 @@
+package com.chieaid24.usage_service.model;
+
+/** Device attributes usage is rolled up by, next to the per-device hourly rollup. */
+public enum UsageDimension {
+  LOCATION("location", "energy_usage_location_hourly"),
+  TYPE("type", "energy_usage_type_hourly");
+
+  /** Fleet-wide rollup, by type only, with no user tag. */
+  public static final String FLEET_TYPE_MEASUREMENT = "energy_usage_fleet_type_hourly";
+
+  private final String tag;
+  private final String measurement;
+
+  UsageDimension(String tag, String measurement) {
+    this.tag = tag;
+    this.measurement = measurement;
+  }
+
+  public String tag() {
+    return tag;
+  }
+
+  public String measurement() {
+    return measurement;
+  }
+}
@@ -0,0 +1,19 @@
+package com.chieaid24.usage_service.model;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+public enum UsagePeriod {
+  DAILY,
+  WEEKLY;
+
+  /** Start of the period ending at {@code now}: midnight UTC for daily, a rolling 7 days else. */
+  public Instant startFrom(Instant now) {
+    return switch (this) {
+      case DAILY -> now.atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).toInstant();
+      case WEEKLY -> now.minus(Duration.ofDays(7));
+    };
+  }
+}
@@ -0,0 +1,351 @@
+package com.chieaid24.usage_service.replay;
+
+import com.chieaid24.kafka.event.EnergyUsageEvent;
+import com.chieaid24.usage_service.config.KafkaConsumerConfig;
+import com.chieaid24.usage_service.dto.ReplayRequest;
+import com.chieaid24.usage_service.dto.ReplayStatusDto;
+import com.chieaid24.usage_service.ingest.InfluxWritePipeline;
+import com.chieaid24.usage_service.service.UsageRollupService;
+import com.chieaid24.usage_service.service.UsageService;
+import com.influxdb.client.write.Point;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Rebuilds the {@code energy_usage} series from the {@code energy-usage} topic. Partitions are
+ * split across reader threads, each with its own consumer assigned to its partitions, that read
+ * from the requested start up to the end offsets seen when the replay began. Readings go through
+ * the same point mapping as live ingest, so replayed points land on the same timestamps and
+ * overwrite rather than duplicate, but through a {@link InfluxWritePipeline} of their own, so a
+ * replay does not eat into the capacity live ingest is paused on. The hourly rollups for the
+ * replayed range are recomputed at the end. A replay whose pipeline makes no progress for {@code
+ * drain-timeout} fails instead of waiting forever.
+ *
+ * <p>Replay uses its own consumer group and never commits, so it does not move the live group's
+ * offsets. One replay runs at a time per instance.
+ */
+@Slf4j
+@Service
+public class ReplayService {
+
+  private static final String REPLAY_GROUP = "usage-service-replay";
+
+  private final KafkaConsumerConfig kafkaConsumerConfig;
+  private final InfluxWritePipeline influxWritePipeline;
+  private final UsageRollupService usageRollupService;
+  private final int defaultReaders;
+  private final int maxPollRecords;
+  private final Duration drainTimeout;
+  private final AtomicReference<ReplayJob> current = new AtomicReference<>();
+
+  public ReplayService(
+      KafkaConsumerConfig kafkaConsumerConfig,
+      @Qualifier("replayWritePipeline") InfluxWritePipeline influxWritePipeline,
+      UsageRollupService usageRollupService,
+      @Value("${usage.replay.readers:4}") int defaultReaders,
+      @Value("${usage.replay.max-poll-records:5000}") int maxPollRecords,
+      @Value("${usage.replay.drain-timeout:PT5M}") Duration drainTimeout) {
+    this.kafkaConsumerConfig = kafkaConsumerConfig;
+    this.influxWritePipeline = influxWritePipeline;
+    this.usageRollupService = usageRollupService;
+    this.defaultReaders = defaultReaders;
+    this.maxPollRecords = maxPollRecords;
+    this.drainTimeout = drainTimeout;
+  }
+
+  public ReplayStatusDto start(ReplayRequest request) {
+    final ReplayJob running = current.get();
+    if (running != null && running.isRunning()) {
+      throw new IllegalStateException("A replay is already running");
+    }
+    final int readers = Math.max(1, request.readers() != null ? request.readers() : defaultReaders);
+    final ReplayJob job = new ReplayJob(request, readers);
+    if (!current.compareAndSet(running, job)) {
+      throw new IllegalStateException("A replay is already running");
+    }
+    Thread.ofPlatform().name("replay-coordinator").start(job::run);
+    return job.status();
+  }
+
+  public ReplayStatusDto status() {
+    final ReplayJob job = current.get();
+    return job == null ? ReplayStatusDto.builder().state("IDLE").build() : job.status();
+  }
+
+  public ReplayStatusDto cancel() {
+    final ReplayJob job = current.get();
+    if (job == null) {
+      return status();
+    }
+    job.cancelled = true;
+    return job.status();
+  }
+
+  private Map<String, Object> consumerProperties() {
+    final Map<String, Object> props = kafkaConsumerConfig.consumerProperties(maxPollRecords);
+    props.put(ConsumerConfig.GROUP_ID_CONFIG, REPLAY_GROUP);
+    props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, 1 << 20);
+    props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, 100);
+    props.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG, 8 << 20);
+    return props;
+  }
+
+  private final class ReplayJob {
+    private final ReplayRequest request;
+    private final int readers;
+    private final Instant startedAt = Instant.now();
+    private final AtomicLong recordsRead = new AtomicLong();
+    private final AtomicLong recordsWritten = new AtomicLong();
+    // written or moved to the retry topic by the pipeline
+    private final AtomicLong recordsCompleted = new AtomicLong();
+    private final AtomicLong recordsSkipped = new AtomicLong();
+    // oldest and newest reading timestamps, bounding the rollup recomputation
+    private final AtomicLong minTimestamp = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxTimestamp = new AtomicLong(Long.MIN_VALUE);
+    private volatile String state = "STARTING";
+    private volatile Instant finishedAt;
+    private volatile long recordsTotal;
+    private volatile int partitions;
+    private volatile int rollupHours;
+    private volatile String error;
+    private volatile boolean cancelled;
+
+    private ReplayJob(ReplayRequest request, int readers) {
+      this.request = request;
+      this.readers = readers;
+    }
+
+    boolean isRunning() {
+      return finishedAt == null;
+    }
+
+    void run() {
+      try {
+        final Map<TopicPartition, long[]> ranges = resolveRanges();
+        partitions = ranges.size();
+        recordsTotal = ranges.values().stream().mapToLong(range -> range[1] - range[0]).sum();
+        log.info("Replaying {} records from {} partitions", recordsTotal, partitions);
+        state = "READING";
+
+        final List<List<TopicPartition>> assignments = new ArrayList<>();
+        final int readerCount = Math.min(readers, Math.max(1, ranges.size()));
+        for (int i = 0; i < readerCount; i++) {
+          assignments.add(new ArrayList<>());
+        }
+        int next = 0;
+        for (TopicPartition partition : ranges.keySet()) {
+          assignments.get(next++ % readerCount).add(partition);
+        }
+
+        final ExecutorService pool =
+            Executors.newFixedThreadPool(
+                readerCount, Thread.ofPlatform().name("replay-reader-", 0).factory());
+        try {
+          final List<Future<?>> futures = new ArrayList<>();
+          for (List<TopicPartition> assigned : assignments) {
+            futures.add(pool.submit(() -> read(assigned, ranges)));
+          }
+          for (Future<?> future : futures) {
+            future.get();
+          }
+        } finally {
+          pool.shutdownNow();
+        }
+
+        awaitPipeline();
+        if (cancelled) {
+          state = "CANCELLED";
+          return;
+        }
+
+        state = "ROLLING_UP";
+        rollUp();
+        state = "COMPLETED";
+      } catch (Exception e) {
+        log.error("Replay failed", e);
+        error = e.getMessage();
+        state = "FAILED";
+      } finally {
+        finishedAt = Instant.now();
+        log.info("Replay finished as {}: {}", state, status());
+      }
+    }
+
+    /**
+     * Waits for the pipeline to finish the batches the readers handed over. The deadline moves with
+     * every completed batch, so only a pipeline that stopped making progress fails the replay.
+     */
+    private void awaitPipeline() throws InterruptedException {
+      long completed = recordsCompleted.get();
+      long deadline = System.nanoTime() + drainTimeout.toNanos();
+      while (recordsCompleted.get() + recordsSkipped.get() < recordsRead.get() && !cancelled) {
+        if (recordsCompleted.get() != completed) {
+          completed = recordsCompleted.get();
+          deadline = System.nanoTime() + drainTimeout.toNanos();
+        } else if (System.nanoTime() - deadline > 0) {
+          throw new IllegalStateException(
+              (recordsRead.get() - recordsSkipped.get() - completed)
+                  + " readings were not stored within "
+                  + drainTimeout);
+        }
+        Thread.sleep(200);
+      }
+    }
+
+    /** Start and end offset per partition; the end is fixed when the replay starts. */
+    private Map<TopicPartition, long[]> resolveRanges() {
+      try (KafkaConsumer<String, EnergyUsageEvent> consumer =
+          new KafkaConsumer<>(consumerProperties())) {
+        final List<TopicPartition> topicPartitions = new ArrayList<>();
+        for (PartitionInfo info : consumer.partitionsFor(KafkaConsumerConfig.ENERGY_USAGE_TOPIC)) {
+          topicPartitions.add(new TopicPartition(info.topic(), info.partition()));
+        }
+        final Map<TopicPartition, Long> beginning = consumer.beginningOffsets(topicPartitions);
+        final Map<TopicPartition, Long> end = consumer.endOffsets(topicPartitions);
+
+        Map<TopicPartition, OffsetAndTimestamp> byTime = Map.of();
+        if (request.fromTimestamp() != null) {
+          final Map<TopicPartition, Long> query = new HashMap<>();
+          topicPartitions.forEach(tp -> query.put(tp, request.fromTimestamp().toEpochMilli()));
+          byTime = consumer.offsetsForTimes(query);
+        }
+
+        final Map<TopicPartition, long[]> ranges = new HashMap<>();
+        for (TopicPartition tp : topicPartitions) {
+          final long endOffset = end.get(tp);
+          long startOffset = beginning.get(tp);
+          if (request.fromTimestamp() != null) {
+            final OffsetAndTimestamp found = byTime.get(tp);
+            startOffset = found == null ? endOffset : found.offset();
+          } else if (request.fromOffset() != null) {
+            startOffset = Math.min(endOffset, Math.max(startOffset, request.fromOffset()));
+          }
+          if (startOffset < endOffset) {
+            ranges.put(tp, new long[] {startOffset, endOffset});
+          }
+        }
+        return ranges;
+      }
+    }
+
+    private void read(List<TopicPartition> assigned, Map<TopicPartition, long[]> ranges) {
+      if (assigned.isEmpty()) {
+        return;
+      }
+      try (KafkaConsumer<String, EnergyUsageEvent> consumer =
+          new KafkaConsumer<>(consumerProperties())) {
+        consumer.assign(assigned);
+        final List<TopicPartition> remaining = new ArrayList<>(assigned);
+        for (TopicPartition tp : assigned) {
+          consumer.seek(tp, ranges.get(tp)[0]);
+        }
+
+        while (!remaining.isEmpty() && !cancelled) {
+          final ConsumerRecords<String, EnergyUsageEvent> polled =
+              consumer.poll(Duration.ofMillis(500));
+          for (TopicPartition tp : polled.partitions()) {
+            final long endOffset = ranges.get(tp)[1];
+            final List<ConsumerRecord<String, EnergyUsageEvent>> batch = new ArrayList<>();
+            final List<Point> points = new ArrayList<>();
+            for (ConsumerRecord<String, EnergyUsageEvent> record : polled.records(tp)) {
+              if (record.offset() >= endOffset) {
+                break;
+              }
+              recordsRead.incrementAndGet();
+              final EnergyUsageEvent event = record.value();
+              if (event == null || event.deviceId() == null || event.timestamp() == null) {
+                recordsSkipped.incrementAndGet();
+                continue;
+              }
+              batch.add(record);
+              points.add(UsageService.toPoint(event, record.offset()));
+              minTimestamp.accumulateAndGet(event.timestamp().toEpochMilli(), Math::min);
+              maxTimestamp.accumulateAndGet(event.timestamp().toEpochMilli(), Math::max);
+            }
+            if (!points.isEmpty()) {
+              final int size = batch.size();
+              influxWritePipeline.submit(
+                  points,
+                  batch,
+                  () -> recordsCompleted.addAndGet(size),
+                  (handled, written) -> {
+                    if (written) {
+                      recordsWritten.addAndGet(handled.size());
+                    }
+                  });
+            }
+          }
+          // a partition whose last records are compacted away or transactional markers may
+          // never show up in a poll again, so every remaining one is checked each time
+          for (TopicPartition tp : List.copyOf(remaining)) {
+            if (consumer.position(tp) >= ranges.get(tp)[1]) {
+              consumer.pause(List.of(tp));
+              remaining.remove(tp);
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /** Recomputes the hourly rollup over the replayed range, a day at a time. */
+    private void rollUp() {
+      if (minTimestamp.get() > maxTimestamp.get()) {
+        return;
+      }
+      final Instant end = Instant.ofEpochMilli(maxTimestamp.get()).plus(1, ChronoUnit.HOURS);
+      Instant from = Instant.ofEpochMilli(minTimestamp.get()).truncatedTo(ChronoUnit.HOURS);
+      while (from.isBefore(end) && !cancelled) {
+        final Instant to =
+            from.plus(1, ChronoUnit.DAYS).isBefore(end) ? from.plus(1, ChronoUnit.DAYS) : end;
+        usageRollupService.rollup(from, to);
+        rollupHours += (int) Duration.between(from, to).toHours();
+        from = to;
+      }
+    }
+
+    ReplayStatusDto status() {
+      final Instant until = finishedAt != null ? finishedAt : Instant.now();
+      final double seconds =
+          Math.max(0.001, Duration.between(startedAt, until).toMillis() / 1000.0);
+      final long read = recordsRead.get();
+      return ReplayStatusDto.builder()
+          .state(state)
+          .startedAt(startedAt)
+          .finishedAt(finishedAt)
+          .partitions(partitions)
+          .readers(readers)
+          .recordsTotal(recordsTotal)
+          .recordsRead(read)
+          .recordsWritten(recordsWritten.get())
+          .recordsSkipped(recordsSkipped.get())
+          .recordsPerSecond(recordsWritten.get() / seconds)
+          .percentComplete(recordsTotal == 0 ? 100.0 : 100.0 * read / recordsTotal)
+          .rollupHours(rollupHours)
+          .error(error)
+          .build();
+    }
+  }
+}
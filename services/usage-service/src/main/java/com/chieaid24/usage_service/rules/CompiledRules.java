@@ -0,0 +1,21 @@
+package com.chieaid24.usage_service.rules;
+
+import java.util.Map;
+
+/**
+ * Evaluators grouped by user, plus which window totals they read, so a tick only loads the totals
+ * some rule actually needs.
+ */
+record CompiledRules(
+    Map<Long, RuleEvaluator[]> byUser,
+    int ruleCount,
+    boolean needsDaily,
+    boolean needsWeekly,
+    boolean needsPreviousHour) {
+
+  static final CompiledRules EMPTY = new CompiledRules(Map.of(), 0, false, false, false);
+
+  RuleEvaluator[] forUser(long userId) {
+    return byUser.get(userId);
+  }
+}
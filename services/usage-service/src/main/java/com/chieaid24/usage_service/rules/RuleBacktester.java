@@ -0,0 +1,125 @@
+package com.chieaid24.usage_service.rules;
+
+import com.chieaid24.usage_service.billing.UsageMatrix;
+import com.chieaid24.usage_service.dto.AlertRuleDto;
+import com.chieaid24.usage_service.dto.BacktestResultDto;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays one user's hourly history through a rule with the same {@link RuleEvaluator} and {@link
+ * UsageWindow} the live engine uses. Each clock hour stands in for the engine's rolling last hour,
+ * daily totals run from UTC midnight, weekly totals cover the trailing 168 hours, and budgets alert
+ * at most once a day (daily) or once a week (weekly) as they do live. The first {@code warmUpHours}
+ * of the usage only build up those running totals and lockouts; nothing in them is reported.
+ */
+public final class RuleBacktester {
+
+  private static final int HOURS_PER_WEEK = 168;
+
+  private RuleBacktester() {}
+
+  /** Hours of history a rule of {@code type} needs before its first evaluated hour. */
+  public static int warmUpHours(RuleType type) {
+    if (type == null) {
+      return 0;
+    }
+    return switch (type) {
+      case WEEKLY_BUDGET -> HOURS_PER_WEEK;
+      case DAILY_BUDGET -> 24;
+      case RATE_OF_CHANGE -> 1;
+      default -> 0;
+    };
+  }
+
+  /** {@code usage} must hold at most one user, as loaded for that user. */
+  public static BacktestResultDto backtest(
+      AlertRuleDto rule, UsageMatrix usage, int warmUpHours, int maxTimeline) {
+    final RuleEvaluator evaluator =
+        RuleCompiler.compile(
+            new AlertRuleDto(
+                rule.id() != null ? rule.id() : 0L,
+                rule.userId(),
+                rule.type(),
+                rule.deviceId(),
+                rule.threshold(),
+                rule.startHour(),
+                rule.endHour(),
+                true));
+    if (evaluator == null) {
+      throw new IllegalArgumentException("Invalid rule: " + rule);
+    }
+
+    final int hours = usage.buckets();
+    final float[][] rows = usage.rows();
+    final double[] totals = new double[hours];
+    for (float[] row : rows) {
+      for (int h = 0; h < hours; h++) {
+        totals[h] += row[h];
+      }
+    }
+
+    final UsageWindow window = new UsageWindow();
+    final List<BacktestResultDto.BacktestAlert> timeline = new ArrayList<>();
+    final long startMs = usage.start().toEpochMilli();
+    final long bucketMs = usage.bucket().toMillis();
+    double dailyTotal = 0.0;
+    double weeklyTotal = 0.0;
+    int alerts = 0;
+    long lastAlertDay = Long.MIN_VALUE;
+    int lastAlertHour = -HOURS_PER_WEEK;
+    for (int h = 0; h < hours; h++) {
+      final Instant hourStart = Instant.ofEpochMilli(startMs + h * bucketMs);
+      final ZonedDateTime utc = hourStart.atZone(ZoneOffset.UTC);
+      if (utc.getHour() == 0) {
+        dailyTotal = 0.0;
+      }
+      dailyTotal += totals[h];
+      weeklyTotal += totals[h] - (h >= HOURS_PER_WEEK ? totals[h - HOURS_PER_WEEK] : 0.0);
+
+      window.reset(h);
+      for (int row = 0; row < rows.length; row++) {
+        window.addDevice(usage.deviceIds()[row], rows[row][h]);
+      }
+      window.previousHourTotal = h > 0 ? totals[h - 1] : Double.NaN;
+      window.dailyTotal = dailyTotal;
+      window.weeklyTotal = weeklyTotal;
+
+      if (!evaluator.activeAt(utc.getHour()) || !evaluator.breached(window)) {
+        continue;
+      }
+      final long day = utc.toLocalDate().toEpochDay();
+      if (evaluator.type == RuleType.DAILY_BUDGET && day == lastAlertDay) {
+        continue;
+      }
+      if (evaluator.type == RuleType.WEEKLY_BUDGET && h - lastAlertHour < HOURS_PER_WEEK) {
+        continue;
+      }
+      lastAlertDay = day;
+      lastAlertHour = h;
+      if (h < warmUpHours) {
+        continue;
+      }
+      alerts++;
+      if (timeline.size() < maxTimeline) {
+        timeline.add(
+            new BacktestResultDto.BacktestAlert(
+                hourStart, evaluator.observed(window), evaluator.limit(window)));
+      }
+    }
+
+    return BacktestResultDto.builder()
+        .userId(rule.userId())
+        .type(evaluator.type)
+        .threshold(evaluator.threshold)
+        .from(Instant.ofEpochMilli(startMs + warmUpHours * bucketMs))
+        .to(Instant.ofEpochMilli(startMs + hours * bucketMs))
+        .hoursEvaluated(hours - warmUpHours)
+        .alerts(alerts)
+        .timeline(timeline)
+        .build();
+  }
+}
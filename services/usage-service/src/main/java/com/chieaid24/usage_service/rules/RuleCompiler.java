@@ -0,0 +1,60 @@
+package com.chieaid24.usage_service.rules;
+
+import com.chieaid24.usage_service.dto.AlertRuleDto;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+
+/** Turns the stored rule model into {@link RuleEvaluator}s grouped by user. */
+@Slf4j
+final class RuleCompiler {
+
+  private RuleCompiler() {}
+
+  static CompiledRules compile(List<AlertRuleDto> rules) {
+    final Map<Long, List<RuleEvaluator>> grouped = new HashMap<>();
+    boolean needsDaily = false;
+    boolean needsWeekly = false;
+    boolean needsPreviousHour = false;
+    int ruleCount = 0;
+
+    for (AlertRuleDto rule : rules) {
+      final RuleEvaluator evaluator = compile(rule);
+      if (evaluator == null) {
+        log.warn("Skipping invalid alert rule: {}", rule);
+        continue;
+      }
+      grouped.computeIfAbsent(rule.userId(), id -> new ArrayList<>()).add(evaluator);
+      needsDaily |= rule.type() == RuleType.DAILY_BUDGET;
+      needsWeekly |= rule.type() == RuleType.WEEKLY_BUDGET;
+      needsPreviousHour |= rule.type() == RuleType.RATE_OF_CHANGE;
+      ruleCount++;
+    }
+
+    final Map<Long, RuleEvaluator[]> byUser = new HashMap<>(grouped.size() * 2);
+    grouped.forEach((userId, list) -> byUser.put(userId, list.toArray(RuleEvaluator[]::new)));
+    return new CompiledRules(byUser, ruleCount, needsDaily, needsWeekly, needsPreviousHour);
+  }
+
+  static RuleEvaluator compile(AlertRuleDto rule) {
+    if (!rule.enabled() || rule.id() == null || rule.userId() == null || rule.type() == null) {
+      return null;
+    }
+    final int startHour = rule.startHour() == null ? 0 : rule.startHour();
+    final int endHour = rule.endHour() == null ? 0 : rule.endHour();
+    return switch (rule.type()) {
+      case DEVICE_LIMIT -> rule.deviceId() == null
+          ? null
+          : new RuleEvaluator.DeviceLimit(
+              rule.id(), rule.deviceId(), rule.threshold(), startHour, endHour);
+      case HOURLY_LIMIT -> new RuleEvaluator.HourlyLimit(
+          rule.id(), rule.threshold(), startHour, endHour);
+      case DAILY_BUDGET, WEEKLY_BUDGET -> new RuleEvaluator.Budget(
+          rule.id(), rule.type(), rule.threshold(), startHour, endHour);
+      case RATE_OF_CHANGE -> new RuleEvaluator.RateOfChange(
+          rule.id(), rule.threshold(), startHour, endHour);
+    };
+  }
+}
@@ -0,0 +1,221 @@
+package com.chieaid24.usage_service.rules;
+
+import com.chieaid24.kafka.event.AlertType;
+import com.chieaid24.kafka.event.AlertingEvent;
+import com.chieaid24.usage_service.client.UserClient;
+import com.chieaid24.usage_service.dto.UserDto;
+import com.chieaid24.usage_service.model.DeviceEnergy;
+import com.chieaid24.usage_service.model.PendingAlert;
+import com.chieaid24.usage_service.model.UsagePeriod;
+import com.chieaid24.usage_service.service.HouseholdComparisonService;
+import com.chieaid24.usage_service.service.UsageRollupService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Evaluates the per-user alert rules stored in user-service on every aggregation tick. Rules are
+ * compiled once per refresh, and each tick fills one reusable {@link UsageWindow} per user from the
+ * aggregation result and the rollup totals already kept in Redis, so no rule ever queries Influx.
+ * Users are evaluated in parallel on a dedicated pool.
+ */
+@Slf4j
+@Service
+public class RuleEngine {
+
+  private final UserClient userClient;
+  private final HouseholdComparisonService householdComparisonService;
+  private final UsageRollupService usageRollupService;
+  private final Duration refreshInterval;
+  private final ForkJoinPool pool;
+  private final Timer[] evaluationTimers = new Timer[RuleType.values().length];
+  private final Counter[] breachCounters = new Counter[RuleType.values().length];
+  private final Map<Long, UsageWindow> windows = new ConcurrentHashMap<>();
+
+  private volatile CompiledRules rules = CompiledRules.EMPTY;
+  private volatile long refreshedAt;
+  private long tick;
+
+  public RuleEngine(
+      UserClient userClient,
+      HouseholdComparisonService householdComparisonService,
+      UsageRollupService usageRollupService,
+      MeterRegistry meterRegistry,
+      @Value("${usage.rules.refresh-interval:PT1M}") Duration refreshInterval,
+      @Value("${usage.rules.parallelism:0}") int parallelism) {
+    this.userClient = userClient;
+    this.householdComparisonService = householdComparisonService;
+    this.usageRollupService = usageRollupService;
+    this.refreshInterval = refreshInterval;
+    this.pool =
+        new ForkJoinPool(
+            parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    for (RuleType type : RuleType.values()) {
+      evaluationTimers[type.ordinal()] =
+          Timer.builder("usage.rules.evaluation")
+              .tag("type", type.name())
+              .publishPercentileHistogram()
+              .register(meterRegistry);
+      breachCounters[type.ordinal()] =
+          meterRegistry.counter("usage.rules.breaches", "type", type.name());
+    }
+    meterRegistry.gauge("usage.rules.compiled", this, engine -> engine.rules.ruleCount());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  /**
+   * Evaluates the rules of every user in {@code users} against their last-hour device usage and
+   * returns the alerts to publish, each claimable once per rule and cooldown. Users without rules
+   * are skipped.
+   */
+  public List<PendingAlert> evaluate(
+      Map<Long, List<DeviceEnergy>> usageByUser, Map<Long, UserDto> users) {
+    refreshRules();
+    final CompiledRules compiled = rules;
+    if (compiled.ruleCount() == 0) {
+      return List.of();
+    }
+
+    final long[] userIds =
+        users.keySet().stream()
+            .filter(userId -> compiled.forUser(userId) != null)
+            .mapToLong(Long::longValue)
+            .toArray();
+    if (userIds.length == 0) {
+      return List.of();
+    }
+
+    final Instant now = Instant.now();
+    final Map<Long, Double> daily =
+        compiled.needsDaily() ? householdComparisonService.totals(UsagePeriod.DAILY) : Map.of();
+    final Map<Long, Double> weekly =
+        compiled.needsWeekly() ? householdComparisonService.totals(UsagePeriod.WEEKLY) : Map.of();
+    final Map<Long, Double> previousHour =
+        compiled.needsPreviousHour() ? usageRollupService.getPreviousHourTotals() : Map.of();
+    final int hour = ZonedDateTime.ofInstant(now, ZoneOffset.UTC).getHour();
+    final long currentTick = ++tick;
+    final Queue<PendingAlert> alerts = new ConcurrentLinkedQueue<>();
+
+    try {
+      pool.submit(
+              () ->
+                  IntStream.range(0, userIds.length)
+                      .parallel()
+                      .forEach(
+                          i -> {
+                            final long userId = userIds[i];
+                            final UsageWindow window =
+                                windows.computeIfAbsent(userId, id -> new UsageWindow());
+                            window.reset(currentTick);
+                            for (DeviceEnergy device :
+                                usageByUser.getOrDefault(userId, List.of())) {
+                              window.addDevice(device.getDeviceId(), device.getEnergyConsumed());
+                            }
+                            window.dailyTotal = daily.getOrDefault(userId, Double.NaN);
+                            window.weeklyTotal = weekly.getOrDefault(userId, Double.NaN);
+                            window.previousHourTotal =
+                                previousHour.getOrDefault(userId, Double.NaN);
+                            evaluateUser(
+                                compiled.forUser(userId),
+                                window,
+                                users.get(userId),
+                                hour,
+                                now,
+                                alerts);
+                          }))
+          .join();
+    } catch (Exception e) {
+      log.error("Error evaluating alert rules", e);
+    }
+    windows.values().removeIf(window -> window.tick() != currentTick);
+    return List.copyOf(alerts);
+  }
+
+  private void evaluateUser(
+      RuleEvaluator[] evaluators,
+      UsageWindow window,
+      UserDto user,
+      int hour,
+      Instant now,
+      Queue<PendingAlert> alerts) {
+    for (RuleEvaluator evaluator : evaluators) {
+      if (!evaluator.activeAt(hour)) {
+        continue;
+      }
+      final long start = System.nanoTime();
+      final boolean breached = evaluator.breached(window);
+      evaluationTimers[evaluator.type.ordinal()].record(
+          System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      if (breached) {
+        alerts.add(fire(evaluator, window, user, now));
+      }
+    }
+  }
+
+  /**
+   * The alert for a breached rule. It goes out at most once per rule and period across replicas;
+   * the claim on the period is made when the run publishes, see {@link PendingAlert}.
+   */
+  private PendingAlert fire(
+      RuleEvaluator evaluator, UsageWindow window, UserDto user, Instant now) {
+    breachCounters[evaluator.type.ordinal()].increment();
+    final AlertingEvent alertingEvent =
+        AlertingEvent.builder()
+            .userId(user.id())
+            .name(user.name())
+            .message(evaluator.message())
+            .threshold(evaluator.limit(window))
+            .energyConsumed(evaluator.observed(window))
+            .email(user.email())
+            .type(AlertType.RULE_BREACHED)
+            .build();
+    log.debug("Rule {} breached for user {}: {}", evaluator.ruleId, user.id(), alertingEvent);
+    return PendingAlert.oncePer(
+        "rule-alert:" + evaluator.ruleId, cooldown(evaluator.type, now), alertingEvent);
+  }
+
+  private static Duration cooldown(RuleType type, Instant now) {
+    return switch (type) {
+      case DAILY_BUDGET -> Duration.between(
+          now, now.atZone(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).plusDays(1).toInstant());
+        // the weekly total is a rolling 7 days, so a breach stays in it until a week has passed
+      case WEEKLY_BUDGET -> Duration.ofDays(7);
+      case DEVICE_LIMIT, HOURLY_LIMIT, RATE_OF_CHANGE -> Duration.ofHours(1);
+    };
+  }
+
+  private void refreshRules() {
+    final long now = System.currentTimeMillis();
+    if (now - refreshedAt < refreshInterval.toMillis()) {
+      return;
+    }
+    try {
+      rules = RuleCompiler.compile(userClient.getEnabledRules());
+      log.info("Compiled {} alert rules for {} users", rules.ruleCount(), rules.byUser().size());
+    } catch (Exception e) {
+      log.error("Error refreshing alert rules, keeping the previous set", e);
+    }
+    refreshedAt = now;
+  }
+}
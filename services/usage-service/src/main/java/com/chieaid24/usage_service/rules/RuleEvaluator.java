@@ -0,0 +1,140 @@
+package com.chieaid24.usage_service.rules;
+
+/**
+ * A compiled rule. Evaluation only reads primitive fields of the rule and the {@link UsageWindow},
+ * so it allocates nothing and costs a few comparisons per rule.
+ */
+abstract class RuleEvaluator {
+
+  final long ruleId;
+  final RuleType type;
+  final double threshold;
+  private final int startHour;
+  private final int endHour;
+
+  RuleEvaluator(long ruleId, RuleType type, double threshold, int startHour, int endHour) {
+    this.ruleId = ruleId;
+    this.type = type;
+    this.threshold = threshold;
+    this.startHour = startHour;
+    this.endHour = endHour;
+  }
+
+  /** Whether the rule applies at {@code hour} (UTC). Windows like 22-6 wrap around midnight. */
+  final boolean activeAt(int hour) {
+    if (startHour == endHour) {
+      return true;
+    }
+    if (startHour < endHour) {
+      return hour >= startHour && hour < endHour;
+    }
+    return hour >= startHour || hour < endHour;
+  }
+
+  /** Energy the rule measures, in Wh. */
+  abstract double observed(UsageWindow window);
+
+  /** Energy above which the rule is breached, in Wh. */
+  abstract double limit(UsageWindow window);
+
+  final boolean breached(UsageWindow window) {
+    return observed(window) > limit(window);
+  }
+
+  abstract String message();
+
+  static final class DeviceLimit extends RuleEvaluator {
+    private final long deviceId;
+
+    DeviceLimit(long ruleId, long deviceId, double threshold, int startHour, int endHour) {
+      super(ruleId, RuleType.DEVICE_LIMIT, threshold, startHour, endHour);
+      this.deviceId = deviceId;
+    }
+
+    @Override
+    double observed(UsageWindow window) {
+      return window.deviceEnergy(deviceId);
+    }
+
+    @Override
+    double limit(UsageWindow window) {
+      return threshold;
+    }
+
+    @Override
+    String message() {
+      return "Device " + deviceId + " exceeded its hourly limit";
+    }
+  }
+
+  static final class HourlyLimit extends RuleEvaluator {
+    HourlyLimit(long ruleId, double threshold, int startHour, int endHour) {
+      super(ruleId, RuleType.HOURLY_LIMIT, threshold, startHour, endHour);
+    }
+
+    @Override
+    double observed(UsageWindow window) {
+      return window.hourTotal;
+    }
+
+    @Override
+    double limit(UsageWindow window) {
+      return threshold;
+    }
+
+    @Override
+    String message() {
+      return "Hourly energy limit exceeded";
+    }
+  }
+
+  /** Daily and weekly budgets. A missing total is NaN and never compares as breached. */
+  static final class Budget extends RuleEvaluator {
+    Budget(long ruleId, RuleType type, double threshold, int startHour, int endHour) {
+      super(ruleId, type, threshold, startHour, endHour);
+    }
+
+    @Override
+    double observed(UsageWindow window) {
+      return type == RuleType.DAILY_BUDGET ? window.dailyTotal : window.weeklyTotal;
+    }
+
+    @Override
+    double limit(UsageWindow window) {
+      return threshold;
+    }
+
+    @Override
+    String message() {
+      return type == RuleType.DAILY_BUDGET
+          ? "Daily energy budget exceeded"
+          : "Weekly energy budget exceeded";
+    }
+  }
+
+  /** Threshold is the allowed increase in percent over the previous complete hour. */
+  static final class RateOfChange extends RuleEvaluator {
+    RateOfChange(long ruleId, double threshold, int startHour, int endHour) {
+      super(ruleId, RuleType.RATE_OF_CHANGE, threshold, startHour, endHour);
+    }
+
+    @Override
+    double observed(UsageWindow window) {
+      return window.hourTotal;
+    }
+
+    @Override
+    double limit(UsageWindow window) {
+      final double previous = window.previousHourTotal;
+      if (!(previous > 0)) {
+        return Double.POSITIVE_INFINITY;
+      }
+      return previous * (1 + threshold / 100.0);
+    }
+
+    @Override
+    String message() {
+      return "Energy usage rose faster than the allowed rate";
+    }
+  }
+}
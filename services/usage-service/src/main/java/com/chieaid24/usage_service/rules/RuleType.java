@@ -0,0 +1,10 @@
+package com.chieaid24.usage_service.rules;
+
+/** Mirrors the rule types stored by user-service. */
+public enum RuleType {
+  DEVICE_LIMIT,
+  HOURLY_LIMIT,
+  DAILY_BUDGET,
+  WEEKLY_BUDGET,
+  RATE_OF_CHANGE
+}
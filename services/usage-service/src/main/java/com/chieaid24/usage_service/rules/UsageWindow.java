@@ -0,0 +1,54 @@
+package com.chieaid24.usage_service.rules;
+
+import java.util.Arrays;
+
+/**
+ * Window aggregates of one user for the current evaluation tick. Instances are reused from tick to
+ * tick, so filling one in only allocates when a user gains devices.
+ */
+final class UsageWindow {
+
+  private long tick;
+  private long[] deviceIds = new long[4];
+  private double[] deviceEnergy = new double[4];
+  private int devices;
+
+  double hourTotal;
+  double previousHourTotal;
+  double dailyTotal;
+  double weeklyTotal;
+
+  void reset(long tick) {
+    this.tick = tick;
+    this.devices = 0;
+    this.hourTotal = 0.0;
+    this.previousHourTotal = Double.NaN;
+    this.dailyTotal = Double.NaN;
+    this.weeklyTotal = Double.NaN;
+  }
+
+  long tick() {
+    return tick;
+  }
+
+  void addDevice(long deviceId, double energyConsumed) {
+    if (devices == deviceIds.length) {
+      deviceIds = Arrays.copyOf(deviceIds, devices * 2);
+      deviceEnergy = Arrays.copyOf(deviceEnergy, devices * 2);
+    }
+    deviceIds[devices] = deviceId;
+    deviceEnergy[devices] = energyConsumed;
+    devices++;
+    hourTotal += energyConsumed;
+  }
+
+  /** Last-hour energy of {@code deviceId}, or zero when it reported nothing. */
+  double deviceEnergy(long deviceId) {
+    for (int i = 0; i < devices; i++) {
+      if (deviceIds[i] == deviceId) {
+        return deviceEnergy[i];
+      }
+    }
+    return 0.0;
+  }
+}
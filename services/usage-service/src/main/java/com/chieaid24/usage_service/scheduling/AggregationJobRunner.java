@@ -0,0 +1,184 @@
+package com.chieaid24.usage_service.scheduling;
+
+import com.chieaid24.usage_service.service.UsageService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Drives {@link UsageService#aggregateDeviceEnergyUsage}. The aggregation runs on its own thread
+ * under a Redis lease that is renewed for as long as the run takes, so a slow run never overlaps
+ * with one on another replica. The lease is kept between runs, which keeps the job, and the
+ * per-user forecast state it builds up, on one replica until that replica stops.
+ *
+ * <p>A tick that comes due while a run is in progress is coalesced into a single follow-up run. The
+ * interval stretches to twice the last run's duration when runs get slow, up to {@code
+ * max-interval}, and falls back to {@code interval} once they are fast again.
+ *
+ * <p>Not created when {@code usage.streams.enabled=true}: the streams topology then raises the
+ * threshold alerts, and forecasts and custom rules are not evaluated.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "usage.streams.enabled", havingValue = "false", matchIfMissing = true)
+public class AggregationJobRunner {
+
+  private static final String LEASE_KEY = "aggregation-lock";
+
+  private final UsageService usageService;
+  private final RedisLease lease;
+  private final Duration baseInterval;
+  private final Duration maxInterval;
+  private final Duration leaseTtl;
+  private final ExecutorService runner =
+      Executors.newSingleThreadExecutor(Thread.ofPlatform().name("aggregation").factory());
+  private final ScheduledExecutorService renewer =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("aggregation-lease").daemon().factory());
+  private final AtomicBoolean running = new AtomicBoolean();
+  private final Timer[] phaseTimers = new Timer[AggregationPhase.values().length];
+  private final Timer runTimer;
+  private final Counter coalescedCounter;
+  private final Counter notLeaderCounter;
+  private final Counter leaseLostCounter;
+
+  private volatile boolean coalesced;
+  private volatile long nextRunAt;
+  private volatile long intervalMs;
+
+  public AggregationJobRunner(
+      UsageService usageService,
+      StringRedisTemplate stringRedisTemplate,
+      MeterRegistry meterRegistry,
+      @Value("${usage.aggregation.interval:PT10S}") Duration baseInterval,
+      @Value("${usage.aggregation.max-interval:PT1M}") Duration maxInterval,
+      @Value("${usage.aggregation.lease-ttl:PT30S}") Duration leaseTtl) {
+    this.usageService = usageService;
+    this.lease = new RedisLease(stringRedisTemplate, LEASE_KEY);
+    this.baseInterval = baseInterval;
+    this.maxInterval = maxInterval;
+    this.leaseTtl = leaseTtl;
+    this.intervalMs = baseInterval.toMillis();
+
+    for (AggregationPhase phase : AggregationPhase.values()) {
+      phaseTimers[phase.ordinal()] =
+          Timer.builder("usage.aggregation.phase")
+              .tag("phase", phase.tagValue())
+              .publishPercentileHistogram()
+              .register(meterRegistry);
+    }
+    this.runTimer =
+        Timer.builder("usage.aggregation.run").publishPercentileHistogram().register(meterRegistry);
+    this.coalescedCounter = meterRegistry.counter("usage.aggregation.ticks.coalesced");
+    this.notLeaderCounter = meterRegistry.counter("usage.aggregation.ticks.skipped");
+    this.leaseLostCounter = meterRegistry.counter("usage.aggregation.lease.lost");
+    meterRegistry.gauge("usage.aggregation.interval", this, r -> r.intervalMs / 1000.0);
+  }
+
+  @Scheduled(fixedDelay = 1000)
+  public void tick() {
+    final long now = System.currentTimeMillis();
+    if (now < nextRunAt) {
+      return;
+    }
+    if (running.get()) {
+      if (!coalesced) {
+        coalesced = true;
+        coalescedCounter.increment();
+      }
+      return;
+    }
+    if (!lease.acquire(leaseTtl)) {
+      notLeaderCounter.increment();
+      nextRunAt = now + intervalMs;
+      return;
+    }
+    running.set(true);
+    nextRunAt = now + intervalMs;
+    runner.execute(this::runOnce);
+  }
+
+  private void runOnce() {
+    final AggregationRun run = new AggregationRun(phaseTimers);
+    final ScheduledFuture<?> renewal =
+        renewer.scheduleAtFixedRate(
+            () -> renewLease(run),
+            leaseTtl.toMillis() / 3,
+            leaseTtl.toMillis() / 3,
+            TimeUnit.MILLISECONDS);
+    final long start = System.nanoTime();
+    try {
+      usageService.aggregateDeviceEnergyUsage(run);
+    } catch (Exception e) {
+      log.error("Aggregation run failed", e);
+    } finally {
+      renewal.cancel(false);
+      final long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      runTimer.record(durationMs, TimeUnit.MILLISECONDS);
+      adaptInterval(durationMs);
+      if (run.isLeaseHeld()) {
+        // hold on to the job until the next run is due, plus the usual grace
+        lease.renew(Duration.ofMillis(intervalMs).plus(leaseTtl));
+      }
+      if (coalesced) {
+        coalesced = false;
+        nextRunAt = System.currentTimeMillis();
+      }
+      running.set(false);
+    }
+  }
+
+  private void renewLease(AggregationRun run) {
+    try {
+      if (run.isLeaseHeld() && !lease.renew(leaseTtl)) {
+        run.leaseLost();
+        leaseLostCounter.increment();
+        log.warn("Aggregation lease lost mid-run, results of this run will not be published");
+      }
+    } catch (Exception e) {
+      log.error("Error renewing aggregation lease", e);
+    }
+  }
+
+  private void adaptInterval(long durationMs) {
+    final long base = baseInterval.toMillis();
+    final long target = Math.min(maxInterval.toMillis(), Math.max(base, durationMs * 2));
+    final long previous = intervalMs;
+    // grow straight away, shrink by half the gap per run so one fast run does not undo it
+    intervalMs = target >= previous ? target : previous - (previous - target + 1) / 2;
+    if (intervalMs != previous) {
+      log.info(
+          "Aggregation interval {} ms -> {} ms (last run {} ms)", previous, intervalMs, durationMs);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    runner.shutdown();
+    try {
+      runner.awaitTermination(leaseTtl.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    renewer.shutdownNow();
+    try {
+      lease.release();
+    } catch (Exception e) {
+      log.warn("Could not release aggregation lease", e);
+    }
+  }
+}
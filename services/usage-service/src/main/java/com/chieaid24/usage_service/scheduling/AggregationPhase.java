@@ -0,0 +1,13 @@
+package com.chieaid24.usage_service.scheduling;
+
+public enum AggregationPhase {
+  QUERY,
+  DEVICE_LOOKUP,
+  USER_LOOKUP,
+  EVALUATION,
+  PUBLISH;
+
+  public String tagValue() {
+    return name().toLowerCase();
+  }
+}
@@ -0,0 +1,34 @@
+package com.chieaid24.usage_service.scheduling;
+
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handle for one aggregation run. The job marks each phase as it finishes, and checks that the
+ * lease is still held before it publishes anything.
+ */
+public class AggregationRun {
+
+  private final Timer[] phaseTimers;
+  private long phaseStart = System.nanoTime();
+  private volatile boolean leaseLost;
+
+  AggregationRun(Timer[] phaseTimers) {
+    this.phaseTimers = phaseTimers;
+  }
+
+  /** Records the time since the previous phase ended as {@code phase}. */
+  public void completed(AggregationPhase phase) {
+    final long now = System.nanoTime();
+    phaseTimers[phase.ordinal()].record(now - phaseStart, TimeUnit.NANOSECONDS);
+    phaseStart = now;
+  }
+
+  public boolean isLeaseHeld() {
+    return !leaseLost;
+  }
+
+  void leaseLost() {
+    leaseLost = true;
+  }
+}
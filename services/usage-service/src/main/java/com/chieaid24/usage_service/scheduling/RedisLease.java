@@ -0,0 +1,80 @@
+package com.chieaid24.usage_service.scheduling;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/**
+ * A Redis key owned by one replica at a time. The value is a token unique to this process, so only
+ * the owner can extend or release the lease and a replica that stalls past the TTL cannot delete a
+ * lease someone else has since taken.
+ */
+public class RedisLease {
+
+  private static final RedisScript<Long> ACQUIRE =
+      new DefaultRedisScript<>(
+          """
+          local owner = redis.call('get', KEYS[1])
+          if owner == ARGV[1] then
+            redis.call('pexpire', KEYS[1], ARGV[2])
+            return 1
+          end
+          if not owner then
+            redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            return 1
+          end
+          return 0
+          """,
+          Long.class);
+
+  private static final RedisScript<Long> RENEW =
+      new DefaultRedisScript<>(
+          """
+          if redis.call('get', KEYS[1]) == ARGV[1] then
+            return redis.call('pexpire', KEYS[1], ARGV[2])
+          end
+          return 0
+          """,
+          Long.class);
+
+  private static final RedisScript<Long> RELEASE =
+      new DefaultRedisScript<>(
+          """
+          if redis.call('get', KEYS[1]) == ARGV[1] then
+            return redis.call('del', KEYS[1])
+          end
+          return 0
+          """,
+          Long.class);
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final List<String> keys;
+  private final String token = UUID.randomUUID().toString();
+
+  public RedisLease(StringRedisTemplate stringRedisTemplate, String key) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.keys = List.of(key);
+  }
+
+  /** Takes the lease, or extends it if this process already holds it. */
+  public boolean acquire(Duration ttl) {
+    return run(ACQUIRE, ttl);
+  }
+
+  /** Extends the lease; false means it expired and may now belong to another replica. */
+  public boolean renew(Duration ttl) {
+    return run(RENEW, ttl);
+  }
+
+  public void release() {
+    stringRedisTemplate.execute(RELEASE, keys, token);
+  }
+
+  private boolean run(RedisScript<Long> script, Duration ttl) {
+    Long result = stringRedisTemplate.execute(script, keys, token, String.valueOf(ttl.toMillis()));
+    return result != null && result == 1L;
+  }
+}
@@ -0,0 +1,184 @@
+package com.chieaid24.usage_service.service;
+
+import com.chieaid24.usage_service.archive.UsageArchive;
+import com.chieaid24.usage_service.client.DeviceClient;
+import com.chieaid24.usage_service.dto.BatchUsageRequest;
+import com.chieaid24.usage_service.dto.DeviceDto;
+import com.chieaid24.usage_service.dto.UsageDto;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Usage of many users at once. Devices are resolved with one bulk device-service call and usage
+ * with one grouped scan of raw {@code energy_usage} (plus the archive for days Influx no longer
+ * holds), so a report over every customer costs the same handful of round trips as one over a
+ * single user. It reads the same series as the single-user endpoint and attributes usage by the
+ * devices each user owns now, so both report the same totals.
+ */
+@Slf4j
+@Service
+public class BatchUsageService {
+
+  private final DeviceClient deviceClient;
+  private final InfluxDBClient influxDBClient;
+  private final UsageArchive usageArchive;
+  private final int maxUsers;
+  private final int filterLimit;
+
+  @Value("${influx.bucket}")
+  private String bucket;
+
+  @Value("${influx.org}")
+  private String influxOrg;
+
+  public BatchUsageService(
+      DeviceClient deviceClient,
+      InfluxDBClient influxDBClient,
+      UsageArchive usageArchive,
+      @Value("${usage.batch.max-users:200000}") int maxUsers,
+      @Value("${usage.batch.filter-limit:200}") int filterLimit) {
+    this.deviceClient = deviceClient;
+    this.influxDBClient = influxDBClient;
+    this.usageArchive = usageArchive;
+    this.maxUsers = maxUsers;
+    this.filterLimit = filterLimit;
+  }
+
+  /**
+   * Resolves devices and totals up front, so a bad request or a failing dependency is reported
+   * before any output is written. The returned report only formats results.
+   */
+  public BatchUsage load(BatchUsageRequest request) {
+    if (request == null || request.userIds() == null || request.userIds().isEmpty()) {
+      throw new IllegalArgumentException("userIds must not be empty");
+    }
+    final List<Long> userIds =
+        List.copyOf(
+            new LinkedHashSet<>(request.userIds().stream().filter(Objects::nonNull).toList()));
+    if (userIds.size() > maxUsers) {
+      throw new IllegalArgumentException("At most " + maxUsers + " users per batch");
+    }
+    final Instant to = request.to() != null ? request.to() : Instant.now();
+    final Instant from = request.from() != null ? request.from() : to.minus(Duration.ofDays(3));
+    if (!from.isBefore(to)) {
+      throw new IllegalArgumentException("from must be before to");
+    }
+
+    final Map<Long, List<DeviceDto>> devicesByUser = new HashMap<>();
+    for (DeviceDto device : deviceClient.getAllDevicesForUsers(userIds)) {
+      if (device.userId() != null && device.id() != null) {
+        devicesByUser.computeIfAbsent(device.userId(), id -> new ArrayList<>()).add(device);
+      }
+    }
+
+    // days older than the cutover are answered from the archive, the rest from Influx
+    final Instant cutover = usageArchive.influxCutover();
+    final Set<Long> deviceIds =
+        devicesByUser.values().stream()
+            .flatMap(List::stream)
+            .map(DeviceDto::id)
+            .collect(Collectors.toCollection(HashSet::new));
+    final Map<Long, Double> totals = new HashMap<>();
+    if (from.isBefore(cutover)) {
+      totals.putAll(usageArchive.sumByDevice(deviceIds, from, to.isBefore(cutover) ? to : cutover));
+    }
+    if (to.isAfter(cutover) && !deviceIds.isEmpty()) {
+      final String fluxQuery =
+          deviceTotalsQuery(bucket, from.isBefore(cutover) ? cutover : from, to, deviceIds);
+      for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, influxOrg)) {
+        addDeviceTotals(table.getRecords(), deviceIds, totals);
+      }
+    }
+
+    log.info(
+        "Loaded batch usage for {} users and {} devices between {} and {}",
+        userIds.size(),
+        totals.size(),
+        from,
+        to);
+    return new BatchUsage(userIds, devicesByUser, totals);
+  }
+
+  /**
+   * Per-device sums of raw usage in {@code [start, stop)}. Up to {@code filter-limit} devices are
+   * filtered in the query; past that, Influx scans every device and the caller drops the rest.
+   */
+  String deviceTotalsQuery(String bucket, Instant start, Instant stop, Collection<Long> deviceIds) {
+    final String deviceFilter =
+        deviceIds.size() <= filterLimit
+            ? String.format(
+                "|> filter(fn: (r) => r[\"deviceId\"] =~ /^(%s)$/)",
+                deviceIds.stream().map(String::valueOf).collect(Collectors.joining("|")))
+            : "";
+    return String.format(
+        """
+        from(bucket: "%s")
+            |> range(start: time(v: "%s"), stop: time(v: "%s"))
+            |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+            |> filter(fn: (r) => r["_field"] == "energyConsumed")
+            %s
+            |> group(columns: ["deviceId"])
+            |> sum(column: "_value")
+        """,
+        bucket, start, stop, deviceFilter);
+  }
+
+  static void addDeviceTotals(
+      List<FluxRecord> records, Set<Long> deviceIds, Map<Long, Double> totals) {
+    for (FluxRecord record : records) {
+      final Object deviceIdObj = record.getValueByKey("deviceId");
+      if (deviceIdObj == null) {
+        continue;
+      }
+      try {
+        final Long deviceId = Long.valueOf(deviceIdObj.toString());
+        if (deviceIds.contains(deviceId) && record.getValue() instanceof Number energy) {
+          totals.merge(deviceId, energy.doubleValue(), Double::sum);
+        }
+      } catch (NumberFormatException nfe) {
+        log.error("Invalid device id in usage record: {}", record, nfe);
+      }
+    }
+  }
+
+  public record BatchUsage(
+      List<Long> userIds, Map<Long, List<DeviceDto>> devicesByUser, Map<Long, Double> totals) {
+
+    /** Hands out one {@link UsageDto} per requested user, in request order. */
+    public void forEach(Consumer<UsageDto> sink) {
+      for (Long userId : userIds) {
+        final List<DeviceDto> devices =
+            devicesByUser.getOrDefault(userId, List.of()).stream()
+                .map(
+                    d ->
+                        DeviceDto.builder()
+                            .id(d.id())
+                            .userId(d.userId())
+                            .name(d.name())
+                            .type(d.type())
+                            .location(d.location())
+                            .energyConsumed(totals.getOrDefault(d.id(), 0.0))
+                            .build())
+                .toList();
+        sink.accept(UsageDto.builder().userId(userId).devices(devices).build());
+      }
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package com.chieaid24.usage_service.service;
+
+import com.chieaid24.usage_service.client.DeviceClient;
+import com.chieaid24.usage_service.config.KafkaConsumerConfig;
+import com.chieaid24.usage_service.dto.DeviceDto;
+import com.chieaid24.usage_service.liveness.DeviceLivenessTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Local deviceId -> device table, replicated from the compacted {@code device-changes} topic that
+ * device-service fills from its outbox. Replicated entries never expire, and leave only on a
+ * tombstone, which device-service writes for cascade deletes too, and which also stops liveness
+ * tracking of the device. Devices the feed has not delivered yet are fetched over REST and kept for
+ * {@code ttl}.
+ */
+@Slf4j
+@Component
+public class DeviceDirectory {
+
+  private final DeviceClient deviceClient;
+  private final DeviceLivenessTracker deviceLivenessTracker;
+  private final Duration ttl;
+  private final JsonMapper jsonMapper;
+  private final Counter skippedRecords;
+  private final Map<Long, CachedDevice> devices = new ConcurrentHashMap<>();
+
+  public DeviceDirectory(
+      DeviceClient deviceClient,
+      DeviceLivenessTracker deviceLivenessTracker,
+      @Value("${usage.device-directory.ttl:PT10M}") Duration ttl,
+      JsonMapper jsonMapper,
+      MeterRegistry meterRegistry) {
+    this.deviceClient = deviceClient;
+    this.deviceLivenessTracker = deviceLivenessTracker;
+    this.ttl = ttl;
+    this.jsonMapper = jsonMapper;
+    this.skippedRecords = meterRegistry.counter("usage.device-directory.skipped");
+  }
+
+  @KafkaListener(
+      topicPartitions =
+          @TopicPartition(
+              topic = KafkaConsumerConfig.DEVICE_CHANGES_TOPIC,
+              partitions = "#{@kafkaConsumerConfig.partitions('device-changes')}"),
+      containerFactory = "deviceChangesListenerFactory",
+      autoStartup = "${usage.device-directory.replicate:true}")
+  public void onDeviceChange(ConsumerRecord<String, String> record) {
+    final Long deviceId;
+    final DeviceDto device;
+    try {
+      deviceId = Long.valueOf(record.key());
+      device =
+          record.value() != null ? jsonMapper.readValue(record.value(), DeviceDto.class) : null;
+    } catch (RuntimeException e) {
+      // one bad record must not stop replication of every later change
+      skippedRecords.increment();
+      log.error(
+          "Skipping unreadable device change at {}-{}@{}",
+          record.topic(),
+          record.partition(),
+          record.offset(),
+          e);
+      return;
+    }
+    if (device == null) {
+      devices.remove(deviceId);
+      deviceLivenessTracker.removeDevice(deviceId);
+      return;
+    }
+    devices.put(deviceId, new CachedDevice(device, CachedDevice.REPLICATED));
+  }
+
+  /**
+   * The device as this replica last saw it, without ever calling device-service. For callers on a
+   * consumer thread, which must not block on a remote lookup.
+   */
+  public DeviceDto peekDevice(Long deviceId) {
+    final CachedDevice cached = devices.get(deviceId);
+    return cached != null ? cached.device() : null;
+  }
+
+  public DeviceDto getDevice(Long deviceId) {
+    final long now = System.currentTimeMillis();
+    final CachedDevice cached = devices.get(deviceId);
+    if (cached != null && cached.expiresAt() > now) {
+      return cached.device();
+    }
+    try {
+      final DeviceDto device = deviceClient.getDeviceById(deviceId);
+      if (device == null || device.id() == null) {
+        devices.remove(deviceId);
+        return null;
+      }
+      return cache(device, now);
+    } catch (Exception e) {
+      log.error("Error fetching device data for ID: {}", deviceId, e);
+      // serve the stale entry rather than dropping the device from a whole run
+      return cached != null ? cached.device() : null;
+    }
+  }
+
+  /**
+   * The devices among {@code deviceIds} that exist, by id. Replicated and fresh entries are served
+   * locally, and only the rest are fetched, in one bulk lookup.
+   */
+  public Map<Long, DeviceDto> getDevices(Collection<Long> deviceIds) {
+    final long now = System.currentTimeMillis();
+    final Map<Long, DeviceDto> found = new HashMap<>();
+    final List<Long> missing = new ArrayList<>();
+    for (Long deviceId : deviceIds) {
+      final CachedDevice cached = devices.get(deviceId);
+      if (cached != null && cached.expiresAt() > now) {
+        found.put(deviceId, cached.device());
+      } else {
+        missing.add(deviceId);
+      }
+    }
+    if (missing.isEmpty()) {
+      return found;
+    }
+    try {
+      for (DeviceDto device : deviceClient.getDevicesByIds(missing)) {
+        if (device.id() != null) {
+          found.put(device.id(), cache(device, now));
+        }
+      }
+    } catch (Exception e) {
+      log.error("Error fetching device data for {} devices", missing.size(), e);
+      for (Long deviceId : missing) {
+        final CachedDevice stale = devices.get(deviceId);
+        if (stale != null) {
+          found.put(deviceId, stale.device());
+        }
+      }
+    }
+    return found;
+  }
+
+  // the feed may have caught up while the request was in flight, and it always wins
+  private DeviceDto cache(DeviceDto device, long now) {
+    final CachedDevice fetched = new CachedDevice(device, now + ttl.toMillis());
+    return devices
+        .compute(
+            device.id(),
+            (id, existing) ->
+                existing != null && existing.expiresAt() == CachedDevice.REPLICATED
+                    ? existing
+                    : fetched)
+        .device();
+  }
+
+  /**
+   * Distinct owners of the devices this replica holds, which once the feed has caught up is every
+   * user with a device.
+   */
+  public long ownerCount() {
+    return devices.values().stream()
+        .map(cached -> cached.device().userId())
+        .filter(Objects::nonNull)
+        .distinct()
+        .count();
+  }
+
+  private record CachedDevice(DeviceDto device, long expiresAt) {
+    static final long REPLICATED = Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,54 @@
+package com.chieaid24.usage_service.service;
+
+import com.chieaid24.usage_service.archive.UsageArchive;
+import com.chieaid24.usage_service.dto.DimensionUsageDto;
+import com.chieaid24.usage_service.model.UsageDimension;
+import java.time.Duration;
+import java.time.Instant;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Usage grouped by location or device type, read from the dimension rollups written alongside the
+ * hourly device rollup. A read touches one series per location or type and hour, however many
+ * devices are behind it. The dimension rollups are not archived, so ranges are clamped to what
+ * Influx still holds and the returned {@code from} says where the data starts.
+ */
+@Slf4j
+@Service
+public class DimensionUsageService {
+
+  private final UsageRollupService usageRollupService;
+  private final UsageArchive usageArchive;
+
+  public DimensionUsageService(UsageRollupService usageRollupService, UsageArchive usageArchive) {
+    this.usageRollupService = usageRollupService;
+    this.usageArchive = usageArchive;
+  }
+
+  public DimensionUsageDto getUserUsage(Long userId, UsageDimension dimension, int days) {
+    return query(userId, dimension, days);
+  }
+
+  public DimensionUsageDto getFleetUsageByType(int days) {
+    return query(null, UsageDimension.TYPE, days);
+  }
+
+  private DimensionUsageDto query(Long userId, UsageDimension dimension, int days) {
+    if (days <= 0) {
+      throw new IllegalArgumentException("days must be positive");
+    }
+    final Instant to = Instant.now();
+    final Instant requested = to.minus(Duration.ofDays(days));
+    final Instant cutover = usageArchive.influxCutover();
+    final Instant from = requested.isBefore(cutover) ? cutover : requested;
+    log.info("Getting {} usage for userId: {} since {}", dimension, userId, from);
+    return DimensionUsageDto.builder()
+        .userId(userId)
+        .dimension(dimension)
+        .from(from)
+        .to(to)
+        .energyConsumed(usageRollupService.getDimensionTotals(dimension, userId, from, to))
+        .build();
+  }
+}
@@ -0,0 +1,191 @@
+package com.chieaid24.usage_service.service;
+
+import com.chieaid24.usage_service.dto.HouseholdComparisonDto;
+import com.chieaid24.usage_service.model.UsagePeriod;
+import com.chieaid24.usage_service.sketch.QuantileSketch;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Fleet distribution of per-user daily and weekly totals. The sketch buckets live in a Redis hash
+ * and are only ever changed with HINCRBY, in the same transaction as the per-user totals they were
+ * derived from, so every replica sees the same merged sketch. Each replica keeps a frozen snapshot
+ * for lookups and re-reads it after {@code snapshot-ttl}.
+ */
+@Slf4j
+@Service
+public class HouseholdComparisonService {
+
+  private static final int MAX_UPDATE_ATTEMPTS = 5;
+
+  private final StringRedisTemplate stringRedisTemplate;
+  private final Duration snapshotTtl;
+  private final Map<UsagePeriod, CachedSnapshot> snapshots = new ConcurrentHashMap<>();
+
+  public HouseholdComparisonService(
+      StringRedisTemplate stringRedisTemplate,
+      @Value("${usage.household.snapshot-ttl:PT30S}") Duration snapshotTtl) {
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.snapshotTtl = snapshotTtl;
+  }
+
+  /**
+   * Moves every user whose total changed into its new bucket. Users missing from {@code totals} no
+   * longer have usage in the period and are taken out of the sketch. The totals are read under
+   * WATCH and the changes applied in one MULTI, so two overlapping runs cannot both move the same
+   * user; the loser re-reads and retries.
+   */
+  public void update(UsagePeriod period, Map<Long, Double> totals) {
+    for (int attempt = 1; attempt <= MAX_UPDATE_ATTEMPTS; attempt++) {
+      final SketchUpdate update = stringRedisTemplate.execute(new UpdateSession(period, totals));
+      if (update != null) {
+        log.info(
+            "Household {} sketch updated: {} users, {} buckets moved, {} removed",
+            period,
+            totals.size(),
+            update.bucketsMoved(),
+            update.usersRemoved());
+        return;
+      }
+      log.debug("Household {} sketch changed during update, retrying ({})", period, attempt);
+    }
+    log.warn(
+        "Household {} sketch not updated, it kept changing for {} attempts",
+        period,
+        MAX_UPDATE_ATTEMPTS);
+  }
+
+  public HouseholdComparisonDto compare(Long userId, UsagePeriod period) {
+    final QuantileSketch.Snapshot snapshot = snapshot(period);
+    final Object rawTotal =
+        stringRedisTemplate.opsForHash().get(totalsKey(period), String.valueOf(userId));
+    final Double userTotal = rawTotal == null ? null : Double.valueOf(rawTotal.toString());
+
+    return HouseholdComparisonDto.builder()
+        .userId(userId)
+        .period(period)
+        .energyConsumed(userTotal)
+        .percentile(userTotal == null ? null : snapshot.percentileRank(userTotal))
+        .p10(snapshot.quantile(0.10))
+        .p50(snapshot.quantile(0.50))
+        .p90(snapshot.quantile(0.90))
+        .households(snapshot.count())
+        .build();
+  }
+
+  /** Latest per-user totals for {@code period}, as last written by the rollup job. */
+  public Map<Long, Double> totals(UsagePeriod period) {
+    final Map<Long, Double> totals = new HashMap<>();
+    stringRedisTemplate
+        .<String, String>opsForHash()
+        .entries(totalsKey(period))
+        .forEach((userId, total) -> totals.put(Long.valueOf(userId), Double.valueOf(total)));
+    return totals;
+  }
+
+  private QuantileSketch.Snapshot snapshot(UsagePeriod period) {
+    final long now = System.currentTimeMillis();
+    final CachedSnapshot cached = snapshots.get(period);
+    if (cached != null && cached.expiresAt() > now) {
+      return cached.snapshot();
+    }
+    final QuantileSketch sketch = new QuantileSketch();
+    final Map<String, String> buckets =
+        stringRedisTemplate.<String, String>opsForHash().entries(bucketsKey(period));
+    buckets.forEach(
+        (index, count) -> sketch.addToBucket(Integer.parseInt(index), Long.parseLong(count)));
+    final QuantileSketch.Snapshot snapshot = sketch.snapshot();
+    snapshots.put(period, new CachedSnapshot(snapshot, now + snapshotTtl.toMillis()));
+    return snapshot;
+  }
+
+  private static String bucketsKey(UsagePeriod period) {
+    return "household:" + period.name().toLowerCase() + ":buckets";
+  }
+
+  private static String totalsKey(UsagePeriod period) {
+    return "household:" + period.name().toLowerCase() + ":totals";
+  }
+
+  private record CachedSnapshot(QuantileSketch.Snapshot snapshot, long expiresAt) {}
+
+  private record SketchUpdate(int bucketsMoved, int usersRemoved) {}
+
+  /** One optimistic attempt; returns null when another update got in between. */
+  private static final class UpdateSession implements SessionCallback<SketchUpdate> {
+    private final UsagePeriod period;
+    private final Map<Long, Double> totals;
+
+    UpdateSession(UsagePeriod period, Map<Long, Double> totals) {
+      this.period = period;
+      this.totals = totals;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> SketchUpdate execute(RedisOperations<K, V> operations) {
+      final RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+      final String totalsKey = totalsKey(period);
+      final String bucketsKey = bucketsKey(period);
+      ops.watch(List.of(totalsKey, bucketsKey));
+      final HashOperations<String, String, String> hashOps = ops.opsForHash();
+      final Map<String, String> previousTotals = hashOps.entries(totalsKey);
+
+      final Map<Integer, Long> bucketDeltas = new HashMap<>();
+      final Map<String, String> changedTotals = new HashMap<>();
+      for (Map.Entry<Long, Double> entry : totals.entrySet()) {
+        final String userId = String.valueOf(entry.getKey());
+        final int newBucket = QuantileSketch.bucketIndex(entry.getValue());
+        final String previous = previousTotals.remove(userId);
+        if (previous == null) {
+          bucketDeltas.merge(newBucket, 1L, Long::sum);
+        } else {
+          final int oldBucket = QuantileSketch.bucketIndex(Double.parseDouble(previous));
+          if (oldBucket != newBucket) {
+            bucketDeltas.merge(oldBucket, -1L, Long::sum);
+            bucketDeltas.merge(newBucket, 1L, Long::sum);
+          }
+        }
+        changedTotals.put(userId, String.valueOf(entry.getValue()));
+      }
+
+      final List<Object> removedUsers = new ArrayList<>(previousTotals.keySet());
+      for (String previous : previousTotals.values()) {
+        bucketDeltas.merge(
+            QuantileSketch.bucketIndex(Double.parseDouble(previous)), -1L, Long::sum);
+      }
+      bucketDeltas.values().removeIf(delta -> delta == 0);
+      if (changedTotals.isEmpty() && removedUsers.isEmpty()) {
+        ops.unwatch();
+        return new SketchUpdate(0, 0);
+      }
+
+      ops.multi();
+      for (Map.Entry<Integer, Long> delta : bucketDeltas.entrySet()) {
+        hashOps.increment(bucketsKey, String.valueOf(delta.getKey()), delta.getValue());
+      }
+      if (!changedTotals.isEmpty()) {
+        hashOps.putAll(totalsKey, changedTotals);
+      }
+      if (!removedUsers.isEmpty()) {
+        hashOps.delete(totalsKey, removedUsers.toArray());
+      }
+      final List<Object> results = ops.exec();
+      if (results == null || results.isEmpty()) {
+        return null;
+      }
+      return new SketchUpdate(bucketDeltas.size(), removedUsers.size());
+    }
+  }
+}
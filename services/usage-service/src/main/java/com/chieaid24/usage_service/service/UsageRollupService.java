@@ -0,0 +1,474 @@
+package com.chieaid24.usage_service.service;
+
+import com.chieaid24.usage_service.archive.UsageArchive;
+import com.chieaid24.usage_service.dto.DeviceDto;
+import com.chieaid24.usage_service.model.FleetPage;
+import com.chieaid24.usage_service.model.UsageDimension;
+import com.chieaid24.usage_service.model.UsagePeriod;
+import com.chieaid24.usage_service.scheduling.RedisLease;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.domain.WritePrecision;
+import com.influxdb.client.write.Point;
+import com.influxdb.query.FluxRecord;
+import com.influxdb.query.FluxTable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Maintains the {@code energy_usage_hourly} rollup: one point per device and hour, tagged with the
+ * owning user, location and type. Points are keyed by the hour start, so recomputing an hour
+ * overwrites it instead of double counting; when a device's tags changed since the hour was last
+ * written, the point under the old tags is zeroed. The same pass writes the per-user location and
+ * type rollups and the fleet-wide type rollup (see {@link UsageDimension}), so grouped reads never
+ * scan devices.
+ */
+@Slf4j
+@Service
+public class UsageRollupService {
+
+  public static final String HOURLY_MEASUREMENT = "energy_usage_hourly";
+
+  private static final String PREVIOUS_HOUR_KEY = "usage:previous-hour:totals";
+
+  private final InfluxDBClient influxDBClient;
+  private final DeviceDirectory deviceDirectory;
+  private final HouseholdComparisonService householdComparisonService;
+  private final StringRedisTemplate stringRedisTemplate;
+  private final RedisLease rollupLock;
+  private final Duration rollupLockTtl;
+
+  @Value("${influx.bucket}")
+  private String bucket;
+
+  @Value("${influx.org}")
+  private String influxOrg;
+
+  public UsageRollupService(
+      InfluxDBClient influxDBClient,
+      DeviceDirectory deviceDirectory,
+      HouseholdComparisonService householdComparisonService,
+      StringRedisTemplate stringRedisTemplate,
+      @Value("${usage.rollup.lock-ttl:PT5M}") Duration rollupLockTtl) {
+    this.influxDBClient = influxDBClient;
+    this.deviceDirectory = deviceDirectory;
+    this.householdComparisonService = householdComparisonService;
+    this.stringRedisTemplate = stringRedisTemplate;
+    this.rollupLock = new RedisLease(stringRedisTemplate, "rollup-lock");
+    this.rollupLockTtl = rollupLockTtl;
+  }
+
+  @Scheduled(fixedDelayString = "${usage.rollup.interval-ms:60000}")
+  public void rollupRecentUsage() {
+    if (!rollupLock.acquire(rollupLockTtl)) return;
+
+    final Instant now = Instant.now();
+    // the previous hour is recomputed too so readings that arrived late are folded in
+    final Instant start = now.truncatedTo(ChronoUnit.HOURS).minus(1, ChronoUnit.HOURS);
+    try {
+      final int points = rollup(start, now);
+      log.info("Rolled up {} device-hours since {}", points, start);
+
+      for (UsagePeriod period : UsagePeriod.values()) {
+        householdComparisonService.update(period, getUserTotalsSince(period.startFrom(now)));
+      }
+      storePreviousHourTotals(getUserTotalsBetween(start, start.plus(1, ChronoUnit.HOURS)));
+    } catch (Exception e) {
+      log.error("Error rolling up usage since {}", start, e);
+    } finally {
+      rollupLock.release();
+    }
+  }
+
+  /** Recomputes the hourly rollup for every hour touching {@code [start, stop)}. */
+  public int rollup(Instant start, Instant stop) {
+    final Instant alignedStart = start.truncatedTo(ChronoUnit.HOURS);
+    String fluxQuery =
+        String.format(
+            """
+            from(bucket: "%s")
+                |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                |> filter(fn: (r) => r["_measurement"] == "energy_usage")
+                |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                |> group(columns: ["deviceId"])
+                |> aggregateWindow(every: 1h, fn: sum, createEmpty: false, timeSrc: "_start")
+            """,
+            bucket, alignedStart, stop);
+
+    List<FluxTable> tables = influxDBClient.getQueryApi().query(fluxQuery, influxOrg);
+    List<Point> points = new ArrayList<>();
+    final Map<DeviceHour, String> writtenTags = new HashMap<>();
+    final Map<DimensionKey, Double> dimensionTotals = new HashMap<>();
+    int unresolved = 0;
+    for (FluxTable table : tables) {
+      for (FluxRecord record : table.getRecords()) {
+        Object deviceIdObj = record.getValueByKey("deviceId");
+        if (deviceIdObj == null || record.getTime() == null) {
+          continue;
+        }
+        final DeviceDto device = deviceDirectory.getDevice(Long.valueOf(deviceIdObj.toString()));
+        if (device == null) {
+          unresolved++;
+          continue;
+        }
+        if (device.userId() == null) {
+          continue;
+        }
+        double energyConsumed =
+            record.getValue() instanceof Number ? ((Number) record.getValue()).doubleValue() : 0.0;
+        final Map<String, String> tags =
+            Map.of(
+                "deviceId", String.valueOf(device.id()),
+                "userId", String.valueOf(device.userId()),
+                "location", tagValue(device.location()),
+                "type", tagValue(device.type()));
+        points.add(
+            Point.measurement(HOURLY_MEASUREMENT)
+                .addTags(tags)
+                .addField("energyConsumed", energyConsumed)
+                .time(record.getTime(), WritePrecision.MS));
+        writtenTags.put(new DeviceHour(device.id(), record.getTime()), tagKey(tags));
+
+        final String userId = String.valueOf(device.userId());
+        final String location = tagValue(device.location());
+        final String type = tagValue(device.type());
+        final Instant hour = record.getTime();
+        for (DimensionKey key :
+            List.of(
+                new DimensionKey(UsageDimension.LOCATION, userId, location, hour),
+                new DimensionKey(UsageDimension.TYPE, userId, type, hour),
+                new DimensionKey(UsageDimension.TYPE, null, type, hour))) {
+          dimensionTotals.merge(key, energyConsumed, Double::sum);
+        }
+      }
+    }
+    final int devicePoints = points.size();
+    points.addAll(supersededDevicePoints(alignedStart, stop, writtenTags));
+    dimensionTotals.forEach((key, energy) -> points.add(key.toPoint(energy)));
+    if (unresolved == 0) {
+      points.addAll(staleDimensionPoints(alignedStart, stop, dimensionTotals.keySet()));
+    } else {
+      // a missing device would make its dimensions look stale, so they are left for a later run
+      log.warn("{} device-hours could not be resolved; stale dimension points kept", unresolved);
+    }
+    if (!points.isEmpty()) {
+      influxDBClient.getWriteApiBlocking().writePoints(bucket, influxOrg, points);
+    }
+    return devicePoints;
+  }
+
+  /**
+   * Zero points for the device hours in {@code [start, stop)} that were just rewritten under other
+   * tags. Influx keys a series by its tags, so when a device changes owner, location or type the
+   * point written under its old tags would otherwise keep counting next to the new one.
+   */
+  private List<Point> supersededDevicePoints(
+      Instant start, Instant stop, Map<DeviceHour, String> writtenTags) {
+    String fluxQuery =
+        String.format(
+            """
+            from(bucket: "%s")
+                |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                |> filter(fn: (r) => r["_measurement"] == "%s")
+                |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                |> filter(fn: (r) => r["_value"] != 0.0)
+                |> keep(columns: ["_time", "_value", "deviceId", "userId", "location", "type"])
+            """,
+            bucket, start, stop, HOURLY_MEASUREMENT);
+
+    final List<Point> superseded = new ArrayList<>();
+    for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, influxOrg)) {
+      for (FluxRecord record : table.getRecords()) {
+        Object deviceIdObj = record.getValueByKey("deviceId");
+        if (deviceIdObj == null || record.getTime() == null) {
+          continue;
+        }
+        final Map<String, String> tags = new TreeMap<>();
+        for (String tag : List.of("deviceId", "userId", "location", "type")) {
+          final Object value = record.getValueByKey(tag);
+          if (value != null) {
+            tags.put(tag, value.toString());
+          }
+        }
+        final String written =
+            writtenTags.get(
+                new DeviceHour(Long.parseLong(deviceIdObj.toString()), record.getTime()));
+        if (written != null && !written.equals(tagKey(tags))) {
+          superseded.add(
+              Point.measurement(HOURLY_MEASUREMENT)
+                  .addTags(tags)
+                  .addField("energyConsumed", 0.0)
+                  .time(record.getTime(), WritePrecision.MS));
+        }
+      }
+    }
+    if (!superseded.isEmpty()) {
+      log.info("Re-keyed {} device-hours whose device changed tags", superseded.size());
+    }
+    return superseded;
+  }
+
+  /**
+   * Zero points for the dimension series in {@code [start, stop)} that this run no longer produces.
+   * When a device moves to another location or type, its usage is recomputed under the new value,
+   * and the series under the old one has to stop counting it.
+   */
+  private List<Point> staleDimensionPoints(
+      Instant start, Instant stop, Set<DimensionKey> recomputed) {
+    String fluxQuery =
+        String.format(
+            """
+            from(bucket: "%s")
+                |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                |> filter(fn: (r) => r["_measurement"] == "%s" or r["_measurement"] == "%s"
+                    or r["_measurement"] == "%s")
+                |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                |> filter(fn: (r) => r["_value"] != 0.0)
+            """,
+            bucket,
+            start,
+            stop,
+            UsageDimension.LOCATION.measurement(),
+            UsageDimension.TYPE.measurement(),
+            UsageDimension.FLEET_TYPE_MEASUREMENT);
+
+    final List<Point> stale = new ArrayList<>();
+    for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, influxOrg)) {
+      for (FluxRecord record : table.getRecords()) {
+        final DimensionKey key = DimensionKey.of(record);
+        if (key != null && !recomputed.contains(key)) {
+          stale.add(key.toPoint(0.0));
+        }
+      }
+    }
+    if (!stale.isEmpty()) {
+      log.info("Re-keyed {} dimension hours whose devices changed location or type", stale.size());
+    }
+    return stale;
+  }
+
+  private static String tagKey(Map<String, String> tags) {
+    return new TreeMap<>(tags).toString();
+  }
+
+  /** Total energy per user since {@code start}, read from the hourly rollup. */
+  public Map<Long, Double> getUserTotalsSince(Instant start) {
+    return getUserTotalsBetween(start, Instant.now());
+  }
+
+  /** Total energy per user in {@code [start, stop)}, read from the hourly rollup. */
+  public Map<Long, Double> getUserTotalsBetween(Instant start, Instant stop) {
+    String fluxQuery =
+        String.format(
+            """
+            from(bucket: "%s")
+                |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                |> filter(fn: (r) => r["_measurement"] == "%s")
+                |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                |> group(columns: ["userId"])
+                |> sum(column: "_value")
+            """,
+            bucket, start, stop, HOURLY_MEASUREMENT);
+
+    final Map<Long, Double> totals = new HashMap<>();
+    for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, influxOrg)) {
+      for (FluxRecord record : table.getRecords()) {
+        Object userIdObj = record.getValueByKey("userId");
+        if (userIdObj == null) {
+          continue;
+        }
+        double energyConsumed =
+            record.getValue() instanceof Number ? ((Number) record.getValue()).doubleValue() : 0.0;
+        totals.merge(Long.valueOf(userIdObj.toString()), energyConsumed, Double::sum);
+      }
+    }
+    return totals;
+  }
+
+  /**
+   * Visits every device hour of the rollup in {@code [start, stop)}, for one user, or when {@code
+   * userId} is null for the users on {@code page}. Either selection is made on the {@code userId}
+   * tag, so Influx skips other users' series rather than reading and dropping them. Records are
+   * streamed from Influx rather than collected first, so a fleet-wide scan only holds what the
+   * visitor keeps. Each hour carries the owner the device had in that hour.
+   */
+  public void forEachDeviceHour(
+      Instant start, Instant stop, Long userId, FleetPage page, UsageArchive.HourVisitor visitor) {
+    final String userFilter;
+    if (userId != null) {
+      userFilter = String.format("|> filter(fn: (r) => r[\"userId\"] == \"%s\")", userId);
+    } else if (page.userIdRegex() != null) {
+      userFilter = String.format("|> filter(fn: (r) => r[\"userId\"] =~ /%s/)", page.userIdRegex());
+    } else {
+      userFilter = "";
+    }
+    String fluxQuery =
+        String.format(
+            """
+            from(bucket: "%s")
+                |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                |> filter(fn: (r) => r["_measurement"] == "%s")
+                |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                %s
+                |> keep(columns: ["_time", "_value", "deviceId", "userId"])
+            """,
+            bucket, start, stop, HOURLY_MEASUREMENT, userFilter);
+
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+    influxDBClient
+        .getQueryApi()
+        .query(
+            fluxQuery,
+            influxOrg,
+            (cancellable, record) -> {
+              Object deviceIdObj = record.getValueByKey("deviceId");
+              Object userIdObj = record.getValueByKey("userId");
+              if (deviceIdObj == null || userIdObj == null || record.getTime() == null) {
+                return;
+              }
+              double energyConsumed =
+                  record.getValue() instanceof Number
+                      ? ((Number) record.getValue()).doubleValue()
+                      : 0.0;
+              visitor.accept(
+                  Long.parseLong(deviceIdObj.toString()),
+                  Long.parseLong(userIdObj.toString()),
+                  record.getTime(),
+                  energyConsumed);
+            },
+            done::completeExceptionally,
+            () -> done.complete(null));
+    try {
+      done.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading the hourly rollup", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Error reading the hourly rollup", e.getCause());
+    }
+  }
+
+  /** Per-user totals of the last complete hour, as of the latest rollup. */
+  public Map<Long, Double> getPreviousHourTotals() {
+    final Map<Long, Double> totals = new HashMap<>();
+    stringRedisTemplate
+        .<String, String>opsForHash()
+        .entries(PREVIOUS_HOUR_KEY)
+        .forEach((userId, total) -> totals.put(Long.valueOf(userId), Double.valueOf(total)));
+    return totals;
+  }
+
+  private void storePreviousHourTotals(Map<Long, Double> totals) {
+    if (totals.isEmpty()) {
+      stringRedisTemplate.delete(PREVIOUS_HOUR_KEY);
+      return;
+    }
+    final Map<String, String> values = new HashMap<>();
+    totals.forEach((userId, total) -> values.put(String.valueOf(userId), String.valueOf(total)));
+    // written aside and renamed so readers never see a half-filled hash
+    final String stagingKey = PREVIOUS_HOUR_KEY + ":staging";
+    stringRedisTemplate.delete(stagingKey);
+    stringRedisTemplate.<String, String>opsForHash().putAll(stagingKey, values);
+    stringRedisTemplate.rename(stagingKey, PREVIOUS_HOUR_KEY);
+  }
+
+  /**
+   * Energy per location or type in {@code [start, stop)} for one user, or for the whole fleet when
+   * {@code userId} is null (type only), read from the dimension rollups.
+   */
+  public Map<String, Double> getDimensionTotals(
+      UsageDimension dimension, Long userId, Instant start, Instant stop) {
+    final String measurement =
+        userId == null ? UsageDimension.FLEET_TYPE_MEASUREMENT : dimension.measurement();
+    final String userFilter =
+        userId == null
+            ? ""
+            : String.format("|> filter(fn: (r) => r[\"userId\"] == \"%s\")", userId);
+    String fluxQuery =
+        String.format(
+            """
+            from(bucket: "%s")
+                |> range(start: time(v: "%s"), stop: time(v: "%s"))
+                |> filter(fn: (r) => r["_measurement"] == "%s")
+                |> filter(fn: (r) => r["_field"] == "energyConsumed")
+                %s
+                |> group(columns: ["%s"])
+                |> sum(column: "_value")
+            """,
+            bucket, start, stop, measurement, userFilter, dimension.tag());
+
+    final Map<String, Double> totals = new HashMap<>();
+    for (FluxTable table : influxDBClient.getQueryApi().query(fluxQuery, influxOrg)) {
+      for (FluxRecord record : table.getRecords()) {
+        Object value = record.getValueByKey(dimension.tag());
+        if (value == null) {
+          continue;
+        }
+        double energyConsumed =
+            record.getValue() instanceof Number ? ((Number) record.getValue()).doubleValue() : 0.0;
+        totals.merge(value.toString(), energyConsumed, Double::sum);
+      }
+    }
+    return totals;
+  }
+
+  static String tagValue(String value) {
+    return value == null || value.isBlank() ? "unknown" : value;
+  }
+
+  private record DeviceHour(long deviceId, Instant hour) {}
+
+  /** One point of a dimension rollup; a null {@code userId} is the fleet-wide series. */
+  private record DimensionKey(UsageDimension dimension, String userId, String value, Instant hour) {
+    /** The key of a point read back from one of the dimension measurements. */
+    static DimensionKey of(FluxRecord record) {
+      final String measurement = record.getMeasurement();
+      if (record.getTime() == null || measurement == null) {
+        return null;
+      }
+      if (measurement.equals(UsageDimension.FLEET_TYPE_MEASUREMENT)) {
+        final Object type = record.getValueByKey(UsageDimension.TYPE.tag());
+        return type == null
+            ? null
+            : new DimensionKey(UsageDimension.TYPE, null, type.toString(), record.getTime());
+      }
+      for (UsageDimension dimension : UsageDimension.values()) {
+        if (measurement.equals(dimension.measurement())) {
+          final Object userId = record.getValueByKey("userId");
+          final Object value = record.getValueByKey(dimension.tag());
+          return userId == null || value == null
+              ? null
+              : new DimensionKey(dimension, userId.toString(), value.toString(), record.getTime());
+        }
+      }
+      return null;
+    }
+
+    Point toPoint(double energyConsumed) {
+      if (userId == null) {
+        return Point.measurement(UsageDimension.FLEET_TYPE_MEASUREMENT)
+            .addTag(dimension.tag(), value)
+            .addField("energyConsumed", energyConsumed)
+            .time(hour, WritePrecision.MS);
+      }
+      return Point.measurement(dimension.measurement())
+          .addTag("userId", userId)
+          .addTag(dimension.tag(), value)
+          .addField("energyConsumed", energyConsumed)
+          .time(hour, WritePrecision.MS);
+    }
+  }
+}
@@ -1,43 +1,69 @@
 package com.chieaid24.usage_service.service;
 
+import com.chieaid24.kafka.event.AlertType;
 import com.chieaid24.kafka.event.AlertingEvent;
 import com.chieaid24.kafka.event.EnergyUsageEvent;
+import com.chieaid24.usage_service.anomaly.DeviceAnomalyDetector;
+import com.chieaid24.usage_service.archive.UsageArchive;
 import com.chieaid24.usage_service.client.DeviceClient;
 import com.chieaid24.usage_service.client.UserClient;
+import com.chieaid24.usage_service.config.KafkaConsumerConfig;
 import com.chieaid24.usage_service.dto.DeviceDto;
 import com.chieaid24.usage_service.dto.UsageDto;
 import com.chieaid24.usage_service.dto.UserDto;
+import com.chieaid24.usage_service.forecast.UsageForecaster;
+import com.chieaid24.usage_service.ingest.InfluxWritePipeline;
+import com.chieaid24.usage_service.ingest.IngestFlowController;
+import com.chieaid24.usage_service.liveness.DeviceLivenessTracker;
 import com.chieaid24.usage_service.model.Device;
 import com.chieaid24.usage_service.model.DeviceEnergy;
+import com.chieaid24.usage_service.model.PendingAlert;
+import com.chieaid24.usage_service.rules.RuleEngine;
+import com.chieaid24.usage_service.scheduling.AggregationJobRunner;
+import com.chieaid24.usage_service.scheduling.AggregationPhase;
+import com.chieaid24.usage_service.scheduling.AggregationRun;
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.QueryApi;
 import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
 import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.log.LogAccessor;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
 @Service
 @Slf4j
-public class UsageService {
+public class UsageService implements ConsumerSeekAware {
+
+  private static final LogAccessor LOG_ACCESSOR = new LogAccessor(UsageService.class);
 
   private InfluxDBClient influxDBClient;
   private DeviceClient deviceClient;
+  private DeviceDirectory deviceDirectory;
   private UserClient userClient;
 
   @Value("${influx.bucket}")
@@ -48,39 +74,133 @@ public class UsageService {
 
   private final KafkaTemplate<String, AlertingEvent> kafkaTemplate;
   private final StringRedisTemplate stringRedisTemplate;
+  private final DeviceLivenessTracker deviceLivenessTracker;
+  private final DeviceAnomalyDetector deviceAnomalyDetector;
+  private final RuleEngine ruleEngine;
+  private final UsageForecaster usageForecaster;
+  private final InfluxWritePipeline influxWritePipeline;
+  private final UsageArchive usageArchive;
 
   public UsageService(
       InfluxDBClient influxDBClient,
       DeviceClient deviceClient,
+      DeviceDirectory deviceDirectory,
       UserClient userClient,
       KafkaTemplate<String, AlertingEvent> kafkaTemplate,
-      StringRedisTemplate stringRedisTemplate) {
+      StringRedisTemplate stringRedisTemplate,
+      DeviceLivenessTracker deviceLivenessTracker,
+      DeviceAnomalyDetector deviceAnomalyDetector,
+      RuleEngine ruleEngine,
+      UsageForecaster usageForecaster,
+      InfluxWritePipeline influxWritePipeline,
+      UsageArchive usageArchive) {
     this.influxDBClient = influxDBClient;
     this.deviceClient = deviceClient;
+    this.deviceDirectory = deviceDirectory;
     this.userClient = userClient;
     this.kafkaTemplate = kafkaTemplate;
     this.stringRedisTemplate = stringRedisTemplate;
+    this.deviceLivenessTracker = deviceLivenessTracker;
+    this.deviceAnomalyDetector = deviceAnomalyDetector;
+    this.ruleEngine = ruleEngine;
+    this.usageForecaster = usageForecaster;
+    this.influxWritePipeline = influxWritePipeline;
+    this.usageArchive = usageArchive;
+  }
+
+  @Override
+  public void onPartitionsAssigned(
+      Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+    deviceLivenessTracker.onPartitionsAssigned(energyUsagePartitions(assignments.keySet()));
+  }
+
+  @Override
+  public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+    deviceLivenessTracker.onPartitionsRevoked(energyUsagePartitions(partitions));
   }
 
-  @KafkaListener(topics = "energy-usage", groupId = "usage-service")
-  public void energyUsageEvent(EnergyUsageEvent energyUsageEvent) {
-    // log.info("Received Energy Usage Event: {}", energyUsageEvent);
-    Point point =
-        Point.measurement("energy_usage")
-            .addTag("deviceId", String.valueOf(energyUsageEvent.deviceId()))
-            .addField("energyConsumed", energyUsageEvent.energyConsumed())
-            .time(energyUsageEvent.timestamp(), WritePrecision.MS);
-    influxDBClient.getWriteApiBlocking().writePoint(bucket, influxOrg, point);
+  private static List<Integer> energyUsagePartitions(Collection<TopicPartition> partitions) {
+    return partitions.stream()
+        .filter(tp -> KafkaConsumerConfig.ENERGY_USAGE_TOPIC.equals(tp.topic()))
+        .map(TopicPartition::partition)
+        .toList();
   }
 
-  @Scheduled(cron = "*/10 * * * * *")
-  public void aggregateDeviceEnergyUsage() {
-    Boolean lockAcquired =
-        stringRedisTemplate
-            .opsForValue()
-            .setIfAbsent("aggregation-lock", "1", Duration.ofSeconds(10));
-    if (!Boolean.TRUE.equals(lockAcquired)) return;
+  /**
+   * Hands a batch of readings to the write pipeline, which acknowledges it once it is in Influx, so
+   * a crash before the write leads to redelivery rather than loss. Redelivered readings map to the
+   * same points (see {@link #toPoint}) and overwrite instead of double counting.
+   */
+  @KafkaListener(
+      id = IngestFlowController.LISTENER_ID,
+      idIsGroup = false,
+      topics = KafkaConsumerConfig.ENERGY_USAGE_TOPIC,
+      groupId = "usage-service",
+      containerFactory = "energyUsageListenerFactory")
+  public void energyUsageEvents(
+      List<ConsumerRecord<String, EnergyUsageEvent>> records, Acknowledgment acknowledgment)
+      throws InterruptedException {
+    final List<Point> points = new ArrayList<>(records.size());
+    for (int i = 0; i < records.size(); i++) {
+      final ConsumerRecord<String, EnergyUsageEvent> record = records.get(i);
+      if (record.value() == null || record.value().deviceId() == null) {
+        // keep the deserializer's error so the record goes straight to the DLT
+        throw new BatchListenerFailedException(
+            "Unreadable energy usage record",
+            SerializationUtils.getExceptionFromHeader(
+                record, SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR),
+            i);
+      }
+      points.add(toPoint(record.value(), record.offset()));
+    }
+    influxWritePipeline.submit(
+        points, records, acknowledgment, (handled, written) -> observe(handled));
+  }
 
+  // runs whether the batch reached Influx or went to the retry topic, so an Influx outage neither
+  // marks devices offline nor hides readings from the anomaly detector
+  private void observe(List<ConsumerRecord<String, EnergyUsageEvent>> records) {
+    for (ConsumerRecord<String, EnergyUsageEvent> record : records) {
+      deviceLivenessTracker.recordReading(record.value().deviceId(), record.partition());
+      deviceAnomalyDetector.observe(record.value());
+    }
+  }
+
+  /**
+   * Readings moved aside after repeated batch failures; keeps the offset they had originally. The
+   * live pipeline already passed them to liveness and anomaly detection when it moved them.
+   */
+  @KafkaListener(
+      topics = KafkaConsumerConfig.RETRY_TOPIC,
+      groupId = "usage-service",
+      containerFactory = "energyUsageRetryListenerFactory")
+  public void energyUsageRetry(
+      EnergyUsageEvent energyUsageEvent,
+      @Header(KafkaHeaders.DLT_ORIGINAL_OFFSET) byte[] originalOffset) {
+    final long offset = ByteBuffer.wrap(originalOffset).getLong();
+    influxDBClient
+        .getWriteApiBlocking()
+        .writePoint(bucket, influxOrg, toPoint(energyUsageEvent, offset));
+  }
+
+  /**
+   * Influx treats points with the same measurement, tags and timestamp as one, so the timestamp is
+   * made deterministic: the reading's millisecond plus the source offset in the sub-millisecond
+   * digits. Readings are keyed by device, so a device's readings share a partition and two of them
+   * in the same millisecond still get distinct timestamps.
+   */
+  public static Point toPoint(EnergyUsageEvent energyUsageEvent, long offset) {
+    final long timestampNs =
+        energyUsageEvent.timestamp().toEpochMilli() * 1_000_000L
+            + Math.floorMod(offset, 1_000_000L);
+    return Point.measurement("energy_usage")
+        .addTag("deviceId", String.valueOf(energyUsageEvent.deviceId()))
+        .addField("energyConsumed", energyUsageEvent.energyConsumed())
+        .time(timestampNs, WritePrecision.NS);
+  }
+
+  /** One aggregation pass, driven by {@link AggregationJobRunner} which holds the lease. */
+  public void aggregateDeviceEnergyUsage(AggregationRun run) {
     final Instant now = Instant.now();
     final Instant oneHourAgo = now.minusSeconds(3600); // aggregate data from the last 10 minutes
 
@@ -116,22 +236,22 @@ public class UsageService {
                 .build());
       }
     }
+    run.completed(AggregationPhase.QUERY);
     // log.info("Aggregated Device Energy Usage over the past hour: {}", deviceEnergies);
 
+    final Map<Long, DeviceDto> devicesById =
+        deviceDirectory.getDevices(deviceEnergies.stream().map(DeviceEnergy::getDeviceId).toList());
     for (DeviceEnergy deviceEnergy : deviceEnergies) {
-      try {
-        final DeviceDto deviceResponse = deviceClient.getDeviceById(deviceEnergy.getDeviceId());
-
-        if (deviceResponse == null || deviceResponse.id() == null) {
-          log.warn("Device not found for ID: {}", deviceEnergy.getDeviceId());
-          continue;
-        }
-        deviceEnergy.setUserId(deviceResponse.userId());
-      } catch (Exception e) {
-        log.error("Error fetching device data for ID: {}", deviceEnergy.getDeviceId(), e);
+      final DeviceDto device = devicesById.get(deviceEnergy.getDeviceId());
+      if (device == null) {
+        log.warn("Device not found for ID: {}", deviceEnergy.getDeviceId());
+        continue;
       }
+      deviceEnergy.setUserId(device.userId());
     }
 
+    run.completed(AggregationPhase.DEVICE_LOOKUP);
+
     // remove devices with null userId
     deviceEnergies.removeIf(de -> de.getUserId() == null);
 
@@ -146,24 +266,35 @@ public class UsageService {
     final Map<Long, Double> userThresholdMap = new HashMap<>();
     final Map<Long, String> userEmailMap = new HashMap<>();
     final Map<Long, String> userNameMap = new HashMap<>();
+    final Map<Long, UserDto> alertingUsers = new HashMap<>();
 
+    final Map<Long, UserDto> usersById = new HashMap<>();
+    try {
+      for (UserDto user : userClient.getUsersByIds(userIds)) {
+        usersById.put(user.id(), user);
+      }
+    } catch (Exception e) {
+      log.error("Error fetching user data for {} users", userIds.size(), e);
+    }
     for (final Long userId : userIds) {
-      try {
-        UserDto user = userClient.getUserById(userId);
-        if (user == null || user.id() == null || !user.alerting()) {
-          log.warn("User not found or alerting disabled for ID: {}", userId);
-          continue;
-        }
-        userThresholdMap.put(userId, user.energyAlertingThreshold());
-        userEmailMap.put(userId, user.email());
-        userNameMap.put(userId, user.name());
-      } catch (Exception e) {
-        log.error("Error fetching user data for ID: {}", userId, e);
+      final UserDto user = usersById.get(userId);
+      if (user == null || !Boolean.TRUE.equals(user.alerting())) {
+        log.warn("User not found or alerting disabled for ID: {}", userId);
+        continue;
       }
+      userThresholdMap.put(userId, user.energyAlertingThreshold());
+      userEmailMap.put(userId, user.email());
+      userNameMap.put(userId, user.name());
+      alertingUsers.put(userId, user);
     }
     log.info("User Threshold Map: {}", userThresholdMap);
+    run.completed(AggregationPhase.USER_LOOKUP);
+
+    // project each user's rolling last-hour total a fixed horizon ahead
+    usageForecaster.beginRun(now.toEpochMilli());
 
     // check thresholds against aggregated usage
+    final List<PendingAlert> alerts = new ArrayList<>();
     final List<Long> alertedUsers = new ArrayList<>(userThresholdMap.keySet());
     for (final Long userId : alertedUsers) {
       final Double threshold = userThresholdMap.get(userId);
@@ -171,6 +302,8 @@ public class UsageService {
 
       final Double totalEnergyConsumed =
           devices.stream().mapToDouble(DeviceEnergy::getEnergyConsumed).sum();
+      final double projectedEnergy =
+          usageForecaster.observe(userId, totalEnergyConsumed, now.toEpochMilli());
 
       if (totalEnergyConsumed > threshold) {
         final String userEmail = userEmailMap.get(userId);
@@ -181,7 +314,6 @@ public class UsageService {
             totalEnergyConsumed,
             threshold,
             userEmail);
-        // Put message on kafka alert topic
         final AlertingEvent alertingEvent =
             AlertingEvent.builder()
                 .userId(userId)
@@ -190,8 +322,13 @@ public class UsageService {
                 .threshold(threshold)
                 .energyConsumed(totalEnergyConsumed)
                 .email(userEmail)
+                .type(AlertType.THRESHOLD_EXCEEDED)
                 .build();
-        kafkaTemplate.send("energy-alerts", alertingEvent);
+        alerts.add(PendingAlert.always(alertingEvent));
+      } else if (projectedEnergy > threshold) {
+        alerts.add(
+            projectedOverrun(
+                alertingUsers.get(userId), threshold, projectedEnergy, usageForecaster.horizon()));
       } else {
         log.info(
             "User ID {} is within the energy consumption threshold. Total Consumed: {}, Threshold: {}",
@@ -200,6 +337,58 @@ public class UsageService {
             threshold);
       }
     }
+
+    alerts.addAll(ruleEngine.evaluate(userDeviceEnergyMap, alertingUsers));
+    if (run.isLeaseHeld()) {
+      usageForecaster.endRun(now.toEpochMilli());
+    }
+    run.completed(AggregationPhase.EVALUATION);
+
+    // a replica that lost the lease mid-run may overlap with the new owner, so it stays quiet;
+    // nothing has been claimed yet, so the new owner still raises these alerts
+    if (!run.isLeaseHeld()) {
+      log.warn("Aggregation lease lost, dropping {} alerts from this run", alerts.size());
+      return;
+    }
+    // Put messages on kafka alert topic
+    for (PendingAlert alert : alerts) {
+      if (alert.dedupeKey() != null
+          && !Boolean.TRUE.equals(
+              stringRedisTemplate
+                  .opsForValue()
+                  .setIfAbsent(alert.dedupeKey(), "1", alert.cooldown()))) {
+        continue;
+      }
+      log.info("Publishing alert: {}", alert.event());
+      kafkaTemplate.send("energy-alerts", alert.event());
+    }
+    run.completed(AggregationPhase.PUBLISH);
+  }
+
+  /** Warns once per hour that the user is on course to cross their threshold. */
+  private PendingAlert projectedOverrun(
+      UserDto user, double threshold, double projectedEnergy, Duration horizon) {
+    log.debug(
+        "User ID {} is projected to reach {} Wh over the last hour within {} min, threshold {}",
+        user.id(),
+        projectedEnergy,
+        horizon.toMinutes(),
+        threshold);
+    return PendingAlert.oncePer(
+        "forecast-alert:" + user.id(),
+        Duration.ofHours(1),
+        AlertingEvent.builder()
+            .userId(user.id())
+            .name(user.name())
+            .message(
+                "Energy consumption is on track to exceed threshold within "
+                    + horizon.toMinutes()
+                    + " minutes")
+            .threshold(threshold)
+            .energyConsumed(projectedEnergy)
+            .email(user.email())
+            .type(AlertType.PROJECTED_OVERRUN)
+            .build());
   }
 
   @Cacheable(value = "usage", key = "#userId + ':' + #days")
@@ -231,6 +420,9 @@ public class UsageService {
 
     final Instant now = Instant.now();
     final Instant start = now.minusSeconds((long) days * 24 * 3600);
+    // days older than the cutover are answered from the archive, the rest from Influx
+    final Instant cutover = usageArchive.influxCutover();
+    final Instant influxStart = start.isBefore(cutover) ? cutover : start;
 
     // build device filter to get usage according to device id
     final String deviceFilter =
@@ -253,11 +445,17 @@ public class UsageService {
                 |> group(columns: ["deviceId"])
                 |> sum(column: "_value")
             """,
-            bucket, start.toString(), now.toString(), deviceFilter);
+            bucket, influxStart.toString(), now.toString(), deviceFilter);
 
     final Map<Long, Double> aggregatedUsageMap = new HashMap<>();
 
     try {
+      if (start.isBefore(cutover)) {
+        final List<Long> deviceIds =
+            devices.stream().map(Device::getId).filter(Objects::nonNull).toList();
+        aggregatedUsageMap.putAll(usageArchive.sumByDevice(deviceIds, start, cutover));
+      }
+
       QueryApi queryApi = influxDBClient.getQueryApi();
       List<FluxTable> tables = queryApi.query(fluxQuery, influxOrg);
 
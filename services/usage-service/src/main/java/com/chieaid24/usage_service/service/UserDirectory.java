@@ -0,0 +1,93 @@
+package com.chieaid24.usage_service.service;
+
+import com.chieaid24.usage_service.client.UserClient;
+import com.chieaid24.usage_service.dto.UserDto;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/** Local userId -> user lookup for paths that check thresholds on every update. */
+@Slf4j
+@Component
+public class UserDirectory {
+
+  private final UserClient userClient;
+  private final Duration ttl;
+  private final Map<Long, CachedUser> users = new ConcurrentHashMap<>();
+  private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+  private final ExecutorService refresher =
+      new ThreadPoolExecutor(
+          1,
+          1,
+          0,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(1000),
+          Thread.ofPlatform().name("user-directory-refresh").daemon().factory());
+
+  public UserDirectory(
+      UserClient userClient, @Value("${usage.user-directory.ttl:PT5M}") Duration ttl) {
+    this.userClient = userClient;
+    this.ttl = ttl;
+  }
+
+  public UserDto getUser(Long userId) {
+    final long now = System.currentTimeMillis();
+    final CachedUser cached = users.get(userId);
+    if (cached != null && cached.expiresAt() > now) {
+      return cached.user();
+    }
+    try {
+      final UserDto user = userClient.getUserById(userId);
+      if (user == null || user.id() == null) {
+        users.remove(userId);
+        return null;
+      }
+      users.put(userId, new CachedUser(user, now + ttl.toMillis()));
+      return user;
+    } catch (Exception e) {
+      log.error("Error fetching user data for ID: {}", userId, e);
+      return cached != null ? cached.user() : null;
+    }
+  }
+
+  /**
+   * The user as last cached, without blocking. A missing or expired entry is refreshed in the
+   * background, so a caller on a stream or consumer thread sees it on a later call.
+   */
+  public UserDto peekUser(Long userId) {
+    final CachedUser cached = users.get(userId);
+    if ((cached == null || cached.expiresAt() <= System.currentTimeMillis())
+        && refreshing.add(userId)) {
+      try {
+        refresher.execute(
+            () -> {
+              try {
+                getUser(userId);
+              } finally {
+                refreshing.remove(userId);
+              }
+            });
+      } catch (RejectedExecutionException e) {
+        refreshing.remove(userId);
+      }
+    }
+    return cached != null ? cached.user() : null;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    refresher.shutdownNow();
+  }
+
+  private record CachedUser(UserDto user, long expiresAt) {}
+}
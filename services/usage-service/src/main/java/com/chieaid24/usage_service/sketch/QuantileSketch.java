@@ -0,0 +1,133 @@
+package com.chieaid24.usage_service.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch over log-spaced buckets (DDSketch style). Every value is counted in the
+ * bucket covering it, so the relative error of any quantile is bounded by {@link
+ * #RELATIVE_ACCURACY}. Two sketches merge by adding their bucket counts, and a value can be removed
+ * again, which lets a per-user total move between buckets as it changes.
+ */
+public class QuantileSketch {
+
+  public static final double RELATIVE_ACCURACY = 0.01;
+
+  private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+  private static final double LOG_GAMMA = Math.log(GAMMA);
+  private static final double MIN_VALUE = 1.0;
+  private static final double MAX_VALUE = 1e10;
+
+  /** Bucket 0 holds every value at or below {@code MIN_VALUE}, the rest are log-spaced. */
+  public static final int BUCKETS =
+      2 + (int) Math.ceil(Math.log(MAX_VALUE / MIN_VALUE) / LOG_GAMMA);
+
+  private final long[] counts;
+  private long count;
+
+  public QuantileSketch() {
+    this.counts = new long[BUCKETS];
+  }
+
+  public static int bucketIndex(double value) {
+    if (!(value > MIN_VALUE)) {
+      return 0;
+    }
+    int index = 1 + (int) Math.ceil(Math.log(value / MIN_VALUE) / LOG_GAMMA);
+    return Math.min(index, BUCKETS - 1);
+  }
+
+  /** Midpoint of the bucket in the relative sense, which is what bounds the relative error. */
+  public static double bucketValue(int index) {
+    if (index <= 0) {
+      return 0.0;
+    }
+    return MIN_VALUE * 2 * Math.pow(GAMMA, index - 1) / (GAMMA + 1);
+  }
+
+  public void add(double value) {
+    addToBucket(bucketIndex(value), 1);
+  }
+
+  public void remove(double value) {
+    addToBucket(bucketIndex(value), -1);
+  }
+
+  /** Adds {@code delta} to one bucket. A bucket never goes below zero, and the total follows it. */
+  public void addToBucket(int index, long delta) {
+    final long updated = Math.max(0, counts[index] + delta);
+    count += updated - counts[index];
+    counts[index] = updated;
+  }
+
+  public void merge(QuantileSketch other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+  }
+
+  public long count() {
+    return count;
+  }
+
+  public long[] bucketCounts() {
+    return Arrays.copyOf(counts, counts.length);
+  }
+
+  public Snapshot snapshot() {
+    return new Snapshot(counts);
+  }
+
+  /**
+   * Frozen view with a prefix-sum table, so rank lookups are a single array read no matter how many
+   * values went into the sketch.
+   */
+  public static final class Snapshot {
+    private final long[] cumulative;
+    private final long[] counts;
+    private final long total;
+
+    private Snapshot(long[] source) {
+      this.counts = Arrays.copyOf(source, source.length);
+      this.cumulative = new long[source.length];
+      long running = 0;
+      for (int i = 0; i < source.length; i++) {
+        running += source[i];
+        cumulative[i] = running;
+      }
+      this.total = running;
+    }
+
+    public long count() {
+      return total;
+    }
+
+    /** Percentage of values below {@code value}, counting half of its own bucket. */
+    public double percentileRank(double value) {
+      if (total == 0) {
+        return 0.0;
+      }
+      int index = bucketIndex(value);
+      long below = index == 0 ? 0 : cumulative[index - 1];
+      return 100.0 * (below + counts[index] / 2.0) / total;
+    }
+
+    public double quantile(double q) {
+      if (total == 0) {
+        return 0.0;
+      }
+      long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, q)) * total);
+      int low = 0;
+      int high = cumulative.length - 1;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (cumulative[mid] < Math.max(1, rank)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return bucketValue(low);
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package com.chieaid24.usage_service.streams;
+
+import com.chieaid24.usage_service.service.UserDirectory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.kafka.autoconfigure.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.annotation.EnableKafkaStreams;
+import org.springframework.kafka.annotation.KafkaStreamsDefaultConfiguration;
+import org.springframework.kafka.config.KafkaStreamsConfiguration;
+
+/**
+ * Runs {@link UsageStreamsTopology} when {@code usage.streams.enabled=true}. The application id is
+ * separate from the {@code usage-service} consumer group. The topology replaces the scheduled
+ * aggregation, which does not run in this mode (see {@link
+ * com.chieaid24.usage_service.scheduling.AggregationJobRunner}).
+ */
+@Configuration
+@EnableKafkaStreams
+@ConditionalOnProperty(name = "usage.streams.enabled", havingValue = "true")
+public class UsageStreamsConfig {
+
+  @Bean(name = KafkaStreamsDefaultConfiguration.DEFAULT_STREAMS_CONFIG_BEAN_NAME)
+  public KafkaStreamsConfiguration usageStreamsConfiguration(
+      KafkaProperties kafkaProperties,
+      @Value("${usage.streams.application-id:usage-service-streams}") String applicationId,
+      @Value("${usage.streams.state-dir:/tmp/kafka-streams}") String stateDir) {
+    final Map<String, Object> props = new HashMap<>(kafkaProperties.buildStreamsProperties());
+    props.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+    props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
+    props.putIfAbsent(StreamsConfig.PROCESSING_GUARANTEE_CONFIG, StreamsConfig.EXACTLY_ONCE_V2);
+    return new KafkaStreamsConfiguration(props);
+  }
+
+  @Bean
+  public UsageStreamsTopology usageStreamsTopology(
+      StreamsBuilder streamsBuilder,
+      UserDirectory userDirectory,
+      @Value("${usage.streams.window:PT1H}") Duration window,
+      @Value("${usage.streams.hop:PT5M}") Duration hop,
+      @Value("${usage.streams.grace:PT2M}") Duration grace) {
+    final UsageStreamsTopology topology =
+        new UsageStreamsTopology(userDirectory::peekUser, window, hop, grace);
+    topology.build(streamsBuilder);
+    return topology;
+  }
+}
@@ -0,0 +1,196 @@
+package com.chieaid24.usage_service.streams;
+
+import com.chieaid24.kafka.event.AlertType;
+import com.chieaid24.kafka.event.AlertingEvent;
+import com.chieaid24.kafka.event.EnergyUsageEvent;
+import com.chieaid24.usage_service.config.KafkaConsumerConfig;
+import com.chieaid24.usage_service.dto.DeviceDto;
+import com.chieaid24.usage_service.dto.UserDto;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.GlobalKTable;
+import org.apache.kafka.streams.kstream.Grouped;
+import org.apache.kafka.streams.kstream.Materialized;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.TimeWindows;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.TimestampExtractor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.apache.kafka.streams.state.WindowStore;
+import org.springframework.kafka.support.serializer.JacksonJsonSerde;
+
+/**
+ * Threshold alerting as a stream: readings keyed by device are joined to the devices replicated
+ * from the compacted {@code device-changes} topic, re-keyed by user and summed in hopping windows
+ * held in local state stores. A window total over the user's threshold is sent to {@code
+ * energy-alerts} unless an alert was already raised for an overlapping window, so each breach is
+ * reported once instead of once per hop.
+ *
+ * <p>The device table is global, so every device the device-service outbox has published joins,
+ * whatever the partition counts. Users are looked up through {@code users}, which must not block: a
+ * window whose user is not known yet is held back and checked again every {@link #PENDING_RETRY}
+ * until its user arrives or the window is long over.
+ */
+public class UsageStreamsTopology {
+
+  public static final String ALERTS_TOPIC = "energy-alerts";
+
+  static final String DEVICES_STORE = "devices-store";
+  static final String WINDOW_STORE = "user-usage-windows";
+  static final String COOLDOWN_STORE = "user-alert-cooldown";
+  static final Duration PENDING_RETRY = Duration.ofSeconds(5);
+
+  private static final int MAX_PENDING = 10_000;
+
+  private final Function<Long, UserDto> users;
+  private final Duration windowSize;
+  private final Duration hop;
+  private final Duration grace;
+
+  public UsageStreamsTopology(
+      Function<Long, UserDto> users, Duration windowSize, Duration hop, Duration grace) {
+    this.users = users;
+    this.windowSize = windowSize;
+    this.hop = hop;
+    this.grace = grace;
+  }
+
+  public void build(StreamsBuilder builder) {
+    final GlobalKTable<String, DeviceDto> devices =
+        builder.globalTable(
+            KafkaConsumerConfig.DEVICE_CHANGES_TOPIC,
+            Consumed.with(
+                Serdes.String(), new JacksonJsonSerde<>(DeviceDto.class).ignoreTypeHeaders()),
+            Materialized.as(DEVICES_STORE));
+    builder.addStateStore(
+        Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(COOLDOWN_STORE), Serdes.Long(), Serdes.Long()));
+
+    final JacksonJsonSerde<EnergyUsageEvent> usageSerde =
+        new JacksonJsonSerde<>(EnergyUsageEvent.class).ignoreTypeHeaders();
+
+    // energy-usage and device-changes are both keyed by deviceId
+    builder.stream(
+            KafkaConsumerConfig.ENERGY_USAGE_TOPIC,
+            Consumed.with(Serdes.String(), usageSerde)
+                .withTimestampExtractor(new EventTimestampExtractor()))
+        .filter((deviceId, event) -> deviceId != null && event != null)
+        .join(
+            devices,
+            (deviceId, event) -> deviceId,
+            (event, device) -> new OwnedUsage(device.userId(), event.energyConsumed()))
+        .filter((deviceId, usage) -> usage.userId() != null)
+        .map((deviceId, usage) -> KeyValue.pair(usage.userId(), usage.energyConsumed()))
+        .groupByKey(Grouped.with("usage-by-user", Serdes.Long(), Serdes.Double()))
+        .windowedBy(TimeWindows.ofSizeAndGrace(windowSize, grace).advanceBy(hop))
+        .reduce(
+            Double::sum,
+            Materialized.<Long, Double, WindowStore<Bytes, byte[]>>as(WINDOW_STORE)
+                .withKeySerde(Serdes.Long())
+                .withValueSerde(Serdes.Double()))
+        .toStream()
+        .process(BreachProcessor::new, COOLDOWN_STORE)
+        .to(
+            ALERTS_TOPIC,
+            Produced.with(Serdes.String(), new JacksonJsonSerde<>(AlertingEvent.class)));
+  }
+
+  private record OwnedUsage(Long userId, double energyConsumed) {}
+
+  private class BreachProcessor
+      implements Processor<Windowed<Long>, Double, String, AlertingEvent> {
+
+    private ProcessorContext<String, AlertingEvent> context;
+    private KeyValueStore<Long, Long> alertedUntil;
+    // latest window per user whose user was not known yet
+    private final Map<Long, Record<Windowed<Long>, Double>> pending = new LinkedHashMap<>();
+
+    @Override
+    public void init(ProcessorContext<String, AlertingEvent> context) {
+      this.context = context;
+      this.alertedUntil = context.getStateStore(COOLDOWN_STORE);
+      context.schedule(PENDING_RETRY, PunctuationType.WALL_CLOCK_TIME, this::retryPending);
+    }
+
+    @Override
+    public void process(Record<Windowed<Long>, Double> record) {
+      if (record.value() != null) {
+        check(record);
+      }
+    }
+
+    private void retryPending(long now) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      final List<Record<Windowed<Long>, Double>> waiting = new ArrayList<>(pending.values());
+      pending.clear();
+      for (Record<Windowed<Long>, Double> record : waiting) {
+        if (record.key().window().end() + windowSize.toMillis() > now) {
+          check(record);
+        }
+      }
+    }
+
+    private void check(Record<Windowed<Long>, Double> record) {
+      final Long userId = record.key().key();
+      final Double total = record.value();
+      final UserDto user = users.apply(userId);
+      if (user == null) {
+        if (pending.size() < MAX_PENDING || pending.containsKey(userId)) {
+          pending.put(userId, record);
+        }
+        return;
+      }
+      if (!Boolean.TRUE.equals(user.alerting())
+          || user.energyAlertingThreshold() == null
+          || total <= user.energyAlertingThreshold()) {
+        return;
+      }
+      final Long coveredUntil = alertedUntil.get(userId);
+      if (coveredUntil != null && coveredUntil > record.key().window().start()) {
+        return;
+      }
+      alertedUntil.put(userId, record.key().window().end());
+      context.forward(
+          record
+              .withKey(String.valueOf(userId))
+              .withValue(
+                  AlertingEvent.builder()
+                      .userId(userId)
+                      .name(user.name())
+                      .message("Energy consumption exceeded threshold")
+                      .threshold(user.energyAlertingThreshold())
+                      .energyConsumed(total)
+                      .email(user.email())
+                      .type(AlertType.THRESHOLD_EXCEEDED)
+                      .build()));
+    }
+  }
+
+  /** Windows follow the reading's own timestamp, falling back to the record time. */
+  static class EventTimestampExtractor implements TimestampExtractor {
+    @Override
+    public long extract(ConsumerRecord<Object, Object> record, long partitionTime) {
+      if (record.value() instanceof EnergyUsageEvent event && event.timestamp() != null) {
+        return event.timestamp().toEpochMilli();
+      }
+      return record.timestamp() >= 0 ? record.timestamp() : partitionTime;
+    }
+  }
+}
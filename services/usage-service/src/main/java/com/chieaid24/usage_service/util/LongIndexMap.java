@@ -0,0 +1,136 @@
+package com.chieaid24.usage_service.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from a primitive long key to a dense slot index {@code 0..size-1}. Callers
+ * keep their per-key state in parallel primitive arrays indexed by that slot, so the hot path
+ * neither boxes nor allocates. Slots stay dense until a key is removed; a freed slot goes to the
+ * next new key, so {@code maxEntries} bounds the live keys and the memory.
+ */
+public class LongIndexMap {
+
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  private final int maxEntries;
+  private long[] keys;
+  private int[] slots;
+  private int mask;
+  private int size;
+  private int[] freeSlots = new int[0];
+  private int freeCount;
+
+  public LongIndexMap(int initialCapacity, int maxEntries) {
+    this.maxEntries = maxEntries;
+    int tableSize = Integer.highestOneBit(Math.max(16, initialCapacity * 2 - 1)) << 1;
+    allocate(tableSize);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int maxEntries() {
+    return maxEntries;
+  }
+
+  /** Returns the slot for {@code key}, or -1 when it has never been added. */
+  public int indexOf(long key) {
+    int pos = mix(key) & mask;
+    while (true) {
+      long existing = keys[pos];
+      if (existing == key) {
+        return slots[pos];
+      }
+      if (existing == EMPTY) {
+        return -1;
+      }
+      pos = (pos + 1) & mask;
+    }
+  }
+
+  /** Returns the slot for {@code key}, adding it when absent, or -1 when the map is full. */
+  public int getOrAdd(long key) {
+    int pos = mix(key) & mask;
+    while (true) {
+      long existing = keys[pos];
+      if (existing == key) {
+        return slots[pos];
+      }
+      if (existing == EMPTY) {
+        break;
+      }
+      pos = (pos + 1) & mask;
+    }
+    if (size >= maxEntries) {
+      return -1;
+    }
+    if ((size + 1) * 2 > keys.length) {
+      rehash(keys.length << 1);
+      return getOrAdd(key);
+    }
+    keys[pos] = key;
+    slots[pos] = freeCount > 0 ? freeSlots[--freeCount] : size;
+    size++;
+    return slots[pos];
+  }
+
+  /** Removes {@code key} and returns the slot it held, or -1 when it was absent. */
+  public int remove(long key) {
+    int pos = mix(key) & mask;
+    while (keys[pos] != key) {
+      if (keys[pos] == EMPTY) {
+        return -1;
+      }
+      pos = (pos + 1) & mask;
+    }
+    final int slot = slots[pos];
+    // shift later entries of the probe run back so lookups never stop at the gap
+    int gap = pos;
+    int next = (pos + 1) & mask;
+    while (keys[next] != EMPTY) {
+      final int home = mix(keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        keys[gap] = keys[next];
+        slots[gap] = slots[next];
+        gap = next;
+      }
+      next = (next + 1) & mask;
+    }
+    keys[gap] = EMPTY;
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeCount * 2));
+    }
+    freeSlots[freeCount++] = slot;
+    size--;
+    return slot;
+  }
+
+  private void rehash(int tableSize) {
+    long[] oldKeys = keys;
+    int[] oldSlots = slots;
+    allocate(tableSize);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != EMPTY) {
+        int pos = mix(oldKeys[i]) & mask;
+        while (keys[pos] != EMPTY) {
+          pos = (pos + 1) & mask;
+        }
+        keys[pos] = oldKeys[i];
+        slots[pos] = oldSlots[i];
+      }
+    }
+  }
+
+  private void allocate(int tableSize) {
+    keys = new long[tableSize];
+    slots = new int[tableSize];
+    Arrays.fill(keys, EMPTY);
+    mask = tableSize - 1;
+  }
+
+  private static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
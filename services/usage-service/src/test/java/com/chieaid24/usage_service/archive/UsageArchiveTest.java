@@ -0,0 +1,56 @@
+package com.chieaid24.usage_service.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UsageArchiveTest {
+
+  private static final LocalDate DAY = LocalDate.parse("2026-01-01");
+
+  @TempDir Path root;
+
+  @Test
+  void rewritingADayDropsSegmentsTheNewRowsDoNotCover() {
+    final UsageArchive archive = new UsageArchive(root, 100, 7);
+    archive.writeDay(DAY, List.of(row(5, 1, 2.0), row(150, 2, 3.0)));
+
+    archive.writeDay(DAY, List.of(row(5, 1, 4.0)));
+
+    final List<Long> visited = new ArrayList<>();
+    archive.forEachHour(
+        DAY, owner -> true, (deviceId, userId, hour, energy) -> visited.add(deviceId));
+    assertThat(visited).containsExactly(5L);
+    assertThat(
+            archive.sumByDevice(
+                List.of(5L, 150L),
+                Instant.parse("2026-01-01T00:00:00Z"),
+                Instant.parse("2026-01-02T00:00:00Z")))
+        .containsExactly(Map.entry(5L, 4.0));
+  }
+
+  @Test
+  void ownerFilterSkipsOtherUsersDevices() {
+    final UsageArchive archive = new UsageArchive(root, 100, 7);
+    archive.writeDay(DAY, List.of(row(5, 1, 2.0), row(6, 2, 3.0)));
+
+    final List<Long> visited = new ArrayList<>();
+    archive.forEachHour(
+        DAY, owner -> owner == 2, (deviceId, userId, hour, energy) -> visited.add(deviceId));
+
+    assertThat(visited).containsExactly(6L);
+  }
+
+  private static UsageArchive.ArchiveRow row(long deviceId, long userId, double firstHour) {
+    final double[] hourly = new double[ArchiveSegment.HOURS];
+    hourly[0] = firstHour;
+    return new UsageArchive.ArchiveRow(deviceId, userId, hourly);
+  }
+}
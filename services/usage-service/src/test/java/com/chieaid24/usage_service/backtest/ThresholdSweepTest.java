@@ -0,0 +1,68 @@
+package com.chieaid24.usage_service.backtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chieaid24.usage_service.billing.UsageMatrix;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+class ThresholdSweepTest {
+
+  private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Test
+  void countsHoursAboveEachThresholdOnTheUsersTotal() {
+    final UsageMatrix.Builder builder = UsageMatrix.builder(START, Duration.ofHours(1), 3);
+    builder.add(10, 1, START, 1.0);
+    builder.add(11, 1, START, 1.5);
+    builder.add(10, 1, START.plusSeconds(3600), 2.0);
+    builder.add(20, 2, START.plusSeconds(7200), 0.5);
+    final UsageMatrix usage = builder.build();
+
+    final ThresholdSweep.Counts counts =
+        new ThresholdSweep(usage, new double[] {0.4, 2.0, 2.5}, 0, usage.users()).compute();
+
+    assertThat(counts.alerts()).containsExactly(3L, 1L, 0L);
+    assertThat(counts.usersAlerted()).containsExactly(2L, 1L, 0L);
+  }
+
+  @Test
+  void forkedSweepMatchesAPlainCount() {
+    final Random random = new Random(11);
+    final int hours = 48;
+    final UsageMatrix.Builder builder = UsageMatrix.builder(START, Duration.ofHours(1), hours);
+    for (long user = 1; user <= 2_000; user++) {
+      for (int h = 0; h < hours; h++) {
+        builder.add(user, user, START.plusSeconds(3600L * h), random.nextDouble() * 4);
+      }
+    }
+    final UsageMatrix usage = builder.build();
+    final double[] candidates = {1.0, 2.0, 3.5};
+
+    final ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      final ThresholdSweep.Counts counts =
+          pool.invoke(new ThresholdSweep(usage, candidates, 0, usage.users()));
+
+      for (int c = 0; c < candidates.length; c++) {
+        long alerts = 0;
+        long usersAlerted = 0;
+        for (float[] row : usage.rows()) {
+          int over = 0;
+          for (float value : row) {
+            over += value > candidates[c] ? 1 : 0;
+          }
+          alerts += over;
+          usersAlerted += over > 0 ? 1 : 0;
+        }
+        assertThat(counts.alerts()[c]).isEqualTo(alerts);
+        assertThat(counts.usersAlerted()[c]).isEqualTo(usersAlerted);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
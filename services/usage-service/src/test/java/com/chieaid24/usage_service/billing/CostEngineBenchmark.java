@@ -0,0 +1,108 @@
+package com.chieaid24.usage_service.billing;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Times {@link CostEngine} on synthetic usage, by default 1M devices over 30 days of hourly buckets
+ * (about 2.9 GB of usage rows). Correctness is covered by {@link CostEngineTest}. Run it with
+ * {@code JAVA_OPTS=-Xmx4g scripts/run-benchmark.sh usage-service billing.CostEngineBenchmark
+ * [devices] [days] [bucketMinutes]}.
+ */
+public class CostEngineBenchmark {
+
+  private static final int DEVICES_PER_USER = 3;
+  private static final int WARMUP_RUNS = 3;
+  private static final int MEASURED_RUNS = 5;
+
+  public static void main(String[] args) {
+    final int devices = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    final int days = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+    final int bucketMinutes = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+    final Duration bucket = Duration.ofMinutes(bucketMinutes);
+    final int buckets = (int) (Duration.ofDays(days).toMinutes() / bucketMinutes);
+    final Instant start = Instant.parse("2026-01-01T00:00:00Z");
+
+    final UsageMatrix usage = syntheticUsage(devices, buckets, start, bucket);
+    final double[] prices = timeOfUse().prices(start, buckets, bucket);
+    final CostEngine engine = new CostEngine(0);
+    System.out.printf(
+        "%,d users, %,d devices, %,d buckets of %d min, %d threads%n",
+        usage.users(), devices, buckets, bucketMinutes, Runtime.getRuntime().availableProcessors());
+
+    try {
+      for (int i = 0; i < WARMUP_RUNS; i++) {
+        engine.bill(usage, prices);
+      }
+      long best = Long.MAX_VALUE;
+      long total = 0;
+      double checksum = 0;
+      for (int i = 0; i < MEASURED_RUNS; i++) {
+        final long begin = System.nanoTime();
+        final CostEngine.Bills bills = engine.bill(usage, prices);
+        final long elapsed = System.nanoTime() - begin;
+        best = Math.min(best, elapsed);
+        total += elapsed;
+        checksum += bills.cost()[i % bills.cost().length];
+      }
+      final double cells = (double) devices * buckets;
+      System.out.printf(
+          "best %.1f ms, mean %.1f ms, %.2f G device-buckets/s (checksum %.3f)%n",
+          best / 1e6, total / 1e6 / MEASURED_RUNS, cells / best, checksum);
+    } finally {
+      engine.shutdown();
+    }
+  }
+
+  private static UsageMatrix syntheticUsage(
+      int devices, int buckets, Instant start, Duration bucket) {
+    final int users = (devices + DEVICES_PER_USER - 1) / DEVICES_PER_USER;
+    final long[] userIds = new long[users];
+    final int[] userRowStart = new int[users + 1];
+    for (int user = 0; user < users; user++) {
+      userIds[user] = user + 1;
+      userRowStart[user] = user * DEVICES_PER_USER;
+    }
+    userRowStart[users] = devices;
+    final long[] deviceIds = new long[devices];
+    final float[][] rows = new float[devices][];
+    IntStream.range(0, devices)
+        .parallel()
+        .forEach(
+            row -> {
+              final ThreadLocalRandom random = ThreadLocalRandom.current();
+              final float[] values = new float[buckets];
+              for (int i = 0; i < buckets; i++) {
+                values[i] = random.nextFloat();
+              }
+              deviceIds[row] = row + 1;
+              rows[row] = values;
+            });
+    return new UsageMatrix(start, bucket, buckets, userIds, userRowStart, deviceIds, rows);
+  }
+
+  /** Weekday evening peak, cheaper nights, dearer winters. */
+  private static Tariff timeOfUse() {
+    return new Tariff(
+        "benchmark-tou",
+        ZoneId.of("Europe/London"),
+        List.of(
+            new Tariff.Season("winter", List.of(10, 11, 12, 1, 2, 3), week(0.18, 0.32, 0.52)),
+            new Tariff.Season("summer", List.of(4, 5, 6, 7, 8, 9), week(0.15, 0.27, 0.41))));
+  }
+
+  private static double[][] week(double night, double day, double peak) {
+    final double[][] prices = new double[7][24];
+    for (int weekday = 0; weekday < 7; weekday++) {
+      for (int hour = 0; hour < 24; hour++) {
+        final boolean isPeak = weekday < 5 && hour >= 16 && hour < 20;
+        prices[weekday][hour] = hour < 7 ? night : isPeak ? peak : day;
+      }
+    }
+    return prices;
+  }
+}
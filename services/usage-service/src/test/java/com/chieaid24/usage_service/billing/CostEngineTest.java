@@ -0,0 +1,73 @@
+package com.chieaid24.usage_service.billing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CostEngineTest {
+
+  private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Test
+  void unrolledKernelsMatchPlainSumsForEveryTailLength() {
+    final Random random = new Random(7);
+    for (int length = 0; length <= 13; length++) {
+      final float[] usage = new float[length];
+      final double[] prices = new double[length];
+      double cost = 0;
+      double energy = 0;
+      for (int i = 0; i < length; i++) {
+        usage[i] = random.nextFloat() * 5;
+        prices[i] = 0.1 + random.nextDouble();
+        cost += usage[i] * prices[i];
+        energy += usage[i];
+      }
+
+      assertThat(CostEngine.cost(usage, prices)).isCloseTo(cost, within(1e-9));
+      assertThat(CostEngine.energy(usage)).isCloseTo(energy, within(1e-9));
+    }
+  }
+
+  @Test
+  void billSumsEachUsersRows() {
+    final UsageMatrix.Builder builder = UsageMatrix.builder(START, Duration.ofHours(1), 3);
+    builder.add(10, 1, START, 2.0);
+    builder.add(11, 1, START.plusSeconds(3600), 1.0);
+    builder.add(20, 2, START.plusSeconds(7200), 4.0);
+    final UsageMatrix usage = builder.build();
+
+    final CostEngine engine = new CostEngine(2);
+    try {
+      final CostEngine.Bills bills = engine.bill(usage, new double[] {0.5, 1.0, 0.25});
+
+      assertThat(usage.userIds()).containsExactly(1L, 2L);
+      assertThat(bills.energy()).containsExactly(3.0, 4.0);
+      assertThat(bills.cost()).containsExactly(2.0, 1.0);
+    } finally {
+      engine.shutdown();
+    }
+  }
+
+  @Test
+  void deviceThatChangedOwnerIsBilledToEachOwnerForTheirHours() {
+    final UsageMatrix.Builder builder = UsageMatrix.builder(START, Duration.ofHours(1), 2);
+    builder.add(10, 1, START, 2.0);
+    builder.add(10, 2, START.plusSeconds(3600), 3.0);
+    final UsageMatrix usage = builder.build();
+
+    final CostEngine engine = new CostEngine(1);
+    try {
+      final CostEngine.Bills bills = engine.bill(usage, new double[] {1.0, 2.0});
+
+      assertThat(usage.deviceIds()).containsExactly(10L, 10L);
+      assertThat(bills.energy()).containsExactly(2.0, 3.0);
+      assertThat(bills.cost()).containsExactly(2.0, 6.0);
+    } finally {
+      engine.shutdown();
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package com.chieaid24.usage_service.client;
+
+import com.sun.management.OperatingSystemMXBean;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.grpc.client.ChannelBuilderOptions;
+import org.springframework.grpc.client.GrpcChannelFactory;
+
+/**
+ * Compares the REST and gRPC transports of {@link DeviceClient} and {@link UserClient} against
+ * running device and user services, e.g. from docker compose. Run it with {@code
+ * scripts/run-benchmark.sh usage-service client.LookupBenchmark [devices] [users] [lookups]
+ * [batch]}. Ids are drawn from 1..devices and 1..users, so seed both services first. Endpoints
+ * default to the compose ports and can be changed in {@code JAVA_OPTS} with {@code -Ddevice.rest},
+ * {@code -Ddevice.grpc}, {@code -Duser.rest} and {@code -Duser.grpc}. CPU is the benchmark
+ * process's own, per lookup.
+ */
+public class LookupBenchmark {
+
+  private static final int WARMUP_LOOKUPS = 2_000;
+
+  public static void main(String[] args) {
+    final long devices = args.length > 0 ? Long.parseLong(args[0]) : 10_000;
+    final long users = args.length > 1 ? Long.parseLong(args[1]) : 3_000;
+    final int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+    final int batch = args.length > 3 ? Integer.parseInt(args[3]) : 1_000;
+    final String deviceRest =
+        System.getProperty("device.rest", "http://localhost:8081/api/v1/device");
+    final String userRest = System.getProperty("user.rest", "http://localhost:8080/api/v1/user");
+    final Channels channels =
+        new Channels(
+            Map.of(
+                "device", System.getProperty("device.grpc", "localhost:9081"),
+                "user", System.getProperty("user.grpc", "localhost:9080")));
+
+    try {
+      for (String transport : List.of("rest", "grpc")) {
+        final StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("grpcChannelFactory", channels);
+        final DownstreamClients downstreamClients =
+            new DownstreamClients(new StandardEnvironment(), new SimpleMeterRegistry());
+        final DeviceClient deviceClient =
+            new DeviceClient(
+                deviceRest,
+                transport,
+                downstreamClients,
+                beans.getBeanProvider(GrpcChannelFactory.class));
+        final UserClient userClient =
+            new UserClient(
+                userRest,
+                transport,
+                downstreamClients,
+                beans.getBeanProvider(GrpcChannelFactory.class));
+
+        measure(
+            transport,
+            "device by id",
+            WARMUP_LOOKUPS,
+            lookups,
+            devices,
+            deviceClient::getDeviceById);
+        measure(transport, "user by id", WARMUP_LOOKUPS, lookups, users, userClient::getUserById);
+        measure(
+            transport,
+            "devices, " + batch + " ids",
+            3,
+            Math.max(1, lookups / batch),
+            devices,
+            id -> deviceClient.getDevicesByIds(randomIds(batch, devices)));
+        measure(
+            transport,
+            "users, " + batch + " ids",
+            3,
+            Math.max(1, lookups / batch),
+            users,
+            id -> userClient.getUsersByIds(randomIds(batch, users)));
+      }
+    } finally {
+      channels.shutdown();
+    }
+  }
+
+  private static void measure(
+      String transport, String name, int warmup, int runs, long maxId, LongConsumer lookup) {
+    final ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < warmup; i++) {
+      lookup.accept(random.nextLong(1, maxId + 1));
+    }
+    final OperatingSystemMXBean os =
+        (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    final long[] latencies = new long[runs];
+    final long cpuStart = os.getProcessCpuTime();
+    final long begin = System.nanoTime();
+    for (int i = 0; i < runs; i++) {
+      final long start = System.nanoTime();
+      lookup.accept(random.nextLong(1, maxId + 1));
+      latencies[i] = System.nanoTime() - start;
+    }
+    final long elapsed = System.nanoTime() - begin;
+    final long cpu = os.getProcessCpuTime() - cpuStart;
+    Arrays.sort(latencies);
+    System.out.printf(
+        "%-4s %-20s %,7d calls  p50 %8.3f ms  p99 %8.3f ms  %,8.0f calls/s  cpu %8.1f us/call%n",
+        transport,
+        name,
+        runs,
+        latencies[runs / 2] / 1e6,
+        latencies[Math.min(runs - 1, (int) (runs * 0.99))] / 1e6,
+        runs / (elapsed / 1e9),
+        cpu / 1e3 / runs);
+  }
+
+  private static List<Long> randomIds(int count, long maxId) {
+    return LongStream.generate(() -> ThreadLocalRandom.current().nextLong(1, maxId + 1))
+        .limit(count)
+        .boxed()
+        .toList();
+  }
+
+  /** Plaintext channels to fixed addresses, keyed by the channel names the clients ask for. */
+  private static final class Channels implements GrpcChannelFactory {
+
+    private final Map<String, String> targets;
+    private final List<ManagedChannel> created = new ArrayList<>();
+
+    private Channels(Map<String, String> targets) {
+      this.targets = targets;
+    }
+
+    @Override
+    public boolean supports(String target) {
+      return targets.containsKey(target);
+    }
+
+    @Override
+    public ManagedChannel createChannel(String target, ChannelBuilderOptions options) {
+      final ManagedChannel channel =
+          ManagedChannelBuilder.forTarget(targets.get(target)).usePlaintext().build();
+      created.add(channel);
+      return channel;
+    }
+
+    private void shutdown() {
+      created.forEach(ManagedChannel::shutdownNow);
+    }
+  }
+}
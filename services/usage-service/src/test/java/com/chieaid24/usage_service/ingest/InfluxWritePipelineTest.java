@@ -0,0 +1,123 @@
+package com.chieaid24.usage_service.ingest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chieaid24.kafka.event.EnergyUsageEvent;
+import com.chieaid24.usage_service.config.KafkaConsumerConfig;
+import com.chieaid24.usage_service.liveness.DeviceLivenessTracker;
+import com.influxdb.client.InfluxDBClient;
+import com.influxdb.client.WriteApiBlocking;
+import com.influxdb.client.write.Point;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+
+class InfluxWritePipelineTest {
+
+  @Test
+  void failedWriteStillReachesLivenessAndGoesToTheRetryTopic() throws Exception {
+    final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    final DeviceLivenessTracker tracker =
+        new DeviceLivenessTracker(null, meterRegistry, Duration.ofMinutes(15), 100);
+    final RecordingTemplate kafkaTemplate = new RecordingTemplate();
+    final InfluxWritePipeline pipeline =
+        new InfluxWritePipeline(
+            "test", failingInflux(), kafkaTemplate, meterRegistry, "bucket", "org", 100, 100, 1, 1);
+    final List<Boolean> outcomes = new CopyOnWriteArrayList<>();
+    final CountDownLatch acknowledged = new CountDownLatch(1);
+    final List<ConsumerRecord<String, EnergyUsageEvent>> records =
+        List.of(reading(7L, 0), reading(8L, 1));
+
+    try {
+      pipeline.submit(
+          List.of(Point.measurement("energy_usage").addField("energyConsumed", 1.0)),
+          records,
+          acknowledged::countDown,
+          (handled, written) -> {
+            outcomes.add(written);
+            handled.forEach(r -> tracker.recordReading(r.value().deviceId(), r.partition()));
+          });
+
+      assertThat(acknowledged.await(10, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      pipeline.shutdown();
+    }
+
+    assertThat(outcomes).containsExactly(false);
+    assertThat(meterRegistry.get("usage.devices.tracked").gauge().value()).isEqualTo(2.0);
+    assertThat(kafkaTemplate.sent)
+        .extracting(ProducerRecord::topic)
+        .containsOnly(KafkaConsumerConfig.RETRY_TOPIC)
+        .hasSize(2);
+  }
+
+  private static ConsumerRecord<String, EnergyUsageEvent> reading(long deviceId, long offset) {
+    return new ConsumerRecord<>(
+        KafkaConsumerConfig.ENERGY_USAGE_TOPIC,
+        0,
+        offset,
+        String.valueOf(deviceId),
+        new EnergyUsageEvent(deviceId, 1.0, Instant.parse("2026-01-01T00:00:00Z")));
+  }
+
+  private static InfluxDBClient failingInflux() {
+    final WriteApiBlocking writeApi =
+        (WriteApiBlocking)
+            Proxy.newProxyInstance(
+                WriteApiBlocking.class.getClassLoader(),
+                new Class<?>[] {WriteApiBlocking.class},
+                (proxy, method, args) -> {
+                  throw new IllegalStateException("influx is down");
+                });
+    return (InfluxDBClient)
+        Proxy.newProxyInstance(
+            InfluxDBClient.class.getClassLoader(),
+            new Class<?>[] {InfluxDBClient.class},
+            (proxy, method, args) -> {
+              if (method.getName().equals("getWriteApiBlocking")) {
+                return writeApi;
+              }
+              throw new UnsupportedOperationException(method.getName());
+            });
+  }
+
+  /** Completes every send at once and keeps what was sent. */
+  private static final class RecordingTemplate extends KafkaTemplate<String, Object> {
+
+    private final List<ProducerRecord<String, Object>> sent = new CopyOnWriteArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    RecordingTemplate() {
+      super(
+          (ProducerFactory<String, Object>)
+              Proxy.newProxyInstance(
+                  ProducerFactory.class.getClassLoader(),
+                  new Class<?>[] {ProducerFactory.class},
+                  (proxy, method, args) ->
+                      method.getReturnType() == boolean.class
+                          ? false
+                          : method.getReturnType() == Map.class ? Map.of() : null));
+    }
+
+    @Override
+    public CompletableFuture<SendResult<String, Object>> send(
+        ProducerRecord<String, Object> record) {
+      sent.add(record);
+      return CompletableFuture.completedFuture(null);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.chieaid24.usage_service.liveness;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class HierarchicalTimingWheelTest {
+
+  private static final long TICK_MS = 1000;
+
+  @Test
+  void firesEveryEntryOnItsDeadlineTickAcrossLevels() {
+    final long start = 1_000_000 * TICK_MS;
+    final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, 4, 16, start);
+    final Random random = new Random(7);
+    final Map<Integer, Long> deadlines = new HashMap<>();
+    for (int entry = 0; entry < 2_000; entry++) {
+      // spread over the first three levels: up to 64^3 ticks out
+      final long deadline = start + TICK_MS * (1 + random.nextInt(64 * 64 * 64));
+      wheel.ensureCapacity(entry + 1);
+      wheel.schedule(entry, deadline);
+      deadlines.put(entry, deadline / TICK_MS);
+    }
+    assertThat(wheel.scheduledCount()).isEqualTo(2_000);
+
+    final Map<Integer, Long> firedAt = new HashMap<>();
+    long now = start;
+    while (firedAt.size() < deadlines.size()) {
+      now += TICK_MS * (1 + random.nextInt(50));
+      final long tick = now / TICK_MS;
+      wheel.advance(now, entry -> firedAt.put(entry, tick));
+      // nothing fires before its deadline
+      firedAt.forEach((entry, at) -> assertThat(deadlines.get(entry)).isLessThanOrEqualTo(at));
+    }
+    deadlines.forEach(
+        (entry, deadline) -> assertThat(firedAt.get(entry) - deadline).isBetween(0L, 49L));
+    assertThat(wheel.scheduledCount()).isZero();
+  }
+
+  @Test
+  void advancingOneTickAtATimeFiresExactlyOnTheDeadline() {
+    final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, 3, 4, 0);
+    wheel.schedule(0, 63 * TICK_MS);
+    wheel.schedule(1, 64 * TICK_MS);
+    wheel.schedule(2, 4_097 * TICK_MS);
+    wheel.schedule(3, 130 * TICK_MS);
+
+    final Map<Integer, Long> firedAt = new HashMap<>();
+    for (long tick = 1; tick <= 5_000; tick++) {
+      final long at = tick;
+      wheel.advance(tick * TICK_MS, entry -> firedAt.put(entry, at));
+    }
+    assertThat(firedAt).containsEntry(0, 63L).containsEntry(1, 64L).containsEntry(3, 130L);
+    assertThat(firedAt).containsEntry(2, 4_097L);
+  }
+
+  @Test
+  void cancelledAndRescheduledEntriesFireOnlyOnce() {
+    final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, 4, 4, 0);
+    wheel.schedule(0, 10 * TICK_MS);
+    wheel.schedule(1, 10 * TICK_MS);
+    wheel.schedule(2, 10 * TICK_MS);
+    wheel.cancel(1);
+    wheel.schedule(2, 500 * TICK_MS);
+
+    final List<Integer> fired = new ArrayList<>();
+    wheel.advance(10 * TICK_MS, fired::add);
+    assertThat(fired).containsExactly(0);
+    assertThat(wheel.isScheduled(1)).isFalse();
+    assertThat(wheel.isScheduled(2)).isTrue();
+
+    wheel.advance(499 * TICK_MS, fired::add);
+    assertThat(fired).containsExactly(0);
+    wheel.advance(500 * TICK_MS, fired::add);
+    assertThat(fired).containsExactly(0, 2);
+  }
+
+  @Test
+  void pastDeadlinesFireOnTheNextTick() {
+    final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, 2, 1, 100 * TICK_MS);
+    wheel.schedule(0, 5 * TICK_MS);
+
+    final List<Integer> fired = new ArrayList<>();
+    wheel.advance(100 * TICK_MS, fired::add);
+    assertThat(fired).isEmpty();
+    wheel.advance(101 * TICK_MS, fired::add);
+    assertThat(fired).containsExactly(0);
+  }
+
+  @Test
+  void entriesCanRescheduleThemselvesWhileFiring() {
+    final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK_MS, 4, 1, 0);
+    wheel.schedule(0, 5 * TICK_MS);
+
+    final List<Long> firedAt = new ArrayList<>();
+    for (long tick = 1; tick <= 200; tick++) {
+      final long now = tick * TICK_MS;
+      wheel.advance(
+          now,
+          entry -> {
+            firedAt.add(now / TICK_MS);
+            wheel.schedule(entry, now + 70 * TICK_MS);
+          });
+    }
+    assertThat(firedAt).containsExactly(5L, 75L, 145L);
+  }
+}
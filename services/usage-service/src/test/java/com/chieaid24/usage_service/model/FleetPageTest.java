@@ -0,0 +1,52 @@
+package com.chieaid24.usage_service.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class FleetPageTest {
+
+  @Test
+  void everyUserIsOnExactlyOnePageAndItsRegexAgrees() {
+    final List<FleetPage> pages = FleetPage.of(64);
+    final List<Pattern> regexes =
+        pages.stream().map(page -> Pattern.compile(page.userIdRegex())).toList();
+
+    for (long userId = 1; userId <= 5_000; userId++) {
+      int containing = 0;
+      for (int p = 0; p < pages.size(); p++) {
+        final boolean contains = pages.get(p).contains(userId);
+        assertThat(regexes.get(p).matcher(Long.toString(userId)).matches())
+            .as("page %d, user %d", p, userId)
+            .isEqualTo(contains);
+        containing += contains ? 1 : 0;
+      }
+      assertThat(containing).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void pagesAreCloseInSize() {
+    final int[] sizes = new int[64];
+    for (long userId = 1; userId <= 64_000; userId++) {
+      for (FleetPage page : FleetPage.of(64)) {
+        sizes[page.page()] += page.contains(userId) ? 1 : 0;
+      }
+    }
+
+    final int min = Arrays.stream(sizes).min().orElseThrow();
+    final int max = Arrays.stream(sizes).max().orElseThrow();
+    assertThat(max).isLessThanOrEqualTo((int) (min * 1.1));
+  }
+
+  @Test
+  void singlePageHoldsEveryoneWithoutAFilter() {
+    final FleetPage page = new FleetPage(0, 1);
+
+    assertThat(page.userIdRegex()).isNull();
+    assertThat(page.contains(12_345L)).isTrue();
+  }
+}
@@ -0,0 +1,87 @@
+package com.chieaid24.usage_service.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chieaid24.usage_service.dto.AlertRuleDto;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RuleCompilerTest {
+
+  @Test
+  void groupsRulesByUserAndSkipsInvalidOnes() {
+    final CompiledRules compiled =
+        RuleCompiler.compile(
+            List.of(
+                rule(1L, 7L, RuleType.HOURLY_LIMIT, null, 500, true),
+                rule(2L, 7L, RuleType.DAILY_BUDGET, null, 5_000, true),
+                rule(3L, 8L, RuleType.RATE_OF_CHANGE, null, 50, true),
+                rule(4L, 8L, RuleType.DEVICE_LIMIT, null, 100, true),
+                rule(5L, 9L, RuleType.WEEKLY_BUDGET, null, 9_000, false)));
+
+    assertThat(compiled.ruleCount()).isEqualTo(3);
+    assertThat(compiled.forUser(7L)).extracting(e -> e.ruleId).containsExactly(1L, 2L);
+    assertThat(compiled.forUser(8L)).extracting(e -> e.ruleId).containsExactly(3L);
+    assertThat(compiled.forUser(9L)).isNull();
+    assertThat(compiled.needsDaily()).isTrue();
+    assertThat(compiled.needsWeekly()).isFalse();
+    assertThat(compiled.needsPreviousHour()).isTrue();
+  }
+
+  @Test
+  void limitsCompareAgainstTheWindow() {
+    final UsageWindow window = new UsageWindow();
+    window.reset(1);
+    window.addDevice(10L, 300);
+    window.addDevice(11L, 250);
+    window.previousHourTotal = 400;
+    window.dailyTotal = 4_000;
+
+    assertThat(compile(rule(1L, 7L, RuleType.HOURLY_LIMIT, null, 500, true)).breached(window))
+        .isTrue();
+    assertThat(compile(rule(2L, 7L, RuleType.DEVICE_LIMIT, 10L, 300, true)).breached(window))
+        .isFalse();
+    assertThat(compile(rule(3L, 7L, RuleType.DEVICE_LIMIT, 12L, 0, true)).breached(window))
+        .isFalse();
+    assertThat(compile(rule(4L, 7L, RuleType.DAILY_BUDGET, null, 3_000, true)).breached(window))
+        .isTrue();
+    assertThat(compile(rule(5L, 7L, RuleType.RATE_OF_CHANGE, null, 25, true)).breached(window))
+        .isTrue();
+    assertThat(compile(rule(6L, 7L, RuleType.RATE_OF_CHANGE, null, 50, true)).breached(window))
+        .isFalse();
+  }
+
+  @Test
+  void missingTotalsNeverBreach() {
+    final UsageWindow window = new UsageWindow();
+    window.reset(1);
+    window.addDevice(10L, 1_000);
+
+    assertThat(compile(rule(1L, 7L, RuleType.WEEKLY_BUDGET, null, 0, true)).breached(window))
+        .isFalse();
+    assertThat(compile(rule(2L, 7L, RuleType.RATE_OF_CHANGE, null, 0, true)).breached(window))
+        .isFalse();
+  }
+
+  @Test
+  void hourWindowsWrapAroundMidnight() {
+    final RuleEvaluator night =
+        compile(new AlertRuleDto(1L, 7L, RuleType.HOURLY_LIMIT, null, 100, 22, 6, true));
+    final RuleEvaluator allDay = compile(rule(2L, 7L, RuleType.HOURLY_LIMIT, null, 100, true));
+
+    assertThat(night.activeAt(23)).isTrue();
+    assertThat(night.activeAt(5)).isTrue();
+    assertThat(night.activeAt(6)).isFalse();
+    assertThat(night.activeAt(12)).isFalse();
+    assertThat(allDay.activeAt(12)).isTrue();
+  }
+
+  private static RuleEvaluator compile(AlertRuleDto rule) {
+    return RuleCompiler.compile(rule);
+  }
+
+  private static AlertRuleDto rule(
+      Long id, Long userId, RuleType type, Long deviceId, double threshold, boolean enabled) {
+    return new AlertRuleDto(id, userId, type, deviceId, threshold, null, null, enabled);
+  }
+}
@@ -0,0 +1,55 @@
+package com.chieaid24.usage_service.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.influxdb.query.FluxRecord;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class BatchUsageServiceTest {
+
+  private static final Instant FROM = Instant.parse("2026-01-01T00:00:00Z");
+  private static final Instant TO = Instant.parse("2026-01-02T00:00:00Z");
+
+  private final BatchUsageService service = new BatchUsageService(null, null, null, 100, 2);
+
+  @Test
+  void readsRawUsageLikeTheSingleUserEndpoint() {
+    final String query = service.deviceTotalsQuery("usage-bucket", FROM, TO, List.of(4L, 9L));
+
+    assertThat(query)
+        .contains("r[\"_measurement\"] == \"energy_usage\"")
+        .contains("r[\"deviceId\"] =~ /^(4|9)$/")
+        .contains("group(columns: [\"deviceId\"])")
+        .doesNotContain("userId");
+  }
+
+  @Test
+  void scansEveryDeviceOnceTheFilterWouldGetTooLong() {
+    final String query = service.deviceTotalsQuery("usage-bucket", FROM, TO, List.of(1L, 2L, 3L));
+
+    assertThat(query).doesNotContain("r[\"deviceId\"] =~");
+  }
+
+  @Test
+  void keepsOnlyDevicesTheUsersOwnNow() {
+    final Map<Long, Double> totals = new HashMap<>(Map.of(4L, 1.5));
+    BatchUsageService.addDeviceTotals(
+        List.of(record("4", 2.0), record("5", 7.0), record("x", 3.0), record("9", 0.5)),
+        Set.of(4L, 9L),
+        totals);
+
+    assertThat(totals).containsOnly(Map.entry(4L, 3.5), Map.entry(9L, 0.5));
+  }
+
+  private static FluxRecord record(String deviceId, double energy) {
+    final FluxRecord record = new FluxRecord(0);
+    record.getValues().put("deviceId", deviceId);
+    record.getValues().put("_value", energy);
+    return record;
+  }
+}
@@ -0,0 +1,82 @@
+package com.chieaid24.usage_service.sketch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class QuantileSketchTest {
+
+  @Test
+  void quantilesStayWithinRelativeAccuracy() {
+    final Random random = new Random(42);
+    final double[] values = new double[10_000];
+    final QuantileSketch sketch = new QuantileSketch();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = Math.exp(random.nextGaussian() * 2 + 8);
+      sketch.add(values[i]);
+    }
+    Arrays.sort(values);
+
+    final QuantileSketch.Snapshot snapshot = sketch.snapshot();
+    for (double q : new double[] {0.10, 0.50, 0.90, 0.99}) {
+      final double exact = values[(int) Math.ceil(q * values.length) - 1];
+      assertThat(snapshot.quantile(q))
+          .isCloseTo(exact, within(exact * QuantileSketch.RELATIVE_ACCURACY));
+    }
+    assertThat(snapshot.count()).isEqualTo(values.length);
+  }
+
+  @Test
+  void percentileRankCountsHalfOfOwnBucket() {
+    final QuantileSketch sketch = new QuantileSketch();
+    for (int i = 1; i <= 100; i++) {
+      sketch.add(i * 100.0);
+    }
+    final QuantileSketch.Snapshot snapshot = sketch.snapshot();
+
+    assertThat(snapshot.percentileRank(5_000.0)).isEqualTo(49.5);
+    assertThat(snapshot.percentileRank(0.5)).isZero();
+    assertThat(snapshot.percentileRank(1e9)).isEqualTo(100.0);
+  }
+
+  @Test
+  void removingAValueUndoesAddingIt() {
+    final QuantileSketch sketch = new QuantileSketch();
+    sketch.add(250.0);
+    sketch.add(4_000.0);
+    sketch.remove(250.0);
+
+    assertThat(sketch.count()).isEqualTo(1);
+    assertThat(sketch.bucketCounts()[QuantileSketch.bucketIndex(250.0)]).isZero();
+    assertThat(sketch.snapshot().quantile(0.5)).isCloseTo(4_000.0, within(40.0));
+  }
+
+  @Test
+  void totalFollowsBucketsWhenARemovalIsClamped() {
+    final QuantileSketch sketch = new QuantileSketch();
+    sketch.add(10.0);
+    sketch.add(10.0);
+    sketch.addToBucket(QuantileSketch.bucketIndex(500.0), -3);
+    sketch.addToBucket(QuantileSketch.bucketIndex(10.0), -5);
+    sketch.add(500.0);
+
+    assertThat(sketch.count()).isEqualTo(Arrays.stream(sketch.bucketCounts()).sum()).isEqualTo(1);
+  }
+
+  @Test
+  void mergeAddsBucketCounts() {
+    final QuantileSketch left = new QuantileSketch();
+    final QuantileSketch right = new QuantileSketch();
+    left.add(100.0);
+    right.add(100.0);
+    right.add(1e12);
+    left.merge(right);
+
+    assertThat(left.count()).isEqualTo(3);
+    assertThat(left.bucketCounts()[QuantileSketch.bucketIndex(100.0)]).isEqualTo(2);
+    assertThat(left.bucketCounts()[QuantileSketch.BUCKETS - 1]).isEqualTo(1);
+  }
+}
@@ -0,0 +1,151 @@
+package com.chieaid24.usage_service.streams;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.chieaid24.kafka.event.AlertType;
+import com.chieaid24.kafka.event.AlertingEvent;
+import com.chieaid24.kafka.event.EnergyUsageEvent;
+import com.chieaid24.usage_service.config.KafkaConsumerConfig;
+import com.chieaid24.usage_service.dto.UserDto;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.support.serializer.JacksonJsonDeserializer;
+import org.springframework.kafka.support.serializer.JacksonJsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+
+@EmbeddedKafka(
+    partitions = 1,
+    topics = {
+      KafkaConsumerConfig.ENERGY_USAGE_TOPIC,
+      KafkaConsumerConfig.DEVICE_CHANGES_TOPIC,
+      UsageStreamsTopology.ALERTS_TOPIC
+    })
+class UsageStreamsTopologyTest {
+
+  private static final UserDto USER =
+      new UserDto(7L, "Ada", "Lovelace", "ada@example.com", "London", true, 10.0);
+
+  @Test
+  void alertsOnceWhenOverlappingWindowsBreach(EmbeddedKafkaBroker broker, @TempDir Path stateDir)
+      throws Exception {
+    final StreamsBuilder builder = new StreamsBuilder();
+    // the first lookup misses like a cold cache, so the breach is only found on a retry
+    final AtomicBoolean warm = new AtomicBoolean();
+    new UsageStreamsTopology(
+            userId -> warm.getAndSet(true) && userId == 7L ? USER : null,
+            Duration.ofHours(1),
+            Duration.ofMinutes(5),
+            Duration.ofMinutes(1))
+        .build(builder);
+
+    final Properties props = new Properties();
+    props.put(StreamsConfig.APPLICATION_ID_CONFIG, "usage-streams-test");
+    props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+    props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+    props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 100);
+    props.put(StreamsConfig.STATESTORE_CACHE_MAX_BYTES_CONFIG, 0);
+
+    try (KafkaStreams streams = new KafkaStreams(builder.build(), props);
+        Producer<String, Object> producer = producer(broker);
+        Consumer<String, AlertingEvent> consumer = alertConsumer(broker)) {
+      // the global device table is restored before any reading is processed
+      producer.send(
+          new ProducerRecord<>(
+              KafkaConsumerConfig.DEVICE_CHANGES_TOPIC,
+              "42",
+              "{\"id\":42,\"name\":\"Heater\",\"type\":\"HEATER\",\"userId\":7}"));
+      producer.flush();
+      streams.start();
+
+      final Instant now = Instant.now();
+      for (int i = 1; i <= 3; i++) {
+        producer.send(
+            new ProducerRecord<>(
+                KafkaConsumerConfig.ENERGY_USAGE_TOPIC,
+                "42",
+                new EnergyUsageEvent(42L, 6.0, now.plusSeconds(i))));
+      }
+      // a device the device-service never published never reaches the windows
+      producer.send(
+          new ProducerRecord<>(
+              KafkaConsumerConfig.ENERGY_USAGE_TOPIC,
+              "99",
+              new EnergyUsageEvent(99L, 100.0, now.plusSeconds(4))));
+      producer.flush();
+
+      final List<AlertingEvent> alerts = new ArrayList<>();
+      final long deadline = System.currentTimeMillis() + 30_000;
+      while (alerts.isEmpty() && System.currentTimeMillis() < deadline) {
+        KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(1))
+            .forEach(record -> alerts.add(record.value()));
+      }
+      // give overlapping windows time to report a duplicate
+      for (ConsumerRecord<String, AlertingEvent> record :
+          KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(3))) {
+        alerts.add(record.value());
+      }
+
+      assertThat(alerts).hasSize(1);
+      assertThat(alerts.get(0).userId()).isEqualTo(7L);
+      assertThat(alerts.get(0).type()).isEqualTo(AlertType.THRESHOLD_EXCEEDED);
+      assertThat(alerts.get(0).energyConsumed()).isEqualTo(12.0);
+      assertThat(alerts.get(0).threshold()).isEqualTo(10.0);
+    }
+  }
+
+  private static Producer<String, Object> producer(EmbeddedKafkaBroker broker) {
+    final Map<String, Object> props = KafkaTestUtils.producerProps(broker);
+    return new DefaultKafkaProducerFactory<String, Object>(
+            props, new StringSerializer(), new DelegatingValueSerializer())
+        .createProducer();
+  }
+
+  private static Consumer<String, AlertingEvent> alertConsumer(EmbeddedKafkaBroker broker) {
+    final Map<String, Object> props = KafkaTestUtils.consumerProps(broker, "alerts-test", false);
+    props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+    final Consumer<String, AlertingEvent> consumer =
+        new DefaultKafkaConsumerFactory<>(
+                props,
+                new StringDeserializer(),
+                new JacksonJsonDeserializer<>(AlertingEvent.class).trustedPackages("*"))
+            .createConsumer();
+    broker.consumeFromAnEmbeddedTopic(consumer, UsageStreamsTopology.ALERTS_TOPIC);
+    return consumer;
+  }
+
+  /** Device changes are JSON strings, readings are JSON like the ingestion service sends them. */
+  private static class DelegatingValueSerializer implements Serializer<Object> {
+    private final StringSerializer strings = new StringSerializer();
+    private final JacksonJsonSerializer<Object> json = new JacksonJsonSerializer<>();
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+      return data instanceof String value
+          ? strings.serialize(topic, value)
+          : json.serialize(topic, data);
+    }
+  }
+}
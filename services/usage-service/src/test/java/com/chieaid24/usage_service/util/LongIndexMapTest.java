@@ -0,0 +1,57 @@
+package com.chieaid24.usage_service.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class LongIndexMapTest {
+
+  @Test
+  void removedSlotGoesToTheNextNewKey() {
+    final LongIndexMap map = new LongIndexMap(16, 2);
+    final int first = map.getOrAdd(10L);
+    map.getOrAdd(20L);
+
+    assertThat(map.getOrAdd(30L)).isEqualTo(-1);
+    assertThat(map.remove(10L)).isEqualTo(first);
+    assertThat(map.remove(10L)).isEqualTo(-1);
+    assertThat(map.indexOf(10L)).isEqualTo(-1);
+    assertThat(map.getOrAdd(30L)).isEqualTo(first);
+    assertThat(map.size()).isEqualTo(2);
+  }
+
+  @Test
+  void lookupsSurviveRandomRemovals() {
+    final Random random = new Random(3);
+    final LongIndexMap map = new LongIndexMap(16, 1_000);
+    final Map<Long, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 50_000; i++) {
+      final long key = random.nextInt(2_000);
+      if (random.nextBoolean()) {
+        final int slot = map.getOrAdd(key);
+        if (slot >= 0) {
+          assertThat(expected.putIfAbsent(key, slot)).isIn(null, slot);
+        } else {
+          assertThat(expected).hasSize(1_000).doesNotContainKey(key);
+        }
+      } else {
+        assertThat(map.remove(key)).isEqualTo(expected.getOrDefault(key, -1));
+        expected.remove(key);
+      }
+    }
+
+    final Set<Integer> slots = new HashSet<>();
+    expected.forEach(
+        (key, slot) -> {
+          assertThat(map.indexOf(key)).isEqualTo(slot);
+          assertThat(slot).isBetween(0, 999);
+          assertThat(slots.add(slot)).isTrue();
+        });
+    assertThat(map.size()).isEqualTo(expected.size());
+  }
+}
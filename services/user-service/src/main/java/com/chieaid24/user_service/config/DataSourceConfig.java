@@ -3,11 +3,16 @@ package com.chieaid24.user_service.config;
 import com.zaxxer.hikari.HikariDataSource;
 import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
 import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.sql.DataSource;
-import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
@@ -35,13 +40,22 @@ public class DataSourceConfig {
     HikariDataSource ds =
         primaryProperties().initializeDataSourceBuilder().type(HikariDataSource.class).build();
     ds.setPoolName("primary");
+    // lets Connector/J send JDBC batches as multi-row INSERTs (see UserBulkWriter)
+    ds.addDataSourceProperty("rewriteBatchedStatements", "true");
     ds.setMaximumPoolSize(8);
     ds.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
     return ds;
   }
 
+  // One pool per replica: spring.datasource.replica.url, or every URL in
+  // datasource.routing.replica-urls. Credentials default to the primary's.
   @Bean
-  public HikariDataSource replicaDataSource(MeterRegistry meterRegistry) {
+  public ReplicaSet replicaSet(
+      MeterRegistry meterRegistry,
+      @Value("${datasource.routing.replica-urls:}") List<String> replicaUrls,
+      @Value("${datasource.routing.max-lag:PT5S}") Duration maxLag,
+      @Value("${datasource.routing.probe-interval:PT2S}") Duration probeInterval,
+      @Value("${datasource.routing.allow-standalone:false}") boolean allowStandalone) {
     DataSourceProperties replica = replicaProperties();
     DataSourceProperties primary = primaryProperties();
     if (!StringUtils.hasText(replica.getUsername())) {
@@ -50,21 +64,32 @@ public class DataSourceConfig {
     if (!StringUtils.hasText(replica.getPassword())) {
       replica.setPassword(primary.getPassword());
     }
-    HikariDataSource ds =
-        replica.initializeDataSourceBuilder().type(HikariDataSource.class).build();
-    ds.setPoolName("replica");
-    ds.setMaximumPoolSize(4);
-    ds.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
-    return ds;
+    List<String> urls =
+        (replicaUrls.isEmpty() ? Collections.singletonList(replica.getUrl()) : replicaUrls)
+            .stream().filter(StringUtils::hasText).toList();
+    Map<String, HikariDataSource> pools = new LinkedHashMap<>();
+    for (int i = 0; i < urls.size(); i++) {
+      HikariDataSource ds =
+          replica
+              .initializeDataSourceBuilder()
+              .url(urls.get(i))
+              .type(HikariDataSource.class)
+              .build();
+      ds.setPoolName(i == 0 ? "replica" : "replica-" + i);
+      ds.setMaximumPoolSize(4);
+      ds.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+      pools.put(RoutingDataSource.replicaKey(i), ds);
+    }
+    return new ReplicaSet(pools, maxLag, probeInterval, allowStandalone, meterRegistry);
   }
 
   @Bean
   public RoutingDataSource routingDataSource(
-      HikariDataSource primaryDataSource, HikariDataSource replicaDataSource) {
-    RoutingDataSource routing = new RoutingDataSource();
+      HikariDataSource primaryDataSource, ReplicaSet replicaSet, MeterRegistry meterRegistry) {
+    RoutingDataSource routing = new RoutingDataSource(replicaSet, meterRegistry);
     Map<Object, Object> targets = new HashMap<>();
     targets.put(RoutingDataSource.PRIMARY, primaryDataSource);
-    targets.put(RoutingDataSource.REPLICA, replicaDataSource);
+    targets.putAll(replicaSet.pools());
     routing.setTargetDataSources(targets);
     routing.setDefaultTargetDataSource(primaryDataSource);
     routing.afterPropertiesSet();
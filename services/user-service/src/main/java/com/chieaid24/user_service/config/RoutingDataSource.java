@@ -1,19 +1,61 @@
 package com.chieaid24.user_service.config;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+/**
+ * Sends read-write transactions, and anything run outside a transaction, to the primary and spreads
+ * read-only transactions round-robin over the replicas the {@link ReplicaSet} has in rotation. Only
+ * a read-write transaction counts as a write for {@link ReadYourWrites}. Reads fall back to the
+ * primary when no replica is caught up or when {@link ReadYourWrites} has pinned the request.
+ */
 @Slf4j
 public class RoutingDataSource extends AbstractRoutingDataSource {
 
   static final String PRIMARY = "PRIMARY";
   static final String REPLICA = "REPLICA";
 
+  private final ReplicaSet replicaSet;
+  private final AtomicInteger next = new AtomicInteger();
+  private final Map<String, Counter> routed = new HashMap<>();
+
+  RoutingDataSource(ReplicaSet replicaSet, MeterRegistry meterRegistry) {
+    this.replicaSet = replicaSet;
+    routed.put(PRIMARY, meterRegistry.counter("datasource.routing", "target", PRIMARY));
+    for (String key : replicaSet.pools().keySet()) {
+      routed.put(key, meterRegistry.counter("datasource.routing", "target", key));
+    }
+  }
+
+  static String replicaKey(int index) {
+    return REPLICA + "-" + index;
+  }
+
   @Override
   protected Object determineCurrentLookupKey() {
-    String key =
-        TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? REPLICA : PRIMARY;
+    String key;
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      // work outside a transaction stays on the primary but is not taken for a write
+      key = PRIMARY;
+    } else if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      ReadYourWrites.onWrite();
+      key = PRIMARY;
+    } else if (ReadYourWrites.isPinned()) {
+      key = PRIMARY;
+    } else {
+      String[] healthy = replicaSet.healthy();
+      key =
+          healthy.length == 0
+              ? PRIMARY
+              : healthy[Math.floorMod(next.getAndIncrement(), healthy.length)];
+    }
+    routed.get(key).increment();
     log.debug("Routing datasource lookup -> {}", key);
     return key;
   }
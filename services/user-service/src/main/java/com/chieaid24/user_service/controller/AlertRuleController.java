@@ -0,0 +1,74 @@
+package com.chieaid24.user_service.controller;
+
+import com.chieaid24.user_service.dto.AlertRuleDto;
+import com.chieaid24.user_service.exception.AlertRuleNotFoundException;
+import com.chieaid24.user_service.service.AlertRuleService;
+import java.util.List;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("api/v1/user")
+public class AlertRuleController {
+
+  private final AlertRuleService alertRuleService;
+
+  public AlertRuleController(AlertRuleService alertRuleService) {
+    this.alertRuleService = alertRuleService;
+  }
+
+  @PostMapping("/{userId}/rules")
+  public ResponseEntity<AlertRuleDto> createRule(
+      @PathVariable Long userId, @RequestBody AlertRuleDto alertRuleDto) {
+    try {
+      AlertRuleDto created = alertRuleService.createRule(userId, alertRuleDto);
+      return new ResponseEntity<>(created, HttpStatus.CREATED);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+    }
+  }
+
+  @GetMapping("/{userId}/rules")
+  public ResponseEntity<List<AlertRuleDto>> getRulesForUser(@PathVariable Long userId) {
+    return ResponseEntity.ok(alertRuleService.getRulesForUser(userId));
+  }
+
+  // every enabled rule across all users, polled by usage-service
+  @GetMapping("/rules/enabled")
+  public ResponseEntity<List<AlertRuleDto>> getEnabledRules() {
+    return ResponseEntity.ok(alertRuleService.getEnabledRules());
+  }
+
+  @PutMapping("/{userId}/rules/{ruleId}")
+  public ResponseEntity<AlertRuleDto> updateRule(
+      @PathVariable Long userId,
+      @PathVariable Long ruleId,
+      @RequestBody AlertRuleDto alertRuleDto) {
+    try {
+      AlertRuleDto updated = alertRuleService.updateRule(userId, ruleId, alertRuleDto);
+      return ResponseEntity.ok(updated);
+    } catch (AlertRuleNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+    }
+  }
+
+  @DeleteMapping("/{userId}/rules/{ruleId}")
+  public ResponseEntity<String> deleteRule(@PathVariable Long userId, @PathVariable Long ruleId) {
+    try {
+      alertRuleService.deleteRule(userId, ruleId);
+      return ResponseEntity.noContent().build();
+    } catch (AlertRuleNotFoundException e) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
+    }
+  }
+}
@@ -1,9 +1,13 @@
 package com.chieaid24.user_service.controller;
 
 import com.chieaid24.user_service.dto.UserDto;
+import com.chieaid24.user_service.dto.UserProvisionResult;
+import com.chieaid24.user_service.service.UserProvisioningService;
 import com.chieaid24.user_service.service.UserService;
+import java.io.InputStream;
 import java.util.List;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,9 +24,11 @@ import org.springframework.web.bind.annotation.RestController;
 public class UserController {
   // init vars and such
   private final UserService userService;
+  private final UserProvisioningService userProvisioningService;
 
-  public UserController(UserService userService) {
+  public UserController(UserService userService, UserProvisioningService userProvisioningService) {
     this.userService = userService;
+    this.userProvisioningService = userProvisioningService;
   }
 
   @PostMapping("/create")
@@ -38,6 +44,13 @@ public class UserController {
     return ResponseEntity.status(HttpStatus.CREATED).body(users);
   }
 
+  // ex) POST /api/v1/user/bulk with an application/x-ndjson body of users with raw passwords
+  @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<UserProvisionResult> provisionUsers(InputStream body) {
+    UserProvisionResult result = userProvisioningService.provisionStream(body);
+    return ResponseEntity.status(HttpStatus.CREATED).body(result);
+  }
+
   @GetMapping("/{id}")
   public ResponseEntity<UserDto> getUserById(@PathVariable Long id) {
     UserDto userDto = userService.getUserById(id);
@@ -0,0 +1,22 @@
+package com.chieaid24.user_service.dto;
+
+import com.chieaid24.user_service.entity.RuleType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AlertRuleDto {
+  private Long id;
+  private Long userId;
+  private RuleType type;
+  private Long deviceId;
+  private double threshold;
+  private Integer startHour;
+  private Integer endHour;
+  private boolean enabled;
+}
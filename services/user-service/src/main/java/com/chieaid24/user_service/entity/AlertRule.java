@@ -0,0 +1,39 @@
+package com.chieaid24.user_service.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "alert_rule")
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Data
+public class AlertRule {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  private Long userId;
+
+  @Enumerated(EnumType.STRING)
+  private RuleType type;
+
+  private Long deviceId;
+  private double threshold;
+
+  // hours of the day (UTC) the rule is active in, [startHour, endHour); null means all day
+  private Integer startHour;
+  private Integer endHour;
+
+  private boolean enabled;
+}
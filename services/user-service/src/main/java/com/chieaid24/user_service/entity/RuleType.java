@@ -0,0 +1,14 @@
+package com.chieaid24.user_service.entity;
+
+public enum RuleType {
+  /** Energy of a single device over the last hour, in Wh. */
+  DEVICE_LIMIT,
+  /** Energy of all of the user's devices over the last hour, in Wh. */
+  HOURLY_LIMIT,
+  /** Energy since midnight UTC, in Wh. */
+  DAILY_BUDGET,
+  /** Energy over the last seven days, in Wh. */
+  WEEKLY_BUDGET,
+  /** Increase of the last hour over the previous complete hour, in percent. */
+  RATE_OF_CHANGE
+}
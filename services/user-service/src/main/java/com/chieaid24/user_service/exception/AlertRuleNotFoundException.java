@@ -0,0 +1,7 @@
+package com.chieaid24.user_service.exception;
+
+public class AlertRuleNotFoundException extends RuntimeException {
+  public AlertRuleNotFoundException(String message) {
+    super(message);
+  }
+}
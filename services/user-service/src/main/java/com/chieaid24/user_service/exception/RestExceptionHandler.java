@@ -9,6 +9,11 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 @ControllerAdvice
 public class RestExceptionHandler {
 
+  @ExceptionHandler(UserProvisioningException.class)
+  public ResponseEntity<String> handleProvisioningFailure(UserProvisioningException ex) {
+    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+  }
+
   @ExceptionHandler(DataIntegrityViolationException.class)
   public ResponseEntity<String> handleDataIntegrityViolation(DataIntegrityViolationException ex) {
     String rootMessage = ex.getMostSpecificCause().getMessage();
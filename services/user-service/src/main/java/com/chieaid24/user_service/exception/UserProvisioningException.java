@@ -0,0 +1,7 @@
+package com.chieaid24.user_service.exception;
+
+public class UserProvisioningException extends RuntimeException {
+  public UserProvisioningException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,55 @@
+package com.chieaid24.user_service.grpc;
+
+import com.chieaid24.grpc.user.User;
+import com.chieaid24.grpc.user.UserIdRequest;
+import com.chieaid24.grpc.user.UserIdsRequest;
+import com.chieaid24.grpc.user.UserLookupGrpc;
+import com.chieaid24.user_service.dto.UserDto;
+import com.chieaid24.user_service.service.UserService;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.util.Objects;
+import org.springframework.stereotype.Service;
+
+/** gRPC twin of the user lookups in {@code UserController}, for other services. */
+@Service
+public class UserLookupService extends UserLookupGrpc.UserLookupImplBase {
+
+  private final UserService userService;
+
+  public UserLookupService(UserService userService) {
+    this.userService = userService;
+  }
+
+  @Override
+  public void getUser(UserIdRequest request, StreamObserver<User> responseObserver) {
+    UserDto user = userService.getUserById(request.getId());
+    if (user == null) {
+      responseObserver.onError(
+          Status.NOT_FOUND.withDescription("User not found: " + request.getId()).asException());
+      return;
+    }
+    responseObserver.onNext(toMessage(user));
+    responseObserver.onCompleted();
+  }
+
+  @Override
+  public void getUsers(UserIdsRequest request, StreamObserver<User> responseObserver) {
+    for (UserDto user : userService.getUsersByIds(request.getIdsList())) {
+      responseObserver.onNext(toMessage(user));
+    }
+    responseObserver.onCompleted();
+  }
+
+  private static User toMessage(UserDto user) {
+    return User.newBuilder()
+        .setId(user.getId())
+        .setName(Objects.requireNonNullElse(user.getName(), ""))
+        .setSurname(Objects.requireNonNullElse(user.getSurname(), ""))
+        .setEmail(Objects.requireNonNullElse(user.getEmail(), ""))
+        .setAddress(Objects.requireNonNullElse(user.getAddress(), ""))
+        .setAlerting(user.isAlerting())
+        .setEnergyAlertingThreshold(user.getEnergyAlertingThreshold())
+        .build();
+  }
+}
@@ -0,0 +1,25 @@
+package com.chieaid24.user_service.repository;
+
+import com.chieaid24.user_service.entity.AlertRule;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AlertRuleRepository extends JpaRepository<AlertRule, Long> {
+
+  List<AlertRule> findAllByUserId(Long userId);
+
+  List<AlertRule> findAllByEnabledTrue();
+
+  Optional<AlertRule> findByIdAndUserId(Long id, Long userId);
+
+  // devices are owned by device-service but live in the same schema
+  @Query(
+      value = "SELECT COUNT(*) > 0 FROM device WHERE id = :deviceId AND user_id = :userId",
+      nativeQuery = true)
+  boolean existsDeviceOwnedBy(@Param("deviceId") Long deviceId, @Param("userId") Long userId);
+}
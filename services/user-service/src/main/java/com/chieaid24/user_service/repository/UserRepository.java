@@ -5,6 +5,7 @@ import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,6 +14,24 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
   Optional<User> findByEmail(String email);
 
+  // MySQL fires no triggers for rows removed by ON DELETE CASCADE, so deleting users writes the
+  // device tombstones device-service would have written, in the same transaction as the delete
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO device_outbox (device_id, payload, previous_user_id, created_at)"
+              + " SELECT id, NULL, user_id, NOW(6) FROM device WHERE user_id = :userId",
+      nativeQuery = true)
+  int recordDeviceDeletions(@Param("userId") Long userId);
+
+  @Modifying
+  @Query(
+      value =
+          "INSERT INTO device_outbox (device_id, payload, previous_user_id, created_at)"
+              + " SELECT id, NULL, user_id, NOW(6) FROM device WHERE user_id IS NOT NULL",
+      nativeQuery = true)
+  int recordAllDeviceDeletions();
+
   @Modifying
   @Transactional
   @Query("DELETE FROM User u")
@@ -0,0 +1,112 @@
+package com.chieaid24.user_service.service;
+
+import com.chieaid24.user_service.dto.AlertRuleDto;
+import com.chieaid24.user_service.entity.AlertRule;
+import com.chieaid24.user_service.entity.RuleType;
+import com.chieaid24.user_service.exception.AlertRuleNotFoundException;
+import com.chieaid24.user_service.repository.AlertRuleRepository;
+import com.chieaid24.user_service.repository.UserRepository;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+@Slf4j
+@Service
+public class AlertRuleService {
+
+  private final AlertRuleRepository alertRuleRepository;
+  private final UserRepository userRepository;
+
+  public AlertRuleService(AlertRuleRepository alertRuleRepository, UserRepository userRepository) {
+    this.alertRuleRepository = alertRuleRepository;
+    this.userRepository = userRepository;
+  }
+
+  public AlertRuleDto createRule(Long userId, AlertRuleDto input) {
+    if (!userRepository.existsById(userId)) {
+      throw new IllegalArgumentException("User not found with id: " + userId);
+    }
+    validate(userId, input);
+    final AlertRule rule =
+        AlertRule.builder()
+            .userId(userId)
+            .type(input.getType())
+            .deviceId(input.getDeviceId())
+            .threshold(input.getThreshold())
+            .startHour(input.getStartHour())
+            .endHour(input.getEndHour())
+            .enabled(input.isEnabled())
+            .build();
+    return toDto(alertRuleRepository.save(rule));
+  }
+
+  public List<AlertRuleDto> getRulesForUser(Long userId) {
+    return alertRuleRepository.findAllByUserId(userId).stream().map(this::toDto).toList();
+  }
+
+  public List<AlertRuleDto> getEnabledRules() {
+    return alertRuleRepository.findAllByEnabledTrue().stream().map(this::toDto).toList();
+  }
+
+  public AlertRuleDto updateRule(Long userId, Long ruleId, AlertRuleDto input) {
+    final AlertRule existingRule =
+        alertRuleRepository
+            .findByIdAndUserId(ruleId, userId)
+            .orElseThrow(() -> new AlertRuleNotFoundException("Rule not found with id: " + ruleId));
+    validate(userId, input);
+
+    existingRule.setType(input.getType());
+    existingRule.setDeviceId(input.getDeviceId());
+    existingRule.setThreshold(input.getThreshold());
+    existingRule.setStartHour(input.getStartHour());
+    existingRule.setEndHour(input.getEndHour());
+    existingRule.setEnabled(input.isEnabled());
+
+    return toDto(alertRuleRepository.save(existingRule));
+  }
+
+  public void deleteRule(Long userId, Long ruleId) {
+    final AlertRule existingRule =
+        alertRuleRepository
+            .findByIdAndUserId(ruleId, userId)
+            .orElseThrow(() -> new AlertRuleNotFoundException("Rule not found with id: " + ruleId));
+    alertRuleRepository.delete(existingRule);
+  }
+
+  private void validate(Long userId, AlertRuleDto input) {
+    if (input.getType() == null) {
+      throw new IllegalArgumentException("Rule type is required");
+    }
+    if (input.getType() == RuleType.DEVICE_LIMIT && input.getDeviceId() == null) {
+      throw new IllegalArgumentException("DEVICE_LIMIT rules need a deviceId");
+    }
+    if (input.getType() == RuleType.DEVICE_LIMIT
+        && !alertRuleRepository.existsDeviceOwnedBy(input.getDeviceId(), userId)) {
+      throw new IllegalArgumentException(
+          "Device " + input.getDeviceId() + " does not belong to user " + userId);
+    }
+    if ((input.getStartHour() == null) != (input.getEndHour() == null)) {
+      throw new IllegalArgumentException("startHour and endHour must be set together");
+    }
+    if (input.getStartHour() != null
+        && (input.getStartHour() < 0
+            || input.getStartHour() > 23
+            || input.getEndHour() < 0
+            || input.getEndHour() > 24)) {
+      throw new IllegalArgumentException("startHour must be in 0-23 and endHour in 0-24");
+    }
+  }
+
+  private AlertRuleDto toDto(AlertRule rule) {
+    return AlertRuleDto.builder()
+        .id(rule.getId())
+        .userId(rule.getUserId())
+        .type(rule.getType())
+        .deviceId(rule.getDeviceId())
+        .threshold(rule.getThreshold())
+        .startHour(rule.getStartHour())
+        .endHour(rule.getEndHour())
+        .enabled(rule.isEnabled())
+        .build();
+  }
+}
@@ -0,0 +1,66 @@
+package com.chieaid24.user_service.service;
+
+import com.chieaid24.user_service.entity.User;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Inserts users with plain JDBC batches. Hibernate cannot batch inserts into an IDENTITY table, but
+ * Connector/J rewrites a batch into multi-row INSERTs (the primary pool sets {@code
+ * rewriteBatchedStatements}) and still hands back the generated ids.
+ */
+@Component
+public class UserBulkWriter {
+
+  private static final String INSERT_USER =
+      "INSERT INTO `user` (name, surname, email, address, alerting, energy_alerting_threshold,"
+          + " password, auth_provider) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public UserBulkWriter(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Writes {@code users}, whose passwords are already encoded, and fills in each id. Runs in the
+   * caller's transaction.
+   */
+  public void write(List<User> users) {
+    jdbcTemplate.execute(
+        (ConnectionCallback<Void>)
+            connection -> {
+              try (PreparedStatement ps =
+                  connection.prepareStatement(INSERT_USER, Statement.RETURN_GENERATED_KEYS)) {
+                for (User user : users) {
+                  ps.setString(1, user.getName());
+                  ps.setString(2, user.getSurname());
+                  ps.setString(3, user.getEmail());
+                  ps.setString(4, user.getAddress());
+                  ps.setBoolean(5, user.isAlerting());
+                  ps.setDouble(6, user.getEnergyAlertingThreshold());
+                  ps.setString(7, user.getPassword());
+                  ps.setString(8, user.getAuthProvider());
+                  ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                  int i = 0;
+                  while (keys.next()) {
+                    users.get(i++).setId(keys.getLong(1));
+                  }
+                  if (i != users.size()) {
+                    throw new IllegalStateException(
+                        "Expected " + users.size() + " generated ids but got " + i);
+                  }
+                }
+              }
+              return null;
+            });
+  }
+}
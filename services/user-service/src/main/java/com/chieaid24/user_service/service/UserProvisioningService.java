@@ -0,0 +1,230 @@
+package com.chieaid24.user_service.service;
+
+import com.chieaid24.user_service.dto.UserDto;
+import com.chieaid24.user_service.dto.UserProvisionResult;
+import com.chieaid24.user_service.entity.User;
+import com.chieaid24.user_service.exception.UserProvisioningException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Creates users in chunks of {@code chunk-size}, each chunk in its own transaction through the
+ * {@link UserBulkWriter}. Passwords are BCrypt-hashed on a pool of {@code hash-threads} platform
+ * threads, since hashing costs far more than the insert. A bad row stops the run. Chunks committed
+ * before it stay, and the error says how many users that was.
+ */
+@Slf4j
+@Service
+public class UserProvisioningService implements DisposableBean {
+
+  private final UserBulkWriter userBulkWriter;
+  private final TransactionTemplate transactionTemplate;
+  private final PasswordEncoder passwordEncoder;
+  private final JsonMapper jsonMapper;
+  private final ExecutorService hashPool;
+  private final Counter provisionedRows;
+  private final int chunkSize;
+  private final long logEvery;
+
+  public UserProvisioningService(
+      UserBulkWriter userBulkWriter,
+      PlatformTransactionManager transactionManager,
+      PasswordEncoder passwordEncoder,
+      JsonMapper jsonMapper,
+      MeterRegistry meterRegistry,
+      @Value("${user.provision.chunk-size:5000}") int chunkSize,
+      @Value("${user.provision.log-every:100000}") long logEvery,
+      @Value("${user.provision.hash-threads:0}") int hashThreads) {
+    this.userBulkWriter = userBulkWriter;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.passwordEncoder = passwordEncoder;
+    this.jsonMapper = jsonMapper;
+    this.hashPool =
+        Executors.newFixedThreadPool(
+            hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors(),
+            Thread.ofPlatform().name("password-hash-", 0).daemon().factory());
+    this.provisionedRows = meterRegistry.counter("user.provision.rows");
+    this.chunkSize = chunkSize;
+    this.logEvery = logEvery;
+  }
+
+  /** Provisions the users in an NDJSON stream, one user with a raw password per line. */
+  public UserProvisionResult provisionStream(InputStream in) {
+    return provisionUsers(
+        new NdjsonRows(
+            new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)));
+  }
+
+  /** Provisions users whose raw passwords are each hashed with their own salt. */
+  public UserProvisionResult provisionUsers(Iterator<UserDto> rows) {
+    return provision(rows, null);
+  }
+
+  /**
+   * Provisions users that all share {@code encodedPassword} and ignores their own. Only meant for
+   * seeded test data, where hashing one password per user is the whole cost of seeding.
+   */
+  public UserProvisionResult provisionUsers(Iterator<UserDto> rows, String encodedPassword) {
+    return provision(rows, encodedPassword);
+  }
+
+  private UserProvisionResult provision(Iterator<UserDto> rows, String encodedPassword) {
+    final long start = System.nanoTime();
+    long provisioned = 0;
+    int chunks = 0;
+    List<UserDto> chunk = new ArrayList<>(chunkSize);
+    try {
+      while (rows.hasNext()) {
+        chunk.add(rows.next());
+        if (chunk.size() == chunkSize || !rows.hasNext()) {
+          final List<User> users = toUsers(chunk, provisioned, encodedPassword);
+          transactionTemplate.executeWithoutResult(status -> userBulkWriter.write(users));
+          provisionedRows.increment(users.size());
+          final long before = provisioned;
+          provisioned += users.size();
+          chunks++;
+          if (provisioned / logEvery != before / logEvery) {
+            log.info("Provisioned {} users ({} rows/s)", provisioned, rate(provisioned, start));
+          }
+          chunk = new ArrayList<>(chunkSize);
+        }
+      }
+    } catch (RuntimeException e) {
+      throw new UserProvisioningException(
+          "Provisioning stopped after " + provisioned + " users: " + e.getMessage(), e);
+    }
+    final long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+    log.info(
+        "Provisioned {} users in {} chunks in {} ms ({} rows/s)",
+        provisioned,
+        chunks,
+        elapsedMs,
+        rate(provisioned, start));
+    return UserProvisionResult.builder()
+        .provisioned(provisioned)
+        .chunks(chunks)
+        .elapsedMs(elapsedMs)
+        .build();
+  }
+
+  // hashes the chunk's passwords on the pool, or uses the shared one
+  private List<User> toUsers(List<UserDto> chunk, long offset, String encodedPassword) {
+    final List<CompletableFuture<String>> passwords = new ArrayList<>(chunk.size());
+    for (int i = 0; i < chunk.size(); i++) {
+      final String raw = chunk.get(i).getPassword();
+      if (encodedPassword != null) {
+        passwords.add(CompletableFuture.completedFuture(encodedPassword));
+      } else if (raw == null || raw.isEmpty()) {
+        passwords.forEach(p -> p.cancel(false));
+        throw new IllegalArgumentException("user " + (offset + i + 1) + " has no password");
+      } else {
+        passwords.add(CompletableFuture.supplyAsync(() -> passwordEncoder.encode(raw), hashPool));
+      }
+    }
+
+    final List<User> users = new ArrayList<>(chunk.size());
+    for (int i = 0; i < chunk.size(); i++) {
+      final UserDto input = chunk.get(i);
+      final String password;
+      try {
+        password = passwords.get(i).join();
+      } catch (CompletionException e) {
+        passwords.forEach(p -> p.cancel(false));
+        throw e.getCause() instanceof RuntimeException cause ? cause : e;
+      }
+      users.add(
+          User.builder()
+              .name(input.getName())
+              .surname(input.getSurname())
+              .email(input.getEmail())
+              .address(input.getAddress())
+              .alerting(input.isAlerting())
+              .energyAlertingThreshold(input.getEnergyAlertingThreshold())
+              .password(password)
+              .authProvider("LOCAL")
+              .build());
+    }
+    return users;
+  }
+
+  private static long rate(long rows, long start) {
+    return rows * 1_000_000_000L / Math.max(1, System.nanoTime() - start);
+  }
+
+  @Override
+  public void destroy() {
+    hashPool.shutdownNow();
+  }
+
+  /** Reads one user per non-blank line, reporting parse errors with their line number. */
+  private final class NdjsonRows implements Iterator<UserDto> {
+    private final BufferedReader reader;
+    private long lineNumber;
+    private UserDto next;
+
+    NdjsonRows(BufferedReader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        final String line = readLine();
+        if (line == null) {
+          return false;
+        }
+        try {
+          next = jsonMapper.readValue(line, UserDto.class);
+        } catch (RuntimeException e) {
+          throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage(), e);
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public UserDto next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final UserDto user = next;
+      next = null;
+      return user;
+    }
+
+    private String readLine() {
+      try {
+        String line;
+        do {
+          line = reader.readLine();
+          lineNumber++;
+        } while (line != null && line.isBlank());
+        return line;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
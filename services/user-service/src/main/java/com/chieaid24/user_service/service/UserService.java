@@ -1,23 +1,41 @@
 package com.chieaid24.user_service.service;
 
 import com.chieaid24.user_service.dto.UserDto;
+import com.chieaid24.user_service.dto.UserProvisionResult;
 import com.chieaid24.user_service.entity.User;
 import com.chieaid24.user_service.repository.UserRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Slf4j
 @Service
 public class UserService {
 
+  private static final int USER_ID_CHUNK = 1000;
+
   private final UserRepository userRepository;
   private final PasswordEncoder passwordEncoder;
+  private final UserProvisioningService userProvisioningService;
+  private final TransactionTemplate transactionTemplate;
 
-  public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+  public UserService(
+      UserRepository userRepository,
+      PasswordEncoder passwordEncoder,
+      UserProvisioningService userProvisioningService,
+      PlatformTransactionManager transactionManager) {
     this.userRepository = userRepository;
     this.passwordEncoder = passwordEncoder;
+    this.userProvisioningService = userProvisioningService;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
   }
 
   public UserDto createUser(UserDto input) {
@@ -40,6 +58,16 @@ public class UserService {
     return userRepository.findById(id).map(this::toDto).orElse(null);
   }
 
+  public List<UserDto> getUsersByIds(Collection<Long> ids) {
+    List<Long> distinct = ids.stream().distinct().toList();
+    List<UserDto> users = new ArrayList<>();
+    for (int from = 0; from < distinct.size(); from += USER_ID_CHUNK) {
+      List<Long> chunk = distinct.subList(from, Math.min(distinct.size(), from + USER_ID_CHUNK));
+      userRepository.findAllById(chunk).forEach(user -> users.add(toDto(user)));
+    }
+    return users;
+  }
+
   public UserDto updateUser(Long id, UserDto userDto) {
     User existingUser =
         userRepository
@@ -57,35 +85,60 @@ public class UserService {
     return toDto(existingUser);
   }
 
+  // the user's devices go with it by cascade, so their tombstones are recorded first
+  @Transactional
   public void deleteUser(Long id) {
     User existingUser =
         userRepository
             .findById(id)
             .orElseThrow(() -> new IllegalArgumentException("User not found with id: " + id));
+    userRepository.recordDeviceDeletions(id);
     userRepository.delete(existingUser);
   }
 
+  // ALTER TABLE commits implicitly, so the counter is reset after the delete has committed
   public void deleteAllUsers() {
-    userRepository.deleteAllUsers();
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          userRepository.recordAllDeviceDeletions();
+          userRepository.deleteAllUsers();
+        });
     userRepository.resetAutoIncrement();
   }
 
-  public void createDummyUsers(int users) {
-    for (int i = 1; i <= users; i++) {
-      User dummyUser =
-          User.builder()
-              .name("Dummy " + i)
-              .surname("Surname " + i)
-              .email("dummy" + i + "@example.com")
-              .address("Dummy Address " + i)
-              .alerting(true)
-              .energyAlertingThreshold(20000) 
-              .password(passwordEncoder.encode("password"))
-              .authProvider("LOCAL")
-              .build();
-      userRepository.save(dummyUser);
-    }
-    log.info("Created {} dummy users", users);
+  public UserProvisionResult createDummyUsers(int users) {
+    // every dummy user logs in with "password", so one hash serves them all
+    String encodedPassword = passwordEncoder.encode("password");
+
+    // generated lazily so a large seed never sits in memory
+    Iterator<UserDto> dummies =
+        new Iterator<>() {
+          private int i = 1;
+
+          @Override
+          public boolean hasNext() {
+            return i <= users;
+          }
+
+          @Override
+          public UserDto next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            UserDto dummyUser =
+                UserDto.builder()
+                    .name("Dummy " + i)
+                    .surname("Surname " + i)
+                    .email("dummy" + i + "@example.com")
+                    .address("Dummy Address " + i)
+                    .alerting(true)
+                    .energyAlertingThreshold(20000)
+                    .build();
+            i++;
+            return dummyUser;
+          }
+        };
+    return userProvisioningService.provisionUsers(dummies, encodedPassword);
   }
 
   public Long getTotalUsers() {
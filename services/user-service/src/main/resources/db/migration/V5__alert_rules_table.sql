@@ -0,0 +1,16 @@
+CREATE TABLE `alert_rule` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `user_id` BIGINT NOT NULL,
+    `type` VARCHAR(32) NOT NULL,
+    `device_id` BIGINT NULL,
+    `threshold` DOUBLE NOT NULL,
+    `start_hour` TINYINT NULL,
+    `end_hour` TINYINT NULL,
+    `enabled` TINYINT(1) NOT NULL DEFAULT 1,
+    PRIMARY KEY (`id`),
+    KEY `idx_alert_rule_user_id` (`user_id`),
+    KEY `idx_alert_rule_enabled` (`enabled`),
+    CONSTRAINT `fk_alert_rule_user`
+        FOREIGN KEY (`user_id`) REFERENCES `user` (`id`)
+        ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
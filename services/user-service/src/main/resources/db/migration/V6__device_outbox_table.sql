@@ -0,0 +1,7 @@
+CREATE TABLE `device_outbox` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `device_id` BIGINT NOT NULL,
+    `payload` TEXT NULL,
+    `created_at` DATETIME(6) NOT NULL,
+    PRIMARY KEY (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
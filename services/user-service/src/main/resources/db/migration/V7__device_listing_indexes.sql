@@ -0,0 +1,4 @@
+-- Keyset listing seeks on (filter, id). InnoDB appends the primary key to every secondary index,
+-- so idx_device_user_id already serves (user_id, id); these cover the type filters.
+CREATE INDEX `idx_device_type_id` ON `device` (`type`, `id`);
+CREATE INDEX `idx_device_user_type_id` ON `device` (`user_id`, `type`, `id`);
@@ -0,0 +1,2 @@
+-- Owner before the change, so caches of per-user device lists can be invalidated on a move or delete.
+ALTER TABLE `device_outbox` ADD COLUMN `previous_user_id` BIGINT NULL AFTER `payload`;